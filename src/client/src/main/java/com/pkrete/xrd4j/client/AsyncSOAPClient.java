@@ -0,0 +1,85 @@
+package com.pkrete.xrd4j.client;
+
+import com.pkrete.xrd4j.client.deserializer.ServiceResponseDeserializer;
+import com.pkrete.xrd4j.client.serializer.ServiceRequestSerializer;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import javax.xml.soap.SOAPMessage;
+
+/**
+ * This class defines an interface for asynchronous SOAP client that can be
+ * used for sending SOAPMessage and ServiceRequest objects to SOAP endpoints
+ * without blocking the calling thread. All the methods return immediately and
+ * the returned futures are completed when the response has been received. If
+ * sending the message fails, the future is completed exceptionally.
+ *
+ * @author Petteri Kivimäki
+ */
+public interface AsyncSOAPClient extends Closeable {
+
+    /**
+     * Sends the given message to the specified endpoint. The returned future is
+     * completed with the response.
+     *
+     * @param request the SOAPMessage object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @return future that's completed with the SOAPMessage object that is the
+     * response to the request message that was sent
+     */
+    CompletableFuture<SOAPMessage> send(SOAPMessage request, String url);
+
+    /**
+     * Sends the given message to the specified endpoint. Serialization and
+     * deserialization from/to SOAPMessage is done using the given serializer
+     * and deserializer. The returned future is completed with the response.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @param serializer the ServiceRequestSerializer object that serializes the
+     * request to SOAPMessage
+     * @param deserializer the ServiceResponseDeserializer object that
+     * deserializes SOAPMessage response to ServiceResponse
+     * @return future that's completed with the ServiceResponse object that is
+     * the response to the message that was sent
+     */
+    CompletableFuture<ServiceResponse> send(ServiceRequest request, String url, ServiceRequestSerializer serializer, ServiceResponseDeserializer deserializer);
+
+    /**
+     * Calls listMethods meta service that lists all the services offered by a
+     * service provider. The returned future is completed with a ServiceResponse
+     * that holds a list of ProducerMember objects in its responseData
+     * variable.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @return future that's completed with a ServiceResponse that holds a list
+     * of ProducerMember objects
+     */
+    CompletableFuture<ServiceResponse> listMethods(final ServiceRequest request, final String url);
+
+    /**
+     * Calls allowedMethods meta service that lists all the services by a
+     * service provider that the caller has permission to invoke. The returned
+     * future is completed with a ServiceResponse that holds a list of
+     * ProducerMember objects in its responseData variable.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @return future that's completed with a ServiceResponse that holds a list
+     * of ProducerMember objects
+     */
+    CompletableFuture<ServiceResponse> allowedMethods(final ServiceRequest request, final String url);
+
+    /**
+     * Calls getSecurityServerMetrics monitoring service that returns a data set
+     * collected by environmental monitoring sensors.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @return future that's completed with a ServiceResponse that holds a
+     * NodeList containing the response data
+     */
+    CompletableFuture<ServiceResponse> getSecurityServerMetrics(final ServiceRequest request, final String url);
+}
@@ -0,0 +1,215 @@
+package com.pkrete.xrd4j.client;
+
+import com.pkrete.xrd4j.client.deserializer.GetSecurityServerMetricsResponseDeserializer;
+import com.pkrete.xrd4j.client.deserializer.ListServicesResponseDeserializer;
+import com.pkrete.xrd4j.client.deserializer.ServiceResponseDeserializer;
+import com.pkrete.xrd4j.client.serializer.DefaultServiceRequestSerializer;
+import com.pkrete.xrd4j.client.serializer.ServiceRequestSerializer;
+import com.pkrete.xrd4j.client.transport.AsyncHttpTransport;
+import com.pkrete.xrd4j.common.exception.XRd4JRuntimeException;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.pkrete.xrd4j.common.util.Constants;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class represents an asynchronous SOAP client that can be used for
+ * sending SOAPMessage and ServiceRequest objects to SOAP endpoints without
+ * blocking the calling thread. The messages are sent using non-blocking HTTP
+ * I/O provided by AsyncHttpTransport. The existing ServiceRequestSerializer
+ * and ServiceResponseDeserializer implementations can be used with this
+ * client.
+ *
+ * @author Petteri Kivimäki
+ */
+public class AsyncSOAPClientImpl implements AsyncSOAPClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncSOAPClientImpl.class);
+    private final AsyncHttpTransport transport;
+    private final ServiceRequestSerializer metaServiceSerializer = new DefaultServiceRequestSerializer();
+
+    /**
+     * Constructs and initializes a new AsyncSOAPClientImpl that uses a new
+     * AsyncHttpTransport with the default settings.
+     *
+     * @throws SOAPException if there's a SOAP error
+     */
+    public AsyncSOAPClientImpl() throws SOAPException {
+        this(new AsyncHttpTransport());
+    }
+
+    /**
+     * Constructs and initializes a new AsyncSOAPClientImpl that uses the given
+     * transport for sending the messages.
+     *
+     * @param transport AsyncHttpTransport that's used for sending the messages
+     */
+    public AsyncSOAPClientImpl(AsyncHttpTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Sends the given message to the specified endpoint. The returned future is
+     * completed with the response. If the given url is malformed, the future is
+     * completed exceptionally with XRd4JRuntimeException.
+     *
+     * @param request the SOAPMessage object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @return future that's completed with the SOAPMessage object that is the
+     * response to the request message that was sent
+     */
+    @Override
+    public CompletableFuture<SOAPMessage> send(final SOAPMessage request, final String url) {
+        URL client;
+        try {
+            client = new URL(url);
+        } catch (MalformedURLException ex) {
+            logger.error(ex.getMessage(), ex);
+            return failed(new XRd4JRuntimeException(ex.getMessage()));
+        }
+        logger.debug("Send SOAP message to \"{}\".", url);
+        return this.transport.call(request, client);
+    }
+
+    /**
+     * Sends the given message to the specified endpoint. Serialization and
+     * deserialization from/to SOAPMessage is done using the given serializer
+     * and deserializer. The deserialization is done by the executor of the
+     * transport. Cancelling the returned future aborts the HTTP request.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @param serializer the ServiceRequestSerializer object that serializes the
+     * request to SOAPMessage
+     * @param deserializer the ServiceResponseDeserializer object that
+     * deserializes SOAPMessage response to ServiceResponse
+     * @return future that's completed with the ServiceResponse object that is
+     * the response to the message that was sent
+     */
+    @Override
+    public CompletableFuture<ServiceResponse> send(final ServiceRequest request, final String url, final ServiceRequestSerializer serializer, final ServiceResponseDeserializer deserializer) {
+        SOAPMessage soapRequest = serializer.serialize(request);
+        if (soapRequest == null) {
+            return failed(new SOAPException("Serializing ServiceRequest failed. Request id : \"" + request.getId() + "\""));
+        }
+        logger.info("Send ServiceRequest to \"{}\". Request id : \"{}\"", url, request.getId());
+        logger.debug("Consumer : {}", request.getConsumer().toString());
+        logger.debug("Producer : {}", request.getProducer().toString());
+        String producerNamespaceURI = request.getProducer().getNamespaceUrl() == null || request.getProducer().getNamespaceUrl().isEmpty() ? "*" : request.getProducer().getNamespaceUrl();
+        CompletableFuture<SOAPMessage> soapResponse = this.send(soapRequest, url);
+        CompletableFuture<ServiceResponse> serviceResponse = soapResponse.thenApply(message -> {
+            ServiceResponse response = deserializer.deserialize(message, producerNamespaceURI, request.isProcessingWrappers());
+            logger.info("ServiceResponse received. Request id : \"{}\"", request.getId());
+            return response;
+        });
+        // Cancelling the dependent future doesn't cancel the transport
+        // future, so the cancellation is passed on explicitly
+        serviceResponse.whenComplete((response, ex) -> {
+            if (serviceResponse.isCancelled()) {
+                soapResponse.cancel(true);
+            }
+        });
+        return serviceResponse;
+    }
+
+    /**
+     * Calls listMethods meta service that lists all the services offered by a
+     * service provider.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @return future that's completed with a ServiceResponse that holds a list
+     * of ProducerMember objects
+     */
+    @Override
+    public CompletableFuture<ServiceResponse> listMethods(final ServiceRequest request, final String url) {
+        logger.info("Call \"{}\" meta service.", Constants.META_SERVICE_LIST_METHODS);
+        return this.listServices(request, url, Constants.META_SERVICE_LIST_METHODS);
+    }
+
+    /**
+     * Calls allowedMethods meta service that lists all the services by a
+     * service provider that the caller has permission to invoke.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @return future that's completed with a ServiceResponse that holds a list
+     * of ProducerMember objects
+     */
+    @Override
+    public CompletableFuture<ServiceResponse> allowedMethods(final ServiceRequest request, final String url) {
+        logger.info("Call \"{}\" meta service.", Constants.META_SERVICE_ALLOWED_METHODS);
+        return this.listServices(request, url, Constants.META_SERVICE_ALLOWED_METHODS);
+    }
+
+    /**
+     * This is a helper method for meta service calls that don't have a request
+     * body. The method sets the service code, name space and name space prefix,
+     * and removes the service version.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @param serviceCode service code of the meta service to be called
+     * @return future that's completed with a ServiceResponse that holds the
+     * response of the meta service
+     */
+    private CompletableFuture<ServiceResponse> listServices(final ServiceRequest request, final String url, final String serviceCode) {
+        // Set correct values for meta service call
+        request.getProducer().setServiceCode(serviceCode);
+        request.getProducer().setServiceVersion(null);
+        request.getProducer().setNamespacePrefix(Constants.NS_XRD_PREFIX);
+        request.getProducer().setNamespaceUrl(Constants.NS_XRD_URL);
+        return this.send(request, url, this.metaServiceSerializer, new ListServicesResponseDeserializer());
+    }
+
+    /**
+     * Calls getSecurityServerMetrics monitoring service that returns a data set
+     * collected by environmental monitoring sensors.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @return future that's completed with a ServiceResponse that holds a
+     * NodeList containing the response data
+     */
+    @Override
+    public CompletableFuture<ServiceResponse> getSecurityServerMetrics(final ServiceRequest request, final String url) {
+        // Set correct values for meta service call
+        request.getProducer().setSubsystemCode(null);
+        request.getProducer().setServiceCode(Constants.ENV_MONITORING_GET_SECURITY_SERVER_METRICS);
+        request.getProducer().setServiceVersion(null);
+        request.getProducer().setNamespacePrefix(Constants.NS_ENV_MONITORING_PREFIX);
+        request.getProducer().setNamespaceUrl(Constants.NS_ENV_MONITORING_URL);
+        return this.send(request, url, this.metaServiceSerializer, new GetSecurityServerMetricsResponseDeserializer());
+    }
+
+    /**
+     * Closes the underlying transport.
+     *
+     * @throws IOException if there's an I/O error
+     */
+    @Override
+    public void close() throws IOException {
+        this.transport.close();
+    }
+
+    /**
+     * Returns a future that's already completed exceptionally with the given
+     * exception.
+     *
+     * @param <T> runtime type of the future
+     * @param ex exception
+     * @return exceptionally completed future
+     */
+    private static <T> CompletableFuture<T> failed(final Throwable ex) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(ex);
+        return future;
+    }
+}
@@ -0,0 +1,356 @@
+package com.pkrete.xrd4j.client;
+
+import com.pkrete.xrd4j.client.balancer.Endpoint;
+import com.pkrete.xrd4j.client.balancer.HedgingPolicy;
+import com.pkrete.xrd4j.client.balancer.LoadBalancer;
+import com.pkrete.xrd4j.client.balancer.Selection;
+import com.pkrete.xrd4j.client.deserializer.ServiceResponseDeserializer;
+import com.pkrete.xrd4j.client.serializer.ServiceRequestSerializer;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.MimeHeader;
+import javax.xml.soap.MimeHeaders;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class sends hedged requests on behalf of LoadBalancedSOAPClientImpl.
+ * The request is first sent to one endpoint and if no response has been
+ * received within the delay defined by the hedging policy, the same request is
+ * sent to another endpoint. The first successful response is returned and the
+ * other request is cancelled. The requests are sent using the given executor
+ * and the calling thread blocks until the response has been received.
+ *
+ * The class keeps a window of the recent response times for calculating the
+ * delay and a budget that limits the number of hedged requests. The
+ * statistics are per client, so a Hedger must not be shared.
+ *
+ * @author Petteri Kivimäki
+ */
+final class Hedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(Hedger.class);
+    private static final int WINDOW_SIZE = 256;
+    private static final int MIN_SAMPLES = 20;
+    private static final int UPDATE_INTERVAL = 16;
+    private static final long BUDGET_UNIT = 1000;
+
+    private final HedgingPolicy policy;
+    private final LoadBalancer loadBalancer;
+    private final SOAPClient soapClient;
+    private final Executor executor;
+    private final MessageFactory messageFactory;
+    private final AtomicLongArray samples;
+    private final AtomicLong sampleCount;
+    private final AtomicLong budget;
+    private final AtomicLong hedgeCount;
+    private volatile long delay;
+
+    /**
+     * Constructs and initializes a new Hedger object.
+     *
+     * @param policy policy that defines when hedged requests are sent
+     * @param loadBalancer LoadBalancer that selects the endpoints
+     * @param soapClient SOAPClient that sends the requests
+     * @param executor executor that's used for sending the requests
+     * @throws SOAPException if there's a SOAP error
+     */
+    Hedger(HedgingPolicy policy, LoadBalancer loadBalancer, SOAPClient soapClient, Executor executor) throws SOAPException {
+        this.policy = policy;
+        this.loadBalancer = loadBalancer;
+        this.soapClient = soapClient;
+        this.executor = executor;
+        this.messageFactory = MessageFactory.newInstance();
+        this.samples = new AtomicLongArray(WINDOW_SIZE);
+        this.sampleCount = new AtomicLong();
+        this.budget = new AtomicLong(policy.getMaxBurst() * BUDGET_UNIT);
+        this.hedgeCount = new AtomicLong();
+        this.delay = TimeUnit.MILLISECONDS.toNanos(policy.getMaxDelay());
+    }
+
+    /**
+     * Sends the given request and blocks until the first successful response
+     * has been received. If all the requests fail, the exception of the last
+     * failed request is thrown.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param serializer the ServiceRequestSerializer object that serializes the
+     * request to SOAPMessage
+     * @param deserializer the ServiceResponseDeserializer object that
+     * deserializes SOAPMessage response to ServiceResponse
+     * @return the ServiceResponse object that is the response to the message
+     * that was sent.
+     * @throws SOAPException if there's a SOAP error
+     */
+    ServiceResponse send(final ServiceRequest request, final ServiceRequestSerializer serializer, final ServiceResponseDeserializer deserializer) throws SOAPException {
+        SOAPMessage soapRequest = serializer.serialize(request);
+        if (soapRequest == null) {
+            throw new SOAPException("Serializing ServiceRequest failed. Request id : \"" + request.getId() + "\"");
+        }
+        // The hedged request needs its own copy of the message, because
+        // SOAPMessage objects are not thread safe. The copy is taken before
+        // the message is handed to the sending thread.
+        if (soapRequest.saveRequired()) {
+            soapRequest.saveChanges();
+        }
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        try {
+            soapRequest.writeTo(content);
+        } catch (IOException ex) {
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+        MimeHeaders headers = new MimeHeaders();
+        Iterator it = soapRequest.getMimeHeaders().getAllHeaders();
+        while (it.hasNext()) {
+            MimeHeader header = (MimeHeader) it.next();
+            headers.addHeader(header.getName(), header.getValue());
+        }
+        this.deposit();
+        logger.info("Send hedged ServiceRequest. Request id : \"{}\"", request.getId());
+        CompletionService<SOAPMessage> completionService = new ExecutorCompletionService<>(this.executor);
+        Attempt[] attempts = new Attempt[2];
+        attempts[0] = this.submit(completionService, this.loadBalancer.reserve(null), soapRequest);
+        int pending = 1;
+        Exception failure = null;
+        try {
+            Future<SOAPMessage> done = completionService.poll(this.delay, TimeUnit.NANOSECONDS);
+            if (done == null) {
+                attempts[1] = this.hedge(completionService, attempts[0], headers, content.toByteArray());
+                pending += attempts[1] == null ? 0 : 1;
+            }
+            while (pending > 0) {
+                if (done == null) {
+                    done = completionService.take();
+                }
+                pending--;
+                Attempt attempt = attempts[0].future == done ? attempts[0] : attempts[1];
+                attempt.completed = true;
+                try {
+                    SOAPMessage soapResponse = done.get();
+                    if (soapResponse == null) {
+                        // The transport returned no response, so the request failed
+                        this.loadBalancer.onFailure(attempt.endpoint);
+                        failure = new SOAPException("No response was received from \"" + attempt.endpoint.getUrl() + "\". Request id : \"" + request.getId() + "\"");
+                        logger.warn("Request to \"{}\" returned no response. Request id : \"{}\"", attempt.endpoint.getUrl(), request.getId());
+                        done = null;
+                        continue;
+                    }
+                    long latency = System.nanoTime() - attempt.start;
+                    this.loadBalancer.onSuccess(attempt.endpoint, latency);
+                    this.recordLatency(latency);
+                    if (attempt == attempts[1]) {
+                        logger.debug("Hedged request to \"{}\" won. Request id : \"{}\"", attempt.endpoint.getUrl(), request.getId());
+                    }
+                    String producerNamespaceURI = request.getProducer().getNamespaceUrl() == null || request.getProducer().getNamespaceUrl().isEmpty() ? "*" : request.getProducer().getNamespaceUrl();
+                    ServiceResponse response = deserializer.deserialize(soapResponse, producerNamespaceURI, request.isProcessingWrappers());
+                    logger.info("ServiceResponse received. Request id : \"{}\"", request.getId());
+                    return response;
+                } catch (ExecutionException ex) {
+                    this.loadBalancer.onFailure(attempt.endpoint);
+                    failure = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+                    logger.warn("Request to \"{}\" failed. Request id : \"{}\"", attempt.endpoint.getUrl(), request.getId());
+                }
+                done = null;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            failure = new SOAPException("Sending ServiceRequest was interrupted. Request id : \"" + request.getId() + "\"", ex);
+        } finally {
+            this.cancel(attempts);
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof SOAPException) {
+            throw (SOAPException) failure;
+        }
+        throw new SOAPException(failure.getMessage(), failure);
+    }
+
+    /**
+     * Sends the hedged request to another endpoint if the budget allows it.
+     * Null is returned if no hedged request is sent.
+     *
+     * @param completionService completion service of the requests
+     * @param primary the first request
+     * @param headers copy of the MIME headers of the request message
+     * @param content content of the request message
+     * @return hedged request or null
+     * @throws SOAPException if copying the request message fails
+     */
+    private Attempt hedge(final CompletionService<SOAPMessage> completionService, final Attempt primary, final MimeHeaders headers, final byte[] content) throws SOAPException {
+        if (!this.withdraw()) {
+            logger.debug("Hedge budget exhausted. No hedged request is sent.");
+            return null;
+        }
+        Selection selection = this.loadBalancer.reserve(primary.endpoint);
+        if (selection == null) {
+            logger.debug("No other endpoint available. No hedged request is sent.");
+            this.deposit(BUDGET_UNIT);
+            return null;
+        }
+        Endpoint endpoint = selection.getEndpoint();
+        logger.debug("No response from \"{}\" in {} ms. Send hedged request to \"{}\".", primary.endpoint.getUrl(), TimeUnit.NANOSECONDS.toMillis(this.delay), endpoint.getUrl());
+        SOAPMessage message;
+        try {
+            message = this.messageFactory.createMessage(headers, new ByteArrayInputStream(content));
+        } catch (IOException | SOAPException ex) {
+            this.loadBalancer.onCancel(endpoint, selection.isProbe());
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+        this.hedgeCount.incrementAndGet();
+        return this.submit(completionService, selection, message);
+    }
+
+    /**
+     * Submits a request to the selected endpoint.
+     *
+     * @param completionService completion service of the requests
+     * @param selection target endpoint
+     * @param message message to be sent
+     * @return submitted request
+     */
+    private Attempt submit(final CompletionService<SOAPMessage> completionService, final Selection selection, final SOAPMessage message) {
+        Attempt attempt = new Attempt(selection);
+        final String url = selection.getEndpoint().getUrl();
+        try {
+            attempt.future = completionService.submit(() -> this.soapClient.send(message, url));
+        } catch (RuntimeException ex) {
+            this.loadBalancer.onCancel(attempt.endpoint, attempt.probe);
+            throw ex;
+        }
+        return attempt;
+    }
+
+    /**
+     * Cancels the requests that have not completed yet.
+     *
+     * @param attempts requests to be cancelled
+     */
+    private void cancel(final Attempt[] attempts) {
+        for (Attempt attempt : attempts) {
+            if (attempt != null && !attempt.completed) {
+                attempt.future.cancel(true);
+                this.loadBalancer.onCancel(attempt.endpoint, attempt.probe);
+                logger.debug("Request to \"{}\" was cancelled.", attempt.endpoint.getUrl());
+            }
+        }
+    }
+
+    /**
+     * Adds a new response time to the window of recent response times and
+     * updates the delay periodically.
+     *
+     * @param latency response time in nanoseconds
+     */
+    private void recordLatency(final long latency) {
+        long count = this.sampleCount.incrementAndGet();
+        this.samples.set((int) ((count - 1) % WINDOW_SIZE), latency);
+        if (count >= MIN_SAMPLES && count % UPDATE_INTERVAL == 0) {
+            int size = (int) Math.min(count, WINDOW_SIZE);
+            long[] values = new long[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = this.samples.get(i);
+            }
+            Arrays.sort(values);
+            long value = values[(int) Math.min(size - 1, Math.ceil(this.policy.getPercentile() * size) - 1)];
+            long min = TimeUnit.MILLISECONDS.toNanos(this.policy.getMinDelay());
+            long max = TimeUnit.MILLISECONDS.toNanos(this.policy.getMaxDelay());
+            this.delay = Math.max(min, Math.min(max, value));
+            logger.trace("Hedge delay updated to {} ms.", TimeUnit.NANOSECONDS.toMillis(this.delay));
+        }
+    }
+
+    /**
+     * Adds the budget ratio of one request to the budget.
+     */
+    private void deposit() {
+        this.deposit((long) (this.policy.getBudgetRatio() * BUDGET_UNIT));
+    }
+
+    /**
+     * Adds the given amount to the budget. The budget can't grow beyond the
+     * maximum burst.
+     *
+     * @param amount amount to be added
+     */
+    private void deposit(final long amount) {
+        long max = this.policy.getMaxBurst() * BUDGET_UNIT;
+        long current;
+        do {
+            current = this.budget.get();
+        } while (!this.budget.compareAndSet(current, Math.min(max, current + amount)));
+    }
+
+    /**
+     * Consumes the cost of one hedged request from the budget.
+     *
+     * @return true if the budget allowed the hedged request; otherwise false
+     */
+    private boolean withdraw() {
+        long current;
+        do {
+            current = this.budget.get();
+            if (current < BUDGET_UNIT) {
+                return false;
+            }
+        } while (!this.budget.compareAndSet(current, current - BUDGET_UNIT));
+        return true;
+    }
+
+    /**
+     * Returns the current delay after which a hedged request is sent.
+     *
+     * @return delay in nanoseconds
+     */
+    long getDelay() {
+        return this.delay;
+    }
+
+    /**
+     * Returns the number of hedged requests sent.
+     *
+     * @return number of hedged requests
+     */
+    long getHedgeCount() {
+        return this.hedgeCount.get();
+    }
+
+    /**
+     * Single request sent to one endpoint.
+     */
+    private static class Attempt {
+
+        private final Endpoint endpoint;
+        private final boolean probe;
+        private final long start;
+        private Future<SOAPMessage> future;
+        private boolean completed;
+
+        /**
+         * Constructs and initializes a new Attempt object.
+         *
+         * @param selection target endpoint
+         */
+        Attempt(Selection selection) {
+            this.endpoint = selection.getEndpoint();
+            this.probe = selection.isProbe();
+            this.start = System.nanoTime();
+        }
+    }
+}
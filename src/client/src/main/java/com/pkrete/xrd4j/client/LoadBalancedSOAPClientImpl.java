@@ -1,26 +1,38 @@
 package com.pkrete.xrd4j.client;
 
+import com.pkrete.xrd4j.client.balancer.Endpoint;
+import com.pkrete.xrd4j.client.balancer.HedgingPolicy;
+import com.pkrete.xrd4j.client.balancer.LoadBalancer;
+import com.pkrete.xrd4j.client.balancer.RoundRobinLoadBalancer;
 import com.pkrete.xrd4j.client.deserializer.ServiceResponseDeserializer;
 import com.pkrete.xrd4j.client.serializer.ServiceRequestSerializer;
+import com.pkrete.xrd4j.client.transport.SAAJTransport;
+import com.pkrete.xrd4j.client.transport.SOAPTransport;
 import com.pkrete.xrd4j.common.member.ConsumerMember;
 import com.pkrete.xrd4j.common.member.ProducerMember;
 import com.pkrete.xrd4j.common.message.ServiceRequest;
 import com.pkrete.xrd4j.common.message.ServiceResponse;
 import java.util.List;
+import java.util.concurrent.Executor;
 import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * This class represents a round-robin load balanced SOAP client that can be
- * used for sending SOAPMessage and ServiceRequest objects to multiple SOAP
- * endpoints. This class holds a list of server URLs and going down the list of
- * security servers in the group, the round-robin load balancer forwards a
- * client request to each server in turn. However, this class does not provide
- * high availability features - if a request fails, it is not sent again to
- * another endpoint. In addition, repeatedly failing endpoints are not removed
- * from the list and they keep on receiving requests.
+ * This class represents a load balanced SOAP client that can be used for
+ * sending SOAPMessage and ServiceRequest objects to multiple SOAP endpoints.
+ * The target of each request is selected by a LoadBalancer. By default a
+ * round-robin load balancer is used: going down the list of security servers
+ * in the group, the load balancer forwards a client request to each server in
+ * turn. The outcome of every request is reported to the load balancer, so
+ * repeatedly failing endpoints are ejected for a while and re-admitted after a
+ * successful probe request. However, if a request fails, it is not sent again
+ * to another endpoint.
+ *
+ * Optionally, ServiceRequests can be hedged: if the first endpoint has not
+ * responded within a delay defined by HedgingPolicy, the same request is sent
+ * to a second endpoint and the first successful response is returned.
  *
  * @author Petteri Kivimäki
  */
@@ -28,8 +40,8 @@ public class LoadBalancedSOAPClientImpl implements LoadBalancedSOAPClient {
 
     private static final Logger logger = LoggerFactory.getLogger(LoadBalancedSOAPClientImpl.class);
     private final SOAPClient soapClient;
-    private final List<String> endpointUrls;
-    private int nextTarget;
+    private final LoadBalancer loadBalancer;
+    private final Hedger hedger;
 
     /**
      * Constructs and initializes a new LoadBalancedSOAPClientImpl object.
@@ -39,15 +51,59 @@ public class LoadBalancedSOAPClientImpl implements LoadBalancedSOAPClient {
      * @throws SOAPException if there's an error
      */
     public LoadBalancedSOAPClientImpl(List<String> endpointUrls) throws SOAPException {
-        this.endpointUrls = endpointUrls;
-        this.soapClient = new SOAPClientImpl();
-        this.nextTarget = 0;
-        logger.debug("Create new LoadBalancedSOAPClientImpl with {} endpoint URLs", endpointUrls.size());
-        for (String url : this.endpointUrls) {
-            logger.debug("Found URL: \"{}\"", url);
+        this(endpointUrls, new SAAJTransport());
+    }
+
+    /**
+     * Constructs and initializes a new LoadBalancedSOAPClientImpl object that
+     * uses the given transport for sending the messages.
+     *
+     * @param endpointUrls list of security server URLs where the requests are
+     * sent
+     * @param transport SOAPTransport that's used for sending the messages
+     */
+    public LoadBalancedSOAPClientImpl(List<String> endpointUrls, SOAPTransport transport) {
+        this(new RoundRobinLoadBalancer(endpointUrls), transport);
+    }
+
+    /**
+     * Constructs and initializes a new LoadBalancedSOAPClientImpl object that
+     * uses the given load balancer for selecting the endpoints and the given
+     * transport for sending the messages.
+     *
+     * @param loadBalancer LoadBalancer that selects the target of each request
+     * @param transport SOAPTransport that's used for sending the messages
+     */
+    public LoadBalancedSOAPClientImpl(LoadBalancer loadBalancer, SOAPTransport transport) {
+        this.loadBalancer = loadBalancer;
+        this.soapClient = new SOAPClientImpl(transport);
+        this.hedger = null;
+        logger.debug("Create new LoadBalancedSOAPClientImpl with {} endpoint URLs", loadBalancer.getEndpoints().size());
+        for (Endpoint endpoint : loadBalancer.getEndpoints()) {
+            logger.debug("Found URL: \"{}\"", endpoint.getUrl());
         }
     }
 
+    /**
+     * Constructs and initializes a new LoadBalancedSOAPClientImpl object that
+     * sends hedged ServiceRequests according to the given hedging policy. The
+     * requests are sent using the given executor, so the executor must be
+     * able to run two requests in parallel for every calling thread. The
+     * executor is not shut down by this class.
+     *
+     * @param loadBalancer LoadBalancer that selects the target of each request
+     * @param transport SOAPTransport that's used for sending the messages
+     * @param policy HedgingPolicy that defines when hedged requests are sent
+     * @param executor executor that's used for sending the hedged requests
+     * @throws SOAPException if there's a SOAP error
+     */
+    public LoadBalancedSOAPClientImpl(LoadBalancer loadBalancer, SOAPTransport transport, HedgingPolicy policy, Executor executor) throws SOAPException {
+        this.loadBalancer = loadBalancer;
+        this.soapClient = new SOAPClientImpl(transport);
+        this.hedger = new Hedger(policy, loadBalancer, this.soapClient, executor);
+        logger.debug("Create new LoadBalancedSOAPClientImpl with {} endpoint URLs and hedging enabled", loadBalancer.getEndpoints().size());
+    }
+
     /**
      * Sends the given message to one of the defined endpoints and blocks until
      * it has returned the response. Null is returned if sending the message
@@ -60,14 +116,15 @@ public class LoadBalancedSOAPClientImpl implements LoadBalancedSOAPClient {
      */
     @Override
     public SOAPMessage send(final SOAPMessage request) throws SOAPException {
-        return this.soapClient.send(request, this.getTargetUrl());
+        return this.invoke(url -> this.soapClient.send(request, url));
     }
 
     /**
      * Sends the given message to one of the defined endpoints and blocks until
      * it has returned the response. Null is returned if sending the message
      * fails. Serialization and deserialization from/to SOAPMessage is done
-     * inside the method.
+     * inside the method. If hedging is enabled, the request may be sent to two
+     * endpoints and the first successful response is returned.
      *
      * @param request the ServiceRequest object to be sent
      * @param serializer the ServiceRequestSerializer object that serializes the
@@ -80,7 +137,10 @@ public class LoadBalancedSOAPClientImpl implements LoadBalancedSOAPClient {
      */
     @Override
     public ServiceResponse send(final ServiceRequest request, final ServiceRequestSerializer serializer, final ServiceResponseDeserializer deserializer) throws SOAPException {
-        return this.soapClient.send(request, this.getTargetUrl(), serializer, deserializer);
+        if (this.hedger != null) {
+            return this.hedger.send(request, serializer, deserializer);
+        }
+        return this.invoke(url -> this.soapClient.send(request, url, serializer, deserializer));
     }
 
     /**
@@ -92,7 +152,7 @@ public class LoadBalancedSOAPClientImpl implements LoadBalancedSOAPClient {
      */
     @Override
     public List<ConsumerMember> listClients() {
-        return this.soapClient.listClients(this.getTargetUrl());
+        return this.invoke(this.soapClient::listClients);
     }
 
     /**
@@ -104,7 +164,7 @@ public class LoadBalancedSOAPClientImpl implements LoadBalancedSOAPClient {
      */
     @Override
     public List<ProducerMember> listCentralServices() {
-        return this.soapClient.listCentralServices(this.getTargetUrl());
+        return this.invoke(this.soapClient::listCentralServices);
     }
 
     /**
@@ -118,7 +178,7 @@ public class LoadBalancedSOAPClientImpl implements LoadBalancedSOAPClient {
      */
     @Override
     public ServiceResponse listMethods(final ServiceRequest request) throws SOAPException {
-        return this.soapClient.listMethods(request, this.getTargetUrl());
+        return this.invoke(url -> this.soapClient.listMethods(request, url));
     }
 
     /**
@@ -133,7 +193,7 @@ public class LoadBalancedSOAPClientImpl implements LoadBalancedSOAPClient {
      */
     @Override
     public ServiceResponse allowedMethods(final ServiceRequest request) throws SOAPException {
-        return this.soapClient.allowedMethods(request, this.getTargetUrl());
+        return this.invoke(url -> this.soapClient.allowedMethods(request, url));
     }
 
     /**
@@ -148,22 +208,90 @@ public class LoadBalancedSOAPClientImpl implements LoadBalancedSOAPClient {
      */
     @Override
     public ServiceResponse getSecurityServerMetrics(final ServiceRequest request, final String url) throws SOAPException {
-        return this.soapClient.getSecurityServerMetrics(request, this.getTargetUrl());
+        return this.invoke(target -> this.soapClient.getSecurityServerMetrics(request, target));
+    }
+
+    /**
+     * Returns the load balancer that selects the target of each request.
+     *
+     * @return load balancer of this client
+     */
+    public LoadBalancer getLoadBalancer() {
+        return this.loadBalancer;
     }
 
     /**
-     * Returns the next target URL in turn and updates the pointer holding the
-     * value of the next target.
+     * Returns the Hedger that sends the hedged requests. Null is returned if
+     * hedging is not enabled.
+     *
+     * @return Hedger or null
+     */
+    Hedger getHedger() {
+        return this.hedger;
+    }
+
+    /**
+     * Returns the next target URL selected by the load balancer. The returned
+     * URL is not tracked as an outstanding request and ejected endpoints are
+     * not probed.
      *
      * @return target URL
+     * @deprecated this method no longer affects where the requests are sent,
+     * because the outcome of every request must be reported to the load
+     * balancer. Routing can be changed by giving a custom LoadBalancer
+     * implementation to the constructor.
      */
+    @Deprecated
     protected String getTargetUrl() {
-        // Get the next target URL
-        String target = this.endpointUrls.get(this.nextTarget);
-        logger.trace("Current nextTarget: \"{}\", targetUrl: \"{}\"", this.nextTarget, target);
-        // Update next pointer
-        this.nextTarget = this.nextTarget == this.endpointUrls.size() - 1 ? 0 : this.nextTarget + 1;
-        logger.trace("New nextTarget: \"{}\"", this.nextTarget);
-        return target;
+        Endpoint endpoint = this.loadBalancer.peek();
+        logger.trace("Target URL: \"{}\"", endpoint.getUrl());
+        return endpoint.getUrl();
+    }
+
+    /**
+     * Sends a request to the endpoint selected by the load balancer and
+     * reports the outcome and the response time to the load balancer. A null
+     * response means that the request failed.
+     *
+     * @param <T> runtime type of the response
+     * @param <E> type of the exception thrown by the request
+     * @param call request to be sent
+     * @return response to the request
+     * @throws E if sending the request fails
+     */
+    private <T, E extends Exception> T invoke(final EndpointCall<T, E> call) throws E {
+        Endpoint endpoint = this.loadBalancer.select();
+        logger.trace("Target URL: \"{}\"", endpoint.getUrl());
+        long start = System.nanoTime();
+        T response = null;
+        try {
+            response = call.call(endpoint.getUrl());
+            return response;
+        } finally {
+            if (response != null) {
+                this.loadBalancer.onSuccess(endpoint, System.nanoTime() - start);
+            } else {
+                this.loadBalancer.onFailure(endpoint);
+            }
+        }
+    }
+
+    /**
+     * Request that's sent to the given URL.
+     *
+     * @param <T> runtime type of the response
+     * @param <E> type of the exception thrown by the request
+     */
+    @FunctionalInterface
+    private interface EndpointCall<T, E extends Exception> {
+
+        /**
+         * Sends the request to the given URL.
+         *
+         * @param url target URL
+         * @return response to the request
+         * @throws E if sending the request fails
+         */
+        T call(String url) throws E;
     }
 }
@@ -9,6 +9,8 @@ import com.pkrete.xrd4j.client.serializer.DefaultServiceRequestSerializer;
 import com.pkrete.xrd4j.common.message.ServiceRequest;
 import com.pkrete.xrd4j.common.message.ServiceResponse;
 import com.pkrete.xrd4j.client.serializer.ServiceRequestSerializer;
+import com.pkrete.xrd4j.client.transport.SAAJTransport;
+import com.pkrete.xrd4j.client.transport.SOAPTransport;
 import com.pkrete.xrd4j.common.exception.XRd4JRuntimeException;
 import com.pkrete.xrd4j.common.member.ConsumerMember;
 import com.pkrete.xrd4j.common.member.ProducerMember;
@@ -20,8 +22,6 @@ import com.pkrete.xrd4j.rest.client.RESTClientFactory;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.List;
-import javax.xml.soap.SOAPConnection;
-import javax.xml.soap.SOAPConnectionFactory;
 import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPMessage;
 import org.slf4j.Logger;
@@ -29,22 +29,37 @@ import org.slf4j.LoggerFactory;
 
 /**
  * This class represents a SOAP client that can be used for sending SOAPMessage
- * and ServiceRequest objects to SOAP endpoints.
+ * and ServiceRequest objects to SOAP endpoints. The HTTP communication is
+ * delegated to a SOAPTransport object. By default a new SOAPConnection is
+ * opened for every message, but a pooled transport that reuses persistent
+ * connections can be given to the constructor.
  *
  * @author Petteri Kivimäki
  */
 public class SOAPClientImpl implements SOAPClient {
 
     private static final Logger logger = LoggerFactory.getLogger(SOAPClientImpl.class);
-    private final SOAPConnectionFactory connectionFactory;
+    private final SOAPTransport transport;
+    private final ServiceRequestSerializer metaServiceSerializer = new DefaultServiceRequestSerializer();
 
     /**
-     * Constructs and initializes a new SOAPClientImpl.
+     * Constructs and initializes a new SOAPClientImpl. A new SOAPConnection
+     * is used for every message.
      *
      * @throws SOAPException if there's a SOAP error
      */
     public SOAPClientImpl() throws SOAPException {
-        this.connectionFactory = SOAPConnectionFactory.newInstance();
+        this(new SAAJTransport());
+    }
+
+    /**
+     * Constructs and initializes a new SOAPClientImpl that uses the given
+     * transport for sending the messages.
+     *
+     * @param transport SOAPTransport that's used for sending the messages
+     */
+    public SOAPClientImpl(SOAPTransport transport) {
+        this.transport = transport;
     }
 
     /**
@@ -67,13 +82,11 @@ public class SOAPClientImpl implements SOAPClient {
             logger.error(ex.getMessage(), ex);
             throw new XRd4JRuntimeException(ex.getMessage());
         }
-        SOAPConnection connection = connectionFactory.createConnection();
         logger.debug("Send SOAP message to \"{}\".", url);
         logger.trace("Outgoing SOAP request : \"{}\".", SOAPHelper.toString(request));
-        SOAPMessage response = connection.call(request, client);
+        SOAPMessage response = this.transport.call(request, client);
         logger.debug("SOAP response received.");
         logger.trace("Incoming SOAP response : \"{}\".", SOAPHelper.toString(response));
-        connection.close();
         return response;
     }
 
@@ -202,8 +215,8 @@ public class SOAPClientImpl implements SOAPClient {
         request.getProducer().setServiceVersion(null);
         request.getProducer().setNamespacePrefix(Constants.NS_XRD_PREFIX);
         request.getProducer().setNamespaceUrl(Constants.NS_XRD_URL);
-        // Request serializer
-        ServiceRequestSerializer serializer = new DefaultServiceRequestSerializer();
+        // Request serializer is stateless, so the same instance is reused
+        ServiceRequestSerializer serializer = this.metaServiceSerializer;
         // Response deserializer
         ServiceResponseDeserializer deserializer = new ListServicesResponseDeserializer();
         // Return response
@@ -228,8 +241,8 @@ public class SOAPClientImpl implements SOAPClient {
         request.getProducer().setServiceVersion(null);
         request.getProducer().setNamespacePrefix(Constants.NS_ENV_MONITORING_PREFIX);
         request.getProducer().setNamespaceUrl(Constants.NS_ENV_MONITORING_URL);
-        // Request serializer
-        ServiceRequestSerializer serializer = new DefaultServiceRequestSerializer();
+        // Request serializer is stateless, so the same instance is reused
+        ServiceRequestSerializer serializer = this.metaServiceSerializer;
         // Response deserializer
         ServiceResponseDeserializer deserializer = new GetSecurityServerMetricsResponseDeserializer();
         // Return response
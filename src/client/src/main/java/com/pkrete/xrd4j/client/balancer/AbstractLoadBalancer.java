@@ -0,0 +1,261 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This abstract class serves as base class for load balancers. The class
+ * takes care of the health state of the endpoints and the subclasses only
+ * implement the strategy that chooses one of the available endpoints.
+ *
+ * Endpoints that fail repeatedly are ejected according to the ejection policy.
+ * When the ejection time of an endpoint has passed, the next request is sent
+ * to that endpoint as a probe. If all the endpoints are ejected, the requests
+ * are distributed among all the endpoints, because failing on the client side
+ * without trying would not help anyone. No locks are used, so the load
+ * balancer can be shared by multiple threads.
+ *
+ * @author Petteri Kivimäki
+ */
+public abstract class AbstractLoadBalancer implements LoadBalancer {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractLoadBalancer.class);
+    /**
+     * Default weight of a new response time sample in the moving average.
+     */
+    public static final double DEFAULT_LATENCY_DECAY = 0.3;
+
+    private final List<Endpoint> endpoints;
+    private final EjectionPolicy policy;
+    private final AtomicInteger counter;
+
+    /**
+     * Constructs and initializes a new AbstractLoadBalancer object.
+     *
+     * @param endpointUrls list of endpoint URLs
+     * @param policy policy that defines when failing endpoints are ejected
+     */
+    protected AbstractLoadBalancer(List<String> endpointUrls, EjectionPolicy policy) {
+        List<Endpoint> list = new ArrayList<>();
+        for (String url : endpointUrls) {
+            list.add(new Endpoint(url));
+        }
+        this.endpoints = Collections.unmodifiableList(list);
+        this.policy = policy;
+        this.counter = new AtomicInteger();
+    }
+
+    /**
+     * Returns all the endpoints of this load balancer.
+     *
+     * @return list of endpoints
+     */
+    @Override
+    public List<Endpoint> getEndpoints() {
+        return this.endpoints;
+    }
+
+    /**
+     * Returns the ejection policy of this load balancer.
+     *
+     * @return ejection policy
+     */
+    public EjectionPolicy getPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * Selects the endpoint where the next request is sent and marks the
+     * request started. Ejected endpoints whose ejection time has passed are
+     * probed first.
+     *
+     * @return selected endpoint
+     * @throws IndexOutOfBoundsException if the load balancer doesn't have any
+     * endpoints
+     */
+    @Override
+    public Endpoint select() {
+        if (this.endpoints.isEmpty()) {
+            throw new IndexOutOfBoundsException("The load balancer doesn't have any endpoints.");
+        }
+        return this.select(null);
+    }
+
+    /**
+     * Selects the endpoint where the next request is sent so that the given
+     * endpoint is not selected, and marks the request started. Ejected
+     * endpoints whose ejection time has passed are probed first. Null is
+     * returned if there's no other endpoint.
+     *
+     * @param excluded endpoint that must not be selected, may be null
+     * @return selected endpoint or null
+     */
+    @Override
+    public Endpoint select(Endpoint excluded) {
+        Selection selection = this.reserve(excluded);
+        return selection == null ? null : selection.getEndpoint();
+    }
+
+    /**
+     * Selects the endpoint where the next request is sent so that the given
+     * endpoint is not selected, marks the request started and tells if the
+     * request is a probe. Ejected endpoints whose ejection time has passed
+     * are probed first. Null is returned if there's no other endpoint.
+     *
+     * @param excluded endpoint that must not be selected, may be null
+     * @return selection or null
+     * @throws IndexOutOfBoundsException if the load balancer doesn't have any
+     * endpoints
+     */
+    @Override
+    public Selection reserve(Endpoint excluded) {
+        if (this.endpoints.isEmpty()) {
+            throw new IndexOutOfBoundsException("The load balancer doesn't have any endpoints.");
+        }
+        Selection selection = this.select(excluded, true);
+        if (selection != null) {
+            selection.getEndpoint().begin();
+        }
+        return selection;
+    }
+
+    /**
+     * Returns the endpoint where the next request would be sent without
+     * marking a request started. Ejected endpoints are not probed, so the
+     * result doesn't have to be reported to the load balancer.
+     *
+     * @return endpoint where the next request would be sent
+     * @throws IndexOutOfBoundsException if the load balancer doesn't have any
+     * endpoints
+     */
+    @Override
+    public Endpoint peek() {
+        if (this.endpoints.isEmpty()) {
+            throw new IndexOutOfBoundsException("The load balancer doesn't have any endpoints.");
+        }
+        return this.select(null, false).getEndpoint();
+    }
+
+    /**
+     * Selects the endpoint where the next request is sent so that the given
+     * endpoint is not selected. If probing is allowed, ejected endpoints whose
+     * ejection time has passed are reserved for a probe and selected first.
+     * Null is returned if there's no other endpoint.
+     *
+     * @param excluded endpoint that must not be selected, may be null
+     * @param probe true if ejected endpoints may be probed
+     * @return selection or null
+     */
+    private Selection select(Endpoint excluded, boolean probe) {
+        long now = System.nanoTime();
+        // The list of available endpoints is copied only if some of them are
+        // ejected or excluded
+        List<Endpoint> available = null;
+        for (int i = 0; i < this.endpoints.size(); i++) {
+            Endpoint endpoint = this.endpoints.get(i);
+            if (endpoint != excluded && !endpoint.isEjected()) {
+                if (available != null) {
+                    available.add(endpoint);
+                }
+            } else if (probe && endpoint != excluded && endpoint.tryProbe(now)) {
+                logger.debug("Send probe request to ejected endpoint \"{}\".", endpoint.getUrl());
+                return endpoint.toSelection(true);
+            } else if (available == null) {
+                available = new ArrayList<>(this.endpoints.subList(0, i));
+            }
+        }
+        if (available == null) {
+            available = this.endpoints;
+        } else if (available.isEmpty()) {
+            available = new ArrayList<>(this.endpoints);
+            available.remove(excluded);
+            if (available.isEmpty()) {
+                return null;
+            }
+            logger.warn("All the endpoints are ejected. Use all the endpoints.");
+        }
+        Endpoint endpoint = this.choose(available);
+        logger.trace("Selected endpoint \"{}\".", endpoint.getUrl());
+        return endpoint.toSelection(false);
+    }
+
+    /**
+     * Reports that a request to the given endpoint succeeded. An ejected
+     * endpoint is re-admitted.
+     *
+     * @param endpoint endpoint where the request was sent
+     * @param latency response time in nanoseconds
+     */
+    @Override
+    public void onSuccess(Endpoint endpoint, long latency) {
+        endpoint.end();
+        endpoint.updateLatency(latency, this.getLatencyDecay());
+        if (endpoint.recordSuccess()) {
+            logger.info("Endpoint \"{}\" was re-admitted.", endpoint.getUrl());
+        }
+    }
+
+    /**
+     * Reports that a request to the given endpoint failed. The endpoint is
+     * ejected if the ejection policy says so.
+     *
+     * @param endpoint endpoint where the request was sent
+     */
+    @Override
+    public void onFailure(Endpoint endpoint) {
+        endpoint.end();
+        if (endpoint.recordFailure(this.policy, System.nanoTime())) {
+            logger.warn("Endpoint \"{}\" was ejected after {} consecutive failures.", endpoint.getUrl(), endpoint.getConsecutiveFailures());
+        }
+    }
+
+    /**
+     * Reports that a request to the given endpoint was abandoned before it
+     * completed. If the request was a probe, the probe is released so that
+     * the endpoint can be probed again. The probe of another request is never
+     * released.
+     *
+     * @param endpoint endpoint where the request was sent
+     * @param probe true if the request was a probe; otherwise false
+     */
+    @Override
+    public void onCancel(Endpoint endpoint, boolean probe) {
+        endpoint.end();
+        if (probe) {
+            endpoint.cancelProbe();
+        }
+    }
+
+    /**
+     * Returns the next value of a shared counter modulo the given size. The
+     * value can be used for rotating the selection between the endpoints.
+     *
+     * @param size number of endpoints
+     * @return index between zero and size - 1
+     */
+    protected int nextIndex(int size) {
+        return (this.counter.getAndIncrement() & Integer.MAX_VALUE) % size;
+    }
+
+    /**
+     * Returns the weight of a new response time sample in the moving average.
+     *
+     * @return weight between 0 and 1
+     */
+    protected double getLatencyDecay() {
+        return DEFAULT_LATENCY_DECAY;
+    }
+
+    /**
+     * Chooses one endpoint from the given list of available endpoints. The
+     * list is never empty.
+     *
+     * @param available list of available endpoints
+     * @return chosen endpoint
+     */
+    protected abstract Endpoint choose(List<Endpoint> available);
+}
@@ -0,0 +1,83 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class defines when a failing endpoint is ejected from the load
+ * balancer and for how long. An endpoint is ejected after the given number of
+ * consecutive failures. After the ejection time has passed, a single probe
+ * request is sent to the endpoint. If the probe succeeds, the endpoint is
+ * re-admitted. Otherwise the endpoint is ejected again and the ejection time
+ * is doubled until the maximum ejection time is reached.
+ *
+ * @author Petteri Kivimäki
+ */
+public class EjectionPolicy {
+
+    /**
+     * Default number of consecutive failures before an endpoint is ejected.
+     */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    /**
+     * Default base ejection time in milliseconds.
+     */
+    public static final long DEFAULT_EJECTION_TIME = 5000;
+    /**
+     * Default maximum ejection time in milliseconds.
+     */
+    public static final long DEFAULT_MAX_EJECTION_TIME = 300000;
+
+    private final int failureThreshold;
+    private final long ejectionTime;
+    private final long maxEjectionTime;
+
+    /**
+     * Constructs and initializes a new EjectionPolicy object using the
+     * default settings.
+     */
+    public EjectionPolicy() {
+        this(DEFAULT_FAILURE_THRESHOLD, DEFAULT_EJECTION_TIME, DEFAULT_MAX_EJECTION_TIME);
+    }
+
+    /**
+     * Constructs and initializes a new EjectionPolicy object.
+     *
+     * @param failureThreshold number of consecutive failures before an
+     * endpoint is ejected
+     * @param ejectionTime ejection time in milliseconds after the first
+     * ejection
+     * @param maxEjectionTime maximum ejection time in milliseconds
+     */
+    public EjectionPolicy(int failureThreshold, long ejectionTime, long maxEjectionTime) {
+        this.failureThreshold = failureThreshold;
+        this.ejectionTime = ejectionTime;
+        this.maxEjectionTime = maxEjectionTime;
+    }
+
+    /**
+     * Returns the number of consecutive failures before an endpoint is
+     * ejected.
+     *
+     * @return number of consecutive failures
+     */
+    public int getFailureThreshold() {
+        return this.failureThreshold;
+    }
+
+    /**
+     * Returns the ejection time in nanoseconds for the given ejection round.
+     * The ejection time is doubled on every round until the maximum ejection
+     * time is reached.
+     *
+     * @param ejections number of consecutive ejections, starting from one
+     * @return ejection time in nanoseconds
+     */
+    public long getEjectionTime(int ejections) {
+        int shift = Math.min(Math.max(ejections - 1, 0), 30);
+        long time = Math.min(this.ejectionTime << shift, this.maxEjectionTime);
+        if (time < 0) {
+            time = this.maxEjectionTime;
+        }
+        return TimeUnit.MILLISECONDS.toNanos(time);
+    }
+}
@@ -0,0 +1,201 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class represents a single endpoint (security server) of a load
+ * balancer. The class holds the statistics that are used for selecting the
+ * target of a request: the number of outstanding requests, exponentially
+ * weighted moving average (EWMA) of the response time and the health state of
+ * the endpoint. All the statistics are updated without locking, so the same
+ * object can be used by multiple threads.
+ *
+ * @author Petteri Kivimäki
+ */
+public class Endpoint {
+
+    private final String url;
+    private final AtomicInteger outstanding;
+    private final AtomicLong latency;
+    private final AtomicInteger consecutiveFailures;
+    private final AtomicInteger ejections;
+    private final AtomicBoolean probing;
+    private volatile boolean ejected;
+    private volatile long ejectedUntil;
+    private final Selection selection;
+    private final Selection probeSelection;
+
+    /**
+     * Constructs and initializes a new Endpoint object.
+     *
+     * @param url URL of the endpoint
+     */
+    public Endpoint(String url) {
+        this.url = url;
+        this.outstanding = new AtomicInteger();
+        this.latency = new AtomicLong(Double.doubleToLongBits(0));
+        this.consecutiveFailures = new AtomicInteger();
+        this.ejections = new AtomicInteger();
+        this.probing = new AtomicBoolean();
+        this.selection = new Selection(this, false);
+        this.probeSelection = new Selection(this, true);
+    }
+
+    /**
+     * Returns the URL of the endpoint.
+     *
+     * @return URL of the endpoint
+     */
+    public String getUrl() {
+        return this.url;
+    }
+
+    /**
+     * Returns the number of requests that have been sent to this endpoint and
+     * that have not been completed yet.
+     *
+     * @return number of outstanding requests
+     */
+    public int getOutstanding() {
+        return this.outstanding.get();
+    }
+
+    /**
+     * Returns the exponentially weighted moving average of the response time
+     * in nanoseconds. Zero is returned if no responses have been received yet.
+     *
+     * @return average response time in nanoseconds
+     */
+    public double getLatency() {
+        return Double.longBitsToDouble(this.latency.get());
+    }
+
+    /**
+     * Returns the number of consecutive failed requests.
+     *
+     * @return number of consecutive failed requests
+     */
+    public int getConsecutiveFailures() {
+        return this.consecutiveFailures.get();
+    }
+
+    /**
+     * Returns true if and only if the endpoint has been ejected because of
+     * failures and it has not been re-admitted yet.
+     *
+     * @return true if the endpoint is ejected; otherwise false
+     */
+    public boolean isEjected() {
+        return this.ejected;
+    }
+
+    /**
+     * Marks the start of a new request.
+     */
+    void begin() {
+        this.outstanding.incrementAndGet();
+    }
+
+    /**
+     * Marks the end of a request.
+     */
+    void end() {
+        this.outstanding.decrementAndGet();
+    }
+
+    /**
+     * Updates the average response time with the given sample.
+     *
+     * @param sample response time in nanoseconds
+     * @param decay weight of the new sample, between 0 and 1
+     */
+    void updateLatency(long sample, double decay) {
+        long current;
+        long next;
+        do {
+            current = this.latency.get();
+            double average = Double.longBitsToDouble(current);
+            next = Double.doubleToLongBits(average == 0 ? sample : average + decay * (sample - average));
+        } while (!this.latency.compareAndSet(current, next));
+    }
+
+    /**
+     * Returns the selection of this endpoint.
+     *
+     * @param probe true if the request is a probe; otherwise false
+     * @return selection of this endpoint
+     */
+    Selection toSelection(boolean probe) {
+        return probe ? this.probeSelection : this.selection;
+    }
+
+    /**
+     * Tries to reserve the endpoint for a probe request. Only one probe is
+     * allowed at a time and only after the ejection time has passed.
+     *
+     * @param now current time in nanoseconds
+     * @return true if the caller may send a probe request; otherwise false
+     */
+    boolean tryProbe(long now) {
+        return this.ejected && now - this.ejectedUntil >= 0 && this.probing.compareAndSet(false, true);
+    }
+
+    /**
+     * Releases the probe reservation of the endpoint, so that the next
+     * request can be sent as a probe. Nothing is done if no probe is in
+     * progress.
+     */
+    void cancelProbe() {
+        this.probing.compareAndSet(true, false);
+    }
+
+    /**
+     * Records a successful request. If the endpoint was ejected, it's
+     * re-admitted.
+     *
+     * @return true if the endpoint was re-admitted; otherwise false
+     */
+    boolean recordSuccess() {
+        this.consecutiveFailures.set(0);
+        if (this.ejected) {
+            this.ejections.set(0);
+            this.ejected = false;
+            this.probing.set(false);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records a failed request and ejects the endpoint if the given policy
+     * says so. A failed probe request ejects the endpoint again with a longer
+     * ejection time.
+     *
+     * @param policy ejection policy
+     * @param now current time in nanoseconds
+     * @return true if the endpoint was ejected; otherwise false
+     */
+    boolean recordFailure(EjectionPolicy policy, long now) {
+        int failures = this.consecutiveFailures.incrementAndGet();
+        if (this.ejected) {
+            if (this.probing.compareAndSet(true, false)) {
+                this.ejectedUntil = now + policy.getEjectionTime(this.ejections.incrementAndGet());
+                return true;
+            }
+            return false;
+        }
+        if (failures >= policy.getFailureThreshold()) {
+            this.ejectedUntil = now + policy.getEjectionTime(this.ejections.incrementAndGet());
+            this.ejected = true;
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return this.url;
+    }
+}
@@ -0,0 +1,74 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import java.util.List;
+
+/**
+ * This class implements a load balancer that prefers the endpoints that
+ * respond fastest. Every endpoint has an exponentially weighted moving average
+ * (EWMA) of its response time and the cost of an endpoint is the average
+ * multiplied by the number of outstanding requests plus one. The request is
+ * sent to the endpoint with the lowest cost. Endpoints that have not responded
+ * yet have zero average, so every endpoint gets measured.
+ *
+ * @author Petteri Kivimäki
+ */
+public class EwmaLatencyLoadBalancer extends AbstractLoadBalancer {
+
+    private final double decay;
+
+    /**
+     * Constructs and initializes a new EwmaLatencyLoadBalancer object using
+     * the default ejection policy and decay.
+     *
+     * @param endpointUrls list of endpoint URLs
+     */
+    public EwmaLatencyLoadBalancer(List<String> endpointUrls) {
+        this(endpointUrls, new EjectionPolicy(), DEFAULT_LATENCY_DECAY);
+    }
+
+    /**
+     * Constructs and initializes a new EwmaLatencyLoadBalancer object.
+     *
+     * @param endpointUrls list of endpoint URLs
+     * @param policy policy that defines when failing endpoints are ejected
+     * @param decay weight of a new response time sample in the moving
+     * average, between 0 and 1
+     */
+    public EwmaLatencyLoadBalancer(List<String> endpointUrls, EjectionPolicy policy, double decay) {
+        super(endpointUrls, policy);
+        this.decay = decay;
+    }
+
+    /**
+     * Returns the weight of a new response time sample in the moving average.
+     *
+     * @return weight between 0 and 1
+     */
+    @Override
+    protected double getLatencyDecay() {
+        return this.decay;
+    }
+
+    /**
+     * Chooses the endpoint with the lowest cost.
+     *
+     * @param available list of available endpoints
+     * @return chosen endpoint
+     */
+    @Override
+    protected Endpoint choose(List<Endpoint> available) {
+        int size = available.size();
+        int start = this.nextIndex(size);
+        Endpoint selected = null;
+        double min = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            Endpoint endpoint = available.get((start + i) % size);
+            double cost = (endpoint.getLatency() + 1) * (endpoint.getOutstanding() + 1);
+            if (cost < min) {
+                min = cost;
+                selected = endpoint;
+            }
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,118 @@
+package com.pkrete.xrd4j.client.balancer;
+
+/**
+ * This class defines when a hedged request is sent. If the first endpoint has
+ * not responded within a delay, the same request is sent to a second endpoint
+ * and the response that arrives first is used. The delay is the given
+ * percentile of the recent response times, limited by the minimum and maximum
+ * delay. The maximum delay is used until enough response times have been
+ * recorded.
+ *
+ * The number of hedged requests is limited by a budget: every request adds
+ * the budget ratio to the budget and every hedged request consumes one unit,
+ * so with the ratio 0.1 at most one request out of ten is hedged in the long
+ * run. The budget can't grow beyond the maximum burst.
+ *
+ * @author Petteri Kivimäki
+ */
+public class HedgingPolicy {
+
+    /**
+     * Default percentile of the response times that's used as delay.
+     */
+    public static final double DEFAULT_PERCENTILE = 0.95;
+    /**
+     * Default minimum delay in milliseconds.
+     */
+    public static final long DEFAULT_MIN_DELAY = 10;
+    /**
+     * Default maximum delay in milliseconds.
+     */
+    public static final long DEFAULT_MAX_DELAY = 1000;
+    /**
+     * Default share of requests that can be hedged.
+     */
+    public static final double DEFAULT_BUDGET_RATIO = 0.1;
+    /**
+     * Default maximum number of hedged requests that can be sent in a row.
+     */
+    public static final int DEFAULT_MAX_BURST = 10;
+
+    private final double percentile;
+    private final long minDelay;
+    private final long maxDelay;
+    private final double budgetRatio;
+    private final int maxBurst;
+
+    /**
+     * Constructs and initializes a new HedgingPolicy object using the default
+     * settings.
+     */
+    public HedgingPolicy() {
+        this(DEFAULT_PERCENTILE, DEFAULT_MIN_DELAY, DEFAULT_MAX_DELAY, DEFAULT_BUDGET_RATIO, DEFAULT_MAX_BURST);
+    }
+
+    /**
+     * Constructs and initializes a new HedgingPolicy object.
+     *
+     * @param percentile percentile of the response times that's used as
+     * delay, between 0 and 1
+     * @param minDelay minimum delay in milliseconds
+     * @param maxDelay maximum delay in milliseconds
+     * @param budgetRatio share of requests that can be hedged, between 0 and 1
+     * @param maxBurst maximum number of hedged requests that can be sent in a
+     * row
+     */
+    public HedgingPolicy(double percentile, long minDelay, long maxDelay, double budgetRatio, int maxBurst) {
+        this.percentile = percentile;
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+        this.budgetRatio = budgetRatio;
+        this.maxBurst = maxBurst;
+    }
+
+    /**
+     * Returns the percentile of the response times that's used as delay.
+     *
+     * @return percentile between 0 and 1
+     */
+    public double getPercentile() {
+        return this.percentile;
+    }
+
+    /**
+     * Returns the minimum delay in milliseconds.
+     *
+     * @return minimum delay in milliseconds
+     */
+    public long getMinDelay() {
+        return this.minDelay;
+    }
+
+    /**
+     * Returns the maximum delay in milliseconds.
+     *
+     * @return maximum delay in milliseconds
+     */
+    public long getMaxDelay() {
+        return this.maxDelay;
+    }
+
+    /**
+     * Returns the share of requests that can be hedged.
+     *
+     * @return share of requests between 0 and 1
+     */
+    public double getBudgetRatio() {
+        return this.budgetRatio;
+    }
+
+    /**
+     * Returns the maximum number of hedged requests that can be sent in a row.
+     *
+     * @return maximum number of hedged requests in a row
+     */
+    public int getMaxBurst() {
+        return this.maxBurst;
+    }
+}
@@ -0,0 +1,57 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import java.util.List;
+
+/**
+ * This class implements a load balancer that sends the request to the
+ * endpoint that has the smallest number of outstanding requests. Ties are
+ * broken by rotating the starting point of the search, so that endpoints with
+ * an equal load receive requests in turn.
+ *
+ * @author Petteri Kivimäki
+ */
+public class LeastOutstandingLoadBalancer extends AbstractLoadBalancer {
+
+    /**
+     * Constructs and initializes a new LeastOutstandingLoadBalancer object
+     * using the default ejection policy.
+     *
+     * @param endpointUrls list of endpoint URLs
+     */
+    public LeastOutstandingLoadBalancer(List<String> endpointUrls) {
+        this(endpointUrls, new EjectionPolicy());
+    }
+
+    /**
+     * Constructs and initializes a new LeastOutstandingLoadBalancer object.
+     *
+     * @param endpointUrls list of endpoint URLs
+     * @param policy policy that defines when failing endpoints are ejected
+     */
+    public LeastOutstandingLoadBalancer(List<String> endpointUrls, EjectionPolicy policy) {
+        super(endpointUrls, policy);
+    }
+
+    /**
+     * Chooses the endpoint with the smallest number of outstanding requests.
+     *
+     * @param available list of available endpoints
+     * @return chosen endpoint
+     */
+    @Override
+    protected Endpoint choose(List<Endpoint> available) {
+        int size = available.size();
+        int start = this.nextIndex(size);
+        Endpoint selected = null;
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            Endpoint endpoint = available.get((start + i) % size);
+            int outstanding = endpoint.getOutstanding();
+            if (outstanding < min) {
+                min = outstanding;
+                selected = endpoint;
+            }
+        }
+        return selected;
+    }
+}
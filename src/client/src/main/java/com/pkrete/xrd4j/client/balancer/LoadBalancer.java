@@ -0,0 +1,90 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import java.util.List;
+
+/**
+ * This class defines an interface for load balancers that select the endpoint
+ * where the next request is sent. The caller must report the outcome of every
+ * request to the load balancer using the onSuccess or onFailure method, so
+ * that the statistics and the health state of the endpoints can be updated.
+ * Implementations must be thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public interface LoadBalancer {
+
+    /**
+     * Returns all the endpoints of this load balancer.
+     *
+     * @return list of endpoints
+     */
+    List<Endpoint> getEndpoints();
+
+    /**
+     * Selects the endpoint where the next request is sent and marks the
+     * request started.
+     *
+     * @return selected endpoint
+     * @throws IndexOutOfBoundsException if the load balancer doesn't have any
+     * endpoints
+     */
+    Endpoint select();
+
+    /**
+     * Selects the endpoint where the next request is sent so that the given
+     * endpoint is not selected, and marks the request started. Null is
+     * returned if there's no other endpoint.
+     *
+     * @param excluded endpoint that must not be selected, may be null
+     * @return selected endpoint or null
+     */
+    Endpoint select(Endpoint excluded);
+
+    /**
+     * Selects the endpoint where the next request is sent so that the given
+     * endpoint is not selected, marks the request started and tells if the
+     * request is a probe. Null is returned if there's no other endpoint.
+     *
+     * @param excluded endpoint that must not be selected, may be null
+     * @return selection or null
+     * @throws IndexOutOfBoundsException if the load balancer doesn't have any
+     * endpoints
+     */
+    Selection reserve(Endpoint excluded);
+
+    /**
+     * Returns the endpoint where the next request would be sent without
+     * marking a request started. Ejected endpoints are not probed, so the
+     * result doesn't have to be reported to the load balancer.
+     *
+     * @return endpoint where the next request would be sent
+     * @throws IndexOutOfBoundsException if the load balancer doesn't have any
+     * endpoints
+     */
+    Endpoint peek();
+
+    /**
+     * Reports that a request to the given endpoint succeeded.
+     *
+     * @param endpoint endpoint where the request was sent
+     * @param latency response time in nanoseconds
+     */
+    void onSuccess(Endpoint endpoint, long latency);
+
+    /**
+     * Reports that a request to the given endpoint failed.
+     *
+     * @param endpoint endpoint where the request was sent
+     */
+    void onFailure(Endpoint endpoint);
+
+    /**
+     * Reports that a request to the given endpoint was abandoned before it
+     * completed. The request is not counted as success or failure, and if it
+     * was a probe, the endpoint can be probed again.
+     *
+     * @param endpoint endpoint where the request was sent
+     * @param probe true if the request was a probe; otherwise false
+     */
+    void onCancel(Endpoint endpoint, boolean probe);
+}
@@ -0,0 +1,45 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import java.util.List;
+
+/**
+ * This class implements a round-robin load balancer. Going down the list of
+ * available endpoints, each endpoint receives a request in turn. The position
+ * in the list is updated atomically, so the rotation stays even when the load
+ * balancer is used by multiple threads.
+ *
+ * @author Petteri Kivimäki
+ */
+public class RoundRobinLoadBalancer extends AbstractLoadBalancer {
+
+    /**
+     * Constructs and initializes a new RoundRobinLoadBalancer object using
+     * the default ejection policy.
+     *
+     * @param endpointUrls list of endpoint URLs
+     */
+    public RoundRobinLoadBalancer(List<String> endpointUrls) {
+        this(endpointUrls, new EjectionPolicy());
+    }
+
+    /**
+     * Constructs and initializes a new RoundRobinLoadBalancer object.
+     *
+     * @param endpointUrls list of endpoint URLs
+     * @param policy policy that defines when failing endpoints are ejected
+     */
+    public RoundRobinLoadBalancer(List<String> endpointUrls, EjectionPolicy policy) {
+        super(endpointUrls, policy);
+    }
+
+    /**
+     * Chooses the next endpoint in turn.
+     *
+     * @param available list of available endpoints
+     * @return chosen endpoint
+     */
+    @Override
+    protected Endpoint choose(List<Endpoint> available) {
+        return available.get(this.nextIndex(available.size()));
+    }
+}
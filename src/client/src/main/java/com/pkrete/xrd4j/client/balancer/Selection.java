@@ -0,0 +1,45 @@
+package com.pkrete.xrd4j.client.balancer;
+
+/**
+ * This class represents the result of selecting the endpoint where a request
+ * is sent. It tells whether the request is a probe to an ejected endpoint,
+ * so that a cancelled probe can be released without touching the probe of
+ * another request. Every endpoint has one instance for probes and one for
+ * other requests, so selecting an endpoint doesn't create any objects.
+ *
+ * @author Petteri Kivimäki
+ */
+public final class Selection {
+
+    private final Endpoint endpoint;
+    private final boolean probe;
+
+    /**
+     * Constructs and initializes a new Selection object.
+     *
+     * @param endpoint selected endpoint
+     * @param probe true if the request is a probe; otherwise false
+     */
+    Selection(Endpoint endpoint, boolean probe) {
+        this.endpoint = endpoint;
+        this.probe = probe;
+    }
+
+    /**
+     * Returns the selected endpoint.
+     *
+     * @return selected endpoint
+     */
+    public Endpoint getEndpoint() {
+        return this.endpoint;
+    }
+
+    /**
+     * Tells if the request is a probe to an ejected endpoint.
+     *
+     * @return true if the request is a probe; otherwise false
+     */
+    public boolean isProbe() {
+        return this.probe;
+    }
+}
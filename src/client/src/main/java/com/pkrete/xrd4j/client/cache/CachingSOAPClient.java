@@ -0,0 +1,361 @@
+package com.pkrete.xrd4j.client.cache;
+
+import com.pkrete.xrd4j.client.SOAPClient;
+import com.pkrete.xrd4j.client.deserializer.ServiceResponseDeserializer;
+import com.pkrete.xrd4j.client.serializer.ServiceRequestSerializer;
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.pkrete.xrd4j.common.util.Constants;
+import com.pkrete.xrd4j.common.util.LruCache;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements a SOAP client that caches the results of the
+ * listClients, listCentralServices, listMethods and allowedMethods meta
+ * services. The lists of clients and central services are large in big X-Road
+ * instances and they change rarely, so fetching and parsing them on every call
+ * is not necessary. The lists are cached per security server URL and they're
+ * refreshed in the background before they expire. If refreshing fails, the
+ * previous list is returned.
+ *
+ * The results of listMethods and allowedMethods are cached per consumer,
+ * producer and meta service in a size bounded cache that evicts the least
+ * recently used results. On a cache hit a new ServiceResponse is built from
+ * the cached list without sending or serializing anything, so the response
+ * doesn't have a SOAP message. Only successful responses are cached. All the
+ * other calls are delegated to the wrapped client as such.
+ *
+ * The cached lists are shared between the callers, so the returned lists
+ * can't be modified.
+ *
+ * @author Petteri Kivimäki
+ */
+public class CachingSOAPClient implements SOAPClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingSOAPClient.class);
+    /**
+     * Default time to live of the cached lists in milliseconds.
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = 3600000;
+    /**
+     * Default time in milliseconds after which the cached lists are refreshed
+     * in the background.
+     */
+    public static final long DEFAULT_REFRESH_AFTER = 2700000;
+    /**
+     * Default maximum number of cached listMethods and allowedMethods results.
+     */
+    public static final int DEFAULT_SERVICES_MAX_SIZE = 1000;
+    /**
+     * Default time to live of the cached listMethods and allowedMethods
+     * results in milliseconds.
+     */
+    public static final long DEFAULT_SERVICES_TIME_TO_LIVE = 300000;
+
+    private final SOAPClient soapClient;
+    private final RefreshingCache<String, List<ConsumerMember>> clients;
+    private final RefreshingCache<String, List<ProducerMember>> centralServices;
+    private final LruCache<String, List<ProducerMember>> services;
+
+    /**
+     * Constructs and initializes a new CachingSOAPClient object using the
+     * default cache settings. The lists are refreshed in the common fork-join
+     * pool.
+     *
+     * @param soapClient SOAPClient that's used for fetching the lists
+     */
+    public CachingSOAPClient(SOAPClient soapClient) {
+        this(soapClient, DEFAULT_TIME_TO_LIVE, DEFAULT_REFRESH_AFTER, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs and initializes a new CachingSOAPClient object.
+     *
+     * @param soapClient SOAPClient that's used for fetching the lists
+     * @param timeToLive time to live of the cached lists in milliseconds
+     * @param refreshAfter time in milliseconds after which the cached lists are
+     * refreshed in the background
+     * @param executor executor that's used for the background refresh
+     */
+    public CachingSOAPClient(SOAPClient soapClient, long timeToLive, long refreshAfter, Executor executor) {
+        this(soapClient, timeToLive, refreshAfter, executor, DEFAULT_SERVICES_MAX_SIZE, DEFAULT_SERVICES_TIME_TO_LIVE);
+    }
+
+    /**
+     * Constructs and initializes a new CachingSOAPClient object.
+     *
+     * @param soapClient SOAPClient that's used for fetching the lists
+     * @param timeToLive time to live of the cached lists in milliseconds
+     * @param refreshAfter time in milliseconds after which the cached lists are
+     * refreshed in the background
+     * @param executor executor that's used for the background refresh
+     * @param servicesMaxSize maximum number of cached listMethods and
+     * allowedMethods results
+     * @param servicesTimeToLive time to live of the cached listMethods and
+     * allowedMethods results in milliseconds
+     */
+    public CachingSOAPClient(SOAPClient soapClient, long timeToLive, long refreshAfter, Executor executor, int servicesMaxSize, long servicesTimeToLive) {
+        this.soapClient = soapClient;
+        this.clients = new RefreshingCache<>(url -> unmodifiable(soapClient.listClients(url)), timeToLive, refreshAfter, executor);
+        this.centralServices = new RefreshingCache<>(url -> unmodifiable(soapClient.listCentralServices(url)), timeToLive, refreshAfter, executor);
+        this.services = new LruCache<>(servicesMaxSize, servicesTimeToLive);
+        logger.debug("Create new CachingSOAPClient. Time to live : {} ms, refresh after : {} ms.", timeToLive, refreshAfter);
+    }
+
+    /**
+     * Sends the given message to the specified endpoint using the wrapped
+     * client.
+     *
+     * @param request the SOAPMessage object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @return the SOAPMessage object that is the response to the request
+     * message that was sent.
+     * @throws SOAPException if there's a SOAP error
+     */
+    @Override
+    public SOAPMessage send(final SOAPMessage request, final String url) throws SOAPException {
+        return this.soapClient.send(request, url);
+    }
+
+    /**
+     * Sends the given message to the specified endpoint using the wrapped
+     * client.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @param serializer the ServiceRequestSerializer object that serializes the
+     * request to SOAPMessage
+     * @param deserializer the ServiceResponseDeserializer object that
+     * deserializes SOAPMessage response to ServiceResponse
+     * @return the ServiceResponse object that is the response to the message
+     * that was sent.
+     * @throws SOAPException if there's a SOAP error
+     */
+    @Override
+    public ServiceResponse send(final ServiceRequest request, final String url, final ServiceRequestSerializer serializer, final ServiceResponseDeserializer deserializer) throws SOAPException {
+        return this.soapClient.send(request, url, serializer, deserializer);
+    }
+
+    /**
+     * Returns the cached list of clients of the given security server. The
+     * list is fetched using listClients meta service if it's not in the cache
+     * or if it has expired.
+     *
+     * @param url URL of X-Road security server
+     * @return list of ConsumerMembers
+     */
+    @Override
+    public List<ConsumerMember> listClients(String url) {
+        return this.clients.get(normalize(url));
+    }
+
+    /**
+     * Returns the cached list of central services of the given security
+     * server. The list is fetched using listCentralServices meta service if
+     * it's not in the cache or if it has expired.
+     *
+     * @param url URL of X-Road security server
+     * @return list of ProducerMembers
+     */
+    @Override
+    public List<ProducerMember> listCentralServices(String url) {
+        return this.centralServices.get(normalize(url));
+    }
+
+    /**
+     * Returns the cached list of services offered by the producer of the given
+     * request. The list is fetched using listMethods meta service if it's not
+     * in the cache or if it has expired.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @return ServiceResponse that holds a list of ProducerMember objects
+     * @throws SOAPException if there's a SOAP error
+     */
+    @Override
+    public ServiceResponse listMethods(final ServiceRequest request, final String url) throws SOAPException {
+        return this.listServices(request, url, Constants.META_SERVICE_LIST_METHODS);
+    }
+
+    /**
+     * Returns the cached list of services of the producer of the given request
+     * that the consumer of the request has permission to invoke. The list is
+     * fetched using allowedMethods meta service if it's not in the cache or if
+     * it has expired.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @return ServiceResponse that holds a list of ProducerMember objects
+     * @throws SOAPException if there's a SOAP error
+     */
+    @Override
+    public ServiceResponse allowedMethods(final ServiceRequest request, final String url) throws SOAPException {
+        return this.listServices(request, url, Constants.META_SERVICE_ALLOWED_METHODS);
+    }
+
+    /**
+     * This is a helper method for listMethods and allowedMethods meta services.
+     * On a cache hit the response is built from the cached list. Otherwise the
+     * meta service is called using the wrapped client and a successful result
+     * is added to the cache.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @param serviceCode service code of the meta service to be called
+     * @return ServiceResponse that holds a list of ProducerMember objects
+     * @throws SOAPException if there's a SOAP error
+     */
+    private ServiceResponse listServices(final ServiceRequest request, final String url, final String serviceCode) throws SOAPException {
+        String key = getServicesKey(request.getConsumer(), request.getProducer(), serviceCode);
+        List<ProducerMember> list = this.services.get(key);
+        if (list != null) {
+            logger.debug("\"{}\" found from the cache. Request id : \"{}\"", serviceCode, request.getId());
+            // Set the same values as the wrapped client would set
+            request.getProducer().setServiceCode(serviceCode);
+            request.getProducer().setServiceVersion(null);
+            request.getProducer().setNamespacePrefix(Constants.NS_XRD_PREFIX);
+            request.getProducer().setNamespaceUrl(Constants.NS_XRD_URL);
+            try {
+                ServiceResponse<String, List<ProducerMember>> response = new ServiceResponse<>(request.getConsumer(), request.getProducer(), request.getId());
+                response.setUserId(request.getUserId());
+                response.setProtocolVersion(request.getProtocolVersion());
+                response.setResponseData(list);
+                return response;
+            } catch (XRd4JException ex) {
+                logger.error(ex.getMessage(), ex);
+                throw new SOAPException(ex.getMessage(), ex);
+            }
+        }
+        ServiceResponse response;
+        if (Constants.META_SERVICE_LIST_METHODS.equals(serviceCode)) {
+            response = this.soapClient.listMethods(request, url);
+        } else {
+            response = this.soapClient.allowedMethods(request, url);
+        }
+        if (response != null && !response.hasError() && response.getResponseData() instanceof List) {
+            List<ProducerMember> result = unmodifiable((List<ProducerMember>) response.getResponseData());
+            response.setResponseData(result);
+            this.services.put(key, result);
+        }
+        return response;
+    }
+
+    /**
+     * Calls getSecurityServerMetrics monitoring service using the wrapped
+     * client.
+     *
+     * @param request the ServiceRequest object to be sent
+     * @param url URL that identifies where the message should be sent
+     * @return ServiceResponse that holds a NodeList containing the response
+     * data
+     * @throws SOAPException if there's a SOAP error
+     */
+    @Override
+    public ServiceResponse getSecurityServerMetrics(final ServiceRequest request, final String url) throws SOAPException {
+        return this.soapClient.getSecurityServerMetrics(request, url);
+    }
+
+    /**
+     * Removes the cached lists of clients and central services of the given
+     * security server.
+     *
+     * @param url URL of X-Road security server
+     */
+    public void invalidate(String url) {
+        this.clients.invalidate(normalize(url));
+        this.centralServices.invalidate(normalize(url));
+    }
+
+    /**
+     * Removes the cached listMethods and allowedMethods results of the given
+     * consumer and producer.
+     *
+     * @param consumer client that called the meta service
+     * @param producer service provider whose services were listed
+     */
+    public void invalidateServices(ConsumerMember consumer, ProducerMember producer) {
+        this.services.invalidate(getServicesKey(consumer, producer, Constants.META_SERVICE_LIST_METHODS));
+        this.services.invalidate(getServicesKey(consumer, producer, Constants.META_SERVICE_ALLOWED_METHODS));
+    }
+
+    /**
+     * Removes the cached listMethods and allowedMethods results of the given
+     * producer for all the consumers.
+     *
+     * @param producer service provider whose services were listed
+     */
+    public void invalidateServices(ProducerMember producer) {
+        final String id = " " + getMemberId(producer) + " ";
+        this.services.invalidateIf(key -> key.contains(id));
+    }
+
+    /**
+     * Removes all the cached lists.
+     */
+    public void invalidateAll() {
+        this.clients.invalidateAll();
+        this.centralServices.invalidateAll();
+        this.services.invalidateAll();
+    }
+
+    /**
+     * Returns the cache key of listMethods and allowedMethods results. The key
+     * consists of the consumer identifier, the producer identifier without the
+     * service code and version, and the service code of the meta service.
+     *
+     * @param consumer client that calls the meta service
+     * @param producer service provider whose services are listed
+     * @param serviceCode service code of the meta service
+     * @return cache key
+     */
+    private static String getServicesKey(ConsumerMember consumer, ProducerMember producer, String serviceCode) {
+        return consumer.toString() + " " + getMemberId(producer) + " " + serviceCode;
+    }
+
+    /**
+     * Returns the identifier of the given producer without the service code
+     * and version.
+     *
+     * @param producer service provider
+     * @return producer identifier
+     */
+    private static String getMemberId(ProducerMember producer) {
+        StringBuilder builder = new StringBuilder(producer.getXRoadInstance()).append(".");
+        builder.append(producer.getMemberClass()).append(".");
+        builder.append(producer.getMemberCode());
+        builder.append(producer.getSubsystemCode() != null && !producer.getSubsystemCode().isEmpty() ? "." + producer.getSubsystemCode() : "");
+        return builder.toString();
+    }
+
+    /**
+     * Adds a trailing slash to the given URL, so that the same security server
+     * has only one cache entry.
+     *
+     * @param url URL of X-Road security server
+     * @return URL that ends with a slash
+     */
+    private static String normalize(String url) {
+        return url.endsWith("/") ? url : url + "/";
+    }
+
+    /**
+     * Returns an unmodifiable view of the given list or null.
+     *
+     * @param <T> type of the list items
+     * @param list list to be wrapped
+     * @return unmodifiable list or null
+     */
+    private static <T> List<T> unmodifiable(List<T> list) {
+        return list == null ? null : Collections.unmodifiableList(list);
+    }
+}
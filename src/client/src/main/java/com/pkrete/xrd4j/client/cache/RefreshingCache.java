@@ -0,0 +1,182 @@
+package com.pkrete.xrd4j.client.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements a cache that loads its values using the given loader
+ * function. A value is fresh until the refresh time has passed. After that the
+ * value is still returned, but it's reloaded in the background. When the time
+ * to live has passed, the value is reloaded synchronously. If loading fails,
+ * i.e. the loader throws an exception or returns null, the previous value is
+ * returned even if it has expired. Concurrent loads of the same key are
+ * collapsed into a single call of the loader. The cache is thread safe.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ * @author Petteri Kivimäki
+ */
+public class RefreshingCache<K, V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshingCache.class);
+    private final Function<K, V> loader;
+    private final long timeToLive;
+    private final long refreshAfter;
+    private final Executor executor;
+    private final ConcurrentMap<K, Entry<V>> entries;
+    private final ConcurrentMap<K, CompletableFuture<V>> loading;
+
+    /**
+     * Constructs and initializes a new RefreshingCache object.
+     *
+     * @param loader function that loads the value of a key
+     * @param timeToLive time to live of a value in milliseconds
+     * @param refreshAfter time in milliseconds after which a value is
+     * refreshed in the background, must be smaller than time to live
+     * @param executor executor that's used for the background refresh
+     */
+    public RefreshingCache(Function<K, V> loader, long timeToLive, long refreshAfter, Executor executor) {
+        this.loader = loader;
+        this.timeToLive = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+        this.refreshAfter = TimeUnit.MILLISECONDS.toNanos(Math.min(refreshAfter, timeToLive));
+        this.executor = executor;
+        this.entries = new ConcurrentHashMap<>();
+        this.loading = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the value of the given key. The value is loaded if it's not in
+     * the cache or if it has expired. If loading fails and there's no previous
+     * value, null is returned or the exception thrown by the loader is
+     * rethrown.
+     *
+     * @param key key of the value
+     * @return value of the key or null
+     */
+    public V get(K key) {
+        Entry<V> entry = this.entries.get(key);
+        if (entry != null) {
+            long age = System.nanoTime() - entry.loaded;
+            if (age < this.refreshAfter) {
+                logger.trace("Cache hit. Key : \"{}\".", key);
+                return entry.value;
+            } else if (age < this.timeToLive) {
+                logger.trace("Cache hit, refresh in the background. Key : \"{}\".", key);
+                this.refresh(key);
+                return entry.value;
+            }
+        }
+        logger.debug("Cache miss. Key : \"{}\".", key);
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = this.loading.putIfAbsent(key, future);
+        if (existing == null) {
+            this.load(key, future);
+        } else {
+            logger.debug("Wait for ongoing load. Key : \"{}\".", key);
+            future = existing;
+        }
+        V value;
+        try {
+            value = future.join();
+        } catch (CompletionException ex) {
+            if (entry == null) {
+                throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : ex;
+            }
+            value = null;
+        }
+        if (value == null && entry != null) {
+            logger.warn("Loading failed. Return stale value. Key : \"{}\".", key);
+            return entry.value;
+        }
+        return value;
+    }
+
+    /**
+     * Removes the value of the given key from the cache.
+     *
+     * @param key key of the value
+     */
+    public void invalidate(K key) {
+        this.entries.remove(key);
+    }
+
+    /**
+     * Removes all the values from the cache.
+     */
+    public void invalidateAll() {
+        this.entries.clear();
+    }
+
+    /**
+     * Starts a background refresh of the given key unless a load is already
+     * ongoing.
+     *
+     * @param key key of the value
+     */
+    private void refresh(final K key) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        if (this.loading.putIfAbsent(key, future) == null) {
+            try {
+                this.executor.execute(() -> this.load(key, future));
+            } catch (RuntimeException ex) {
+                logger.error(ex.getMessage(), ex);
+                this.loading.remove(key, future);
+                future.completeExceptionally(ex);
+            }
+        }
+    }
+
+    /**
+     * Loads the value of the given key and completes the given future. A
+     * loaded value replaces the previous value in the cache.
+     *
+     * @param key key of the value
+     * @param future future that's completed with the loaded value
+     */
+    private void load(final K key, final CompletableFuture<V> future) {
+        try {
+            V value = this.loader.apply(key);
+            if (value != null) {
+                this.entries.put(key, new Entry<>(value, System.nanoTime()));
+                logger.debug("Value loaded. Key : \"{}\".", key);
+            } else {
+                logger.warn("Loading value failed. Key : \"{}\".", key);
+            }
+            future.complete(value);
+        } catch (RuntimeException ex) {
+            logger.error(ex.getMessage(), ex);
+            future.completeExceptionally(ex);
+        } finally {
+            this.loading.remove(key, future);
+        }
+    }
+
+    /**
+     * Cached value and the time when it was loaded.
+     *
+     * @param <V> type of the value
+     */
+    private static class Entry<V> {
+
+        private final V value;
+        private final long loaded;
+
+        /**
+         * Constructs and initializes a new Entry object.
+         *
+         * @param value cached value
+         * @param loaded time when the value was loaded in nanoseconds
+         */
+        Entry(V value, long loaded) {
+            this.value = value;
+            this.loaded = loaded;
+        }
+    }
+}
@@ -1,11 +1,9 @@
 package com.pkrete.xrd4j.client.deserializer;
 
 import com.pkrete.xrd4j.common.deserializer.AbstractHeaderDeserializer;
+import com.pkrete.xrd4j.common.deserializer.HeaderFields;
 import com.pkrete.xrd4j.common.exception.XRd4JException;
 import com.pkrete.xrd4j.common.exception.XRd4JMissingMemberException;
-import com.pkrete.xrd4j.common.member.ConsumerMember;
-import com.pkrete.xrd4j.common.member.ProducerMember;
-import com.pkrete.xrd4j.common.member.SecurityServer;
 import com.pkrete.xrd4j.common.message.ErrorMessage;
 import com.pkrete.xrd4j.common.message.ServiceResponse;
 import com.pkrete.xrd4j.common.util.Constants;
@@ -146,41 +144,21 @@ public abstract class AbstractResponseDeserializer<T1, T2> extends AbstractHeade
             logger.warn("No SOAP header or an empty SOAP header was found.");
             return new ServiceResponse();
         }
-        // Client headers
-        String id = super.deserializeId(header);
-        String userId = super.deserializeUserId(header);
-        String issue = super.deserializeIssue(header);
-        String requestHash = super.deserializeRequestHash(header);
-        String algorithmId = super.deserializeAlgorithmId(header);
-        String protocolVersion = super.deserializeProtocolVersion(header);
-
-        // Create objects
-        ConsumerMember consumer = null;
-        ProducerMember producer = null;
-        SecurityServer securityServer = null;
-        try {
-            consumer = super.deserializeConsumer(header);
-        } catch (XRd4JMissingMemberException ex) {
+        // Read all the header fields in one pass
+        HeaderFields fields = super.deserializeHeaderFields(header);
+        if (fields.getConsumer() == null) {
             logger.warn("Deserializing \"ConsumerMember\" failed.");
         }
-        try {
-            producer = super.deserializeProducer(header);
-        } catch (XRd4JMissingMemberException ex) {
-            logger.warn("Deserializing \"ProducerMember\" failed.");
-        }
-        try {
-            // Not mandatory - can be null
-            securityServer = super.deserializeSecurityServer(header);
-        } catch (XRd4JException ex) {
+        if (fields.getProducer() == null) {
             logger.warn("Deserializing \"ProducerMember\" failed.");
         }
-        ServiceResponse response = new ServiceResponse(consumer, producer, id);
-        response.setSecurityServer(securityServer);
-        response.setUserId(userId);
-        response.setRequestHash(requestHash);
-        response.setRequestHashAlgorithm(algorithmId);
-        response.setIssue(issue);
-        response.setProtocolVersion(protocolVersion);
+        ServiceResponse response = new ServiceResponse(fields.getConsumer(), fields.getProducer(), fields.getId());
+        response.setSecurityServer(fields.getSecurityServer());
+        response.setUserId(fields.getUserId());
+        response.setRequestHash(fields.getRequestHash());
+        response.setRequestHashAlgorithm(fields.getAlgorithmId());
+        response.setIssue(fields.getIssue());
+        response.setProtocolVersion(fields.getProtocolVersion());
         logger.debug("SOAP header was succesfully deserialized.");
         // Return response
         return response;
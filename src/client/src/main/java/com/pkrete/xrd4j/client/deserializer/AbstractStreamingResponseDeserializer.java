@@ -0,0 +1,555 @@
+package com.pkrete.xrd4j.client.deserializer;
+
+import com.pkrete.xrd4j.common.deserializer.AbstractHeaderDeserializer;
+import com.pkrete.xrd4j.common.deserializer.HeaderFields;
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.message.ErrorMessage;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.pkrete.xrd4j.common.util.Constants;
+import java.io.InputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This abstract class serves as a base class for streaming response
+ * deserializers. Unlike AbstractResponseDeserializer this class doesn't need a
+ * SOAPMessage object, but it reads the SOAP message from an InputStream using
+ * a StAX pull parser. The SOAP header is read to the ServiceResponse object in
+ * one pass, and then the subclass is given an XMLStreamReader positioned at
+ * the request and response payloads. This way large responses can be
+ * processed incrementally without building a DOM tree of the whole message.
+ *
+ * The XMLStreamReader given to the deserializeRequestData and
+ * deserializeResponseData methods is positioned at the first child element of
+ * the request or response element. If the element doesn't have child
+ * elements, the reader is positioned at the first non-whitespace text event,
+ * or at the end tag of the element if the element is empty. The subclass may
+ * stop reading at any point before the end tag of the request or response
+ * element - the rest of the element is skipped - but it must not read past
+ * it. The returned ServiceResponse doesn't contain a SOAPMessage object and
+ * SOAP messages with attachments are not supported.
+ *
+ * @param <T1> runtime type of the request data
+ * @param <T2> runtime type of the response data
+ * @author Petteri Kivimäki
+ */
+public abstract class AbstractStreamingResponseDeserializer<T1, T2> extends AbstractHeaderDeserializer implements StreamingServiceResponseDeserializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractStreamingResponseDeserializer.class);
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    /**
+     * This boolean value tells if the response is from X-Road meta service.
+     */
+    protected boolean isMetaServiceResponse = false;
+
+    /**
+     * Deserializes SOAP body's request element. The reader is positioned at
+     * the payload of the request element.
+     *
+     * @param reader XMLStreamReader positioned at the request payload
+     * @return application specific object representing the request element
+     * @throws XMLStreamException if there's an error reading the payload
+     */
+    protected abstract T1 deserializeRequestData(XMLStreamReader reader) throws XMLStreamException;
+
+    /**
+     * Deserializes SOAP body's response element. The reader is positioned at
+     * the payload of the response element.
+     *
+     * @param reader XMLStreamReader positioned at the response payload
+     * @return application specific object representing the response element
+     * @throws XMLStreamException if there's an error reading the payload
+     */
+    protected abstract T2 deserializeResponseData(XMLStreamReader reader) throws XMLStreamException;
+
+    /**
+     * Deserializes the SOAP message read from the given stream to
+     * ServiceResponse object.
+     *
+     * @param in stream that contains the SOAP message to be deserialized
+     * @return ServiceResponse object that represents the given SOAP message;
+     * if the operation fails, null is returned
+     */
+    @Override
+    public final ServiceResponse deserialize(final InputStream in) {
+        return this.deserialize(in, "*");
+    }
+
+    /**
+     * Deserializes the SOAP message read from the given stream to
+     * ServiceResponse object. If service producer's namespace URI is given,
+     * then it's used for finding the response from the SOAP mesagge's body.
+     * Value "*" means that the namespace is ignored.
+     *
+     * @param in stream that contains the SOAP message to be deserialized
+     * @param producerNamespaceURI service producer's namespace URI
+     * @return ServiceResponse object that represents the given SOAP message;
+     * if the operation fails, null is returned
+     */
+    @Override
+    public final ServiceResponse deserialize(final InputStream in, final String producerNamespaceURI) {
+        return this.deserialize(in, producerNamespaceURI, Constants.DEFAULT_PROCESSING_WRAPPERS);
+    }
+
+    /**
+     * Deserializes the SOAP message read from the given stream to
+     * ServiceResponse object. If service producer's namespace URI is given,
+     * then it's used for finding the response from the SOAP mesagge's body.
+     * Value "*" means that the namespace is ignored. The given stream is not
+     * closed.
+     *
+     * @param in stream that contains the SOAP message to be deserialized
+     * @param producerNamespaceURI service producer's namespace URI
+     * @param processingWrappers Indicates if "request" and "response" wrappers
+     * should be processed
+     * @return ServiceResponse object that represents the given SOAP message;
+     * if the operation fails, null is returned
+     */
+    @Override
+    public final ServiceResponse deserialize(final InputStream in, final String producerNamespaceURI, boolean processingWrappers) {
+        TrackingReader reader = null;
+        try {
+            logger.debug("Deserialize SOAP message stream. Producer namespace URI \"{}\".", producerNamespaceURI);
+            reader = new TrackingReader(INPUT_FACTORY.createXMLStreamReader(in));
+            // Envelope
+            if (!reader.nextElement(0)) {
+                throw new XMLStreamException("SOAP envelope is missing.");
+            }
+            int envelopeDepth = reader.getDepth();
+            boolean found = reader.nextElement(envelopeDepth);
+
+            // Deserialize header
+            ServiceResponse response;
+            if (found && "Header".equals(reader.getLocalName())) {
+                response = this.deserializeHeader(reader);
+                found = reader.nextElement(envelopeDepth);
+            } else {
+                logger.warn("No SOAP header or an empty SOAP header was found.");
+                response = new ServiceResponse();
+            }
+
+            // Setting "request" and "response" wrappers processing
+            response.setProcessingWrappers(processingWrappers);
+
+            // Deserialize body
+            if (found && "Body".equals(reader.getLocalName())) {
+                this.deserializeBody(reader, response, producerNamespaceURI);
+            } else {
+                logger.warn("No SOAP body was found.");
+            }
+            logger.debug("SOAP message stream was succesfully deserialized.");
+            return response;
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+        } finally {
+            close(reader);
+        }
+        return null;
+    }
+
+    /**
+     * Deserializes the SOAP header to ServiceResponse object. The reader must
+     * be positioned at the start tag of the header and it's left at the end
+     * tag of the header. All the header elements are read in one pass using
+     * the same StAX parser as the other header deserializers.
+     *
+     * @param reader XMLStreamReader positioned at the SOAP header
+     * @return ServiceResponse object that represents the SOAP header
+     * @throws XMLStreamException if there's an error reading the header
+     * @throws XRd4JException if there's a XRd4J exception
+     */
+    private ServiceResponse deserializeHeader(final TrackingReader reader) throws XMLStreamException, XRd4JException {
+        logger.debug("Deserialize SOAP header.");
+        HeaderFields fields = super.deserializeHeaderFields(reader);
+        if (fields.getConsumer() == null && fields.getProducer() == null && fields.getId() == null) {
+            logger.warn("No SOAP header or an empty SOAP header was found.");
+            return new ServiceResponse();
+        }
+        if (fields.getConsumer() == null) {
+            logger.warn("Deserializing \"ConsumerMember\" failed.");
+        }
+        if (fields.getProducer() == null) {
+            logger.warn("Deserializing \"ProducerMember\" failed.");
+        }
+        ServiceResponse response = new ServiceResponse(fields.getConsumer(), fields.getProducer(), fields.getId());
+        response.setSecurityServer(fields.getSecurityServer());
+        response.setUserId(fields.getUserId());
+        response.setRequestHash(fields.getRequestHash());
+        response.setRequestHashAlgorithm(fields.getAlgorithmId());
+        response.setIssue(fields.getIssue());
+        response.setProtocolVersion(fields.getProtocolVersion());
+        logger.debug("SOAP header was succesfully deserialized.");
+        return response;
+    }
+
+    /**
+     * Deserializes SOAP body, including request and response elements. The
+     * reader must be positioned at the start tag of the body.
+     *
+     * @param reader XMLStreamReader positioned at the SOAP body
+     * @param response ServiceResponse that holds the deserialized header
+     * @param producerNamespaceURI namespace URI of the producer member
+     * @return true if and only if the operation was succesfully completed;
+     * otherwise false
+     * @throws XMLStreamException if there's an error reading the body
+     */
+    private boolean deserializeBody(final TrackingReader reader, final ServiceResponse response, final String producerNamespaceURI) throws XMLStreamException {
+        logger.debug("Deserialize SOAP body.");
+        if (!reader.nextElement(reader.getDepth())) {
+            logger.warn("SOAP body is empty.");
+            return false;
+        }
+        String name = reader.getLocalName();
+        if (response.getProducer() != null && name.equals(response.getProducer().getServiceCode() + "Response")
+                && ("*".equals(producerNamespaceURI) || producerNamespaceURI.equals(reader.getNamespaceURI()))) {
+            logger.debug("Found service response element.");
+            this.deserializeServiceResponse(reader, response);
+            logger.debug("SOAP body was succesfully deserialized.");
+            return true;
+        } else if ("Fault".equals(name)) {
+            logger.warn("Standard SOAP error message found inside SOAP Body.");
+            this.deserializeSOAPFault(reader, response);
+            return true;
+        }
+        if (response.getProducer() == null) {
+            logger.warn("Unable to fetch service response element. Producer is null. SOAP header is probably missing.");
+        }
+        logger.warn("Service response element was not deserialized.");
+        return false;
+    }
+
+    /**
+     * Deserializes the service response element, including request and
+     * response elements. The reader must be positioned at the start tag of
+     * the service response element.
+     *
+     * @param reader XMLStreamReader positioned at the service response element
+     * @param response ServiceResponse that holds the deserialized header
+     * @throws XMLStreamException if there's an error reading the element
+     */
+    private void deserializeServiceResponse(final TrackingReader reader, final ServiceResponse response) throws XMLStreamException {
+        String namespaceUrl = reader.getNamespaceURI();
+        String prefix = reader.getPrefix();
+        // Check if it is needed to process "request" and "response" wrappers
+        if (response.isProcessingWrappers()) {
+            logger.debug("Processing \"request\" and \"response\" wrappers in response message.");
+            int parentDepth = reader.getDepth();
+            while (reader.nextElement(parentDepth)) {
+                int depth = reader.getDepth();
+                if ("request".equals(reader.getLocalName())) {
+                    logger.debug("Deserialize request element.");
+                    reader.nextPayload();
+                    response.setRequestData(this.deserializeRequestData(reader));
+                    logger.debug("Request element was succesfully deserialized.");
+                } else if ("response".equals(reader.getLocalName())) {
+                    this.deserializeResponse(reader, response);
+                }
+                reader.skipElement(depth);
+            }
+        } else {
+            logger.debug("Skipping procession of \"request\" and \"response\" wrappers in response message.");
+            this.deserializeResponse(reader, response);
+        }
+        response.getProducer().setNamespaceUrl(namespaceUrl);
+        response.getProducer().setNamespacePrefix(prefix == null || prefix.isEmpty() ? null : prefix);
+    }
+
+    /**
+     * Deserializes the response element. If the response contains a
+     * non-technical SOAP error message, it's deserialized instead of the
+     * response data. The reader must be positioned at the start tag of the
+     * response element and it's left at the end tag of the element.
+     *
+     * @param reader XMLStreamReader positioned at the response element
+     * @param response ServiceResponse that holds the deserialized header
+     * @throws XMLStreamException if there's an error reading the element
+     */
+    private void deserializeResponse(final TrackingReader reader, final ServiceResponse response) throws XMLStreamException {
+        int depth = reader.getDepth();
+        reader.nextPayload();
+        // Check if the response contains a non-technical SOAP error message
+        if (!this.isMetaServiceResponse && reader.isStartElement() && isResponseError(reader.getLocalName())) {
+            logger.warn("A non-technical SOAP error message was found instead of response.");
+            this.deserializeResponseError(reader, response, depth);
+        } else {
+            logger.debug("Deserialize response element.");
+            response.setResponseData(this.deserializeResponseData(reader));
+            logger.debug("Response element was succesfully deserialized.");
+        }
+        reader.skipElement(depth);
+    }
+
+    /**
+     * Deserializes a non-technical SOAP error message that's inside the
+     * response element. The reader must be positioned at the first child
+     * element of the response element.
+     *
+     * @param reader XMLStreamReader positioned at the first child element
+     * @param response ServiceResponse that holds the deserialized header
+     * @param parentDepth depth of the response element
+     * @throws XMLStreamException if there's an error reading the element
+     */
+    private void deserializeResponseError(final TrackingReader reader, final ServiceResponse response, final int parentDepth) throws XMLStreamException {
+        String faultCode = null;
+        String faultString = null;
+        do {
+            int depth = reader.getDepth();
+            if ("faultcode".equalsIgnoreCase(reader.getLocalName())) {
+                logger.trace("FaultCode found.");
+                faultCode = readTextContent(reader);
+            } else if ("faultstring".equalsIgnoreCase(reader.getLocalName())) {
+                logger.trace("FaultString found.");
+                faultString = readTextContent(reader);
+            }
+            reader.skipElement(depth);
+        } while (reader.nextElement(parentDepth));
+        response.setErrorMessage(new ErrorMessage(faultCode, faultString));
+        logger.info("Error message was succesfully deserialized.");
+    }
+
+    /**
+     * Deserializes standard SOAP error message. The reader must be positioned
+     * at the start tag of the Fault element.
+     *
+     * @param reader XMLStreamReader positioned at the Fault element
+     * @param response ServiceResponse that holds the deserialized header
+     * @throws XMLStreamException if there's an error reading the element
+     */
+    private void deserializeSOAPFault(final TrackingReader reader, final ServiceResponse response) throws XMLStreamException {
+        logger.debug("Deserialize SOAP fault.");
+        String faultCode = null;
+        String faultString = null;
+        String faultActor = null;
+        Object detail = null;
+        int parentDepth = reader.getDepth();
+        while (reader.nextElement(parentDepth)) {
+            int depth = reader.getDepth();
+            String name = reader.getLocalName();
+            if ("faultcode".equalsIgnoreCase(name)) {
+                faultCode = readTextContent(reader);
+            } else if ("faultstring".equalsIgnoreCase(name)) {
+                faultString = readTextContent(reader);
+            } else if ("faultactor".equalsIgnoreCase(name)) {
+                faultActor = readTextContent(reader);
+            } else if ("detail".equals(name)) {
+                detail = this.deserializeFaultDetail(reader);
+            }
+            reader.skipElement(depth);
+        }
+        response.setErrorMessage(new ErrorMessage(faultCode, faultString, faultActor, detail));
+        logger.info("SOAP fault was succesfully deserialized.");
+    }
+
+    /**
+     * Deserializes fault detail element as String. If detail element has child
+     * elements all the content of the children is presented as one concatenated
+     * String. If detail element has children, this method can be overridden.
+     * The reader is positioned at the start tag of the detail element.
+     *
+     * @param reader XMLStreamReader positioned at the detail element
+     * @return detail element's value as string
+     * @throws XMLStreamException if there's an error reading the element
+     */
+    protected Object deserializeFaultDetail(final XMLStreamReader reader) throws XMLStreamException {
+        logger.debug("Deserialize fault detail. Default implementation is assuming String value.");
+        return readTextContent(reader);
+    }
+
+    /**
+     * Reads the text content of the element that the given reader is
+     * positioned at, including the text content of all its descendants. After
+     * calling this method the reader is positioned at the end tag of the
+     * element.
+     *
+     * @param reader XMLStreamReader positioned at a start tag
+     * @return text content of the element
+     * @throws XMLStreamException if there's an error reading the element
+     */
+    protected static String readTextContent(final XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder builder = new StringBuilder();
+        int level = 1;
+        while (level > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                level++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                level--;
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                    || event == XMLStreamConstants.SPACE || event == XMLStreamConstants.ENTITY_REFERENCE) {
+                builder.append(reader.getText());
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Checks if the given element name belongs to a non-technical SOAP error
+     * message.
+     *
+     * @param localName local name of the element
+     * @return true if the element is faultcode or faultstring; otherwise false
+     */
+    private static boolean isResponseError(final String localName) {
+        return "faultcode".equalsIgnoreCase(localName) || "faultstring".equalsIgnoreCase(localName);
+    }
+
+    /**
+     * Closes the given reader. The underlying stream is not closed.
+     *
+     * @param reader reader to be closed
+     */
+    private static void close(final XMLStreamReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (XMLStreamException ex) {
+            logger.warn(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Creates a new XMLInputFactory. Processing of DTDs and external entities
+     * is disabled.
+     *
+     * @return new XMLInputFactory
+     */
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        return factory;
+    }
+
+    /**
+     * XMLStreamReader that keeps track of the depth of the current element,
+     * so that the rest of an element can be skipped regardless of how much of
+     * it has been read by the subclass. The depth of a start tag is the
+     * number of open elements including the element itself, and the depth of
+     * an end tag is the depth of its start tag minus one.
+     */
+    private static final class TrackingReader extends StreamReaderDelegate {
+
+        private int depth;
+
+        /**
+         * Constructs and initializes a new TrackingReader object.
+         *
+         * @param reader reader to be wrapped
+         */
+        TrackingReader(final XMLStreamReader reader) {
+            super(reader);
+        }
+
+        @Override
+        public int next() throws XMLStreamException {
+            int event = super.next();
+            if (event == START_ELEMENT) {
+                this.depth++;
+            } else if (event == END_ELEMENT) {
+                this.depth--;
+            }
+            return event;
+        }
+
+        @Override
+        public int nextTag() throws XMLStreamException {
+            int event = this.next();
+            while (isIgnorable(event)) {
+                event = this.next();
+            }
+            if (event != START_ELEMENT && event != END_ELEMENT) {
+                throw new XMLStreamException("Expected start or end tag.", this.getLocation());
+            }
+            return event;
+        }
+
+        @Override
+        public String getElementText() throws XMLStreamException {
+            String text = super.getElementText();
+            this.depth--;
+            return text;
+        }
+
+        /**
+         * Returns the depth of the current event.
+         *
+         * @return depth of the current event
+         */
+        int getDepth() {
+            return this.depth;
+        }
+
+        /**
+         * Moves the reader to the next child element of the element whose
+         * start tag is at the given depth. The reader must be positioned at
+         * the start tag of the parent or at the end tag of a child.
+         *
+         * @param parentDepth depth of the parent element
+         * @return true if a child element was found; false if the end of the
+         * parent element was reached
+         * @throws XMLStreamException if there's a parsing error
+         */
+        boolean nextElement(final int parentDepth) throws XMLStreamException {
+            while (this.hasNext()) {
+                int event = this.next();
+                if (event == START_ELEMENT) {
+                    return true;
+                } else if (event == END_ELEMENT && this.depth < parentDepth) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Moves the reader from the start tag of an element to its payload,
+         * skipping whitespace, comments and processing instructions.
+         *
+         * @throws XMLStreamException if there's a parsing error
+         */
+        void nextPayload() throws XMLStreamException {
+            int event = this.next();
+            while (isIgnorable(event)) {
+                event = this.next();
+            }
+        }
+
+        /**
+         * Moves the reader to the end tag of the element whose start tag is at
+         * the given depth. Nothing is done if the reader is already positioned
+         * at the end tag.
+         *
+         * @param elementDepth depth of the element to be skipped
+         * @throws XMLStreamException if there's a parsing error
+         */
+        void skipElement(final int elementDepth) throws XMLStreamException {
+            while (!(this.getEventType() == END_ELEMENT && this.depth < elementDepth)) {
+                this.next();
+            }
+        }
+
+        /**
+         * Checks if the current event can be skipped when looking for the
+         * payload of an element.
+         *
+         * @param event current event
+         * @return true if the event is whitespace, comment or processing
+         * instruction; otherwise false
+         */
+        private boolean isIgnorable(final int event) {
+            if (event == CHARACTERS || event == CDATA || event == SPACE) {
+                return this.isWhiteSpace();
+            }
+            return event == COMMENT || event == PROCESSING_INSTRUCTION;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.pkrete.xrd4j.client.deserializer;
+
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import java.io.InputStream;
+
+/**
+ * This class defines an interface for deserializing SOAP messages read from an
+ * InputStream to ServiceResponse objects without building a DOM tree of the
+ * whole message. The SOAP message is read only once from the beginning to the
+ * end.
+ *
+ * @author Petteri Kivimäki
+ */
+public interface StreamingServiceResponseDeserializer {
+
+    /**
+     * Deserializes the SOAP message read from the given stream to
+     * ServiceResponse object.
+     *
+     * @param in stream that contains the SOAP message to be deserialized
+     * @return ServiceResponse object that represents the given SOAP message;
+     * if the operation fails, null is returned
+     */
+    ServiceResponse deserialize(InputStream in);
+
+    /**
+     * Deserializes the SOAP message read from the given stream to
+     * ServiceResponse object. If service producer's namespace URI is given,
+     * then it's used for finding the response from the SOAP mesagge's body.
+     * Value "*" means that the namespace is ignored.
+     *
+     * @param in stream that contains the SOAP message to be deserialized
+     * @param producerNamespaceURI service producer's namespace URI
+     * @return ServiceResponse object that represents the given SOAP message;
+     * if the operation fails, null is returned
+     */
+    ServiceResponse deserialize(InputStream in, String producerNamespaceURI);
+
+    /**
+     * Deserializes the SOAP message read from the given stream to
+     * ServiceResponse object. If service producer's namespace URI is given,
+     * then it's used for finding the response from the SOAP mesagge's body.
+     * Value "*" means that the namespace is ignored.
+     *
+     * @param in stream that contains the SOAP message to be deserialized
+     * @param producerNamespaceURI service producer's namespace URI
+     * @param processingWrappers Indicates if "request" and "response" wrappers
+     * should be processed
+     * @return ServiceResponse object that represents the given SOAP message;
+     * if the operation fails, null is returned
+     */
+    ServiceResponse deserialize(InputStream in, String producerNamespaceURI, boolean processingWrappers);
+}
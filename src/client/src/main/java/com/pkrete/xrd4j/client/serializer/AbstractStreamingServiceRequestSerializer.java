@@ -0,0 +1,200 @@
+package com.pkrete.xrd4j.client.serializer;
+
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.serializer.AbstractStreamingHeaderSerializer;
+import java.io.OutputStream;
+import javax.xml.soap.SOAPConstants;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This abstract class serves as base class for serializer classes that write
+ * ServiceRequest objects directly to an OutputStream using XMLStreamWriter.
+ * All the subclasses must implement the serializeRequest method which takes
+ * care of writing the application specific request object inside SOAP body's
+ * request element. This class takes care of writing the SOAP envelope, all the
+ * required SOAP headers and the request wrapper.
+ *
+ * No SOAPMessage or DOM tree is built, so the request data can be streamed
+ * from its source. The output is identical to the output of
+ * AbstractServiceRequestSerializer when the SOAPMessage is written to a stream,
+ * as long as the subclass writes the same elements. Elements of the request
+ * must be written using the writeStartElement, writeEmptyElement and
+ * writeElement methods of this class, so that they get the producer's
+ * namespace like in AbstractServiceRequestSerializer. Elements without
+ * children must be written as empty elements.
+ *
+ * @author Petteri Kivimäki
+ */
+public abstract class AbstractStreamingServiceRequestSerializer extends AbstractStreamingHeaderSerializer implements StreamingServiceRequestSerializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractStreamingServiceRequestSerializer.class);
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final String CHARSET = "UTF-8";
+
+    /**
+     * Writes the application specific request part inside SOAP body's request
+     * element. The writer is positioned inside the request element.
+     *
+     * @param request ServiceRequest holding the application specific request
+     * object
+     * @param writer XMLStreamWriter where the request is written
+     * @throws XMLStreamException if there's an error
+     */
+    protected abstract void serializeRequest(ServiceRequest request, XMLStreamWriter writer) throws XMLStreamException;
+
+    /**
+     * Serializes the given ServiceRequest to the given stream as a SOAP
+     * message encoded in UTF-8. The stream is not closed.
+     *
+     * @param request ServiceRequest to be serialized
+     * @param out OutputStream where the SOAP message is written
+     * @throws XMLStreamException if there's an error
+     */
+    @Override
+    public final void serialize(final ServiceRequest request, final OutputStream out) throws XMLStreamException {
+        logger.debug("Serialize ServiceRequest message to stream.");
+        XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(out, CHARSET);
+        try {
+            // Generate header
+            super.serializeHeader(request, writer);
+            // Generate body
+            this.serializeBody(request, writer);
+            // Envelope - End
+            writer.writeEndElement();
+            writer.flush();
+        } finally {
+            writer.close();
+        }
+        logger.debug("ServiceRequest message was serialized succesfully.");
+    }
+
+    /**
+     * Generates SOAP body, including the request element.
+     *
+     * @param request ServiceRequest to be serialized
+     * @param writer XMLStreamWriter where the body is written
+     * @throws XMLStreamException if there's an error
+     */
+    private void serializeBody(final ServiceRequest request, final XMLStreamWriter writer) throws XMLStreamException {
+        logger.debug("Generate SOAP body.");
+        logger.debug("Use producer namespace \"{}\".", request.getProducer().getNamespaceUrl());
+        // Body - Start
+        writer.writeStartElement(SOAP_ENV_PREFIX, "Body", SOAPConstants.URI_NS_SOAP_ENVELOPE);
+        String namespace = request.getProducer().getNamespaceUrl();
+        String prefix = request.getProducer().getNamespacePrefix() == null ? "" : request.getProducer().getNamespacePrefix();
+        String serviceCode = request.getProducer().getServiceCode();
+        boolean empty = request.getRequestData() == null;
+        // Is namespace defined?
+        if (namespace != null && !namespace.isEmpty()) {
+            boolean declared = namespace.equals(writer.getNamespaceContext().getNamespaceURI(prefix));
+            if (empty) {
+                writer.writeEmptyElement(prefix, serviceCode, namespace);
+            } else {
+                writer.writeStartElement(prefix, serviceCode, namespace);
+            }
+            if (!declared) {
+                if (prefix.isEmpty()) {
+                    writer.writeDefaultNamespace(namespace);
+                } else {
+                    writer.writeNamespace(prefix, namespace);
+                }
+            }
+        } else if (empty) {
+            writer.writeEmptyElement(serviceCode);
+        } else {
+            writer.writeStartElement(serviceCode);
+        }
+        if (!empty) {
+            // Check if it is needed to process "request" and "response" wrappers
+            if (request.isProcessingWrappers()) {
+                logger.debug("Adding \"request\" wrapper to request message.");
+                this.writeStartElement(request, writer, "request");
+            } else {
+                logger.debug("Skipping addition of \"request\" wrapper to request message.");
+            }
+            logger.trace("Passing processing to subclass implementing \"serializeRequest\" method.");
+            // Generate request
+            this.serializeRequest(request, writer);
+            if (request.isProcessingWrappers()) {
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+        }
+        // Body - End
+        writer.writeEndElement();
+        logger.debug("SOAP body was generated succesfully.");
+    }
+
+    /**
+     * Writes the start tag of an element of the request. If the producer has
+     * a namespace prefix and the namespace should be added to the request, the
+     * element is written in the producer's namespace.
+     *
+     * @param request ServiceRequest to be serialized
+     * @param writer XMLStreamWriter where the element is written
+     * @param localName local name of the element
+     * @throws XMLStreamException if there's an error
+     */
+    protected final void writeStartElement(final ServiceRequest request, final XMLStreamWriter writer, final String localName) throws XMLStreamException {
+        if (isPrefixed(request)) {
+            writer.writeStartElement(request.getProducer().getNamespacePrefix(), localName, request.getProducer().getNamespaceUrl());
+        } else {
+            writer.writeStartElement(localName);
+        }
+    }
+
+    /**
+     * Writes an empty element of the request. If the producer has a namespace
+     * prefix and the namespace should be added to the request, the element is
+     * written in the producer's namespace.
+     *
+     * @param request ServiceRequest to be serialized
+     * @param writer XMLStreamWriter where the element is written
+     * @param localName local name of the element
+     * @throws XMLStreamException if there's an error
+     */
+    protected final void writeEmptyElement(final ServiceRequest request, final XMLStreamWriter writer, final String localName) throws XMLStreamException {
+        if (isPrefixed(request)) {
+            writer.writeEmptyElement(request.getProducer().getNamespacePrefix(), localName, request.getProducer().getNamespaceUrl());
+        } else {
+            writer.writeEmptyElement(localName);
+        }
+    }
+
+    /**
+     * Writes an element of the request that contains the given text. If the
+     * text is null or empty, an empty element is written.
+     *
+     * @param request ServiceRequest to be serialized
+     * @param writer XMLStreamWriter where the element is written
+     * @param localName local name of the element
+     * @param text text content of the element
+     * @throws XMLStreamException if there's an error
+     */
+    protected final void writeElement(final ServiceRequest request, final XMLStreamWriter writer, final String localName, final String text) throws XMLStreamException {
+        if (text == null || text.isEmpty()) {
+            this.writeEmptyElement(request, writer, localName);
+            return;
+        }
+        this.writeStartElement(request, writer, localName);
+        writer.writeCharacters(text);
+        writer.writeEndElement();
+    }
+
+    /**
+     * Returns true if the elements of the request are written with the
+     * producer's namespace prefix.
+     *
+     * @param request ServiceRequest to be serialized
+     * @return true if the elements are prefixed; otherwise false
+     */
+    private static boolean isPrefixed(final ServiceRequest request) {
+        String namespace = request.getProducer().getNamespaceUrl();
+        String prefix = request.getProducer().getNamespacePrefix();
+        return namespace != null && !namespace.isEmpty() && prefix != null && !prefix.isEmpty() && request.isAddNamespaceToRequest();
+    }
+}
@@ -0,0 +1,29 @@
+package com.pkrete.xrd4j.client.serializer;
+
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * This class is the streaming counterpart of DefaultServiceRequestSerializer.
+ * It can be used for serializing meta service calls that don't have any
+ * request parameters.
+ *
+ * @author Petteri Kivimäki
+ */
+public class DefaultStreamingServiceRequestSerializer extends AbstractStreamingServiceRequestSerializer {
+
+    /**
+     * Empty implementation.
+     *
+     * @param request ServiceRequest holding the application specific request
+     * object
+     * @param writer XMLStreamWriter where the request is written
+     * @throws XMLStreamException if there's an error
+     */
+    @Override
+    protected void serializeRequest(ServiceRequest request, XMLStreamWriter writer) throws XMLStreamException {
+        // This class can be used for serializing meta service calls that don't
+        // have any request parameters.
+    }
+}
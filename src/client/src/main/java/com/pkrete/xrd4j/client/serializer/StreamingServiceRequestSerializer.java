@@ -0,0 +1,25 @@
+package com.pkrete.xrd4j.client.serializer;
+
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import java.io.OutputStream;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * This class defines an interface for serializing ServiceRequest objects
+ * directly to an OutputStream without building a SOAPMessage object.
+ *
+ * @author Petteri Kivimäki
+ */
+@FunctionalInterface
+public interface StreamingServiceRequestSerializer {
+
+    /**
+     * Serializes the given ServiceRequest object to the given stream as a SOAP
+     * message encoded in UTF-8. The stream is not closed.
+     *
+     * @param request ServiceRequest to be serialized
+     * @param out OutputStream where the SOAP message is written
+     * @throws XMLStreamException if there's an error
+     */
+    void serialize(ServiceRequest request, OutputStream out) throws XMLStreamException;
+}
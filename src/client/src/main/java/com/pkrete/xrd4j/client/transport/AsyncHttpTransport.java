@@ -0,0 +1,176 @@
+package com.pkrete.xrd4j.client.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements a non-blocking transport that sends SOAPMessage
+ * objects using asynchronous HTTP I/O. A small number of I/O dispatcher
+ * threads take care of all the connections, so the calling thread is never
+ * blocked while waiting for the response. The connections are kept in a pool
+ * that's limited per route and in total.
+ *
+ * The HTTP responses are converted to SOAPMessage objects using the given
+ * executor, so that parsing large responses does not block the I/O
+ * dispatcher threads. The transport is thread safe and it must be closed when
+ * it's not needed anymore.
+ *
+ * @author Petteri Kivimäki
+ */
+public class AsyncHttpTransport implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncHttpTransport.class);
+    /**
+     * Default maximum number of connections per route.
+     */
+    public static final int DEFAULT_MAX_PER_ROUTE = 20;
+    /**
+     * Default maximum number of connections in total.
+     */
+    public static final int DEFAULT_MAX_TOTAL = 100;
+
+    private final PoolingNHttpClientConnectionManager connectionManager;
+    private final CloseableHttpAsyncClient httpClient;
+    private final MessageFactory messageFactory;
+    private final Executor executor;
+
+    /**
+     * Constructs and initializes a new AsyncHttpTransport object using the
+     * default pool settings. The responses are processed in the common
+     * fork-join pool.
+     *
+     * @throws SOAPException if there's a SOAP error
+     */
+    public AsyncHttpTransport() throws SOAPException {
+        this(DEFAULT_MAX_PER_ROUTE, DEFAULT_MAX_TOTAL, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs and initializes a new AsyncHttpTransport object.
+     *
+     * @param maxPerRoute maximum number of pooled connections per route
+     * @param maxTotal maximum number of pooled connections in total
+     * @param executor executor that's used for processing the responses
+     * @throws SOAPException if there's a SOAP error
+     */
+    public AsyncHttpTransport(int maxPerRoute, int maxTotal, Executor executor) throws SOAPException {
+        this.messageFactory = MessageFactory.newInstance();
+        this.executor = executor;
+        try {
+            this.connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(IOReactorConfig.DEFAULT));
+        } catch (IOReactorException ex) {
+            logger.error(ex.getMessage(), ex);
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+        this.connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        this.connectionManager.setMaxTotal(maxTotal);
+        this.httpClient = HttpAsyncClients.custom().setConnectionManager(this.connectionManager).build();
+        this.httpClient.start();
+        logger.debug("Create new AsyncHttpTransport. Max per route : {}, max total : {}.", maxPerRoute, maxTotal);
+    }
+
+    /**
+     * Sends the given message to the specified endpoint without blocking the
+     * calling thread. The returned future is completed with the response when
+     * it has been received. Cancelling the returned future aborts the HTTP
+     * request.
+     *
+     * @param request the SOAPMessage object to be sent
+     * @param endpoint URL that identifies where the message should be sent
+     * @return future that's completed with the SOAPMessage object that is the
+     * response to the request message that was sent
+     */
+    public CompletableFuture<SOAPMessage> call(final SOAPMessage request, final URL endpoint) {
+        HttpPost post;
+        try {
+            post = HttpTransportUtil.toHttpPost(request, endpoint);
+        } catch (SOAPException ex) {
+            CompletableFuture<SOAPMessage> failed = new CompletableFuture<>();
+            failed.completeExceptionally(ex);
+            return failed;
+        }
+        CompletableFuture<HttpResponse> httpResponse = new CompletableFuture<>();
+        Future<HttpResponse> pending = this.httpClient.execute(post, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                httpResponse.complete(response);
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                logger.error(ex.getMessage(), ex);
+                httpResponse.completeExceptionally(new SOAPException("Sending SOAP message to \"" + endpoint + "\" failed.", ex));
+            }
+
+            @Override
+            public void cancelled() {
+                httpResponse.cancel(false);
+            }
+        });
+        CompletableFuture<SOAPMessage> response = httpResponse.thenApplyAsync(this::toSOAPMessage, this.executor);
+        // Abort the HTTP request if the caller is not interested anymore
+        response.whenComplete((message, ex) -> {
+            if (response.isCancelled()) {
+                logger.debug("Request to \"{}\" was cancelled.", endpoint);
+                pending.cancel(true);
+            }
+        });
+        return response;
+    }
+
+    /**
+     * Converts the given HTTP response to SOAPMessage.
+     *
+     * @param response HTTP response to be converted
+     * @return SOAPMessage or null
+     */
+    private SOAPMessage toSOAPMessage(final HttpResponse response) {
+        try {
+            return HttpTransportUtil.toSOAPMessage(response, this.messageFactory);
+        } catch (SOAPException | IOException ex) {
+            throw new CompletionException(ex);
+        }
+    }
+
+    /**
+     * Returns the connection manager that holds the pooled connections.
+     *
+     * @return connection manager of this transport
+     */
+    public PoolingNHttpClientConnectionManager getConnectionManager() {
+        return this.connectionManager;
+    }
+
+    /**
+     * Closes the underlying HTTP client, the I/O dispatcher threads and all the
+     * pooled connections. The transport can not be used after it has been
+     * closed.
+     *
+     * @throws IOException if there's an I/O error
+     */
+    @Override
+    public void close() throws IOException {
+        logger.debug("Close AsyncHttpTransport.");
+        this.httpClient.close();
+    }
+}
@@ -0,0 +1,121 @@
+package com.pkrete.xrd4j.client.transport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Iterator;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.MimeHeader;
+import javax.xml.soap.MimeHeaders;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class offers helper methods for converting SOAPMessage objects to HTTP
+ * requests and HTTP responses to SOAPMessage objects. The methods are shared
+ * by the HTTP based transports.
+ *
+ * @author Petteri Kivimäki
+ */
+final class HttpTransportUtil {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpTransportUtil.class);
+    private static final String CONTENT_LENGTH = "Content-Length";
+    private static final String SOAP_ACTION = "SOAPAction";
+
+    /**
+     * Constructs and initializes a new HttpTransportUtil object. Should never
+     * be used.
+     */
+    private HttpTransportUtil() {
+    }
+
+    /**
+     * Builds a HTTP POST request that holds the given SOAP message and its
+     * MIME headers.
+     *
+     * @param request SOAP message to be sent
+     * @param endpoint target URL
+     * @return HTTP POST request
+     * @throws SOAPException if there's a SOAP error
+     */
+    static HttpPost toHttpPost(final SOAPMessage request, final URL endpoint) throws SOAPException {
+        HttpPost post;
+        try {
+            post = new HttpPost(endpoint.toURI());
+        } catch (URISyntaxException ex) {
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+        if (request.saveRequired()) {
+            request.saveChanges();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            request.writeTo(out);
+        } catch (IOException ex) {
+            throw new SOAPException(ex.getMessage(), ex);
+        }
+        Iterator it = request.getMimeHeaders().getAllHeaders();
+        while (it.hasNext()) {
+            MimeHeader header = (MimeHeader) it.next();
+            // Content length is set by the HTTP client
+            if (!CONTENT_LENGTH.equalsIgnoreCase(header.getName())) {
+                post.addHeader(header.getName(), header.getValue());
+            }
+        }
+        if (post.getFirstHeader(SOAP_ACTION) == null) {
+            post.setHeader(SOAP_ACTION, "\"\"");
+        }
+        post.setEntity(new ByteArrayEntity(out.toByteArray()));
+        return post;
+    }
+
+    /**
+     * Converts the given HTTP response to SOAPMessage. The response body is
+     * read completely, so the underlying connection can be released after
+     * calling this method. Null is returned if the response doesn't have a
+     * body.
+     *
+     * @param response HTTP response to be converted
+     * @param messageFactory MessageFactory used for creating the SOAPMessage
+     * @return SOAPMessage or null
+     * @throws SOAPException if the response status is not valid or if there's
+     * a SOAP error
+     * @throws IOException if reading the response body fails
+     */
+    static SOAPMessage toSOAPMessage(final HttpResponse response, final MessageFactory messageFactory) throws SOAPException, IOException {
+        int statusCode = response.getStatusLine().getStatusCode();
+        logger.debug("HTTP response status code : \"{}\".", statusCode);
+        // SOAP faults are returned with status code 500
+        if (statusCode / 100 != 2 && statusCode != 500) {
+            EntityUtils.consumeQuietly(response.getEntity());
+            throw new SOAPException("Bad response: (" + statusCode + ") " + response.getStatusLine().getReasonPhrase());
+        }
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            logger.warn("HTTP response doesn't have a body. Null is returned.");
+            return null;
+        }
+        // The whole body must be read before the connection is released
+        byte[] body = EntityUtils.toByteArray(entity);
+        if (body.length == 0) {
+            logger.warn("HTTP response body is empty. Null is returned.");
+            return null;
+        }
+        MimeHeaders headers = new MimeHeaders();
+        for (Header header : response.getAllHeaders()) {
+            headers.addHeader(header.getName(), header.getValue());
+        }
+        return messageFactory.createMessage(headers, new ByteArrayInputStream(body));
+    }
+}
@@ -0,0 +1,127 @@
+package com.pkrete.xrd4j.client.transport;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements a transport that keeps persistent (keep-alive) HTTP
+ * connections in a pool and reuses them between the calls. Reusing the
+ * connections removes the cost of opening a new TCP connection, and a new TLS
+ * handshake in case of HTTPS, for every message sent to the security server.
+ *
+ * The number of pooled connections is limited per route (i.e. per security
+ * server) and in total. Connections that have been idle longer than the
+ * configured idle time are evicted from the pool by a background thread. The
+ * transport is thread safe and a single instance should be shared by all the
+ * clients that send messages to the same security servers. The transport must
+ * be closed when it's not needed anymore.
+ *
+ * @author Petteri Kivimäki
+ */
+public class PooledHttpTransport implements SOAPTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(PooledHttpTransport.class);
+    /**
+     * Default maximum number of connections per route.
+     */
+    public static final int DEFAULT_MAX_PER_ROUTE = 20;
+    /**
+     * Default maximum number of connections in total.
+     */
+    public static final int DEFAULT_MAX_TOTAL = 100;
+    /**
+     * Default maximum idle time of a pooled connection in milliseconds.
+     */
+    public static final long DEFAULT_MAX_IDLE_TIME = 30000;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final MessageFactory messageFactory;
+
+    /**
+     * Constructs and initializes a new PooledHttpTransport object using the
+     * default pool settings.
+     *
+     * @throws SOAPException if there's a SOAP error
+     */
+    public PooledHttpTransport() throws SOAPException {
+        this(DEFAULT_MAX_PER_ROUTE, DEFAULT_MAX_TOTAL, DEFAULT_MAX_IDLE_TIME);
+    }
+
+    /**
+     * Constructs and initializes a new PooledHttpTransport object.
+     *
+     * @param maxPerRoute maximum number of pooled connections per route
+     * @param maxTotal maximum number of pooled connections in total
+     * @param maxIdleTime time in milliseconds after which an idle connection is
+     * evicted from the pool
+     * @throws SOAPException if there's a SOAP error
+     */
+    public PooledHttpTransport(int maxPerRoute, int maxTotal, long maxIdleTime) throws SOAPException {
+        this.messageFactory = MessageFactory.newInstance();
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        this.connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        this.connectionManager.setMaxTotal(maxTotal);
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(this.connectionManager)
+                .evictExpiredConnections()
+                .evictIdleConnections(maxIdleTime, TimeUnit.MILLISECONDS)
+                .build();
+        logger.debug("Create new PooledHttpTransport. Max per route : {}, max total : {}, max idle time : {} ms.", maxPerRoute, maxTotal, maxIdleTime);
+    }
+
+    /**
+     * Sends the given message to the specified endpoint using a pooled
+     * connection and blocks until it has returned the response. The connection
+     * is returned to the pool after the response has been read. Null is
+     * returned if the response doesn't have a body.
+     *
+     * @param request the SOAPMessage object to be sent
+     * @param endpoint URL that identifies where the message should be sent
+     * @return the SOAPMessage object that is the response to the request
+     * message that was sent
+     * @throws SOAPException if there's a SOAP error
+     */
+    @Override
+    public SOAPMessage call(final SOAPMessage request, final URL endpoint) throws SOAPException {
+        HttpPost post = HttpTransportUtil.toHttpPost(request, endpoint);
+        try (CloseableHttpResponse response = this.httpClient.execute(post)) {
+            return HttpTransportUtil.toSOAPMessage(response, this.messageFactory);
+        } catch (IOException ex) {
+            logger.error(ex.getMessage(), ex);
+            throw new SOAPException("Sending SOAP message to \"" + endpoint + "\" failed.", ex);
+        }
+    }
+
+    /**
+     * Returns the connection manager that holds the pooled connections.
+     *
+     * @return connection manager of this transport
+     */
+    public PoolingHttpClientConnectionManager getConnectionManager() {
+        return this.connectionManager;
+    }
+
+    /**
+     * Closes the underlying HTTP client and all the pooled connections. The
+     * transport can not be used after it has been closed.
+     *
+     * @throws IOException if there's an I/O error
+     */
+    @Override
+    public void close() throws IOException {
+        logger.debug("Close PooledHttpTransport.");
+        this.httpClient.close();
+    }
+}
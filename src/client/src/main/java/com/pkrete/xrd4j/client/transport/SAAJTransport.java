@@ -0,0 +1,58 @@
+package com.pkrete.xrd4j.client.transport;
+
+import java.net.URL;
+import javax.xml.soap.SOAPConnection;
+import javax.xml.soap.SOAPConnectionFactory;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+
+/**
+ * This class implements a transport that uses SAAJ SOAPConnection objects for
+ * sending messages. A new connection is opened for every message and it's
+ * closed right after the response has been received. This is the default
+ * transport of SOAPClientImpl.
+ *
+ * @author Petteri Kivimäki
+ */
+public class SAAJTransport implements SOAPTransport {
+
+    private final SOAPConnectionFactory connectionFactory;
+
+    /**
+     * Constructs and initializes a new SAAJTransport object.
+     *
+     * @throws SOAPException if there's a SOAP error
+     */
+    public SAAJTransport() throws SOAPException {
+        this.connectionFactory = SOAPConnectionFactory.newInstance();
+    }
+
+    /**
+     * Sends the given message to the specified endpoint using a new
+     * SOAPConnection and blocks until it has returned the response.
+     *
+     * @param request the SOAPMessage object to be sent
+     * @param endpoint URL that identifies where the message should be sent
+     * @return the SOAPMessage object that is the response to the request
+     * message that was sent
+     * @throws SOAPException if there's a SOAP error
+     */
+    @Override
+    public SOAPMessage call(final SOAPMessage request, final URL endpoint) throws SOAPException {
+        SOAPConnection connection = this.connectionFactory.createConnection();
+        try {
+            return connection.call(request, endpoint);
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * SAAJTransport does not hold any resources between the calls, so there's
+     * nothing to close.
+     */
+    @Override
+    public void close() {
+        // Connections are closed after each call
+    }
+}
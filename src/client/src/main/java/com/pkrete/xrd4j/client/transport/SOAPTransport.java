@@ -0,0 +1,30 @@
+package com.pkrete.xrd4j.client.transport;
+
+import java.io.Closeable;
+import java.net.URL;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+
+/**
+ * This class defines an interface for transports that carry SOAPMessage
+ * objects to SOAP endpoints and return the responses. SOAP client
+ * implementations delegate the actual HTTP communication to a transport, which
+ * makes it possible to change the connection handling without changing the
+ * client.
+ *
+ * @author Petteri Kivimäki
+ */
+public interface SOAPTransport extends Closeable {
+
+    /**
+     * Sends the given message to the specified endpoint and blocks until it has
+     * returned the response.
+     *
+     * @param request the SOAPMessage object to be sent
+     * @param endpoint URL that identifies where the message should be sent
+     * @return the SOAPMessage object that is the response to the request
+     * message that was sent
+     * @throws SOAPException if there's a SOAP error
+     */
+    SOAPMessage call(SOAPMessage request, URL endpoint) throws SOAPException;
+}
@@ -0,0 +1,145 @@
+package com.pkrete.xrd4j.client;
+
+import com.pkrete.xrd4j.client.transport.AsyncHttpTransport;
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.pkrete.xrd4j.common.util.SOAPHelper;
+import com.sun.net.httpserver.HttpServer;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.xml.soap.SOAPMessage;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for AsyncSOAPClientImpl class. The test cases use a local HTTP
+ * server that returns a static listMethods response.
+ *
+ * @author Petteri Kivimäki
+ */
+public class AsyncSOAPClientImplTest extends TestCase {
+
+    private static final String RESPONSE = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header><xrd:client id:objectType=\"SUBSYSTEM\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>MEMBER1</id:memberCode><id:subsystemCode>client</id:subsystemCode></xrd:client><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>COM</id:memberClass><id:memberCode>MEMBER2</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode><id:serviceCode>listMethods</id:serviceCode></xrd:service><xrd:id>ID-1234567890</xrd:id><xrd:protocolVersion>4.0</xrd:protocolVersion></SOAP-ENV:Header><SOAP-ENV:Body><xrd:listMethodsResponse><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>PRI</id:memberClass><id:memberCode>12345-6</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode><id:serviceCode>testService</id:serviceCode><id:serviceVersion>v1</id:serviceVersion></xrd:service></xrd:listMethodsResponse></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+    private HttpServer server;
+    private String url;
+
+    /**
+     * Starts a local HTTP server for the test cases.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", exchange -> {
+            try (InputStream is = exchange.getRequestBody()) {
+                while (is.read() != -1) {
+                    // Read the whole request
+                }
+            }
+            byte[] body = RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        this.server.start();
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * Stops the local HTTP server.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        this.server.stop(0);
+        super.tearDown();
+    }
+
+    /**
+     * Call listMethods meta service asynchronously.
+     *
+     * @throws Exception
+     */
+    public void testListMethods() throws Exception {
+        ConsumerMember consumer = new ConsumerMember("FI", "GOV", "MEMBER1", "client");
+        ProducerMember producer = new ProducerMember("FI", "COM", "MEMBER2", "subsystem", "listMethods");
+        ServiceRequest request = new ServiceRequest(consumer, producer, "ID-1234567890");
+        try (AsyncSOAPClient client = new AsyncSOAPClientImpl()) {
+            CompletableFuture<ServiceResponse> future = client.listMethods(request, this.url);
+            ServiceResponse<String, List<ProducerMember>> response = future.get(10, TimeUnit.SECONDS);
+            assertEquals("ID-1234567890", response.getId());
+            assertEquals(1, response.getResponseData().size());
+            assertEquals("testService", response.getResponseData().get(0).getServiceCode());
+        }
+    }
+
+    /**
+     * Send several SOAP messages concurrently.
+     *
+     * @throws Exception
+     */
+    public void testConcurrentSend() throws Exception {
+        try (AsyncSOAPClient client = new AsyncSOAPClientImpl()) {
+            CompletableFuture<SOAPMessage>[] futures = new CompletableFuture[10];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = client.send(SOAPHelper.toSOAP(RESPONSE), this.url);
+            }
+            CompletableFuture.allOf(futures).get(10, TimeUnit.SECONDS);
+            for (CompletableFuture<SOAPMessage> future : futures) {
+                assertEquals(RESPONSE, SOAPHelper.toString(future.get()));
+            }
+        }
+    }
+
+    /**
+     * Cancelling the future of a ServiceResponse must cancel the future of
+     * the transport, so that the HTTP request is aborted.
+     *
+     * @throws Exception
+     */
+    public void testCancel() throws Exception {
+        final CompletableFuture<SOAPMessage> pending = new CompletableFuture<>();
+        AsyncHttpTransport transport = new AsyncHttpTransport() {
+            @Override
+            public CompletableFuture<SOAPMessage> call(final SOAPMessage request, final URL endpoint) {
+                return pending;
+            }
+        };
+        ConsumerMember consumer = new ConsumerMember("FI", "GOV", "MEMBER1", "client");
+        ProducerMember producer = new ProducerMember("FI", "COM", "MEMBER2", "subsystem", "listMethods");
+        ServiceRequest request = new ServiceRequest(consumer, producer, "ID-1234567890");
+        try (AsyncSOAPClient client = new AsyncSOAPClientImpl(transport)) {
+            CompletableFuture<ServiceResponse> future = client.listMethods(request, this.url);
+            assertFalse(pending.isDone());
+            assertTrue(future.cancel(true));
+            assertTrue(pending.isCancelled());
+        }
+    }
+
+    /**
+     * Invalid URL. The future must be completed exceptionally.
+     *
+     * @throws Exception
+     */
+    public void testInvalidUrl() throws Exception {
+        try (AsyncSOAPClient client = new AsyncSOAPClientImpl()) {
+            client.send(SOAPHelper.toSOAP(RESPONSE), "test.com").get();
+            fail("Should not reach this");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof RuntimeException);
+        }
+    }
+}
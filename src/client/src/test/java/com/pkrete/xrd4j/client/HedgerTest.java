@@ -0,0 +1,262 @@
+package com.pkrete.xrd4j.client;
+
+import com.pkrete.xrd4j.client.balancer.EjectionPolicy;
+import com.pkrete.xrd4j.client.balancer.Endpoint;
+import com.pkrete.xrd4j.client.balancer.HedgingPolicy;
+import com.pkrete.xrd4j.client.balancer.RoundRobinLoadBalancer;
+import com.pkrete.xrd4j.client.deserializer.ListServicesResponseDeserializer;
+import com.pkrete.xrd4j.client.serializer.DefaultServiceRequestSerializer;
+import com.pkrete.xrd4j.client.transport.SAAJTransport;
+import com.pkrete.xrd4j.client.transport.SOAPTransport;
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.pkrete.xrd4j.common.util.Constants;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for hedged requests sent by LoadBalancedSOAPClientImpl. The test
+ * cases use a local HTTP server that has a slow and a fast endpoint.
+ *
+ * @author Petteri Kivimäki
+ */
+public class HedgerTest extends TestCase {
+
+    private static final String RESPONSE = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header><xrd:client id:objectType=\"SUBSYSTEM\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>MEMBER1</id:memberCode><id:subsystemCode>client</id:subsystemCode></xrd:client><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>COM</id:memberClass><id:memberCode>MEMBER2</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode><id:serviceCode>listMethods</id:serviceCode></xrd:service><xrd:id>ID-1234567890</xrd:id><xrd:protocolVersion>4.0</xrd:protocolVersion></SOAP-ENV:Header><SOAP-ENV:Body><xrd:listMethodsResponse><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>PRI</id:memberClass><id:memberCode>12345-6</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode><id:serviceCode>testService</id:serviceCode><id:serviceVersion>v1</id:serviceVersion></xrd:service></xrd:listMethodsResponse></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+    private static final long SLOW = 500;
+    private static final long MEDIUM = 150;
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private ExecutorService executor;
+    private String slowUrl;
+    private String fastUrl;
+    private String mediumUrl;
+
+    /**
+     * Starts a local HTTP server for the test cases.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.serverExecutor = Executors.newCachedThreadPool();
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.setExecutor(this.serverExecutor);
+        this.server.createContext("/slow", handler(SLOW));
+        this.server.createContext("/fast", handler(0));
+        this.server.createContext("/medium", handler(MEDIUM));
+        this.server.start();
+        String base = "http://127.0.0.1:" + this.server.getAddress().getPort();
+        this.slowUrl = base + "/slow";
+        this.fastUrl = base + "/fast";
+        this.mediumUrl = base + "/medium";
+    }
+
+    /**
+     * Stops the local HTTP server.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        this.server.stop(0);
+        this.serverExecutor.shutdownNow();
+        this.executor.shutdownNow();
+        super.tearDown();
+    }
+
+    /**
+     * The first endpoint is slow, so the hedged request to the second
+     * endpoint must win.
+     *
+     * @throws Exception
+     */
+    public void testHedgedRequestWins() throws Exception {
+        RoundRobinLoadBalancer balancer = new RoundRobinLoadBalancer(Arrays.asList(this.slowUrl, this.fastUrl));
+        LoadBalancedSOAPClientImpl client = new LoadBalancedSOAPClientImpl(balancer, new SAAJTransport(), new HedgingPolicy(0.95, 10, 50, 0.1, 10), this.executor);
+        long start = System.currentTimeMillis();
+        ServiceResponse<String, List<ProducerMember>> response = send(client);
+        assertTrue(System.currentTimeMillis() - start < SLOW);
+        assertEquals("testService", response.getResponseData().get(0).getServiceCode());
+        assertEquals(1, client.getHedger().getHedgeCount());
+        for (Endpoint endpoint : balancer.getEndpoints()) {
+            assertEquals(0, endpoint.getOutstanding());
+        }
+    }
+
+    /**
+     * The fast endpoint responds before the delay, so no hedged request is
+     * sent.
+     *
+     * @throws Exception
+     */
+    public void testNoHedge() throws Exception {
+        RoundRobinLoadBalancer balancer = new RoundRobinLoadBalancer(Arrays.asList(this.fastUrl, this.slowUrl));
+        LoadBalancedSOAPClientImpl client = new LoadBalancedSOAPClientImpl(balancer, new SAAJTransport(), new HedgingPolicy(0.95, 10, 300, 0.1, 10), this.executor);
+        ServiceResponse<String, List<ProducerMember>> response = send(client);
+        assertEquals("testService", response.getResponseData().get(0).getServiceCode());
+        assertEquals(0, client.getHedger().getHedgeCount());
+    }
+
+    /**
+     * The hedge budget allows only one hedged request.
+     *
+     * @throws Exception
+     */
+    public void testBudget() throws Exception {
+        RoundRobinLoadBalancer balancer = new RoundRobinLoadBalancer(Arrays.asList(this.slowUrl, this.slowUrl + "/2"));
+        LoadBalancedSOAPClientImpl client = new LoadBalancedSOAPClientImpl(balancer, new SAAJTransport(), new HedgingPolicy(0.95, 10, 50, 0, 1), this.executor);
+        send(client);
+        assertEquals(1, client.getHedger().getHedgeCount());
+        send(client);
+        assertEquals(1, client.getHedger().getHedgeCount());
+    }
+
+    /**
+     * The hedged request is a probe to a recovering endpoint and it loses to
+     * the first request. The cancelled probe must not keep the endpoint
+     * ejected.
+     *
+     * @throws Exception
+     */
+    public void testCancelledProbe() throws Exception {
+        RoundRobinLoadBalancer balancer = new RoundRobinLoadBalancer(Arrays.asList(this.mediumUrl, this.slowUrl), new EjectionPolicy(1, 20, 1000));
+        Endpoint recovering = balancer.getEndpoints().get(1);
+        balancer.onFailure(balancer.select(balancer.getEndpoints().get(0)));
+        assertTrue(recovering.isEjected());
+        LoadBalancedSOAPClientImpl client = new LoadBalancedSOAPClientImpl(balancer, new SAAJTransport(), new HedgingPolicy(0.95, 10, 50, 0.1, 10), this.executor);
+        ServiceResponse<String, List<ProducerMember>> response = send(client);
+        assertEquals("testService", response.getResponseData().get(0).getServiceCode());
+        assertEquals(1, client.getHedger().getHedgeCount());
+        assertTrue(recovering.isEjected());
+        assertEquals(0, recovering.getOutstanding());
+        // The endpoint can be probed again
+        Endpoint probe = balancer.select();
+        assertSame(recovering, probe);
+        balancer.onSuccess(probe, 1000);
+        assertFalse(recovering.isEjected());
+    }
+
+    /**
+     * The hedged request returns no response. It's counted as a failure and
+     * the first request wins. If both requests return no response, sending
+     * fails.
+     *
+     * @throws Exception
+     */
+    public void testNullResponse() throws Exception {
+        String nullUrl = this.fastUrl + "/null";
+        RoundRobinLoadBalancer balancer = new RoundRobinLoadBalancer(Arrays.asList(this.slowUrl, nullUrl));
+        LoadBalancedSOAPClientImpl client = new LoadBalancedSOAPClientImpl(balancer, new NullTransport(), new HedgingPolicy(0.95, 10, 50, 0.1, 10), this.executor);
+        ServiceResponse<String, List<ProducerMember>> response = send(client);
+        assertEquals("testService", response.getResponseData().get(0).getServiceCode());
+        assertEquals(1, client.getHedger().getHedgeCount());
+        Endpoint failed = balancer.getEndpoints().get(1);
+        assertEquals(1, failed.getConsecutiveFailures());
+        assertEquals(0, balancer.getEndpoints().get(0).getConsecutiveFailures());
+        for (Endpoint endpoint : balancer.getEndpoints()) {
+            assertEquals(0, endpoint.getOutstanding());
+        }
+
+        balancer = new RoundRobinLoadBalancer(Arrays.asList(nullUrl, nullUrl + "/2"));
+        client = new LoadBalancedSOAPClientImpl(balancer, new NullTransport(), new HedgingPolicy(0.95, 10, 50, 0.1, 10), this.executor);
+        try {
+            send(client);
+            fail("SOAPException expected");
+        } catch (SOAPException ex) {
+            // Expected
+        }
+        assertEquals(1, balancer.getEndpoints().get(0).getConsecutiveFailures());
+    }
+
+    /**
+     * Sends a listMethods request using the given client.
+     *
+     * @param client client used for sending the request
+     * @return response
+     * @throws Exception
+     */
+    private static ServiceResponse send(LoadBalancedSOAPClientImpl client) throws Exception {
+        ConsumerMember consumer = new ConsumerMember("FI", "GOV", "MEMBER1", "client");
+        ProducerMember producer = new ProducerMember("FI", "COM", "MEMBER2", "subsystem", Constants.META_SERVICE_LIST_METHODS);
+        producer.setNamespacePrefix(Constants.NS_XRD_PREFIX);
+        producer.setNamespaceUrl(Constants.NS_XRD_URL);
+        ServiceRequest request = new ServiceRequest(consumer, producer, "ID-1234567890");
+        return client.send(request, new DefaultServiceRequestSerializer(), new ListServicesResponseDeserializer());
+    }
+
+    /**
+     * Transport that returns null for the URLs that contain "null" and sends
+     * the other requests using SAAJTransport.
+     */
+    private static class NullTransport implements SOAPTransport {
+
+        private final SAAJTransport transport;
+
+        /**
+         * Constructs and initializes a new NullTransport object.
+         *
+         * @throws SOAPException if creating the transport fails
+         */
+        NullTransport() throws SOAPException {
+            this.transport = new SAAJTransport();
+        }
+
+        @Override
+        public SOAPMessage call(SOAPMessage request, URL endpoint) throws SOAPException {
+            if (endpoint.getPath().contains("null")) {
+                return null;
+            }
+            return this.transport.call(request, endpoint);
+        }
+
+        @Override
+        public void close() {
+            this.transport.close();
+        }
+    }
+
+    /**
+     * Returns a handler that responds with a static listMethods response
+     * after the given delay.
+     *
+     * @param delay delay in milliseconds
+     * @return handler
+     */
+    private static HttpHandler handler(final long delay) {
+        return exchange -> {
+            try (InputStream is = exchange.getRequestBody()) {
+                while (is.read() != -1) {
+                    // Read the whole request
+                }
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        };
+    }
+}
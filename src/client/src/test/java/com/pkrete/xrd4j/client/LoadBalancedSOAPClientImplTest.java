@@ -1,8 +1,16 @@
 package com.pkrete.xrd4j.client;
 
+import com.pkrete.xrd4j.client.balancer.EjectionPolicy;
+import com.pkrete.xrd4j.client.balancer.Endpoint;
+import com.pkrete.xrd4j.client.balancer.RoundRobinLoadBalancer;
+import com.pkrete.xrd4j.client.transport.SOAPTransport;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import javax.xml.soap.MessageFactory;
 import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
 import junit.framework.TestCase;
 
 /**
@@ -58,4 +66,29 @@ public class LoadBalancedSOAPClientImplTest extends TestCase {
         assertEquals("http://server3.myhost.com", client.getTargetUrl());
         assertEquals("http://server1.myhost.com", client.getTargetUrl());
     }
+
+    /**
+     * Null response is reported to the load balancer as a failure.
+     *
+     * @throws SOAPException
+     */
+    public void testNullResponse() throws SOAPException {
+        RoundRobinLoadBalancer balancer = new RoundRobinLoadBalancer(Arrays.asList("http://server1.myhost.com"), new EjectionPolicy(1, 10000, 10000));
+        SOAPTransport transport = new SOAPTransport() {
+            @Override
+            public SOAPMessage call(SOAPMessage request, URL endpoint) {
+                return null;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        LoadBalancedSOAPClientImpl client = new LoadBalancedSOAPClientImpl(balancer, transport);
+        assertNull(client.send(MessageFactory.newInstance().createMessage()));
+        Endpoint endpoint = balancer.getEndpoints().get(0);
+        assertEquals(1, endpoint.getConsecutiveFailures());
+        assertTrue(endpoint.isEjected());
+        assertEquals(0, endpoint.getOutstanding());
+    }
 }
@@ -0,0 +1,239 @@
+package com.pkrete.xrd4j.client.balancer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for the load balancer implementations.
+ *
+ * @author Petteri Kivimäki
+ */
+public class LoadBalancerTest extends TestCase {
+
+    private static final List<String> URLS = Arrays.asList("http://server1.myhost.com", "http://server2.myhost.com", "http://server3.myhost.com");
+
+    /**
+     * Round-robin rotation must stay even when multiple threads use the same
+     * load balancer.
+     *
+     * @throws Exception
+     */
+    public void testRoundRobinConcurrent() throws Exception {
+        final LoadBalancer balancer = new RoundRobinLoadBalancer(URLS);
+        final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+        for (String url : URLS) {
+            counts.put(url, new AtomicInteger());
+        }
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    Endpoint endpoint = balancer.select();
+                    counts.get(endpoint.getUrl()).incrementAndGet();
+                    balancer.onSuccess(endpoint, 1000);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (String url : URLS) {
+            assertEquals(2000, counts.get(url).get());
+        }
+        for (Endpoint endpoint : balancer.getEndpoints()) {
+            assertEquals(0, endpoint.getOutstanding());
+        }
+    }
+
+    /**
+     * Least outstanding requests load balancer must skip busy endpoints.
+     */
+    public void testLeastOutstanding() {
+        LoadBalancer balancer = new LeastOutstandingLoadBalancer(URLS);
+        Endpoint first = balancer.select();
+        Endpoint second = balancer.select();
+        Endpoint third = balancer.select();
+        assertFalse(first == second);
+        assertFalse(second == third);
+        assertFalse(first == third);
+        balancer.onSuccess(second, 1000);
+        assertSame(second, balancer.select());
+    }
+
+    /**
+     * EWMA load balancer must prefer the fastest endpoint.
+     */
+    public void testEwmaLatency() {
+        LoadBalancer balancer = new EwmaLatencyLoadBalancer(URLS);
+        List<Endpoint> endpoints = balancer.getEndpoints();
+        for (int i = 0; i < 3; i++) {
+            endpoints.get(i).begin();
+            balancer.onSuccess(endpoints.get(i), (3 - i) * 1000000L);
+        }
+        for (int i = 0; i < 5; i++) {
+            Endpoint endpoint = balancer.select();
+            assertEquals("http://server3.myhost.com", endpoint.getUrl());
+            balancer.onSuccess(endpoint, 1000000L);
+        }
+        assertEquals(1000000.0, endpoints.get(2).getLatency(), 1.0);
+    }
+
+    /**
+     * Failing endpoint is ejected and re-admitted after a successful probe.
+     *
+     * @throws Exception
+     */
+    public void testEjectAndReadmit() throws Exception {
+        LoadBalancer balancer = new RoundRobinLoadBalancer(URLS, new EjectionPolicy(2, 50, 1000));
+        Endpoint failing = balancer.getEndpoints().get(0);
+        for (int i = 0; i < 2; i++) {
+            failing.begin();
+            balancer.onFailure(failing);
+        }
+        assertTrue(failing.isEjected());
+        for (int i = 0; i < 10; i++) {
+            Endpoint endpoint = balancer.select();
+            assertNotSame(failing, endpoint);
+            balancer.onSuccess(endpoint, 1000);
+        }
+        Thread.sleep(100);
+        // The first request after the ejection time is a probe
+        Endpoint probe = balancer.select();
+        assertSame(failing, probe);
+        // Only one probe at a time
+        Endpoint other = balancer.select();
+        assertNotSame(failing, other);
+        balancer.onSuccess(other, 1000);
+        balancer.onSuccess(probe, 1000);
+        assertFalse(failing.isEjected());
+        assertEquals(0, failing.getConsecutiveFailures());
+    }
+
+    /**
+     * Failed probe ejects the endpoint again with a longer ejection time.
+     *
+     * @throws Exception
+     */
+    public void testFailedProbe() throws Exception {
+        LoadBalancer balancer = new RoundRobinLoadBalancer(URLS, new EjectionPolicy(1, 50, 10000));
+        Endpoint failing = balancer.getEndpoints().get(0);
+        failing.begin();
+        balancer.onFailure(failing);
+        Thread.sleep(100);
+        Endpoint probe = balancer.select();
+        assertSame(failing, probe);
+        balancer.onFailure(probe);
+        assertTrue(failing.isEjected());
+        // Ejection time is now 100 ms
+        Thread.sleep(60);
+        for (int i = 0; i < 5; i++) {
+            Endpoint endpoint = balancer.select();
+            assertNotSame(failing, endpoint);
+            balancer.onSuccess(endpoint, 1000);
+        }
+    }
+
+    /**
+     * Cancelled probe releases the endpoint, so that it can be probed again.
+     * Peeking never starts a probe.
+     *
+     * @throws Exception
+     */
+    public void testCancelledProbe() throws Exception {
+        LoadBalancer balancer = new RoundRobinLoadBalancer(URLS, new EjectionPolicy(1, 50, 1000));
+        Endpoint failing = balancer.getEndpoints().get(0);
+        failing.begin();
+        balancer.onFailure(failing);
+        Thread.sleep(100);
+        for (int i = 0; i < 6; i++) {
+            assertNotSame(failing, balancer.peek());
+        }
+        Selection probe = balancer.reserve(null);
+        assertSame(failing, probe.getEndpoint());
+        assertTrue(probe.isProbe());
+        balancer.onCancel(probe.getEndpoint(), probe.isProbe());
+        assertEquals(0, failing.getOutstanding());
+        probe = balancer.reserve(null);
+        assertSame(failing, probe.getEndpoint());
+        assertTrue(probe.isProbe());
+        balancer.onSuccess(probe.getEndpoint(), 1000);
+        assertFalse(failing.isEjected());
+    }
+
+    /**
+     * Cancelling a request that is not a probe must not release the probe of
+     * another request, so only one probe is sent at a time.
+     *
+     * @throws Exception
+     */
+    public void testCancelledRequestKeepsProbe() throws Exception {
+        LoadBalancer balancer = new RoundRobinLoadBalancer(Arrays.asList("http://server1.myhost.com"), new EjectionPolicy(1, 50, 1000));
+        Endpoint failing = balancer.getEndpoints().get(0);
+        failing.begin();
+        balancer.onFailure(failing);
+        Thread.sleep(100);
+        Selection probe = balancer.reserve(null);
+        assertTrue(probe.isProbe());
+        // All the endpoints are ejected, so the same endpoint is used
+        Selection other = balancer.reserve(null);
+        assertSame(failing, other.getEndpoint());
+        assertFalse(other.isProbe());
+        balancer.onCancel(other.getEndpoint(), other.isProbe());
+        other = balancer.reserve(null);
+        assertFalse(other.isProbe());
+        balancer.onCancel(other.getEndpoint(), other.isProbe());
+        balancer.onCancel(probe.getEndpoint(), probe.isProbe());
+        assertTrue(balancer.reserve(null).isProbe());
+    }
+
+    /**
+     * If all the endpoints are ejected, all the endpoints are used.
+     */
+    public void testAllEjected() {
+        LoadBalancer balancer = new RoundRobinLoadBalancer(URLS, new EjectionPolicy(1, 10000, 10000));
+        for (Endpoint endpoint : balancer.getEndpoints()) {
+            endpoint.begin();
+            balancer.onFailure(endpoint);
+            assertTrue(endpoint.isEjected());
+        }
+        Endpoint endpoint = balancer.select();
+        assertNotNull(endpoint);
+        balancer.onCancel(endpoint, false);
+    }
+
+    /**
+     * Excluded endpoint must never be selected and null is returned if there's
+     * no other endpoint.
+     */
+    public void testSelectExcluded() {
+        LoadBalancer balancer = new RoundRobinLoadBalancer(URLS);
+        Endpoint excluded = balancer.getEndpoints().get(1);
+        for (int i = 0; i < 6; i++) {
+            Endpoint endpoint = balancer.select(excluded);
+            assertNotSame(excluded, endpoint);
+            balancer.onCancel(endpoint, false);
+        }
+        LoadBalancer single = new RoundRobinLoadBalancer(Arrays.asList("http://server1.myhost.com"));
+        assertNull(single.select(single.getEndpoints().get(0)));
+    }
+
+    /**
+     * Ejection time is doubled and limited by the maximum value.
+     */
+    public void testEjectionTime() {
+        EjectionPolicy policy = new EjectionPolicy(3, 100, 1000);
+        assertEquals(100000000L, policy.getEjectionTime(1));
+        assertEquals(200000000L, policy.getEjectionTime(2));
+        assertEquals(800000000L, policy.getEjectionTime(4));
+        assertEquals(1000000000L, policy.getEjectionTime(5));
+        assertEquals(1000000000L, policy.getEjectionTime(100));
+    }
+}
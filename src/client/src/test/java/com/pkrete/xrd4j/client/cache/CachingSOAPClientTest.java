@@ -0,0 +1,134 @@
+package com.pkrete.xrd4j.client.cache;
+
+import com.pkrete.xrd4j.client.SOAPClientImpl;
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.sun.net.httpserver.HttpServer;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for CachingSOAPClient class. The test cases use a local HTTP
+ * server that returns a static listMethods response and counts the requests.
+ *
+ * @author Petteri Kivimäki
+ */
+public class CachingSOAPClientTest extends TestCase {
+
+    private static final String RESPONSE = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header><xrd:client id:objectType=\"SUBSYSTEM\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>MEMBER1</id:memberCode><id:subsystemCode>client</id:subsystemCode></xrd:client><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>COM</id:memberClass><id:memberCode>MEMBER2</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode><id:serviceCode>listMethods</id:serviceCode></xrd:service><xrd:id>ID-1234567890</xrd:id><xrd:protocolVersion>4.0</xrd:protocolVersion></SOAP-ENV:Header><SOAP-ENV:Body><xrd:listMethodsResponse><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>PRI</id:memberClass><id:memberCode>12345-6</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode><id:serviceCode>testService</id:serviceCode><id:serviceVersion>v1</id:serviceVersion></xrd:service></xrd:listMethodsResponse></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+    private final AtomicInteger requests = new AtomicInteger();
+    private HttpServer server;
+    private String url;
+    private CachingSOAPClient client;
+
+    /**
+     * Starts a local HTTP server for the test cases.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/", exchange -> {
+            this.requests.incrementAndGet();
+            try (InputStream is = exchange.getRequestBody()) {
+                while (is.read() != -1) {
+                    // Read the whole request
+                }
+            }
+            byte[] body = RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        this.server.start();
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort() + "/";
+        this.client = new CachingSOAPClient(new SOAPClientImpl());
+    }
+
+    /**
+     * Stops the local HTTP server.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        this.server.stop(0);
+        super.tearDown();
+    }
+
+    /**
+     * The second call with the same consumer and producer is served from the
+     * cache.
+     *
+     * @throws Exception
+     */
+    public void testCacheHit() throws Exception {
+        ServiceResponse<String, List<ProducerMember>> response = this.client.listMethods(request("client", "ID-1"), this.url);
+        assertEquals("testService", response.getResponseData().get(0).getServiceCode());
+        response = this.client.listMethods(request("client", "ID-2"), this.url);
+        assertEquals(1, this.requests.get());
+        assertEquals("ID-2", response.getId());
+        assertNull(response.getSoapMessage());
+        assertEquals("testService", response.getResponseData().get(0).getServiceCode());
+        assertEquals("listMethods", response.getProducer().getServiceCode());
+    }
+
+    /**
+     * Different consumer and meta service have their own cache entries.
+     *
+     * @throws Exception
+     */
+    public void testCacheKey() throws Exception {
+        this.client.listMethods(request("client", "ID-1"), this.url);
+        this.client.listMethods(request("other", "ID-2"), this.url);
+        assertEquals(2, this.requests.get());
+        this.client.allowedMethods(request("client", "ID-3"), this.url);
+        assertEquals(3, this.requests.get());
+        this.client.allowedMethods(request("client", "ID-4"), this.url);
+        assertEquals(3, this.requests.get());
+    }
+
+    /**
+     * Invalidated results are fetched again.
+     *
+     * @throws Exception
+     */
+    public void testInvalidate() throws Exception {
+        ServiceRequest request = request("client", "ID-1");
+        this.client.listMethods(request, this.url);
+        this.client.invalidateServices(request.getConsumer(), request.getProducer());
+        this.client.listMethods(request("client", "ID-2"), this.url);
+        assertEquals(2, this.requests.get());
+        this.client.invalidateServices(request.getProducer());
+        this.client.listMethods(request("client", "ID-3"), this.url);
+        assertEquals(3, this.requests.get());
+        this.client.invalidateAll();
+        this.client.listMethods(request("client", "ID-4"), this.url);
+        assertEquals(4, this.requests.get());
+    }
+
+    /**
+     * Builds a new listMethods request.
+     *
+     * @param subsystem subsystem code of the consumer
+     * @param id message id
+     * @return new request
+     * @throws Exception
+     */
+    private static ServiceRequest request(String subsystem, String id) throws Exception {
+        ConsumerMember consumer = new ConsumerMember("FI", "GOV", "MEMBER1", subsystem);
+        ProducerMember producer = new ProducerMember("FI", "COM", "MEMBER2", "subsystem", "getData");
+        return new ServiceRequest(consumer, producer, id);
+    }
+}
@@ -0,0 +1,148 @@
+package com.pkrete.xrd4j.client.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for RefreshingCache class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class RefreshingCacheTest extends TestCase {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final AtomicBoolean failing = new AtomicBoolean();
+    private ExecutorService executor;
+
+    /**
+     * Creates an executor for the background refresh.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.executor = Executors.newSingleThreadExecutor();
+    }
+
+    /**
+     * Shuts down the executor.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        this.executor.shutdownNow();
+        super.tearDown();
+    }
+
+    /**
+     * Loader that returns the key and the number of loads, and sleeps a while
+     * to simulate a slow security server.
+     *
+     * @param key key to be loaded
+     * @return loaded value
+     */
+    private String load(String key) {
+        try {
+            Thread.sleep(50);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (this.failing.get()) {
+            throw new IllegalStateException("Loading failed");
+        }
+        return key + this.loads.incrementAndGet();
+    }
+
+    /**
+     * Fresh value is returned from the cache.
+     */
+    public void testCacheHit() {
+        RefreshingCache<String, String> cache = new RefreshingCache<>(this::load, 10000, 5000, this.executor);
+        assertEquals("a1", cache.get("a"));
+        assertEquals("a1", cache.get("a"));
+        assertEquals("b2", cache.get("b"));
+        assertEquals(2, this.loads.get());
+        cache.invalidate("a");
+        assertEquals("a3", cache.get("a"));
+    }
+
+    /**
+     * Concurrent loads of the same key are collapsed into one.
+     *
+     * @throws Exception
+     */
+    public void testCollapse() throws Exception {
+        final RefreshingCache<String, String> cache = new RefreshingCache<>(this::load, 10000, 5000, this.executor);
+        final List<String> results = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            threads.add(new Thread(() -> {
+                String value = cache.get("a");
+                synchronized (results) {
+                    results.add(value);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(1, this.loads.get());
+        for (String result : results) {
+            assertEquals("a1", result);
+        }
+    }
+
+    /**
+     * Old value is returned while the value is refreshed in the background.
+     *
+     * @throws Exception
+     */
+    public void testRefreshAhead() throws Exception {
+        RefreshingCache<String, String> cache = new RefreshingCache<>(this::load, 10000, 100, this.executor);
+        assertEquals("a1", cache.get("a"));
+        Thread.sleep(150);
+        assertEquals("a1", cache.get("a"));
+        Thread.sleep(150);
+        assertEquals(2, this.loads.get());
+        assertEquals("a2", cache.get("a"));
+    }
+
+    /**
+     * Expired value is returned if loading fails.
+     *
+     * @throws Exception
+     */
+    public void testStaleOnFailure() throws Exception {
+        RefreshingCache<String, String> cache = new RefreshingCache<>(this::load, 100, 100, this.executor);
+        assertEquals("a1", cache.get("a"));
+        this.failing.set(true);
+        Thread.sleep(150);
+        assertEquals("a1", cache.get("a"));
+        this.failing.set(false);
+        assertEquals("a2", cache.get("a"));
+    }
+
+    /**
+     * Exception is rethrown if loading fails and there's no previous value.
+     */
+    public void testFailureWithoutValue() {
+        RefreshingCache<String, String> cache = new RefreshingCache<>(this::load, 100, 100, this.executor);
+        this.failing.set(true);
+        try {
+            cache.get("a");
+            fail("Should not reach this");
+        } catch (IllegalStateException ex) {
+            assertEquals("Loading failed", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.pkrete.xrd4j.client.deserializer;
+
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.pkrete.xrd4j.common.util.SOAPHelper;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.soap.Node;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for AbstractStreamingResponseDeserializer class. The results of
+ * the streaming deserializer are compared to the results of the DOM based
+ * AbstractResponseDeserializer.
+ *
+ * @author Petteri Kivimäki
+ */
+public class StreamingResponseDeserializerTest extends TestCase {
+
+    private static final String RESPONSE = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header><xrd:client id:objectType=\"SUBSYSTEM\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>MEMBER1</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode></xrd:client><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>COM</id:memberClass><id:memberCode>MEMBER2</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode><id:serviceCode>getRandom</id:serviceCode><id:serviceVersion>v1</id:serviceVersion></xrd:service><xrd:userId>EE1234567890</xrd:userId><xrd:id>ID-1234567890</xrd:id><xrd:protocolVersion>4.0</xrd:protocolVersion><xrd:requestHash algorithmId=\"SHA-512\">ZPbWPAOcJxzE81EmSk//R3DUQtqwMcuMMF9tsccJypdNcukzICQtlhhr3a/bTmexDrn8e/BrBVyl2t0ni/cUvw==</xrd:requestHash></SOAP-ENV:Header><SOAP-ENV:Body><ns1:getRandomResponse xmlns:ns1=\"http://producer.x-road.ee\"><request><data>1234567890</data></request><response><data>9876543210</data></response></ns1:getRandomResponse></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+    private static final String RESPONSE_WITHOUT_WRAPPERS = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header><xrd:client id:objectType=\"SUBSYSTEM\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>MEMBER1</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode></xrd:client><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>COM</id:memberClass><id:memberCode>MEMBER2</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode><id:serviceCode>getRandom</id:serviceCode><id:serviceVersion>v1</id:serviceVersion></xrd:service><xrd:userId>EE1234567890</xrd:userId><xrd:id>ID-1234567890</xrd:id><xrd:protocolVersion>4.0</xrd:protocolVersion><xrd:requestHash algorithmId=\"SHA-512\">ZPbWPAOcJxzE81EmSk//R3DUQtqwMcuMMF9tsccJypdNcukzICQtlhhr3a/bTmexDrn8e/BrBVyl2t0ni/cUvw==</xrd:requestHash></SOAP-ENV:Header><SOAP-ENV:Body><ns1:getRandomResponse xmlns:ns1=\"http://producer.x-road.ee\"><data>9876543210</data></ns1:getRandomResponse></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+    private static final String RESPONSE_SECURITY_SERVER = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header><xrd:client id:objectType=\"MEMBER\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>MEMBER1</id:memberCode></xrd:client><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>COM</id:memberClass><id:memberCode>MEMBER2</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode><id:serviceCode>getRandom</id:serviceCode></xrd:service><xrd:securityServer><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>MEMBER1</id:memberCode><id:serverCode>server1</id:serverCode></xrd:securityServer><xrd:userId>EE1234567890</xrd:userId><xrd:id>ID-1234567890</xrd:id><xrd:protocolVersion>4.0</xrd:protocolVersion><xrd:requestHash algorithmId=\"SHA-512\">ZPbWPAOcJxzE81EmSk//R3DUQtqwMcuMMF9tsccJypdNcukzICQtlhhr3a/bTmexDrn8e/BrBVyl2t0ni/cUvw==</xrd:requestHash></SOAP-ENV:Header><SOAP-ENV:Body><ns1:getRandomResponse xmlns:ns1=\"http://producer.x-road.ee\"><request><data>1234567890</data></request><response><data>9876543210</data></response></ns1:getRandomResponse></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+    private static final String FAULT = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header><xrd:client id:objectType=\"SUBSYSTEM\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>MEMBER1</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode></xrd:client><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>COM</id:memberClass><id:memberCode>MEMBER2</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode><id:serviceCode>getRandom</id:serviceCode><id:serviceVersion>v1</id:serviceVersion></xrd:service><xrd:id>ID-1234567890</xrd:id><xrd:protocolVersion>4.0</xrd:protocolVersion></SOAP-ENV:Header><SOAP-ENV:Body><SOAP-ENV:Fault><faultcode>fault code</faultcode><faultstring>fault string</faultstring><faultactor>fault actor</faultactor><detail>fault details</detail></SOAP-ENV:Fault></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+    private static final String FAULT_WITHOUT_HEADER = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header /><SOAP-ENV:Body><SOAP-ENV:Fault><faultcode>fault code</faultcode><faultstring>fault string</faultstring><faultactor>fault actor</faultactor><detail>fault details</detail></SOAP-ENV:Fault></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+    private static final String FAULT_DETAIL_CHILDREN = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header /><SOAP-ENV:Body><SOAP-ENV:Fault><faultCode>fault code</faultCode><faultString>fault string</faultString><faultActor>fault actor</faultActor><detail><order>order element</order><confirmation>confirmation element</confirmation></detail></SOAP-ENV:Fault></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+    private static final String NON_TECH_ERROR = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header><xrd:client id:objectType=\"SUBSYSTEM\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>MEMBER1</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode></xrd:client><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>COM</id:memberClass><id:memberCode>MEMBER2</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode><id:serviceCode>getRandom</id:serviceCode><id:serviceVersion>v1</id:serviceVersion></xrd:service><xrd:id>ID-1234567890</xrd:id><xrd:protocolVersion>5.0</xrd:protocolVersion></SOAP-ENV:Header><SOAP-ENV:Body><ns1:getRandomResponse xmlns:ns1=\"http://producer.x-road.ee\"><request><data>1234567890</data></request><response><faultCode>fault code</faultCode><faultString>fault string</faultString></response></ns1:getRandomResponse></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+
+    /**
+     * Response with "request" and "response" wrappers.
+     *
+     * @throws SOAPException
+     */
+    public void testResponseWithWrappers() throws SOAPException {
+        ServiceResponse<String, String> response = this.assertSameResult(RESPONSE, "*", true);
+        assertEquals("1234567890", response.getRequestData());
+        assertEquals("9876543210", response.getResponseData());
+        assertEquals("SHA-512", response.getRequestHashAlgorithm());
+        assertEquals("EE1234567890", response.getUserId());
+        assertEquals("http://producer.x-road.ee", response.getProducer().getNamespaceUrl());
+        assertEquals("ns1", response.getProducer().getNamespacePrefix());
+        assertNull(response.getSoapMessage());
+    }
+
+    /**
+     * Response without "request" and "response" wrappers.
+     *
+     * @throws SOAPException
+     */
+    public void testResponseWithoutWrappers() throws SOAPException {
+        ServiceResponse<String, String> response = this.assertSameResult(RESPONSE_WITHOUT_WRAPPERS, "*", false);
+        assertNull(response.getRequestData());
+        assertEquals("9876543210", response.getResponseData());
+    }
+
+    /**
+     * Response that contains security server in the header.
+     *
+     * @throws SOAPException
+     */
+    public void testResponseWithSecurityServer() throws SOAPException {
+        ServiceResponse<String, String> response = this.assertSameResult(RESPONSE_SECURITY_SERVER, "http://producer.x-road.ee", true);
+        assertEquals("server1", response.getSecurityServer().getServerCode());
+        assertEquals("9876543210", response.getResponseData());
+    }
+
+    /**
+     * Producer namespace doesn't match the response element.
+     *
+     * @throws SOAPException
+     */
+    public void testWrongNamespace() throws SOAPException {
+        ServiceResponse<String, String> response = this.assertSameResult(RESPONSE, "http://foo.com", true);
+        assertNull(response.getRequestData());
+        assertNull(response.getResponseData());
+        assertNull(response.getErrorMessage());
+    }
+
+    /**
+     * Standard SOAP fault.
+     *
+     * @throws SOAPException
+     */
+    public void testSOAPFault() throws SOAPException {
+        ServiceResponse<String, String> response = this.assertSameResult(FAULT, "*", true);
+        assertEquals("fault code", response.getErrorMessage().getFaultCode());
+        assertEquals("fault details", response.getErrorMessage().getDetail());
+    }
+
+    /**
+     * Standard SOAP fault with an empty header.
+     *
+     * @throws SOAPException
+     */
+    public void testSOAPFaultWithoutHeader() throws SOAPException {
+        ServiceResponse<String, String> response = this.assertSameResult(FAULT_WITHOUT_HEADER, "*", true);
+        assertNull(response.getConsumer());
+        assertNull(response.getProducer());
+        assertEquals("fault actor", response.getErrorMessage().getFaultActor());
+    }
+
+    /**
+     * Standard SOAP fault whose detail element has children.
+     *
+     * @throws SOAPException
+     */
+    public void testSOAPFaultDetailChildren() throws SOAPException {
+        ServiceResponse<String, String> response = this.assertSameResult(FAULT_DETAIL_CHILDREN, "*", true);
+        assertEquals("order elementconfirmation element", response.getErrorMessage().getDetail());
+    }
+
+    /**
+     * Non-technical error message inside the response element.
+     *
+     * @throws SOAPException
+     */
+    public void testNonTechnicalError() throws SOAPException {
+        ServiceResponse<String, String> response = this.assertSameResult(NON_TECH_ERROR, "*", true);
+        assertEquals("1234567890", response.getRequestData());
+        assertNull(response.getResponseData());
+        assertEquals("fault code", response.getErrorMessage().getFaultCode());
+        assertEquals("fault string", response.getErrorMessage().getFaultString());
+    }
+
+    /**
+     * Invalid XML. Null must be returned.
+     */
+    public void testInvalidXml() {
+        assertNull(new TestStreamingDeserializer().deserialize(toStream("<SOAP-ENV:Envelope>")));
+    }
+
+    /**
+     * Large response that's processed incrementally. Only the first item is
+     * read by the subclass and the rest of the response is skipped.
+     */
+    public void testLargeResponse() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            builder.append("\n  <item><data>").append(i).append("</data></item>");
+        }
+        String soap = RESPONSE.replace("<response><data>9876543210</data></response>", "<response>" + builder.toString() + "\n</response>");
+        ItemCountDeserializer deserializer = new ItemCountDeserializer();
+        ServiceResponse<String, List<String>> response = deserializer.deserialize(toStream(soap));
+        assertEquals("1234567890", response.getRequestData());
+        assertEquals(10000, response.getResponseData().size());
+        assertEquals("0", response.getResponseData().get(0));
+        assertEquals("9999", response.getResponseData().get(9999));
+
+        FirstItemDeserializer first = new FirstItemDeserializer();
+        ServiceResponse<String, String> response2 = first.deserialize(toStream(soap));
+        assertEquals("0", response2.getResponseData());
+        assertEquals("ID-1234567890", response2.getId());
+        assertEquals("http://producer.x-road.ee", response2.getProducer().getNamespaceUrl());
+    }
+
+    /**
+     * Deserializes the given message using both the DOM based deserializer and
+     * the streaming deserializer, and checks that the results are the same.
+     *
+     * @param soap SOAP message as a String
+     * @param ns producer namespace URI
+     * @param wrappers processing wrappers
+     * @return response returned by the streaming deserializer
+     * @throws SOAPException
+     */
+    private ServiceResponse<String, String> assertSameResult(String soap, String ns, boolean wrappers) throws SOAPException {
+        SOAPMessage msg = SOAPHelper.toSOAP(soap);
+        ServiceResponse<String, String> expected = new TestResponseDeserializer().deserialize(msg, ns, wrappers);
+        ServiceResponse<String, String> response = new TestStreamingDeserializer().deserialize(toStream(soap), ns, wrappers);
+        assertNotNull(response);
+        assertEquals(expected.getConsumer(), response.getConsumer());
+        assertEquals(expected.getProducer(), response.getProducer());
+        assertEquals(expected.getSecurityServer(), response.getSecurityServer());
+        if (expected.getProducer() != null) {
+            assertEquals(expected.getProducer().getObjectType(), response.getProducer().getObjectType());
+            assertEquals(expected.getProducer().getNamespaceUrl(), response.getProducer().getNamespaceUrl());
+            assertEquals(expected.getProducer().getNamespacePrefix(), response.getProducer().getNamespacePrefix());
+        }
+        if (expected.getConsumer() != null) {
+            assertEquals(expected.getConsumer().getObjectType(), response.getConsumer().getObjectType());
+        }
+        assertEquals(expected.getId(), response.getId());
+        assertEquals(expected.getUserId(), response.getUserId());
+        assertEquals(expected.getIssue(), response.getIssue());
+        assertEquals(expected.getProtocolVersion(), response.getProtocolVersion());
+        assertEquals(expected.getRequestHash(), response.getRequestHash());
+        assertEquals(expected.getRequestHashAlgorithm(), response.getRequestHashAlgorithm());
+        assertEquals(expected.isProcessingWrappers(), response.isProcessingWrappers());
+        assertEquals(expected.getRequestData(), response.getRequestData());
+        assertEquals(expected.getResponseData(), response.getResponseData());
+        assertEquals(expected.hasError(), response.hasError());
+        if (expected.hasError()) {
+            assertEquals(expected.getErrorMessage().getFaultCode(), response.getErrorMessage().getFaultCode());
+            assertEquals(expected.getErrorMessage().getFaultString(), response.getErrorMessage().getFaultString());
+            assertEquals(expected.getErrorMessage().getFaultActor(), response.getErrorMessage().getFaultActor());
+            assertEquals(expected.getErrorMessage().getDetail(), response.getErrorMessage().getDetail());
+            assertEquals(expected.getErrorMessage().getErrorMessageType(), response.getErrorMessage().getErrorMessageType());
+        }
+        return response;
+    }
+
+    private static ByteArrayInputStream toStream(String soap) {
+        return new ByteArrayInputStream(soap.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads the text of the "data" element that's a sibling of the element
+     * the reader is positioned at.
+     */
+    private static String readData(XMLStreamReader reader) throws XMLStreamException {
+        while (reader.getEventType() != XMLStreamConstants.END_DOCUMENT) {
+            if (reader.isStartElement() && "data".equals(reader.getLocalName())) {
+                return reader.getElementText();
+            }
+            if (reader.isEndElement()) {
+                return null;
+            }
+            reader.next();
+        }
+        return null;
+    }
+
+    private class TestStreamingDeserializer extends AbstractStreamingResponseDeserializer<String, String> {
+
+        @Override
+        protected String deserializeRequestData(XMLStreamReader reader) throws XMLStreamException {
+            return readData(reader);
+        }
+
+        @Override
+        protected String deserializeResponseData(XMLStreamReader reader) throws XMLStreamException {
+            return readData(reader);
+        }
+    }
+
+    private class ItemCountDeserializer extends AbstractStreamingResponseDeserializer<String, List<String>> {
+
+        @Override
+        protected String deserializeRequestData(XMLStreamReader reader) throws XMLStreamException {
+            return readData(reader);
+        }
+
+        @Override
+        protected List<String> deserializeResponseData(XMLStreamReader reader) throws XMLStreamException {
+            List<String> items = new ArrayList<>();
+            while (reader.isStartElement() && "item".equals(reader.getLocalName())) {
+                reader.nextTag();
+                items.add(reader.getElementText());
+                // Item end tag
+                reader.nextTag();
+                // Next item or response end tag
+                reader.nextTag();
+            }
+            return items;
+        }
+    }
+
+    private class FirstItemDeserializer extends AbstractStreamingResponseDeserializer<String, String> {
+
+        @Override
+        protected String deserializeRequestData(XMLStreamReader reader) throws XMLStreamException {
+            return null;
+        }
+
+        @Override
+        protected String deserializeResponseData(XMLStreamReader reader) throws XMLStreamException {
+            reader.nextTag();
+            return reader.getElementText();
+        }
+    }
+
+    private class TestResponseDeserializer extends AbstractResponseDeserializer<String, String> {
+
+        @Override
+        protected String deserializeRequestData(Node requestNode) throws SOAPException {
+            return this.getData(requestNode);
+        }
+
+        @Override
+        protected String deserializeResponseData(Node responseNode, SOAPMessage message) throws SOAPException {
+            return this.getData(responseNode);
+        }
+
+        private String getData(Node node) {
+            for (int i = 0; i < node.getChildNodes().getLength(); i++) {
+                if (node.getChildNodes().item(i).getNodeType() == Node.ELEMENT_NODE
+                        && node.getChildNodes().item(i).getLocalName().equals("data")) {
+                    return node.getChildNodes().item(i).getTextContent();
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.pkrete.xrd4j.client.serializer;
+
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.member.SecurityServer;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.util.Constants;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import javax.xml.soap.SOAPElement;
+import javax.xml.soap.SOAPEnvelope;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for AbstractStreamingServiceRequestSerializer class. The output
+ * of the streaming serializers is compared to the output of the corresponding
+ * DOM based serializers byte by byte.
+ *
+ * @author Petteri Kivimäki
+ */
+public class StreamingServiceRequestSerializerTest extends TestCase {
+
+    /**
+     * Subsystem level service call with default namespace.
+     *
+     * @throws Exception
+     */
+    public void testDefaultNamespace() throws Exception {
+        ServiceRequest<String> request = this.getRequest("", "http://consumer.x-road.ee");
+        request.setUserId("EE1234567890");
+        this.assertSameOutput(request);
+        request.setProcessingWrappers(false);
+        this.assertSameOutput(request);
+    }
+
+    /**
+     * Service call with namespace prefix.
+     *
+     * @throws Exception
+     */
+    public void testNamespacePrefix() throws Exception {
+        ServiceRequest<String> request = this.getRequest("ns1", "http://consumer.x-road.ee");
+        request.setIssue("Issue & <issue>");
+        this.assertSameOutput(request);
+        request.setAddNamespaceToRequest(false);
+        this.assertSameOutput(request);
+    }
+
+    /**
+     * Service call without namespace.
+     *
+     * @throws Exception
+     */
+    public void testNoNamespace() throws Exception {
+        ServiceRequest<String> request = this.getRequest(null, null);
+        this.assertSameOutput(request);
+    }
+
+    /**
+     * Member level service call with security server and special characters
+     * in the request data.
+     *
+     * @throws Exception
+     */
+    public void testSpecialCharacters() throws Exception {
+        ConsumerMember consumer = new ConsumerMember("FI", "GOV", "MEMBER1");
+        ProducerMember producer = new ProducerMember("FI", "COM", "MEMBER2", "getRandom");
+        producer.setNamespacePrefix("ts");
+        producer.setNamespaceUrl("http://consumer.x-road.ee");
+        ServiceRequest<String> request = new ServiceRequest<>(consumer, producer, "1234567890");
+        request.setSecurityServer(new SecurityServer("FI", "COM", "MEMBER2", "server1"));
+        request.setRequestData("Test data. Special characters: äöå <>&\"' €");
+        this.assertSameOutput(request);
+    }
+
+    /**
+     * Meta service calls without request data.
+     *
+     * @throws Exception
+     */
+    public void testMetaServices() throws Exception {
+        ServiceRequest<String> request = this.getRequest(Constants.NS_XRD_PREFIX, Constants.NS_XRD_URL);
+        request.getProducer().setServiceCode(Constants.META_SERVICE_LIST_METHODS);
+        request.getProducer().setServiceVersion(null);
+        request.setRequestData(null);
+        this.assertSameOutput(request, new DefaultServiceRequestSerializer(), new DefaultStreamingServiceRequestSerializer());
+
+        ConsumerMember consumer = new ConsumerMember("FI", "GOV", "MEMBER1", "subsystem");
+        ProducerMember producer = new ProducerMember("FI", "COM", "MEMBER2", Constants.ENV_MONITORING_GET_SECURITY_SERVER_METRICS);
+        producer.setNamespacePrefix(Constants.NS_ENV_MONITORING_PREFIX);
+        producer.setNamespaceUrl(Constants.NS_ENV_MONITORING_URL);
+        request = new ServiceRequest<>(consumer, producer, "1234567890");
+        request.setSecurityServer(new SecurityServer("FI", "COM", "MEMBER2", "server1"));
+        this.assertSameOutput(request, new DefaultServiceRequestSerializer(), new DefaultStreamingServiceRequestSerializer());
+    }
+
+    /**
+     * Builds a new subsystem level request.
+     *
+     * @param prefix namespace prefix of the producer
+     * @param namespace namespace URL of the producer
+     * @return new request
+     * @throws XRd4JException
+     */
+    private ServiceRequest<String> getRequest(String prefix, String namespace) throws XRd4JException {
+        ConsumerMember consumer = new ConsumerMember("FI", "GOV", "MEMBER1", "subsystem");
+        ProducerMember producer = new ProducerMember("FI", "COM", "MEMBER2", "subsystem", "getRandom", "v1");
+        producer.setNamespacePrefix(prefix);
+        producer.setNamespaceUrl(namespace);
+        ServiceRequest<String> request = new ServiceRequest<>(consumer, producer, "1234567890");
+        request.setRequestData("1234567890");
+        return request;
+    }
+
+    /**
+     * Checks that the DOM based and the streaming test serializers produce
+     * identical output.
+     *
+     * @param request request to be serialized
+     * @throws Exception
+     */
+    private void assertSameOutput(ServiceRequest request) throws Exception {
+        this.assertSameOutput(request, new TestRequestSerializer(), new TestStreamingRequestSerializer());
+    }
+
+    /**
+     * Checks that the given serializers produce identical output.
+     *
+     * @param request request to be serialized
+     * @param serializer DOM based serializer
+     * @param streamingSerializer streaming serializer
+     * @throws Exception
+     */
+    private void assertSameOutput(ServiceRequest request, ServiceRequestSerializer serializer, StreamingServiceRequestSerializer streamingSerializer) throws Exception {
+        SOAPMessage msg = serializer.serialize(request);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        msg.writeTo(expected);
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        streamingSerializer.serialize(request, actual);
+        assertEquals(new String(expected.toByteArray(), "UTF-8"), new String(actual.toByteArray(), "UTF-8"));
+        assertTrue(Arrays.equals(expected.toByteArray(), actual.toByteArray()));
+    }
+
+    private class TestRequestSerializer extends AbstractServiceRequestSerializer {
+
+        protected void serializeRequest(ServiceRequest request, SOAPElement soapRequest, SOAPEnvelope envelope) throws SOAPException {
+            SOAPElement data = soapRequest.addChildElement(envelope.createName("data"));
+            data.addTextNode((String) request.getRequestData());
+        }
+    }
+
+    private class TestStreamingRequestSerializer extends AbstractStreamingServiceRequestSerializer {
+
+        protected void serializeRequest(ServiceRequest request, XMLStreamWriter writer) throws XMLStreamException {
+            this.writeElement(request, writer, "data", (String) request.getRequestData());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.pkrete.xrd4j.client.transport;
+
+import com.pkrete.xrd4j.common.util.SOAPHelper;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for PooledHttpTransport class. The test cases use a local HTTP
+ * server that returns a static SOAP response.
+ *
+ * @author Petteri Kivimäki
+ */
+public class PooledHttpTransportTest extends TestCase {
+
+    private static final String REQUEST = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\"><SOAP-ENV:Header/><SOAP-ENV:Body><ns1:getRandom xmlns:ns1=\"http://test.x-road.fi/producer\"><request/></ns1:getRandom></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+    private static final String RESPONSE = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\"><SOAP-ENV:Header/><SOAP-ENV:Body><ns1:getRandomResponse xmlns:ns1=\"http://test.x-road.fi/producer\"><request/><response><data>12345</data></response></ns1:getRandomResponse></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+    private HttpServer server;
+    private Set<Integer> clientPorts;
+    private String url;
+
+    /**
+     * Starts a local HTTP server for the test cases.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.clientPorts = new HashSet<>();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/soap", exchange -> {
+            synchronized (this.clientPorts) {
+                this.clientPorts.add(exchange.getRemoteAddress().getPort());
+            }
+            try (InputStream is = exchange.getRequestBody()) {
+                while (is.read() != -1) {
+                    // Read the whole request
+                }
+            }
+            byte[] body = RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/xml; charset=UTF-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        this.server.createContext("/missing", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        this.server.start();
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the local HTTP server.
+     *
+     * @throws Exception
+     */
+    @Override
+    protected void tearDown() throws Exception {
+        this.server.stop(0);
+        super.tearDown();
+    }
+
+    /**
+     * Send several messages and check that the same connection is reused.
+     *
+     * @throws SOAPException
+     * @throws IOException
+     */
+    public void testConnectionReuse() throws SOAPException, IOException {
+        try (PooledHttpTransport transport = new PooledHttpTransport()) {
+            for (int i = 0; i < 5; i++) {
+                SOAPMessage response = transport.call(SOAPHelper.toSOAP(REQUEST), new URL(this.url + "/soap"));
+                assertEquals(RESPONSE, SOAPHelper.toString(response));
+            }
+            assertEquals(1, this.clientPorts.size());
+            assertEquals(1, transport.getConnectionManager().getTotalStats().getAvailable());
+        }
+    }
+
+    /**
+     * HTTP error status other than 500 must throw SOAPException.
+     *
+     * @throws IOException
+     */
+    public void testBadResponse() throws IOException {
+        try (PooledHttpTransport transport = new PooledHttpTransport(2, 4, 1000)) {
+            transport.call(SOAPHelper.toSOAP(REQUEST), new URL(this.url + "/missing"));
+            fail("Should not reach this");
+        } catch (SOAPException ex) {
+            // OK
+        }
+    }
+}
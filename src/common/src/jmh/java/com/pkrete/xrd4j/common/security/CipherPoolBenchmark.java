@@ -0,0 +1,80 @@
+package com.pkrete.xrd4j.common.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares encrypting a field with a new Cipher per call, which was the
+ * earlier behavior of SymmetricEncrypter, and with the pooled ciphers of
+ * SymmetricEncrypter. Run with "mvn -P benchmark verify" in the common
+ * module.
+ *
+ * @author Petteri Kivimäki
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class CipherPoolBenchmark {
+
+    private static final String TRANSFORMATION = "AES/CBC/PKCS5Padding";
+    private Key key;
+    private byte[] iv;
+    private byte[] plaintext;
+    private SymmetricEncrypter encrypter;
+
+    /**
+     * Creates the key and the encrypter.
+     *
+     * @throws GeneralSecurityException if there's an error
+     */
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        this.key = CryptoHelper.generateAESKey(128);
+        this.iv = CryptoHelper.generateIV();
+        this.plaintext = "EE1234567890 / 1234567890".getBytes(StandardCharsets.UTF_8);
+        this.encrypter = new SymmetricEncrypter(this.key, this.iv);
+    }
+
+    /**
+     * Creates a new Cipher for every call.
+     *
+     * @return encrypted bytes
+     * @throws GeneralSecurityException if there's an error
+     */
+    @Benchmark
+    public byte[] newCipher() throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, this.key, new IvParameterSpec(this.iv));
+        return cipher.doFinal(this.plaintext);
+    }
+
+    /**
+     * Uses the pooled ciphers of SymmetricEncrypter.
+     *
+     * @return encrypted bytes
+     * @throws GeneralSecurityException if there's an error
+     */
+    @Benchmark
+    public byte[] pooledCipher() throws GeneralSecurityException {
+        return this.encrypter.encrypt(this.plaintext);
+    }
+}
@@ -8,9 +8,13 @@ import com.pkrete.xrd4j.common.member.ProducerMember;
 import com.pkrete.xrd4j.common.member.SecurityServer;
 import com.pkrete.xrd4j.common.util.Constants;
 import com.pkrete.xrd4j.common.util.SOAPHelper;
+import java.util.HashMap;
 import java.util.Map;
 import javax.xml.soap.Node;
 import javax.xml.soap.SOAPHeader;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.w3c.dom.NamedNodeMap;
@@ -213,6 +217,250 @@ public abstract class AbstractHeaderDeserializer {
         return protocolVersion;
     }
 
+    /**
+     * Deserializes all the X-Road header fields of the given SOAP header in
+     * one pass. The children of the header are visited only once and the
+     * members are created by the getConsumerMember, getProducerMember and
+     * getSecurityServer methods, so overriding them affects this method
+     * the same way it affects deserializeConsumer, deserializeProducer and
+     * deserializeSecurityServer. The fields
+     * that are missing from the header are left null. Unlike the
+     * deserializeConsumer and deserializeProducer methods this method doesn't
+     * throw XRd4JMissingMemberException, and an invalid securityServer
+     * element is ignored as the security server is not mandatory.
+     *
+     * @param header SOAP header to be deserialized
+     * @return HeaderFields object that holds the header fields
+     * @throws XRd4JException if there's a XRd4J error
+     */
+    protected final HeaderFields deserializeHeaderFields(final SOAPHeader header) throws XRd4JException {
+        logger.debug("Deserialize SOAP header fields in one pass.");
+        HeaderFields fields = new HeaderFields();
+        NodeList children = header.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            org.w3c.dom.Node node = children.item(i);
+            if (node.getNodeType() != Node.ELEMENT_NODE || !Constants.NS_XRD_URL.equals(node.getNamespaceURI())) {
+                continue;
+            }
+            String name = node.getLocalName();
+            logger.trace(ELEMENT_FOUND_LOG_PATTERN, name);
+            if (Constants.NS_XRD_ELEM_CLIENT.equals(name)) {
+                fields.setConsumer(this.getConsumerMember(readIdentifier(node), this.deserializeObjectType(node)));
+            } else if (Constants.NS_XRD_ELEM_SERVICE.equals(name)) {
+                fields.setProducer(this.getProducerMember(readIdentifier(node), this.deserializeObjectType(node)));
+            } else if (Constants.NS_XRD_ELEM_SECURITY_SERVER.equals(name)) {
+                Map<String, String> identifier = readIdentifier(node);
+                try {
+                    fields.setSecurityServer(this.getSecurityServer(identifier));
+                } catch (XRd4JException ex) {
+                    logger.warn("Deserializing \"SecurityServer\" failed.");
+                }
+            } else if (Constants.NS_XRD_ELEM_ID.equals(name)) {
+                fields.setId(node.getTextContent());
+            } else if (Constants.NS_XRD_ELEM_USER_ID.equals(name)) {
+                fields.setUserId(node.getTextContent());
+            } else if (Constants.NS_XRD_ELEM_ISSUE.equals(name)) {
+                fields.setIssue(node.getTextContent());
+            } else if (Constants.NS_XRD_ELEM_REQUEST_HASH.equals(name)) {
+                fields.setRequestHash(node.getTextContent());
+                org.w3c.dom.Node algorithmId = node.getAttributes().getNamedItem(Constants.ATTR_ALGORITHM_ID);
+                fields.setAlgorithmId(algorithmId == null ? null : algorithmId.getNodeValue());
+            } else if (Constants.NS_XRD_ELEM_PROTOCOL_VERSION.equals(name)) {
+                fields.setProtocolVersion(node.getTextContent());
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Deserializes all the X-Road header fields in one pass from the given
+     * XMLStreamReader without building a DOM tree. The reader must be
+     * positioned at the start tag of the SOAP header and it's left at the end
+     * tag of the header. The fields are handled the same way as
+     * deserializeHeaderFields(SOAPHeader) handles them.
+     *
+     * @param reader XMLStreamReader positioned at the SOAP header
+     * @return HeaderFields object that holds the header fields
+     * @throws XMLStreamException if there's an error reading the header
+     * @throws XRd4JException if there's a XRd4J error
+     */
+    protected final HeaderFields deserializeHeaderFields(final XMLStreamReader reader) throws XMLStreamException, XRd4JException {
+        logger.debug("Deserialize SOAP header fields from stream in one pass.");
+        HeaderFields fields = new HeaderFields();
+        while (nextChildElement(reader)) {
+            if (!Constants.NS_XRD_URL.equals(reader.getNamespaceURI())) {
+                readText(reader);
+                continue;
+            }
+            String name = reader.getLocalName();
+            logger.trace(ELEMENT_FOUND_LOG_PATTERN, name);
+            if (Constants.NS_XRD_ELEM_CLIENT.equals(name)) {
+                ObjectType objectType = deserializeObjectType(reader);
+                fields.setConsumer(this.getConsumerMember(readIdentifier(reader), objectType));
+            } else if (Constants.NS_XRD_ELEM_SERVICE.equals(name)) {
+                ObjectType objectType = deserializeObjectType(reader);
+                fields.setProducer(this.getProducerMember(readIdentifier(reader), objectType));
+            } else if (Constants.NS_XRD_ELEM_SECURITY_SERVER.equals(name)) {
+                Map<String, String> identifier = readIdentifier(reader);
+                try {
+                    fields.setSecurityServer(this.getSecurityServer(identifier));
+                } catch (XRd4JException ex) {
+                    logger.warn("Deserializing \"SecurityServer\" failed.");
+                }
+            } else if (Constants.NS_XRD_ELEM_ID.equals(name)) {
+                fields.setId(readText(reader));
+            } else if (Constants.NS_XRD_ELEM_USER_ID.equals(name)) {
+                fields.setUserId(readText(reader));
+            } else if (Constants.NS_XRD_ELEM_ISSUE.equals(name)) {
+                fields.setIssue(readText(reader));
+            } else if (Constants.NS_XRD_ELEM_REQUEST_HASH.equals(name)) {
+                fields.setAlgorithmId(reader.getAttributeValue(null, Constants.ATTR_ALGORITHM_ID));
+                fields.setRequestHash(readText(reader));
+            } else if (Constants.NS_XRD_ELEM_PROTOCOL_VERSION.equals(name)) {
+                fields.setProtocolVersion(readText(reader));
+            } else {
+                readText(reader);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Moves the given reader to the start tag of the next child element of
+     * the current element. If there are no more child elements, the reader
+     * is left at the end tag of the current element.
+     *
+     * @param reader XMLStreamReader positioned inside an element
+     * @return true if a child element was found; otherwise false
+     * @throws XMLStreamException if there's an error reading the stream
+     */
+    private static boolean nextChildElement(final XMLStreamReader reader) throws XMLStreamException {
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                return true;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the text content of the element that the given reader is
+     * positioned at, including the text of all its descendants. After
+     * calling this method the reader is positioned at the end tag of the
+     * element.
+     *
+     * @param reader XMLStreamReader positioned at a start tag
+     * @return text content of the element
+     * @throws XMLStreamException if there's an error reading the stream
+     */
+    private static String readText(final XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int level = 1;
+        while (level > 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                level++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                level--;
+            } else if (reader.hasText()) {
+                text.append(reader.getText());
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Reads the identifier elements that are the children of the element that
+     * the given reader is positioned at. The values are handled the same way
+     * as readIdentifier(Node) handles them. After calling this method the
+     * reader is positioned at the end tag of the element.
+     *
+     * @param reader XMLStreamReader positioned at client, service or
+     * securityServer element
+     * @return Map that holds the values of the identifier elements
+     * @throws XMLStreamException if there's an error reading the stream
+     */
+    private static Map<String, String> readIdentifier(final XMLStreamReader reader) throws XMLStreamException {
+        Map<String, String> identifier = new HashMap<>();
+        while (nextChildElement(reader)) {
+            String name = reader.getLocalName();
+            boolean hasChildNodes = false;
+            StringBuilder text = new StringBuilder();
+            int level = 1;
+            while (level > 0) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    level++;
+                    hasChildNodes = true;
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    level--;
+                } else if (reader.hasText()) {
+                    hasChildNodes = true;
+                    text.append(reader.getText());
+                }
+            }
+            String value = null;
+            if (!hasChildNodes) {
+                value = "";
+            } else if (!text.toString().trim().isEmpty()) {
+                value = text.toString().trim();
+            }
+            if (value != null) {
+                identifier.put(name, value);
+            }
+        }
+        return identifier;
+    }
+
+    /**
+     * Reads the objectType attribute of the element that the given reader is
+     * positioned at.
+     *
+     * @param reader XMLStreamReader positioned at a start tag
+     * @return ObjectType
+     * @throws XRd4JException if the attribute is missing
+     */
+    private static ObjectType deserializeObjectType(final XMLStreamReader reader) throws XRd4JException {
+        String objectType = reader.getAttributeValue(Constants.NS_ID_URL, Constants.NS_ID_ATTR_OBJECT_TYPE);
+        if (objectType == null) {
+            throw new XRd4JException("\"" + Constants.NS_ID_ATTR_OBJECT_TYPE + "\" attribute is missing from \"" + reader.getLocalName() + "\" element.");
+        }
+        return Enum.valueOf(ObjectType.class, objectType.toUpperCase());
+    }
+
+    /**
+     * Reads the identifier elements that are the children of the given node.
+     * The values are handled the same way as SOAPHelper.nodesToMap handles
+     * them: the values are trimmed, an empty element is read as an empty
+     * string and an element that contains only whitespace is ignored.
+     *
+     * @param node client, service or securityServer element
+     * @return Map that holds the values of the identifier elements
+     */
+    private static Map<String, String> readIdentifier(final org.w3c.dom.Node node) {
+        Map<String, String> identifier = new HashMap<>();
+        NodeList children = node.getChildNodes();
+        for (int i = 0; i < children.getLength(); i++) {
+            org.w3c.dom.Node child = children.item(i);
+            if (child.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            String value = null;
+            if (!child.hasChildNodes()) {
+                value = "";
+            } else if (!child.getTextContent().trim().isEmpty()) {
+                value = child.getTextContent().trim();
+            }
+            if (value != null) {
+                identifier.put(child.getLocalName(), value);
+            }
+        }
+        return identifier;
+    }
+
     /**
      * Deserializes the objectType element from the given Node to an ObjectType
      * object.
@@ -242,6 +490,22 @@ public abstract class AbstractHeaderDeserializer {
         String memberClass = this.getMemberClass(map);
         String memberCode = this.getMemberCode(map);
         String subsystemCode = this.getSubsystemCode(map);
+        return this.createConsumerMember(xRoadInstance, memberClass, memberCode, subsystemCode, objectType);
+    }
+
+    /**
+     * Creates a new ConsumerMember object.
+     *
+     * @param xRoadInstance X-Road instance
+     * @param memberClass member class
+     * @param memberCode member code
+     * @param subsystemCode subsystem code
+     * @param objectType ObjectType of the ConsumerMember object
+     * @return new ConsumerMember object
+     * @throws XRd4JException if there's a XRd4J error
+     */
+    private ConsumerMember createConsumerMember(final String xRoadInstance, final String memberClass, final String memberCode,
+            final String subsystemCode, final ObjectType objectType) throws XRd4JException {
         ConsumerMember consumer;
         if (objectType == ObjectType.MEMBER) {
             consumer = new ConsumerMember(xRoadInstance, memberClass, memberCode);
@@ -270,6 +534,25 @@ public abstract class AbstractHeaderDeserializer {
         String subsystemCode = this.getSubsystemCode(map);
         String serviceCode = this.getServiceCode(map);
         String serviceVersion = this.getServiceVersion(map);
+        return this.createProducerMember(xRoadInstance, memberClass, memberCode, subsystemCode, serviceCode, serviceVersion, objectType);
+    }
+
+    /**
+     * Creates a new ProducerMember object.
+     *
+     * @param xRoadInstance X-Road instance
+     * @param memberClass member class
+     * @param memberCode member code
+     * @param subsystemCode subsystem code
+     * @param serviceCode service code
+     * @param serviceVersion service version
+     * @param objectType ObjectType of the ProducerMember object
+     * @return new ProducerMember object
+     * @throws XRd4JException if there's a XRd4J error
+     */
+    private ProducerMember createProducerMember(final String xRoadInstance, final String memberClass, final String memberCode,
+            final String subsystemCode, final String serviceCode, final String serviceVersion, final ObjectType objectType)
+            throws XRd4JException {
         ProducerMember producer;
         if (objectType == ObjectType.SERVICE) {
             producer = new ProducerMember(xRoadInstance, memberClass, memberCode, serviceCode);
@@ -297,6 +580,21 @@ public abstract class AbstractHeaderDeserializer {
         String memberClass = this.getMemberClass(map);
         String memberCode = this.getMemberCode(map);
         String serverCode = this.getServerCode(map);
+        return this.createSecurityServer(xRoadInstance, memberClass, memberCode, serverCode);
+    }
+
+    /**
+     * Creates a new SecurityServer object.
+     *
+     * @param xRoadInstance X-Road instance
+     * @param memberClass member class
+     * @param memberCode member code
+     * @param serverCode server code
+     * @return new SecurityServer object
+     * @throws XRd4JException if there's a XRd4J error
+     */
+    private SecurityServer createSecurityServer(final String xRoadInstance, final String memberClass, final String memberCode,
+            final String serverCode) throws XRd4JException {
         SecurityServer server = new SecurityServer(xRoadInstance, memberClass, memberCode, serverCode);
 
         logger.debug("New SecurityServer was succesfully created : \"{}\"", server.toString());
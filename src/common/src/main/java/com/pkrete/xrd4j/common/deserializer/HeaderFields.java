@@ -0,0 +1,194 @@
+package com.pkrete.xrd4j.common.deserializer;
+
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.member.SecurityServer;
+
+/**
+ * This class holds the X-Road header fields that have been read from a SOAP
+ * header in one pass. The fields that were not present in the header are
+ * null.
+ *
+ * @author Petteri Kivimäki
+ */
+public class HeaderFields {
+
+    private ConsumerMember consumer;
+    private ProducerMember producer;
+    private SecurityServer securityServer;
+    private String id;
+    private String userId;
+    private String issue;
+    private String requestHash;
+    private String algorithmId;
+    private String protocolVersion;
+
+    /**
+     * Constructs and initializes a new HeaderFields object.
+     */
+    HeaderFields() {
+    }
+
+    /**
+     * Returns the consumer member read from the client element.
+     *
+     * @return ConsumerMember or null
+     */
+    public ConsumerMember getConsumer() {
+        return this.consumer;
+    }
+
+    /**
+     * Sets the consumer member.
+     *
+     * @param consumer new value
+     */
+    void setConsumer(ConsumerMember consumer) {
+        this.consumer = consumer;
+    }
+
+    /**
+     * Returns the producer member read from the service element.
+     *
+     * @return ProducerMember or null
+     */
+    public ProducerMember getProducer() {
+        return this.producer;
+    }
+
+    /**
+     * Sets the producer member.
+     *
+     * @param producer new value
+     */
+    void setProducer(ProducerMember producer) {
+        this.producer = producer;
+    }
+
+    /**
+     * Returns the security server read from the securityServer element.
+     *
+     * @return SecurityServer or null
+     */
+    public SecurityServer getSecurityServer() {
+        return this.securityServer;
+    }
+
+    /**
+     * Sets the security server.
+     *
+     * @param securityServer new value
+     */
+    void setSecurityServer(SecurityServer securityServer) {
+        this.securityServer = securityServer;
+    }
+
+    /**
+     * Returns the value of the id element.
+     *
+     * @return id or null
+     */
+    public String getId() {
+        return this.id;
+    }
+
+    /**
+     * Sets the value of the id element.
+     *
+     * @param id new value
+     */
+    void setId(String id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the value of the userId element.
+     *
+     * @return userId or null
+     */
+    public String getUserId() {
+        return this.userId;
+    }
+
+    /**
+     * Sets the value of the userId element.
+     *
+     * @param userId new value
+     */
+    void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    /**
+     * Returns the value of the issue element.
+     *
+     * @return issue or null
+     */
+    public String getIssue() {
+        return this.issue;
+    }
+
+    /**
+     * Sets the value of the issue element.
+     *
+     * @param issue new value
+     */
+    void setIssue(String issue) {
+        this.issue = issue;
+    }
+
+    /**
+     * Returns the value of the requestHash element.
+     *
+     * @return requestHash or null
+     */
+    public String getRequestHash() {
+        return this.requestHash;
+    }
+
+    /**
+     * Sets the value of the requestHash element.
+     *
+     * @param requestHash new value
+     */
+    void setRequestHash(String requestHash) {
+        this.requestHash = requestHash;
+    }
+
+    /**
+     * Returns the value of the algorithmId attribute of the requestHash
+     * element.
+     *
+     * @return algorithmId or null
+     */
+    public String getAlgorithmId() {
+        return this.algorithmId;
+    }
+
+    /**
+     * Sets the value of the algorithmId attribute.
+     *
+     * @param algorithmId new value
+     */
+    void setAlgorithmId(String algorithmId) {
+        this.algorithmId = algorithmId;
+    }
+
+    /**
+     * Returns the value of the protocolVersion element.
+     *
+     * @return protocolVersion or null
+     */
+    public String getProtocolVersion() {
+        return this.protocolVersion;
+    }
+
+    /**
+     * Sets the value of the protocolVersion element.
+     *
+     * @param protocolVersion new value
+     */
+    void setProtocolVersion(String protocolVersion) {
+        this.protocolVersion = protocolVersion;
+    }
+}
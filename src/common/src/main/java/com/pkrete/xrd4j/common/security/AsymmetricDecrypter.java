@@ -28,9 +28,10 @@ public class AsymmetricDecrypter extends AbstractDecrypter implements Decrypter
      */
     private final PrivateKey privateKey;
     /**
-     * Transformation that the cipher uses, e.g. "RSA/ECB/PKCS1Padding"
+     * Pool of ciphers that use the transformation of this object, e.g.
+     * "RSA/ECB/PKCS1Padding"
      */
-    private String transformation;
+    private CipherPool ciphers;
 
     /**
      * Constructs and initializes a new AsymmetricDecrypter object. During the
@@ -52,7 +53,7 @@ public class AsymmetricDecrypter extends AbstractDecrypter implements Decrypter
      */
     public AsymmetricDecrypter(String path, String storePassword, String privateKeyAlias, String keyPassword) throws KeyStoreException, IOException, NoSuchAlgorithmException, CertificateException, UnrecoverableEntryException {
         this.privateKey = CryptoHelper.getPrivateKey(path, storePassword, privateKeyAlias, keyPassword);
-        this.transformation = "RSA/ECB/PKCS1Padding";
+        this.ciphers = new CipherPool("RSA/ECB/PKCS1Padding");
     }
 
     /**
@@ -75,11 +76,12 @@ public class AsymmetricDecrypter extends AbstractDecrypter implements Decrypter
      */
     public AsymmetricDecrypter(String path, String storePassword, String privateKeyAlias, String keyPassword, String transformation) throws KeyStoreException, IOException, NoSuchAlgorithmException, CertificateException, UnrecoverableEntryException {
         this(path, storePassword, privateKeyAlias, keyPassword);
-        this.transformation = transformation;
+        this.ciphers = new CipherPool(transformation);
     }
 
     /**
      * Decrypts the given byte array using "RSA/ECB/PKCS1Padding" cipher.
+     * Cipher objects are reused between calls.
      *
      * @param cipherText byte array to be decrypted
      * @return decrypted byte array
@@ -92,9 +94,13 @@ public class AsymmetricDecrypter extends AbstractDecrypter implements Decrypter
      */
     @Override
     protected byte[] decrypt(byte[] cipherText) throws NoSuchAlgorithmException, InvalidKeyException, InvalidAlgorithmParameterException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException {
-        Cipher cipher = Cipher.getInstance(this.transformation);
-        cipher.init(Cipher.DECRYPT_MODE, privateKey);
-        return cipher.doFinal(cipherText);
+        Cipher cipher = this.ciphers.acquire();
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, this.privateKey);
+            return cipher.doFinal(cipherText);
+        } finally {
+            this.ciphers.release(cipher);
+        }
     }
 
     /**
@@ -27,9 +27,10 @@ public class AsymmetricEncrypter extends AbstractEncrypter implements Encrypter
      */
     private final PublicKey publicKey;
     /**
-     * Transformation that the cipher uses, e.g. "RSA/ECB/PKCS1Padding"
+     * Pool of ciphers that use the transformation of this object, e.g.
+     * "RSA/ECB/PKCS1Padding"
      */
-    private String transformation;
+    private CipherPool ciphers;
 
     /**
      * Constructs and initializes a new AsymmetricEncrypter object. During the
@@ -48,7 +49,7 @@ public class AsymmetricEncrypter extends AbstractEncrypter implements Encrypter
      */
     public AsymmetricEncrypter(String path, String password, String publicKeyAlias) throws KeyStoreException, IOException, NoSuchAlgorithmException, CertificateException {
         this.publicKey = CryptoHelper.getPublicKey(path, password, publicKeyAlias);
-        this.transformation = "RSA/ECB/PKCS1Padding";
+        this.ciphers = new CipherPool("RSA/ECB/PKCS1Padding");
     }
 
     /**
@@ -70,11 +71,12 @@ public class AsymmetricEncrypter extends AbstractEncrypter implements Encrypter
      */
     public AsymmetricEncrypter(String path, String password, String publicKeyAlias, String transformation) throws KeyStoreException, IOException, NoSuchAlgorithmException, CertificateException {
         this(path, password, publicKeyAlias);
-        this.transformation = transformation;
+        this.ciphers = new CipherPool(transformation);
     }
 
     /**
      * Encrypts the given byte array using "RSA/ECB/PKCS1Padding" cipher.
+     * Cipher objects are reused between calls.
      *
      * @param plaintext byte array to be encrypted
      * @return encrypted byte array
@@ -87,9 +89,13 @@ public class AsymmetricEncrypter extends AbstractEncrypter implements Encrypter
      */
     @Override
     protected byte[] encrypt(byte[] plaintext) throws NoSuchAlgorithmException, InvalidKeyException, InvalidAlgorithmParameterException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException {
-        Cipher cipher = Cipher.getInstance(this.transformation);
-        cipher.init(Cipher.ENCRYPT_MODE, this.getPublicKey());
-        return cipher.doFinal(plaintext);
+        Cipher cipher = this.ciphers.acquire();
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, this.publicKey);
+            return cipher.doFinal(plaintext);
+        } finally {
+            this.ciphers.release(cipher);
+        }
     }
 
     /**
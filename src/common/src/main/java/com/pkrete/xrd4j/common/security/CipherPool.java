@@ -0,0 +1,104 @@
+package com.pkrete.xrd4j.common.security;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+
+/**
+ * This class implements a pool of Cipher objects that use the same
+ * transformation. Creating a Cipher requires a provider lookup, so the
+ * ciphers are created only when the pool is empty and they are returned to
+ * the pool after use. A Cipher taken from the pool must always be
+ * initialized before it's used, and it must be used by one thread at a time.
+ * The number of idle ciphers is limited - ciphers that are released to a
+ * full pool are discarded. This class is thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public class CipherPool {
+
+    /**
+     * Default maximum number of idle ciphers.
+     */
+    public static final int DEFAULT_MAX_IDLE = 16;
+    private final String transformation;
+    private final int maxIdle;
+    private final Queue<Cipher> ciphers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idle = new AtomicInteger();
+
+    /**
+     * Constructs and initializes a new CipherPool object.
+     *
+     * @param transformation transformation that the ciphers use
+     */
+    public CipherPool(String transformation) {
+        this(transformation, DEFAULT_MAX_IDLE);
+    }
+
+    /**
+     * Constructs and initializes a new CipherPool object.
+     *
+     * @param transformation transformation that the ciphers use
+     * @param maxIdle maximum number of idle ciphers
+     */
+    public CipherPool(String transformation, int maxIdle) {
+        this.transformation = transformation;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Takes a Cipher from the pool. If the pool is empty, a new Cipher is
+     * created. The Cipher must be initialized before it's used and it should
+     * be released after use.
+     *
+     * @return Cipher object
+     * @throws NoSuchAlgorithmException if there's an error
+     * @throws NoSuchPaddingException if there's an error
+     */
+    public Cipher acquire() throws NoSuchAlgorithmException, NoSuchPaddingException {
+        Cipher cipher = this.ciphers.poll();
+        if (cipher != null) {
+            this.idle.decrementAndGet();
+            return cipher;
+        }
+        return Cipher.getInstance(this.transformation);
+    }
+
+    /**
+     * Returns the given Cipher to the pool. The Cipher must not be used
+     * after it has been released.
+     *
+     * @param cipher Cipher to be released
+     */
+    public void release(Cipher cipher) {
+        if (cipher == null) {
+            return;
+        }
+        if (this.idle.incrementAndGet() <= this.maxIdle) {
+            this.ciphers.offer(cipher);
+        } else {
+            this.idle.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the transformation that the ciphers use.
+     *
+     * @return transformation
+     */
+    public String getTransformation() {
+        return this.transformation;
+    }
+
+    /**
+     * Returns the number of idle ciphers in the pool.
+     *
+     * @return number of idle ciphers
+     */
+    public int getIdle() {
+        return this.idle.get();
+    }
+}
@@ -0,0 +1,205 @@
+package com.pkrete.xrd4j.common.security;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Base64;
+import javax.crypto.Cipher;
+
+/**
+ * This class encrypts and decrypts streams in chunks using an initialized
+ * Cipher. The encrypted data is base 64 encoded while it's written and
+ * decoded while it's read, so the memory usage doesn't depend on the size of
+ * the data. The only exception is authenticated decryption, which must hold
+ * the whole data until the tag has been verified. The streams given as
+ * parameters are not closed.
+ *
+ * @author Petteri Kivimäki
+ */
+final class CipherStreams {
+
+    /**
+     * Size of the chunks that are read from the input stream.
+     */
+    static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Constructs and initializes a new CipherStreams object. Should never be
+     * used.
+     */
+    private CipherStreams() {
+    }
+
+    /**
+     * Reads plain data from the given input stream, encrypts it using the
+     * given cipher and writes the base 64 encoded result to the given output
+     * stream.
+     *
+     * @param cipher Cipher initialized for encryption
+     * @param in input stream that contains the plain data
+     * @param out output stream where the encrypted data is written
+     * @throws IOException if reading, writing or encrypting fails
+     */
+    static void encrypt(Cipher cipher, InputStream in, OutputStream out) throws IOException {
+        encrypt(cipher, null, in, out);
+    }
+
+    /**
+     * Reads plain data from the given input stream, encrypts it using the
+     * given cipher and writes the base 64 encoded result to the given output
+     * stream. The given header, e.g. a nonce, is written before the
+     * encrypted data and it's base 64 encoded too.
+     *
+     * @param cipher Cipher initialized for encryption
+     * @param header bytes written before the encrypted data or null
+     * @param in input stream that contains the plain data
+     * @param out output stream where the encrypted data is written
+     * @throws IOException if reading, writing or encrypting fails
+     */
+    static void encrypt(Cipher cipher, byte[] header, InputStream in, OutputStream out) throws IOException {
+        OutputStream base64 = Base64.getEncoder().wrap(new NonClosingOutputStream(out));
+        if (header != null) {
+            base64.write(header);
+        }
+        transform(cipher, in, base64);
+        // Closing the encoder writes the padding, the output stream is left open
+        base64.close();
+        out.flush();
+    }
+
+    /**
+     * Reads base 64 encoded encrypted data from the given input stream,
+     * decrypts it using the given cipher and writes the result to the given
+     * output stream. Line separators and other characters that are not part
+     * of the base 64 alphabet are ignored.
+     *
+     * @param cipher Cipher initialized for decryption
+     * @param in input stream that contains the encrypted data
+     * @param out output stream where the plain data is written
+     * @throws IOException if reading, writing or decrypting fails
+     */
+    static void decrypt(Cipher cipher, InputStream in, OutputStream out) throws IOException {
+        transform(cipher, decode(in), out);
+        out.flush();
+    }
+
+    /**
+     * Returns an input stream that decodes the base 64 encoded data of the
+     * given input stream. Line separators and other characters that are not
+     * part of the base 64 alphabet are ignored. The returned stream should
+     * not be closed, because closing it closes the given stream.
+     *
+     * @param in input stream that contains base 64 encoded data
+     * @return input stream that returns the decoded data
+     */
+    static InputStream decode(InputStream in) {
+        return Base64.getMimeDecoder().wrap(in);
+    }
+
+    /**
+     * Reads exactly the given number of bytes from the given input stream.
+     *
+     * @param in input stream
+     * @param length number of bytes to read
+     * @return bytes that were read
+     * @throws IOException if reading fails or the stream ends too early
+     */
+    static byte[] readFully(InputStream in, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int read = in.read(bytes, offset, length - offset);
+            if (read == -1) {
+                throw new IOException("Unexpected end of encrypted data.");
+            }
+            offset += read;
+        }
+        return bytes;
+    }
+
+    /**
+     * Passes all the data of the given input stream through the given cipher
+     * one chunk at a time.
+     *
+     * @param cipher initialized Cipher
+     * @param in input stream
+     * @param out output stream
+     * @throws IOException if reading, writing or the cipher operation fails
+     */
+    static void transform(Cipher cipher, InputStream in, OutputStream out) throws IOException {
+        byte[] input = new byte[BUFFER_SIZE];
+        byte[] output = new byte[cipher.getOutputSize(BUFFER_SIZE)];
+        try {
+            int read;
+            while ((read = in.read(input)) != -1) {
+                if (cipher.getOutputSize(read) > output.length) {
+                    output = new byte[cipher.getOutputSize(read)];
+                }
+                int length = cipher.update(input, 0, read, output);
+                out.write(output, 0, length);
+            }
+            byte[] last = cipher.doFinal();
+            out.write(last);
+        } catch (GeneralSecurityException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Reads all the data of the given input stream and passes it through the
+     * given cipher in one operation. This is used for authenticated
+     * decryption: the cipher buffers all the data until doFinal anyway, and
+     * passing it in chunks would make the cipher allocate a larger output
+     * array for every chunk. The memory usage is linear in the size of the
+     * data.
+     *
+     * @param cipher initialized Cipher
+     * @param in input stream
+     * @param out output stream
+     * @throws IOException if reading, writing or the cipher operation fails
+     */
+    static void transformAll(Cipher cipher, InputStream in, OutputStream out) throws IOException {
+        byte[] input = new byte[BUFFER_SIZE];
+        int length = 0;
+        int read;
+        while ((read = in.read(input, length, input.length - length)) != -1) {
+            length += read;
+            if (length == input.length) {
+                input = Arrays.copyOf(input, input.length * 2);
+            }
+        }
+        try {
+            out.write(cipher.doFinal(input, 0, length));
+        } catch (GeneralSecurityException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Output stream that doesn't close the underlying stream.
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+
+        /**
+         * Constructs and initializes a new NonClosingOutputStream object.
+         *
+         * @param out underlying output stream
+         */
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.out.flush();
+        }
+    }
+}
@@ -2,11 +2,9 @@ package com.pkrete.xrd4j.common.security;
 
 import com.pkrete.xrd4j.common.exception.XRd4JException;
 import com.pkrete.xrd4j.common.exception.XRd4JRuntimeException;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.security.InvalidKeyException;
 import java.security.Key;
-import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
@@ -15,7 +13,6 @@ import java.security.SecureRandom;
 import java.security.Signature;
 import java.security.SignatureException;
 import java.security.UnrecoverableEntryException;
-import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.util.Base64;
 import javax.crypto.KeyGenerator;
@@ -31,6 +28,7 @@ import org.slf4j.LoggerFactory;
 public class CryptoHelper {
 
     private static final Logger logger = LoggerFactory.getLogger(CryptoHelper.class);
+    private static final KeyStoreCache keyStores = new KeyStoreCache();
 
     /**
      * No instances if this class should be created.
@@ -186,7 +184,9 @@ public class CryptoHelper {
 
     /**
      * Fetches the public key matching the given alias from the defined key
-     * store.
+     * store. Key stores and keys are cached, and the key store is reloaded
+     * when the file changes. Files ending with ".p12" or ".pfx" are read as
+     * PKCS12 key stores and other files as JKS key stores.
      *
      * @param path absolute path of the trust store file
      * @param password trust store password
@@ -194,12 +194,8 @@ public class CryptoHelper {
      * @return public key with the given alias
      */
     public static PublicKey getPublicKey(String path, String password, String publicKeyAlias) {
-        try (FileInputStream fis = new java.io.FileInputStream(path)) {
-            KeyStore keyStore = KeyStore.getInstance("jks");
-            keyStore.load(fis, password.toCharArray());
-            Certificate cert;
-            cert = keyStore.getCertificate(publicKeyAlias);
-            return cert.getPublicKey();
+        try {
+            return keyStores.getPublicKey(path, password, publicKeyAlias);
         } catch (KeyStoreException | IOException | NoSuchAlgorithmException | CertificateException ex) {
             logger.error(ex.getMessage(), ex);
             throw new XRd4JRuntimeException(ex.getMessage());
@@ -208,7 +204,9 @@ public class CryptoHelper {
 
     /**
      * Fetches the private key matching the given alias from the defined key
-     * store.
+     * store. Key stores and keys are cached, and the key store is reloaded
+     * when the file changes. Files ending with ".p12" or ".pfx" are read as
+     * PKCS12 key stores and other files as JKS key stores.
      *
      * @param path absolute path of the key store file
      * @param storePassword password of the key store
@@ -217,11 +215,8 @@ public class CryptoHelper {
      * @return private key with the given alias
      */
     public static PrivateKey getPrivateKey(String path, String storePassword, String privateKeyAlias, String keyPassword) {
-        try (FileInputStream fis = new java.io.FileInputStream(path)) {
-            KeyStore keyStore = KeyStore.getInstance("jks");
-            keyStore.load(fis, storePassword.toCharArray());
-            KeyStore.PrivateKeyEntry pkEntry = (KeyStore.PrivateKeyEntry) keyStore.getEntry(privateKeyAlias, new KeyStore.PasswordProtection(keyPassword.toCharArray()));
-            return pkEntry.getPrivateKey();
+        try {
+            return keyStores.getPrivateKey(path, storePassword, privateKeyAlias, keyPassword);
         } catch (KeyStoreException | IOException | NoSuchAlgorithmException | CertificateException | UnrecoverableEntryException ex) {
             logger.error(ex.getMessage(), ex);
             throw new XRd4JRuntimeException(ex.getMessage());
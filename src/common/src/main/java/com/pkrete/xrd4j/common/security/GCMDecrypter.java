@@ -0,0 +1,162 @@
+package com.pkrete.xrd4j.common.security;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.GCMParameterSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements decryption of data that has been encrypted using
+ * GCMEncrypter. The nonce is read from the beginning of the encrypted data,
+ * and the authentication tag at the end of the data is verified before the
+ * decrypted data is returned. If the data or the associated data has been
+ * modified, the decryption fails. The same decrypter can be shared between
+ * threads.
+ *
+ * @author Petteri Kivimäki
+ */
+public class GCMDecrypter extends AbstractDecrypter implements StreamingDecrypter {
+
+    private static final Logger logger = LoggerFactory.getLogger(GCMDecrypter.class);
+    private static final int TAG_BYTES = GCMEncrypter.TAG_LENGTH / 8;
+    private final Key key;
+    private final CipherPool ciphers = new CipherPool(GCMEncrypter.TRANSFORMATION);
+
+    /**
+     * Constructs and initializes a new GCMDecrypter object.
+     *
+     * @param key AES key that's used for decryption
+     */
+    public GCMDecrypter(Key key) {
+        this.key = key;
+    }
+
+    /**
+     * Decrypts the given base 64 encoded frame and verifies the given
+     * associated data.
+     *
+     * @param cipherText base 64 encoded nonce, cipher text and tag
+     * @param associatedData associated data or null
+     * @return decrypted string or null if the decryption or verification
+     * fails
+     */
+    public String decrypt(String cipherText, String associatedData) {
+        try {
+            byte[] aad = associatedData == null ? null : associatedData.getBytes(StandardCharsets.UTF_8);
+            return new String(this.decrypt(CryptoHelper.decodeBase64(cipherText), aad), StandardCharsets.UTF_8);
+        } catch (NoSuchAlgorithmException | InvalidKeyException | InvalidAlgorithmParameterException | NoSuchPaddingException | IllegalBlockSizeException | BadPaddingException | IllegalArgumentException ex) {
+            logger.error(ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Decrypts the given frame that doesn't have associated data.
+     *
+     * @param cipherText nonce, cipher text and tag
+     * @return decrypted byte array
+     * @throws NoSuchAlgorithmException if there's an error
+     * @throws InvalidKeyException if there's an error
+     * @throws InvalidAlgorithmParameterException if there's an error
+     * @throws NoSuchPaddingException if there's an error
+     * @throws IllegalBlockSizeException if there's an error
+     * @throws BadPaddingException if there's an error
+     */
+    @Override
+    protected byte[] decrypt(byte[] cipherText) throws NoSuchAlgorithmException, InvalidKeyException, InvalidAlgorithmParameterException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException {
+        return this.decrypt(cipherText, null);
+    }
+
+    /**
+     * Decrypts the given frame and verifies the given associated data.
+     *
+     * @param cipherText nonce, cipher text and tag
+     * @param associatedData associated data or null
+     * @return decrypted byte array
+     * @throws NoSuchAlgorithmException if there's an error
+     * @throws InvalidKeyException if there's an error
+     * @throws InvalidAlgorithmParameterException if there's an error
+     * @throws NoSuchPaddingException if there's an error
+     * @throws IllegalBlockSizeException if the frame is too short
+     * @throws BadPaddingException if the verification fails
+     */
+    public byte[] decrypt(byte[] cipherText, byte[] associatedData) throws NoSuchAlgorithmException, InvalidKeyException, InvalidAlgorithmParameterException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException {
+        if (cipherText.length < GCMEncrypter.NONCE_LENGTH + TAG_BYTES) {
+            throw new IllegalBlockSizeException("Encrypted data is too short.");
+        }
+        Cipher cipher = this.ciphers.acquire();
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, this.key, new GCMParameterSpec(GCMEncrypter.TAG_LENGTH, cipherText, 0, GCMEncrypter.NONCE_LENGTH));
+            if (associatedData != null) {
+                cipher.updateAAD(associatedData);
+            }
+            return cipher.doFinal(cipherText, GCMEncrypter.NONCE_LENGTH, cipherText.length - GCMEncrypter.NONCE_LENGTH);
+        } finally {
+            this.ciphers.release(cipher);
+        }
+    }
+
+    /**
+     * Decrypts the base 64 encoded frame read from the given input stream
+     * without associated data. The streams are not closed.
+     *
+     * @param in input stream that contains the encrypted data
+     * @param out output stream where the plain data is written
+     * @throws IOException if reading, writing, decrypting or verifying fails
+     */
+    @Override
+    public void decrypt(InputStream in, OutputStream out) throws IOException {
+        this.decrypt(in, out, null);
+    }
+
+    /**
+     * Decrypts the base 64 encoded frame read from the given input stream,
+     * verifies the given associated data and writes the plain data to the
+     * given output stream. The data is read in chunks, but the cipher
+     * releases the plain data only after the authentication tag has been
+     * verified, so nothing is written to the output stream if the
+     * verification fails. This means that the whole payload is held in
+     * memory during decryption and the method is not suitable for data that
+     * doesn't fit in memory. The streams are not closed.
+     *
+     * @param in input stream that contains the encrypted data
+     * @param out output stream where the plain data is written
+     * @param associatedData associated data or null
+     * @throws IOException if reading, writing, decrypting or verifying fails
+     */
+    public void decrypt(InputStream in, OutputStream out, byte[] associatedData) throws IOException {
+        InputStream decoded = CipherStreams.decode(in);
+        byte[] nonce = CipherStreams.readFully(decoded, GCMEncrypter.NONCE_LENGTH);
+        Cipher cipher;
+        try {
+            cipher = this.ciphers.acquire();
+        } catch (GeneralSecurityException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, this.key, new GCMParameterSpec(GCMEncrypter.TAG_LENGTH, nonce));
+            if (associatedData != null) {
+                cipher.updateAAD(associatedData);
+            }
+            CipherStreams.transformAll(cipher, decoded, out);
+            out.flush();
+        } catch (GeneralSecurityException ex) {
+            logger.error(ex.getMessage(), ex);
+            throw new IOException(ex.getMessage(), ex);
+        } finally {
+            this.ciphers.release(cipher);
+        }
+    }
+}
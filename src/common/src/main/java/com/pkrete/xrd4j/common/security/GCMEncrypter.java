@@ -0,0 +1,200 @@
+package com.pkrete.xrd4j.common.security;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.GCMParameterSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements authenticated symmetric encryption using
+ * "AES/GCM/NoPadding" cipher. A new random nonce is generated for every
+ * message, so the same encrypter can be used for any number of messages and
+ * it can be shared between threads. The encrypted data is framed as nonce
+ * (12 bytes), cipher text and authentication tag (16 bytes), and the frame
+ * is base 64 encoded. Associated data, e.g. the id of the X-Road message,
+ * can be bound to the encrypted data - the same associated data must then be
+ * given for decryption. Random nonces are safe for up to 2^32 messages per
+ * key. Use GCMDecrypter for decryption.
+ *
+ * @author Petteri Kivimäki
+ */
+public class GCMEncrypter extends AbstractEncrypter implements StreamingEncrypter {
+
+    private static final Logger logger = LoggerFactory.getLogger(GCMEncrypter.class);
+    /**
+     * Transformation that the cipher uses.
+     */
+    public static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    /**
+     * Length of the nonce in bytes.
+     */
+    public static final int NONCE_LENGTH = 12;
+    /**
+     * Length of the authentication tag in bits.
+     */
+    public static final int TAG_LENGTH = 128;
+    private final Key key;
+    private final CipherPool ciphers = new CipherPool(TRANSFORMATION);
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * Constructs and initializes a new GCMEncrypter object.
+     *
+     * @param key AES key that's used for encryption
+     */
+    public GCMEncrypter(Key key) {
+        this.key = key;
+    }
+
+    /**
+     * Encrypts the given string and binds the given associated data to it.
+     * The associated data is not encrypted and it's not included in the
+     * result.
+     *
+     * @param plainText string to be encrypted
+     * @param associatedData associated data or null
+     * @return base 64 encoded nonce, cipher text and tag or null if the
+     * encryption fails
+     */
+    public String encrypt(String plainText, String associatedData) {
+        try {
+            byte[] aad = associatedData == null ? null : associatedData.getBytes(StandardCharsets.UTF_8);
+            return CryptoHelper.encodeBase64(this.encrypt(plainText.getBytes(StandardCharsets.UTF_8), aad));
+        } catch (NoSuchAlgorithmException | InvalidKeyException | InvalidAlgorithmParameterException | NoSuchPaddingException | IllegalBlockSizeException | BadPaddingException ex) {
+            logger.error(ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Encrypts the given byte array without associated data.
+     *
+     * @param plaintext byte array to be encrypted
+     * @return nonce, cipher text and tag
+     * @throws NoSuchAlgorithmException if there's an error
+     * @throws InvalidKeyException if there's an error
+     * @throws InvalidAlgorithmParameterException if there's an error
+     * @throws NoSuchPaddingException if there's an error
+     * @throws IllegalBlockSizeException if there's an error
+     * @throws BadPaddingException if there's an error
+     */
+    @Override
+    protected byte[] encrypt(byte[] plaintext) throws NoSuchAlgorithmException, InvalidKeyException, InvalidAlgorithmParameterException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException {
+        return this.encrypt(plaintext, null);
+    }
+
+    /**
+     * Encrypts the given byte array and binds the given associated data to
+     * it.
+     *
+     * @param plaintext byte array to be encrypted
+     * @param associatedData associated data or null
+     * @return nonce, cipher text and tag
+     * @throws NoSuchAlgorithmException if there's an error
+     * @throws InvalidKeyException if there's an error
+     * @throws InvalidAlgorithmParameterException if there's an error
+     * @throws NoSuchPaddingException if there's an error
+     * @throws IllegalBlockSizeException if there's an error
+     * @throws BadPaddingException if there's an error
+     */
+    public byte[] encrypt(byte[] plaintext, byte[] associatedData) throws NoSuchAlgorithmException, InvalidKeyException, InvalidAlgorithmParameterException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException {
+        byte[] nonce = this.newNonce();
+        Cipher cipher = this.ciphers.acquire();
+        try {
+            this.init(cipher, nonce, associatedData);
+            byte[] result = new byte[NONCE_LENGTH + cipher.getOutputSize(plaintext.length)];
+            System.arraycopy(nonce, 0, result, 0, NONCE_LENGTH);
+            cipher.doFinal(plaintext, 0, plaintext.length, result, NONCE_LENGTH);
+            return result;
+        } catch (ShortBufferException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            this.ciphers.release(cipher);
+        }
+    }
+
+    /**
+     * Encrypts all the data read from the given input stream without
+     * associated data and writes the base 64 encoded frame to the given
+     * output stream. The streams are not closed.
+     *
+     * @param in input stream that contains the plain data
+     * @param out output stream where the encrypted data is written
+     * @throws IOException if reading, writing or encrypting fails
+     */
+    @Override
+    public void encrypt(InputStream in, OutputStream out) throws IOException {
+        this.encrypt(in, out, null);
+    }
+
+    /**
+     * Encrypts all the data read from the given input stream, binds the
+     * given associated data to it and writes the base 64 encoded frame to
+     * the given output stream. The data is processed in chunks. The streams
+     * are not closed.
+     *
+     * @param in input stream that contains the plain data
+     * @param out output stream where the encrypted data is written
+     * @param associatedData associated data or null
+     * @throws IOException if reading, writing or encrypting fails
+     */
+    public void encrypt(InputStream in, OutputStream out, byte[] associatedData) throws IOException {
+        byte[] nonce = this.newNonce();
+        Cipher cipher;
+        try {
+            cipher = this.ciphers.acquire();
+        } catch (GeneralSecurityException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+        try {
+            this.init(cipher, nonce, associatedData);
+            CipherStreams.encrypt(cipher, nonce, in, out);
+        } catch (GeneralSecurityException ex) {
+            logger.error(ex.getMessage(), ex);
+            throw new IOException(ex.getMessage(), ex);
+        } finally {
+            this.ciphers.release(cipher);
+        }
+    }
+
+    /**
+     * Initializes the given cipher for encryption.
+     *
+     * @param cipher Cipher to be initialized
+     * @param nonce nonce of the message
+     * @param associatedData associated data or null
+     * @throws InvalidKeyException if there's an error
+     * @throws InvalidAlgorithmParameterException if there's an error
+     */
+    private void init(Cipher cipher, byte[] nonce, byte[] associatedData) throws InvalidKeyException, InvalidAlgorithmParameterException {
+        cipher.init(Cipher.ENCRYPT_MODE, this.key, new GCMParameterSpec(TAG_LENGTH, nonce));
+        if (associatedData != null) {
+            cipher.updateAAD(associatedData);
+        }
+    }
+
+    /**
+     * Generates a new random nonce.
+     *
+     * @return nonce
+     */
+    private byte[] newNonce() {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        this.random.nextBytes(nonce);
+        return nonce;
+    }
+}
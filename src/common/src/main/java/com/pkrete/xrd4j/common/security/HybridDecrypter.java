@@ -0,0 +1,161 @@
+package com.pkrete.xrd4j.common.security;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import com.pkrete.xrd4j.common.util.LruCache;
+import java.util.Arrays;
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements decryption of data that has been encrypted using
+ * HybridEncrypter. The wrapped session key is read from the beginning of the
+ * data and unwrapped using the private key of the recipient. Unwrapped
+ * session keys are cached by the wrapped key, so the private key is used
+ * only once per session key. A session key is cached only after a message
+ * has been decrypted and verified using it. The least recently used keys
+ * are removed when the cache is full. This class is thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public class HybridDecrypter extends AbstractDecrypter implements Decrypter {
+
+    private static final Logger logger = LoggerFactory.getLogger(HybridDecrypter.class);
+    /**
+     * Default maximum number of cached session keys.
+     */
+    public static final int DEFAULT_CACHE_SIZE = 100;
+    private final PrivateKey privateKey;
+    private final CipherPool ciphers;
+    private final LruCache<WrappedKey, GCMDecrypter> cache;
+
+    /**
+     * Constructs and initializes a new HybridDecrypter object using the
+     * default cache size and transformation.
+     *
+     * @param privateKey private key of the recipient
+     */
+    public HybridDecrypter(PrivateKey privateKey) {
+        this(privateKey, DEFAULT_CACHE_SIZE, HybridEncrypter.DEFAULT_TRANSFORMATION);
+    }
+
+    /**
+     * Constructs and initializes a new HybridDecrypter object.
+     *
+     * @param privateKey private key of the recipient
+     * @param cacheSize maximum number of cached session keys
+     * @param transformation transformation that's used for unwrapping the
+     * session keys
+     */
+    public HybridDecrypter(PrivateKey privateKey, int cacheSize, String transformation) {
+        this.privateKey = privateKey;
+        this.ciphers = new CipherPool(transformation);
+        this.cache = new LruCache<>(cacheSize);
+    }
+
+    /**
+     * Decrypts the given frame that contains the wrapped session key and the
+     * GCM frame.
+     *
+     * @param cipherText wrapped session key and GCM frame
+     * @return decrypted byte array
+     * @throws NoSuchAlgorithmException if there's an error
+     * @throws InvalidKeyException if there's an error
+     * @throws InvalidAlgorithmParameterException if there's an error
+     * @throws NoSuchPaddingException if there's an error
+     * @throws IllegalBlockSizeException if the frame is invalid
+     * @throws BadPaddingException if the verification fails
+     */
+    @Override
+    protected byte[] decrypt(byte[] cipherText) throws NoSuchAlgorithmException, InvalidKeyException, InvalidAlgorithmParameterException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException {
+        if (cipherText.length < 2) {
+            throw new IllegalBlockSizeException("Encrypted data is too short.");
+        }
+        int length = ((cipherText[0] & 0xff) << 8) | (cipherText[1] & 0xff);
+        if (cipherText.length < 2 + length) {
+            throw new IllegalBlockSizeException("Encrypted data is too short.");
+        }
+        WrappedKey wrappedKey = new WrappedKey(Arrays.copyOfRange(cipherText, 2, 2 + length));
+        byte[] frame = Arrays.copyOfRange(cipherText, 2 + length, cipherText.length);
+        GCMDecrypter decrypter = this.cache.get(wrappedKey);
+        if (decrypter != null) {
+            return decrypter.decrypt(frame, wrappedKey.bytes);
+        }
+        decrypter = new GCMDecrypter(this.unwrap(wrappedKey.bytes));
+        byte[] plaintext = decrypter.decrypt(frame, wrappedKey.bytes);
+        this.cache.put(wrappedKey, decrypter);
+        logger.debug("New session key was added to the cache.");
+        return plaintext;
+    }
+
+    /**
+     * Returns the number of cached session keys.
+     *
+     * @return number of cached session keys
+     */
+    public int getCacheSize() {
+        return this.cache.size();
+    }
+
+    /**
+     * Unwraps the given session key using the private key.
+     *
+     * @param wrappedKey wrapped session key
+     * @return session key
+     * @throws NoSuchAlgorithmException if there's an error
+     * @throws InvalidKeyException if there's an error
+     * @throws NoSuchPaddingException if there's an error
+     */
+    private Key unwrap(byte[] wrappedKey) throws NoSuchAlgorithmException, InvalidKeyException, NoSuchPaddingException {
+        Cipher cipher = this.ciphers.acquire();
+        try {
+            cipher.init(Cipher.UNWRAP_MODE, this.privateKey);
+            return cipher.unwrap(wrappedKey, "AES", Cipher.SECRET_KEY);
+        } finally {
+            this.ciphers.release(cipher);
+        }
+    }
+
+    /**
+     * Cache key that holds the bytes of a wrapped session key.
+     */
+    private static final class WrappedKey {
+
+        private final byte[] bytes;
+        private final int hash;
+
+        /**
+         * Constructs and initializes a new WrappedKey object.
+         *
+         * @param bytes wrapped session key
+         */
+        WrappedKey(byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof WrappedKey)) {
+                return false;
+            }
+            WrappedKey other = (WrappedKey) o;
+            return this.hash == other.hash && Arrays.equals(this.bytes, other.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+}
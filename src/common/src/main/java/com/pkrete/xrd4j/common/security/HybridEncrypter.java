@@ -0,0 +1,217 @@
+package com.pkrete.xrd4j.common.security;
+
+import java.nio.ByteBuffer;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.PublicKey;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class implements hybrid encryption for one recipient. The data is
+ * encrypted using an AES session key and GCMEncrypter, and the session key
+ * is wrapped using the public key of the recipient. The wrapped session key
+ * is reused until the maximum number of messages or the maximum age is
+ * reached, so the expensive asymmetric operation is done only when a new
+ * session key is created. The encrypted data is framed as the length of the
+ * wrapped key (2 bytes), the wrapped key and the GCM frame, and the frame is
+ * base 64 encoded. The wrapped key is bound to the GCM frame as associated
+ * data. Use HybridDecrypter for decryption. This class is thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public class HybridEncrypter extends AbstractEncrypter implements Encrypter {
+
+    private static final Logger logger = LoggerFactory.getLogger(HybridEncrypter.class);
+    /**
+     * Default transformation that's used for wrapping the session key.
+     */
+    public static final String DEFAULT_TRANSFORMATION = "RSA/ECB/OAEPWithSHA-256AndMGF1Padding";
+    /**
+     * PKCS #1 v1.5 transformation for recipients that don't support OAEP.
+     * It's vulnerable to padding oracle attacks, so it should be used only
+     * when it's required.
+     */
+    public static final String PKCS1_TRANSFORMATION = "RSA/ECB/PKCS1Padding";
+    /**
+     * Default maximum number of messages per session key.
+     */
+    public static final long DEFAULT_MAX_MESSAGES = 10000;
+    /**
+     * Default maximum age of a session key in milliseconds.
+     */
+    public static final long DEFAULT_MAX_AGE = 3600000;
+    /**
+     * Length of the session key in bits.
+     */
+    public static final int SESSION_KEY_LENGTH = 128;
+    private final PublicKey publicKey;
+    private final CipherPool ciphers;
+    private final long maxMessages;
+    private final long maxAge;
+    private volatile SessionKey session;
+
+    /**
+     * Constructs and initializes a new HybridEncrypter object using the
+     * default limits and transformation.
+     *
+     * @param publicKey public key of the recipient
+     */
+    public HybridEncrypter(PublicKey publicKey) {
+        this(publicKey, DEFAULT_MAX_MESSAGES, DEFAULT_MAX_AGE);
+    }
+
+    /**
+     * Constructs and initializes a new HybridEncrypter object using the
+     * default transformation.
+     *
+     * @param publicKey public key of the recipient
+     * @param maxMessages maximum number of messages per session key
+     * @param maxAge maximum age of a session key in milliseconds
+     */
+    public HybridEncrypter(PublicKey publicKey, long maxMessages, long maxAge) {
+        this(publicKey, maxMessages, maxAge, DEFAULT_TRANSFORMATION);
+    }
+
+    /**
+     * Constructs and initializes a new HybridEncrypter object.
+     *
+     * @param publicKey public key of the recipient
+     * @param maxMessages maximum number of messages per session key
+     * @param maxAge maximum age of a session key in milliseconds
+     * @param transformation transformation that's used for wrapping the
+     * session key
+     */
+    public HybridEncrypter(PublicKey publicKey, long maxMessages, long maxAge, String transformation) {
+        this.publicKey = publicKey;
+        this.maxMessages = maxMessages;
+        this.maxAge = maxAge;
+        this.ciphers = new CipherPool(transformation);
+    }
+
+    /**
+     * Encrypts the given byte array using the current session key.
+     *
+     * @param plaintext byte array to be encrypted
+     * @return wrapped session key and GCM frame
+     * @throws NoSuchAlgorithmException if there's an error
+     * @throws InvalidKeyException if there's an error
+     * @throws InvalidAlgorithmParameterException if there's an error
+     * @throws NoSuchPaddingException if there's an error
+     * @throws IllegalBlockSizeException if there's an error
+     * @throws BadPaddingException if there's an error
+     */
+    @Override
+    protected byte[] encrypt(byte[] plaintext) throws NoSuchAlgorithmException, InvalidKeyException, InvalidAlgorithmParameterException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException {
+        SessionKey current = this.getSession();
+        byte[] encrypted = current.encrypter.encrypt(plaintext, current.wrappedKey);
+        ByteBuffer frame = ByteBuffer.allocate(2 + current.wrappedKey.length + encrypted.length);
+        frame.putShort((short) current.wrappedKey.length);
+        frame.put(current.wrappedKey);
+        frame.put(encrypted);
+        return frame.array();
+    }
+
+    /**
+     * Discards the current session key. A new session key is created for
+     * the next message.
+     */
+    public void rotate() {
+        this.session = null;
+        logger.debug("Session key was discarded.");
+    }
+
+    /**
+     * Returns a session key that can be used for one more message. If the
+     * current session key has expired, a new one is created.
+     *
+     * @return session key
+     * @throws NoSuchAlgorithmException if there's an error
+     * @throws InvalidKeyException if there's an error
+     * @throws NoSuchPaddingException if there's an error
+     * @throws IllegalBlockSizeException if there's an error
+     */
+    private SessionKey getSession() throws NoSuchAlgorithmException, InvalidKeyException, NoSuchPaddingException, IllegalBlockSizeException {
+        SessionKey current = this.session;
+        if (current != null && current.tryUse(this.maxMessages, this.maxAge)) {
+            return current;
+        }
+        synchronized (this) {
+            current = this.session;
+            if (current != null && current.tryUse(this.maxMessages, this.maxAge)) {
+                return current;
+            }
+            current = this.newSession();
+            current.tryUse(this.maxMessages, this.maxAge);
+            this.session = current;
+            return current;
+        }
+    }
+
+    /**
+     * Creates a new session key and wraps it using the public key of the
+     * recipient.
+     *
+     * @return new session key
+     * @throws NoSuchAlgorithmException if there's an error
+     * @throws InvalidKeyException if there's an error
+     * @throws NoSuchPaddingException if there's an error
+     * @throws IllegalBlockSizeException if there's an error
+     */
+    private SessionKey newSession() throws NoSuchAlgorithmException, InvalidKeyException, NoSuchPaddingException, IllegalBlockSizeException {
+        Key key = CryptoHelper.generateAESKey(SESSION_KEY_LENGTH);
+        Cipher cipher = this.ciphers.acquire();
+        try {
+            cipher.init(Cipher.WRAP_MODE, this.publicKey);
+            byte[] wrappedKey = cipher.wrap(key);
+            logger.debug("New session key was created.");
+            return new SessionKey(new GCMEncrypter(key), wrappedKey);
+        } finally {
+            this.ciphers.release(cipher);
+        }
+    }
+
+    /**
+     * This class represents a session key and its wrapped form.
+     */
+    private static final class SessionKey {
+
+        private final GCMEncrypter encrypter;
+        private final byte[] wrappedKey;
+        private final long created = System.currentTimeMillis();
+        private final AtomicLong uses = new AtomicLong();
+
+        /**
+         * Constructs and initializes a new SessionKey object.
+         *
+         * @param encrypter encrypter that uses the session key
+         * @param wrappedKey wrapped session key
+         */
+        SessionKey(GCMEncrypter encrypter, byte[] wrappedKey) {
+            this.encrypter = encrypter;
+            this.wrappedKey = wrappedKey;
+        }
+
+        /**
+         * Reserves the session key for one message if the key hasn't
+         * expired.
+         *
+         * @param maxMessages maximum number of messages per session key
+         * @param maxAge maximum age of a session key in milliseconds
+         * @return true if the key can be used; otherwise false
+         */
+        boolean tryUse(long maxMessages, long maxAge) {
+            if (System.currentTimeMillis() - this.created >= maxAge) {
+                return false;
+            }
+            return this.uses.incrementAndGet() <= maxMessages;
+        }
+    }
+}
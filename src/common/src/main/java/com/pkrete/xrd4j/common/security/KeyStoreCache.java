@@ -0,0 +1,249 @@
+package com.pkrete.xrd4j.common.security;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.UnrecoverableEntryException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class caches key stores and the keys fetched from them. Key stores
+ * are cached by path and keys by path and alias, so that keys can be fetched
+ * without reading and decoding the key store on every call. The modification
+ * time and size of a key store file are checked at most once per check
+ * interval, and the key store is reloaded if the file has changed. Cached
+ * key stores and keys are returned only if the given passwords match the
+ * passwords that were used for loading them. Files ending with ".p12" or
+ * ".pfx" are loaded as PKCS12 key stores and other files as JKS key stores.
+ * This class is thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public class KeyStoreCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeyStoreCache.class);
+    /**
+     * Default interval between file modification checks in milliseconds.
+     */
+    public static final long DEFAULT_CHECK_INTERVAL = 1000;
+    private final Map<String, Entry> keyStores = new ConcurrentHashMap<>();
+    private final long checkInterval;
+
+    /**
+     * Constructs and initializes a new KeyStoreCache object using the
+     * default check interval.
+     */
+    public KeyStoreCache() {
+        this(DEFAULT_CHECK_INTERVAL);
+    }
+
+    /**
+     * Constructs and initializes a new KeyStoreCache object.
+     *
+     * @param checkInterval interval between file modification checks in
+     * milliseconds, zero means that the file is checked on every call
+     */
+    public KeyStoreCache(long checkInterval) {
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * Fetches the public key matching the given alias from the defined key
+     * store.
+     *
+     * @param path path of the trust store file
+     * @param password trust store password
+     * @param alias alias of the public key in the trust store
+     * @return public key with the given alias
+     * @throws KeyStoreException if the alias isn't found or there's an error
+     * @throws IOException if there's an error
+     * @throws NoSuchAlgorithmException if there's an error
+     * @throws CertificateException if there's an error
+     */
+    public PublicKey getPublicKey(String path, String password, String alias) throws KeyStoreException, IOException, NoSuchAlgorithmException, CertificateException {
+        Entry entry = this.getEntry(path, password);
+        String cacheKey = alias + '\u0000';
+        Key key = entry.keys.get(cacheKey);
+        if (key == null) {
+            Certificate cert = entry.keyStore.getCertificate(alias);
+            if (cert == null) {
+                throw new KeyStoreException("Certificate \"" + alias + "\" not found from \"" + path + "\".");
+            }
+            key = cert.getPublicKey();
+            entry.keys.put(cacheKey, key);
+        }
+        return (PublicKey) key;
+    }
+
+    /**
+     * Fetches the private key matching the given alias from the defined key
+     * store.
+     *
+     * @param path path of the key store file
+     * @param storePassword password of the key store
+     * @param alias alias of the private key in the key store
+     * @param keyPassword password of the private key
+     * @return private key with the given alias
+     * @throws KeyStoreException if the alias isn't found or there's an error
+     * @throws IOException if there's an error
+     * @throws NoSuchAlgorithmException if there's an error
+     * @throws CertificateException if there's an error
+     * @throws UnrecoverableEntryException if the key password is wrong
+     */
+    public PrivateKey getPrivateKey(String path, String storePassword, String alias, String keyPassword) throws KeyStoreException, IOException, NoSuchAlgorithmException, CertificateException, UnrecoverableEntryException {
+        Entry entry = this.getEntry(path, storePassword);
+        String cacheKey = alias + '\u0000' + CryptoHelper.encodeBase64(digest(keyPassword));
+        Key key = entry.keys.get(cacheKey);
+        if (key == null) {
+            KeyStore.Entry keyEntry = entry.keyStore.getEntry(alias, new KeyStore.PasswordProtection(keyPassword.toCharArray()));
+            if (!(keyEntry instanceof KeyStore.PrivateKeyEntry)) {
+                throw new KeyStoreException("Private key \"" + alias + "\" not found from \"" + path + "\".");
+            }
+            key = ((KeyStore.PrivateKeyEntry) keyEntry).getPrivateKey();
+            entry.keys.put(cacheKey, key);
+        }
+        return (PrivateKey) key;
+    }
+
+    /**
+     * Removes all the cached key stores and keys.
+     */
+    public void clear() {
+        this.keyStores.clear();
+    }
+
+    /**
+     * Returns the number of cached key stores.
+     *
+     * @return number of cached key stores
+     */
+    public int size() {
+        return this.keyStores.size();
+    }
+
+    /**
+     * Returns the type of the key store in the given file.
+     *
+     * @param path path of the key store file
+     * @return "PKCS12" or "JKS"
+     */
+    public static String getType(String path) {
+        String lower = path.toLowerCase();
+        if (lower.endsWith(".p12") || lower.endsWith(".pfx")) {
+            return "PKCS12";
+        }
+        return "JKS";
+    }
+
+    /**
+     * Returns the cached key store of the given file. The key store is
+     * loaded if it's not cached, if the file has changed or if the password
+     * doesn't match the password that was used for loading it.
+     *
+     * @param path path of the key store file
+     * @param password password of the key store
+     * @return cached key store
+     * @throws KeyStoreException if there's an error
+     * @throws IOException if there's an error
+     * @throws NoSuchAlgorithmException if there's an error
+     * @throws CertificateException if there's an error
+     */
+    private Entry getEntry(String path, String password) throws KeyStoreException, IOException, NoSuchAlgorithmException, CertificateException {
+        byte[] passwordDigest = digest(password);
+        Entry entry = this.keyStores.get(path);
+        if (entry != null && MessageDigest.isEqual(entry.passwordDigest, passwordDigest)) {
+            long now = System.currentTimeMillis();
+            if (now - entry.checked < this.checkInterval) {
+                return entry;
+            }
+            File file = new File(path);
+            if (file.lastModified() == entry.lastModified && file.length() == entry.length) {
+                entry.checked = now;
+                return entry;
+            }
+            logger.debug("Key store \"{}\" has changed.", path);
+        }
+        entry = load(path, password, passwordDigest);
+        this.keyStores.put(path, entry);
+        return entry;
+    }
+
+    /**
+     * Loads the key store from the given file.
+     *
+     * @param path path of the key store file
+     * @param password password of the key store
+     * @param passwordDigest digest of the password
+     * @return new cache entry
+     * @throws KeyStoreException if there's an error
+     * @throws IOException if there's an error
+     * @throws NoSuchAlgorithmException if there's an error
+     * @throws CertificateException if there's an error
+     */
+    private static Entry load(String path, String password, byte[] passwordDigest) throws KeyStoreException, IOException, NoSuchAlgorithmException, CertificateException {
+        File file = new File(path);
+        long checked = System.currentTimeMillis();
+        long lastModified = file.lastModified();
+        long length = file.length();
+        KeyStore keyStore = KeyStore.getInstance(getType(path));
+        try (FileInputStream fis = new FileInputStream(file)) {
+            keyStore.load(fis, password.toCharArray());
+        }
+        logger.debug("Key store \"{}\" was loaded.", path);
+        return new Entry(keyStore, passwordDigest, lastModified, length, checked);
+    }
+
+    /**
+     * Returns the SHA-256 digest of the given password.
+     *
+     * @param password password
+     * @return digest of the password
+     * @throws NoSuchAlgorithmException if there's an error
+     */
+    private static byte[] digest(String password) throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * This class holds a loaded key store and the keys fetched from it.
+     */
+    private static final class Entry {
+
+        private final KeyStore keyStore;
+        private final byte[] passwordDigest;
+        private final long lastModified;
+        private final long length;
+        private final Map<String, Key> keys = new ConcurrentHashMap<>();
+        private volatile long checked;
+
+        /**
+         * Constructs and initializes a new Entry object.
+         *
+         * @param keyStore loaded key store
+         * @param passwordDigest digest of the key store password
+         * @param lastModified modification time of the file
+         * @param length size of the file
+         * @param checked time of the last modification check
+         */
+        Entry(KeyStore keyStore, byte[] passwordDigest, long lastModified, long length, long checked) {
+            this.keyStore = keyStore;
+            this.passwordDigest = passwordDigest;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.checked = checked;
+        }
+    }
+}
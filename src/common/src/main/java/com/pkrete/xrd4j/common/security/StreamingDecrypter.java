@@ -0,0 +1,43 @@
+package com.pkrete.xrd4j.common.security;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * This interface defines operations for decrypting encrypted streams in
+ * addition to strings. The data is processed in chunks. The memory usage
+ * depends on the implementation, e.g. GCMDecrypter holds the whole decrypted
+ * data until the authentication tag has been verified.
+ *
+ * @author Petteri Kivimäki
+ */
+public interface StreamingDecrypter extends Decrypter {
+
+    /**
+     * Decrypts all the base 64 encoded data read from the given input stream
+     * and writes the plain data to the given output stream. The streams are
+     * not closed.
+     *
+     * @param in input stream that contains the encrypted data
+     * @param out output stream where the plain data is written
+     * @throws IOException if reading, writing or decrypting fails
+     */
+    void decrypt(InputStream in, OutputStream out) throws IOException;
+
+    /**
+     * Decrypts all the base 64 encoded data read from the given channel and
+     * writes the plain data to the given channel. The channels are not
+     * closed.
+     *
+     * @param in channel that contains the encrypted data
+     * @param out channel where the plain data is written
+     * @throws IOException if reading, writing or decrypting fails
+     */
+    default void decrypt(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        this.decrypt(Channels.newInputStream(in), Channels.newOutputStream(out));
+    }
+}
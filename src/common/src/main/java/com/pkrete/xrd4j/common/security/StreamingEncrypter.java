@@ -0,0 +1,41 @@
+package com.pkrete.xrd4j.common.security;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * This interface defines operations for encrypting streams in addition to
+ * strings. The data is processed in chunks, so the memory usage doesn't
+ * depend on the size of the data.
+ *
+ * @author Petteri Kivimäki
+ */
+public interface StreamingEncrypter extends Encrypter {
+
+    /**
+     * Encrypts all the data read from the given input stream and writes it
+     * base 64 encoded to the given output stream. The streams are not
+     * closed.
+     *
+     * @param in input stream that contains the plain data
+     * @param out output stream where the encrypted data is written
+     * @throws IOException if reading, writing or encrypting fails
+     */
+    void encrypt(InputStream in, OutputStream out) throws IOException;
+
+    /**
+     * Encrypts all the data read from the given channel and writes it base
+     * 64 encoded to the given channel. The channels are not closed.
+     *
+     * @param in channel that contains the plain data
+     * @param out channel where the encrypted data is written
+     * @throws IOException if reading, writing or encrypting fails
+     */
+    default void encrypt(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        this.encrypt(Channels.newInputStream(in), Channels.newOutputStream(out));
+    }
+}
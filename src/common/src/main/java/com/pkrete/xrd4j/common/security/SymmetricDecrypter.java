@@ -1,5 +1,9 @@
 package com.pkrete.xrd4j.common.security;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.Key;
@@ -9,6 +13,8 @@ import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.IvParameterSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * This class implements symmetric decryption. The same key and initialization
@@ -19,11 +25,12 @@ import javax.crypto.spec.IvParameterSpec;
  *
  * @author Petteri Kivimäki
  */
-public class SymmetricDecrypter extends AbstractDecrypter implements Decrypter {
+public class SymmetricDecrypter extends AbstractDecrypter implements StreamingDecrypter {
 
+    private static final Logger logger = LoggerFactory.getLogger(SymmetricDecrypter.class);
     private final Key key;
-    private final byte[] iv;
-    private String transformation;
+    private final IvParameterSpec ivSpec;
+    private final CipherPool ciphers;
 
     /**
      * Constructs and initializes a new SymmetricDecrypter object. The default
@@ -34,9 +41,7 @@ public class SymmetricDecrypter extends AbstractDecrypter implements Decrypter {
      * vector that was used for encrypting the data must be used for decryption.
      */
     public SymmetricDecrypter(Key key, byte[] iv) {
-        this.key = key;
-        this.iv = iv;
-        this.transformation = "AES/CBC/PKCS5Padding";
+        this(key, iv, "AES/CBC/PKCS5Padding");
     }
 
     /**
@@ -49,12 +54,13 @@ public class SymmetricDecrypter extends AbstractDecrypter implements Decrypter {
      */
     public SymmetricDecrypter(Key key, byte[] iv, String transformation) {
         this.key = key;
-        this.iv = iv;
-        this.transformation = transformation;
+        this.ivSpec = new IvParameterSpec(iv);
+        this.ciphers = new CipherPool(transformation);
     }
 
     /**
      * Decrypts the given byte array using "AES/CBC/PKCS5Padding" cipher.
+     * Cipher objects are reused between calls.
      *
      * @param cipherText encrypted byte array
      * @return decrypted byte array
@@ -67,8 +73,40 @@ public class SymmetricDecrypter extends AbstractDecrypter implements Decrypter {
      */
     @Override
     protected byte[] decrypt(byte[] cipherText) throws NoSuchAlgorithmException, InvalidKeyException, InvalidAlgorithmParameterException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException {
-        Cipher cipher = Cipher.getInstance(this.transformation);
-        cipher.init(Cipher.DECRYPT_MODE, this.key, new IvParameterSpec(this.iv));
-        return cipher.doFinal(cipherText);
+        Cipher cipher = this.ciphers.acquire();
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, this.key, this.ivSpec);
+            return cipher.doFinal(cipherText);
+        } finally {
+            this.ciphers.release(cipher);
+        }
+    }
+
+    /**
+     * Decrypts all the base 64 encoded data read from the given input stream
+     * and writes the plain data to the given output stream. The streams are
+     * not closed.
+     *
+     * @param in input stream that contains the encrypted data
+     * @param out output stream where the plain data is written
+     * @throws IOException if reading, writing or decrypting fails
+     */
+    @Override
+    public void decrypt(InputStream in, OutputStream out) throws IOException {
+        Cipher cipher;
+        try {
+            cipher = this.ciphers.acquire();
+        } catch (GeneralSecurityException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, this.key, this.ivSpec);
+            CipherStreams.decrypt(cipher, in, out);
+        } catch (GeneralSecurityException ex) {
+            logger.error(ex.getMessage(), ex);
+            throw new IOException(ex.getMessage(), ex);
+        } finally {
+            this.ciphers.release(cipher);
+        }
     }
 }
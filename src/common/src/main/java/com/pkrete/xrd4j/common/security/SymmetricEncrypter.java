@@ -1,5 +1,9 @@
 package com.pkrete.xrd4j.common.security;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.Key;
@@ -9,6 +13,8 @@ import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.IvParameterSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * This class implements symmetric encryption. The same key and initialization
@@ -19,11 +25,13 @@ import javax.crypto.spec.IvParameterSpec;
  *
  * @author Petteri Kivimäki
  */
-public class SymmetricEncrypter extends AbstractEncrypter implements Encrypter {
+public class SymmetricEncrypter extends AbstractEncrypter implements StreamingEncrypter {
 
+    private static final Logger logger = LoggerFactory.getLogger(SymmetricEncrypter.class);
     private final Key key;
     private final byte[] iv;
-    private String transformation;
+    private final IvParameterSpec ivSpec;
+    private final CipherPool ciphers;
 
     /**
      * Constructs and initializes a new SymmetricEncrypter object. The default
@@ -34,9 +42,7 @@ public class SymmetricEncrypter extends AbstractEncrypter implements Encrypter {
      * vector must be used for the decryption too.
      */
     public SymmetricEncrypter(Key key, byte[] iv) {
-        this.key = key;
-        this.iv = iv;
-        this.transformation = "AES/CBC/PKCS5Padding";
+        this(key, iv, "AES/CBC/PKCS5Padding");
     }
 
     /**
@@ -50,11 +56,13 @@ public class SymmetricEncrypter extends AbstractEncrypter implements Encrypter {
     public SymmetricEncrypter(Key key, byte[] iv, String transformation) {
         this.key = key;
         this.iv = iv;
-        this.transformation = transformation;
+        this.ivSpec = new IvParameterSpec(iv);
+        this.ciphers = new CipherPool(transformation);
     }
 
     /**
      * Encrypts the given byte array using "AES/CBC/PKCS5Padding" cipher.
+     * Cipher objects are reused between calls.
      *
      * @param plaintext byte array to be encrypted
      * @return encrypted byte array
@@ -67,9 +75,41 @@ public class SymmetricEncrypter extends AbstractEncrypter implements Encrypter {
      */
     @Override
     protected byte[] encrypt(byte[] plaintext) throws NoSuchAlgorithmException, InvalidKeyException, InvalidAlgorithmParameterException, NoSuchPaddingException, IllegalBlockSizeException, BadPaddingException {
-        Cipher cipher = Cipher.getInstance(this.transformation);
-        cipher.init(Cipher.ENCRYPT_MODE, this.getKey(), new IvParameterSpec(this.getIv()));
-        return cipher.doFinal(plaintext);
+        Cipher cipher = this.ciphers.acquire();
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, this.key, this.ivSpec);
+            return cipher.doFinal(plaintext);
+        } finally {
+            this.ciphers.release(cipher);
+        }
+    }
+
+    /**
+     * Encrypts all the data read from the given input stream and writes it
+     * base 64 encoded to the given output stream. The output is the same as
+     * the output of encrypt(String). The streams are not closed.
+     *
+     * @param in input stream that contains the plain data
+     * @param out output stream where the encrypted data is written
+     * @throws IOException if reading, writing or encrypting fails
+     */
+    @Override
+    public void encrypt(InputStream in, OutputStream out) throws IOException {
+        Cipher cipher;
+        try {
+            cipher = this.ciphers.acquire();
+        } catch (GeneralSecurityException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, this.key, this.ivSpec);
+            CipherStreams.encrypt(cipher, in, out);
+        } catch (GeneralSecurityException ex) {
+            logger.error(ex.getMessage(), ex);
+            throw new IOException(ex.getMessage(), ex);
+        } finally {
+            this.ciphers.release(cipher);
+        }
     }
 
     /**
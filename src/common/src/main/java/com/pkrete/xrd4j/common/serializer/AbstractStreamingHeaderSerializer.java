@@ -0,0 +1,90 @@
+package com.pkrete.xrd4j.common.serializer;
+
+import com.pkrete.xrd4j.common.message.AbstractMessage;
+import com.pkrete.xrd4j.common.message.ErrorMessageType;
+import com.pkrete.xrd4j.common.util.Constants;
+import javax.xml.soap.SOAPConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This abstract class serves as base class for serializer classes that write
+ * SOAP messages directly to a stream using XMLStreamWriter. This class takes
+ * care of writing the start of the SOAP envelope and all the required SOAP
+ * headers. The output is identical to the output of AbstractHeaderSerializer
+ * when the SOAPMessage is written to a stream, but no DOM tree is built. The
+ * client, service and securityServer elements are written from precompiled
+ * templates that are cached by a HeaderTemplateCache shared by all the
+ * serializers.
+ *
+ * @author Petteri Kivimäki
+ */
+public abstract class AbstractStreamingHeaderSerializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractStreamingHeaderSerializer.class);
+    private final HeaderTemplateCache templates = HeaderTemplateCache.getShared();
+    /**
+     * Namespace prefix of SOAP envelope elements.
+     */
+    protected static final String SOAP_ENV_PREFIX = "SOAP-ENV";
+
+    /**
+     * Writes the start tag of the SOAP envelope and the SOAP header. The
+     * header contains client, service, securityServer, userId, id, issue and
+     * protocolVersion elements. If the message contains a standard SOAP error,
+     * an empty header is written. After calling this method the writer is
+     * positioned inside the envelope.
+     *
+     * @param message AbstractMessage to be serialized
+     * @param writer XMLStreamWriter where the header is written
+     * @throws XMLStreamException if there's an error
+     */
+    protected final void serializeHeader(final AbstractMessage message, final XMLStreamWriter writer) throws XMLStreamException {
+        logger.debug("Generate SOAP header.");
+        writer.writeStartElement(SOAP_ENV_PREFIX, "Envelope", SOAPConstants.URI_NS_SOAP_ENVELOPE);
+        writer.writeNamespace(SOAP_ENV_PREFIX, SOAPConstants.URI_NS_SOAP_ENVELOPE);
+        if (message.hasError() && message.getErrorMessage().getErrorMessageType() == ErrorMessageType.STANDARD_SOAP_ERROR_MESSAGE) {
+            logger.warn("Standard SOAP error detected. SOAP header is skipped.");
+            writer.writeEmptyElement(SOAP_ENV_PREFIX, "Header", SOAPConstants.URI_NS_SOAP_ENVELOPE);
+            return;
+        }
+        writer.writeNamespace(Constants.NS_ID_PREFIX, Constants.NS_ID_URL);
+        writer.writeNamespace(Constants.NS_XRD_PREFIX, Constants.NS_XRD_URL);
+        writer.setPrefix(Constants.NS_ID_PREFIX, Constants.NS_ID_URL);
+        writer.setPrefix(Constants.NS_XRD_PREFIX, Constants.NS_XRD_URL);
+
+        // Header - Start
+        writer.writeStartElement(SOAP_ENV_PREFIX, "Header", SOAPConstants.URI_NS_SOAP_ENVELOPE);
+        this.templates.getTemplate(message).writeTo(writer);
+        if (message.getUserId() != null && !message.getUserId().isEmpty()) {
+            writeElement(writer, Constants.NS_XRD_PREFIX, Constants.NS_XRD_URL, Constants.NS_XRD_ELEM_USER_ID, message.getUserId());
+        }
+        writeElement(writer, Constants.NS_XRD_PREFIX, Constants.NS_XRD_URL, Constants.NS_XRD_ELEM_ID, message.getId());
+        if (message.getIssue() != null && !message.getIssue().isEmpty()) {
+            writeElement(writer, Constants.NS_XRD_PREFIX, Constants.NS_XRD_URL, Constants.NS_XRD_ELEM_ISSUE, message.getIssue());
+        }
+        writeElement(writer, Constants.NS_XRD_PREFIX, Constants.NS_XRD_URL, Constants.NS_XRD_ELEM_PROTOCOL_VERSION, message.getProtocolVersion());
+        writer.writeEndElement();
+        // Header - End
+        logger.debug("SOAP header was generated succesfully.");
+    }
+
+    /**
+     * Writes an element that contains the given text. The namespace of the
+     * element must have been declared already.
+     *
+     * @param writer XMLStreamWriter where the element is written
+     * @param prefix namespace prefix of the element
+     * @param namespace namespace URI of the element
+     * @param name local name of the element
+     * @param text text content of the element
+     * @throws XMLStreamException if there's an error
+     */
+    protected static void writeElement(final XMLStreamWriter writer, final String prefix, final String namespace, final String name, final String text) throws XMLStreamException {
+        writer.writeStartElement(prefix, name, namespace);
+        writer.writeCharacters(text);
+        writer.writeEndElement();
+    }
+}
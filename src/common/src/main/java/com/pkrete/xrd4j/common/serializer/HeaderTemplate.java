@@ -0,0 +1,243 @@
+package com.pkrete.xrd4j.common.serializer;
+
+import com.pkrete.xrd4j.common.exception.XRd4JRuntimeException;
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ObjectType;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.member.SecurityServer;
+import com.pkrete.xrd4j.common.util.Constants;
+import com.pkrete.xrd4j.common.util.MessageHelper;
+import java.util.ArrayList;
+import java.util.List;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.soap.SOAPHeader;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+
+/**
+ * This class represents a precompiled fragment of X-Road SOAP header that
+ * contains the client, service and securityServer elements. All the decisions
+ * related to these elements - object types and optional elements - are made
+ * when the template is created. For SAAJ messages the elements are built once
+ * as a DOM fragment that is imported to every message, and for streamed
+ * messages the element names and values are replayed to the writer. A
+ * template is immutable and it can be shared between threads.
+ *
+ * @author Petteri Kivimäki
+ */
+final class HeaderTemplate {
+
+    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = createDocumentBuilderFactory();
+
+    private final Element[] elements;
+    private final DocumentFragment fragment;
+
+    /**
+     * Constructs and initializes a new HeaderTemplate object. The security
+     * server is optional and it can be null.
+     *
+     * @param consumer consumer member of the message
+     * @param producer producer member of the message
+     * @param securityServer security server of the message or null
+     */
+    HeaderTemplate(final ConsumerMember consumer, final ProducerMember producer, final SecurityServer securityServer) {
+        List<Element> list = new ArrayList<>(3);
+        list.add(client(consumer));
+        list.add(service(producer));
+        if (securityServer != null) {
+            list.add(securityServer(securityServer));
+        }
+        this.elements = list.toArray(new Element[list.size()]);
+        this.fragment = this.createFragment();
+    }
+
+    /**
+     * Adds the client, service and securityServer elements to the given SOAP
+     * header by importing the prebuilt DOM fragment. The identifiers and
+     * X-Road namespaces must have been declared already.
+     *
+     * @param header SOAP header where the elements are added
+     */
+    void appendTo(final SOAPHeader header) {
+        org.w3c.dom.Node imported;
+        // DOM implementations don't guarantee that concurrent reads of the
+        // same tree are safe, so the fragment is imported by one thread at a
+        // time
+        synchronized (this.fragment) {
+            imported = header.getOwnerDocument().importNode(this.fragment, true);
+        }
+        header.appendChild(imported);
+    }
+
+    /**
+     * Writes the client, service and securityServer elements to the given
+     * writer. The identifiers and X-Road namespaces must have been declared
+     * already.
+     *
+     * @param writer XMLStreamWriter where the elements are written
+     * @throws XMLStreamException if there's an error
+     */
+    void writeTo(final XMLStreamWriter writer) throws XMLStreamException {
+        for (Element element : this.elements) {
+            writer.writeStartElement(Constants.NS_XRD_PREFIX, element.name, Constants.NS_XRD_URL);
+            writer.writeAttribute(Constants.NS_ID_PREFIX, Constants.NS_ID_URL, Constants.NS_ID_ATTR_OBJECT_TYPE, element.objectType);
+            for (int i = 0; i < element.childNames.length; i++) {
+                writer.writeStartElement(Constants.NS_ID_PREFIX, element.childNames[i], Constants.NS_ID_URL);
+                writer.writeCharacters(element.childValues[i]);
+                writer.writeEndElement();
+            }
+            writer.writeEndElement();
+        }
+    }
+
+    /**
+     * Builds the client, service and securityServer elements as a DOM
+     * fragment.
+     *
+     * @return DOM fragment that contains the elements
+     */
+    private DocumentFragment createFragment() {
+        Document document;
+        try {
+            synchronized (DOCUMENT_BUILDER_FACTORY) {
+                document = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder().newDocument();
+            }
+        } catch (ParserConfigurationException ex) {
+            throw new XRd4JRuntimeException(ex.getMessage());
+        }
+        DocumentFragment result = document.createDocumentFragment();
+        for (Element element : this.elements) {
+            org.w3c.dom.Element parent = document.createElementNS(Constants.NS_XRD_URL, Constants.NS_XRD_PREFIX + ":" + element.name);
+            parent.setAttributeNS(Constants.NS_ID_URL, Constants.NS_ID_PREFIX + ":" + Constants.NS_ID_ATTR_OBJECT_TYPE, element.objectType);
+            for (int i = 0; i < element.childNames.length; i++) {
+                org.w3c.dom.Element child = document.createElementNS(Constants.NS_ID_URL, Constants.NS_ID_PREFIX + ":" + element.childNames[i]);
+                child.appendChild(document.createTextNode(element.childValues[i]));
+                parent.appendChild(child);
+            }
+            result.appendChild(parent);
+        }
+        return result;
+    }
+
+    /**
+     * Creates a namespace aware DocumentBuilderFactory.
+     *
+     * @return DocumentBuilderFactory
+     */
+    private static DocumentBuilderFactory createDocumentBuilderFactory() {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory;
+    }
+
+    /**
+     * Creates the client element.
+     *
+     * @param consumer consumer member of the message
+     * @return client element
+     */
+    private static Element client(final ConsumerMember consumer) {
+        ObjectType objectType = MessageHelper.getObjectType(consumer);
+        Element element = new Element(Constants.NS_XRD_ELEM_CLIENT, objectType);
+        element.add(Constants.NS_ID_ELEM_XROAD_INSTANCE, consumer.getXRoadInstance());
+        element.add(Constants.NS_ID_ELEM_MEMBER_CLASS, consumer.getMemberClass());
+        element.add(Constants.NS_ID_ELEM_MEMBER_CODE, consumer.getMemberCode());
+        if (objectType == ObjectType.SUBSYSTEM) {
+            element.add(Constants.NS_ID_ELEM_SUBSYSTEM_CODE, consumer.getSubsystemCode());
+        }
+        return element.compile();
+    }
+
+    /**
+     * Creates the service element.
+     *
+     * @param producer producer member of the message
+     * @return service element
+     */
+    private static Element service(final ProducerMember producer) {
+        ObjectType objectType = MessageHelper.getObjectType(producer);
+        Element element = new Element(Constants.NS_XRD_ELEM_SERVICE, objectType);
+        element.add(Constants.NS_ID_ELEM_XROAD_INSTANCE, producer.getXRoadInstance());
+        if (objectType == ObjectType.SERVICE) {
+            element.add(Constants.NS_ID_ELEM_MEMBER_CLASS, producer.getMemberClass());
+            element.add(Constants.NS_ID_ELEM_MEMBER_CODE, producer.getMemberCode());
+        }
+        if (producer.getSubsystemCode() != null && !producer.getSubsystemCode().isEmpty()) {
+            element.add(Constants.NS_ID_ELEM_SUBSYSTEM_CODE, producer.getSubsystemCode());
+        }
+        element.add(Constants.NS_ID_ELEM_SERVICE_CODE, producer.getServiceCode());
+        if (producer.getServiceVersion() != null && !producer.getServiceVersion().isEmpty()) {
+            element.add(Constants.NS_ID_ELEM_SERVICE_VERSION, producer.getServiceVersion());
+        }
+        return element.compile();
+    }
+
+    /**
+     * Creates the securityServer element.
+     *
+     * @param securityServer security server of the message
+     * @return securityServer element
+     */
+    private static Element securityServer(final SecurityServer securityServer) {
+        Element element = new Element(Constants.NS_XRD_ELEM_SECURITY_SERVER, ObjectType.SERVER);
+        element.add(Constants.NS_ID_ELEM_XROAD_INSTANCE, securityServer.getXRoadInstance());
+        element.add(Constants.NS_ID_ELEM_MEMBER_CLASS, securityServer.getMemberClass());
+        element.add(Constants.NS_ID_ELEM_MEMBER_CODE, securityServer.getMemberCode());
+        element.add(Constants.NS_ID_ELEM_SERVER_CODE, securityServer.getServerCode());
+        return element.compile();
+    }
+
+    /**
+     * This class represents a header element in the X-Road namespace that has
+     * an objectType attribute and child elements in the identifiers
+     * namespace.
+     */
+    private static final class Element {
+
+        private final String name;
+        private final String objectType;
+        private List<String> names = new ArrayList<>();
+        private List<String> values = new ArrayList<>();
+        private String[] childNames;
+        private String[] childValues;
+
+        /**
+         * Constructs and initializes a new Element object.
+         *
+         * @param name local name of the element
+         * @param objectType value of the objectType attribute
+         */
+        Element(final String name, final ObjectType objectType) {
+            this.name = name;
+            this.objectType = objectType.toString();
+        }
+
+        /**
+         * Adds a child element.
+         *
+         * @param childName local name of the child element
+         * @param value text content of the child element
+         */
+        void add(final String childName, final String value) {
+            this.names.add(childName);
+            this.values.add(value);
+        }
+
+        /**
+         * Converts the child elements to arrays after all the children have
+         * been added.
+         *
+         * @return this element
+         */
+        Element compile() {
+            this.childNames = this.names.toArray(new String[this.names.size()]);
+            this.childValues = this.values.toArray(new String[this.values.size()]);
+            this.names = null;
+            this.values = null;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.pkrete.xrd4j.common.serializer;
+
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.member.SecurityServer;
+import com.pkrete.xrd4j.common.message.AbstractMessage;
+import com.pkrete.xrd4j.common.util.LruCache;
+import java.util.Arrays;
+import java.util.Objects;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class caches precompiled X-Road header fragments that contain the
+ * client, service and securityServer elements. The templates are keyed by the
+ * values of the consumer member, producer member and security server, so a
+ * new template is created only when a new combination is seen. The member
+ * objects can be modified after they have been used, because the values are
+ * copied to the cache key.
+ *
+ * The most recently used template is checked first by comparing the member
+ * values directly, so sending messages with the same members doesn't create
+ * any objects. Other templates are kept in an LruCache and the least recently
+ * used template is evicted when the cache is full. All the serializers share
+ * the same cache by default, so templates are reused even if a new serializer
+ * is created for every message. This class is thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+final class HeaderTemplateCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(HeaderTemplateCache.class);
+    /**
+     * Default maximum number of cached templates.
+     */
+    static final int DEFAULT_MAX_SIZE = 1000;
+    private static final HeaderTemplateCache SHARED = new HeaderTemplateCache();
+    private final LruCache<Key, Entry> cache;
+    private volatile Entry last;
+
+    /**
+     * Constructs and initializes a new HeaderTemplateCache object using the
+     * default maximum size.
+     */
+    HeaderTemplateCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Constructs and initializes a new HeaderTemplateCache object.
+     *
+     * @param maxSize maximum number of cached templates
+     */
+    HeaderTemplateCache(final int maxSize) {
+        this.cache = new LruCache<>(maxSize);
+    }
+
+    /**
+     * Returns the cache that is shared by all the serializers.
+     *
+     * @return shared cache
+     */
+    static HeaderTemplateCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the header template for the consumer, producer and security
+     * server of the given message. If the template is not found from the
+     * cache, a new template is created.
+     *
+     * @param message message that holds the members
+     * @return header template
+     */
+    HeaderTemplate getTemplate(final AbstractMessage message) {
+        ConsumerMember consumer = message.getConsumer();
+        ProducerMember producer = message.getProducer();
+        SecurityServer securityServer = message.getSecurityServer();
+        Entry entry = this.last;
+        if (entry != null && entry.key.matches(consumer, producer, securityServer)) {
+            return entry.template;
+        }
+        Key key = new Key(consumer, producer, securityServer);
+        entry = this.cache.get(key);
+        if (entry == null) {
+            entry = new Entry(key, new HeaderTemplate(consumer, producer, securityServer));
+            this.cache.put(key, entry);
+            logger.debug("New header template was added to the cache.");
+        }
+        this.last = entry;
+        return entry.template;
+    }
+
+    /**
+     * Returns the number of cached templates.
+     *
+     * @return number of cached templates
+     */
+    int size() {
+        return this.cache.size();
+    }
+
+    /**
+     * Removes all the templates from the cache.
+     */
+    void clear() {
+        this.cache.invalidateAll();
+        this.last = null;
+        logger.debug("Header template cache was cleared.");
+    }
+
+    /**
+     * Cached template and its key.
+     */
+    private static final class Entry {
+
+        private final Key key;
+        private final HeaderTemplate template;
+
+        /**
+         * Constructs and initializes a new Entry object.
+         *
+         * @param key cache key of the template
+         * @param template header template
+         */
+        Entry(final Key key, final HeaderTemplate template) {
+            this.key = key;
+            this.template = template;
+        }
+    }
+
+    /**
+     * Cache key that holds the values of the consumer member, producer member
+     * and security server that affect the serialized header.
+     */
+    private static final class Key {
+
+        private final String[] values;
+        private final int hash;
+
+        /**
+         * Constructs and initializes a new Key object.
+         *
+         * @param consumer consumer member
+         * @param producer producer member
+         * @param securityServer security server or null
+         */
+        Key(final ConsumerMember consumer, final ProducerMember producer, final SecurityServer securityServer) {
+            boolean hasServer = securityServer != null;
+            this.values = new String[]{
+                consumer.getXRoadInstance(),
+                consumer.getMemberClass(),
+                consumer.getMemberCode(),
+                consumer.getSubsystemCode(),
+                producer.getXRoadInstance(),
+                producer.getMemberClass(),
+                producer.getMemberCode(),
+                producer.getSubsystemCode(),
+                producer.getServiceCode(),
+                producer.getServiceVersion(),
+                hasServer ? securityServer.getXRoadInstance() : null,
+                hasServer ? securityServer.getMemberClass() : null,
+                hasServer ? securityServer.getMemberCode() : null,
+                hasServer ? securityServer.getServerCode() : null,
+                hasServer ? "" : null
+            };
+            this.hash = Arrays.hashCode(this.values);
+        }
+
+        /**
+         * Checks if this key holds the current values of the given members
+         * without creating a new key.
+         *
+         * @param consumer consumer member
+         * @param producer producer member
+         * @param securityServer security server or null
+         * @return true if the values match; otherwise false
+         */
+        boolean matches(final ConsumerMember consumer, final ProducerMember producer, final SecurityServer securityServer) {
+            String[] v = this.values;
+            if (!(Objects.equals(v[0], consumer.getXRoadInstance())
+                    && Objects.equals(v[1], consumer.getMemberClass())
+                    && Objects.equals(v[2], consumer.getMemberCode())
+                    && Objects.equals(v[3], consumer.getSubsystemCode())
+                    && Objects.equals(v[4], producer.getXRoadInstance())
+                    && Objects.equals(v[5], producer.getMemberClass())
+                    && Objects.equals(v[6], producer.getMemberCode())
+                    && Objects.equals(v[7], producer.getSubsystemCode())
+                    && Objects.equals(v[8], producer.getServiceCode())
+                    && Objects.equals(v[9], producer.getServiceVersion()))) {
+                return false;
+            }
+            if (securityServer == null) {
+                return v[14] == null;
+            }
+            return v[14] != null
+                    && Objects.equals(v[10], securityServer.getXRoadInstance())
+                    && Objects.equals(v[11], securityServer.getMemberClass())
+                    && Objects.equals(v[12], securityServer.getMemberCode())
+                    && Objects.equals(v[13], securityServer.getServerCode());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return this.hash == other.hash && Arrays.equals(this.values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+}
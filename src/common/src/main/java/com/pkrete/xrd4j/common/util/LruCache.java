@@ -0,0 +1,141 @@
+package com.pkrete.xrd4j.common.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * This class implements a size bounded cache where every value may have a
+ * time to live. When the cache is full, the least recently used value is
+ * evicted. Expired values are removed when they're accessed. The cache is
+ * thread safe.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ * @author Petteri Kivimäki
+ */
+public class LruCache<K, V> {
+
+    private final long timeToLive;
+    private final Map<K, Entry<V>> entries;
+
+    /**
+     * Constructs and initializes a new LruCache object whose values never
+     * expire.
+     *
+     * @param maxSize maximum number of values in the cache
+     */
+    public LruCache(final int maxSize) {
+        this(maxSize, -1);
+    }
+
+    /**
+     * Constructs and initializes a new LruCache object.
+     *
+     * @param maxSize maximum number of values in the cache
+     * @param timeToLive time to live of a value in milliseconds, a negative
+     * value means that the values never expire
+     */
+    public LruCache(final int maxSize, long timeToLive) {
+        this.timeToLive = timeToLive < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(timeToLive);
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the value of the given key. Null is returned if the key is not
+     * in the cache or if the value has expired.
+     *
+     * @param key key of the value
+     * @return value of the key or null
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = this.entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (this.timeToLive >= 0 && System.nanoTime() - entry.expires >= 0) {
+            this.entries.remove(key);
+            return null;
+        }
+        return entry.value;
+    }
+
+    /**
+     * Adds the given value to the cache.
+     *
+     * @param key key of the value
+     * @param value value to be added
+     */
+    public synchronized void put(K key, V value) {
+        this.entries.put(key, new Entry<>(value, System.nanoTime() + this.timeToLive));
+    }
+
+    /**
+     * Removes the value of the given key from the cache.
+     *
+     * @param key key of the value
+     */
+    public synchronized void invalidate(K key) {
+        this.entries.remove(key);
+    }
+
+    /**
+     * Removes all the values whose key matches the given predicate.
+     *
+     * @param predicate predicate that selects the keys to be removed
+     */
+    public synchronized void invalidateIf(Predicate<K> predicate) {
+        Iterator<K> it = this.entries.keySet().iterator();
+        while (it.hasNext()) {
+            if (predicate.test(it.next())) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all the values from the cache.
+     */
+    public synchronized void invalidateAll() {
+        this.entries.clear();
+    }
+
+    /**
+     * Returns the number of values in the cache, including expired values that
+     * have not been removed yet.
+     *
+     * @return number of values in the cache
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Cached value and its expiration time.
+     *
+     * @param <V> type of the value
+     */
+    private static class Entry<V> {
+
+        private final V value;
+        private final long expires;
+
+        /**
+         * Constructs and initializes a new Entry object.
+         *
+         * @param value cached value
+         * @param expires expiration time in nanoseconds
+         */
+        Entry(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+}
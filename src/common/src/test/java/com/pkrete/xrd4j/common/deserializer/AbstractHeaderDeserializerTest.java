@@ -0,0 +1,163 @@
+package com.pkrete.xrd4j.common.deserializer;
+
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.exception.XRd4JMissingMemberException;
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ObjectType;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.member.SecurityServer;
+import com.pkrete.xrd4j.common.util.SOAPHelper;
+import java.io.StringReader;
+import java.util.Map;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPHeader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for AbstractHeaderDeserializer class. The results of the single
+ * pass header parser are compared to the results of the methods that read
+ * the header fields one by one.
+ *
+ * @author Petteri Kivimäki
+ */
+public class AbstractHeaderDeserializerTest extends TestCase {
+
+    private final TestHeaderDeserializer deserializer = new TestHeaderDeserializer();
+
+    /**
+     * All the header fields are present.
+     *
+     * @throws XRd4JException
+     * @throws XRd4JMissingMemberException
+     * @throws SOAPException
+     */
+    public void testAllFields() throws XRd4JException, XRd4JMissingMemberException, SOAPException {
+        String soapString = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header><xrd:client id:objectType=\"MEMBER\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>MEMBER1</id:memberCode></xrd:client><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>COM</id:memberClass><id:memberCode>MEMBER2</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode><id:serviceCode>getRandom</id:serviceCode><id:serviceVersion>v1</id:serviceVersion></xrd:service><xrd:securityServer id:objectType=\"SERVER\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>MEMBER1</id:memberCode><id:serverCode>server1</id:serverCode></xrd:securityServer><xrd:userId>EE1234567890</xrd:userId><xrd:id>ID-1234567890</xrd:id><xrd:issue>12345</xrd:issue><xrd:protocolVersion>4.0</xrd:protocolVersion><xrd:requestHash algorithmId=\"SHA-512\">ZPbWPAOcJxzE81EmSk//R3DUQtqwMcuMMF9tsccJypdNcukzICQtlhhr3a/bTmexDrn8e/BrBVyl2t0ni/cUvw==</xrd:requestHash></SOAP-ENV:Header><SOAP-ENV:Body></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+        SOAPHeader header = SOAPHelper.toSOAP(soapString).getSOAPHeader();
+        HeaderFields fields = this.deserializer.deserializeHeaderFields(header);
+
+        assertEquals(this.deserializer.deserializeConsumer(header), fields.getConsumer());
+        assertEquals(ObjectType.MEMBER, fields.getConsumer().getObjectType());
+        assertEquals(this.deserializer.deserializeProducer(header), fields.getProducer());
+        assertEquals("v1", fields.getProducer().getServiceVersion());
+        assertEquals(ObjectType.SERVICE, fields.getProducer().getObjectType());
+        assertEquals(this.deserializer.deserializeSecurityServer(header), fields.getSecurityServer());
+        assertEquals("server1", fields.getSecurityServer().getServerCode());
+        assertEquals(this.deserializer.deserializeId(header), fields.getId());
+        assertEquals(this.deserializer.deserializeUserId(header), fields.getUserId());
+        assertEquals("12345", fields.getIssue());
+        assertEquals(this.deserializer.deserializeIssue(header), fields.getIssue());
+        assertEquals(this.deserializer.deserializeProtocolVersion(header), fields.getProtocolVersion());
+        assertEquals(this.deserializer.deserializeRequestHash(header), fields.getRequestHash());
+        assertEquals("SHA-512", fields.getAlgorithmId());
+        assertEquals(this.deserializer.deserializeAlgorithmId(header), fields.getAlgorithmId());
+    }
+
+    /**
+     * Only the mandatory fields are present. Whitespace between the elements
+     * and elements from other namespaces are ignored.
+     *
+     * @throws XRd4JException
+     * @throws XRd4JMissingMemberException
+     * @throws SOAPException
+     */
+    public void testMandatoryFields() throws XRd4JException, XRd4JMissingMemberException, SOAPException {
+        String soapString = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header>\n  <xrd:client id:objectType=\"SUBSYSTEM\">\n    <id:xRoadInstance>FI</id:xRoadInstance>\n    <id:memberClass>GOV</id:memberClass>\n    <id:memberCode>MEMBER1</id:memberCode>\n    <id:subsystemCode>subsystem</id:subsystemCode>\n  </xrd:client>\n  <xrd:service id:objectType=\"CENTRALSERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:serviceCode>getRandom</id:serviceCode></xrd:service>\n  <foo:id xmlns:foo=\"http://foo.com\">foo</foo:id>\n  <xrd:id>ID-1234567890</xrd:id>\n</SOAP-ENV:Header><SOAP-ENV:Body></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+        SOAPHeader header = SOAPHelper.toSOAP(soapString).getSOAPHeader();
+        HeaderFields fields = this.deserializer.deserializeHeaderFields(header);
+
+        assertEquals(this.deserializer.deserializeConsumer(header), fields.getConsumer());
+        assertEquals("subsystem", fields.getConsumer().getSubsystemCode());
+        assertEquals(this.deserializer.deserializeProducer(header), fields.getProducer());
+        assertEquals(ObjectType.CENTRALSERVICE, fields.getProducer().getObjectType());
+        assertEquals("ID-1234567890", fields.getId());
+        assertNull(fields.getSecurityServer());
+        assertNull(fields.getUserId());
+        assertNull(fields.getIssue());
+        assertNull(fields.getProtocolVersion());
+        assertNull(fields.getRequestHash());
+        assertNull(fields.getAlgorithmId());
+    }
+
+    /**
+     * Client and service elements are missing.
+     *
+     * @throws XRd4JException
+     * @throws XRd4JMissingMemberException
+     * @throws SOAPException
+     */
+    public void testMissingMembers() throws XRd4JException, SOAPException {
+        String soapString = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header><xrd:id>ID-1234567890</xrd:id><xrd:protocolVersion>4.0</xrd:protocolVersion></SOAP-ENV:Header><SOAP-ENV:Body></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+        SOAPHeader header = SOAPHelper.toSOAP(soapString).getSOAPHeader();
+        HeaderFields fields = this.deserializer.deserializeHeaderFields(header);
+
+        assertNull(fields.getConsumer());
+        assertNull(fields.getProducer());
+        assertEquals("ID-1234567890", fields.getId());
+        assertEquals("4.0", fields.getProtocolVersion());
+    }
+
+    /**
+     * The members are created by the overridable getConsumerMember,
+     * getProducerMember and getSecurityServer methods both when a SOAP
+     * header and when a stream is deserialized.
+     *
+     * @throws XRd4JException
+     * @throws SOAPException
+     * @throws XMLStreamException
+     */
+    public void testOverriddenMembers() throws XRd4JException, SOAPException, XMLStreamException {
+        String soapString = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header><xrd:client id:objectType=\"MEMBER\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>member1</id:memberCode></xrd:client><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>COM</id:memberClass><id:memberCode>member2</id:memberCode><id:serviceCode>getRandom</id:serviceCode></xrd:service><xrd:securityServer id:objectType=\"SERVER\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>member1</id:memberCode><id:serverCode>server1</id:serverCode></xrd:securityServer><xrd:id>ID-1234567890</xrd:id><xrd:protocolVersion>4.0</xrd:protocolVersion></SOAP-ENV:Header><SOAP-ENV:Body></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+        UpperCaseHeaderDeserializer upperCase = new UpperCaseHeaderDeserializer();
+
+        HeaderFields fields = upperCase.deserializeHeaderFields(SOAPHelper.toSOAP(soapString).getSOAPHeader());
+        assertEquals("MEMBER1", fields.getConsumer().getMemberCode());
+        assertEquals("MEMBER2", fields.getProducer().getMemberCode());
+        assertEquals("SERVER1", fields.getSecurityServer().getServerCode());
+
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(soapString));
+        while (reader.next() != XMLStreamConstants.START_ELEMENT || !"Header".equals(reader.getLocalName())) {
+            // Move to the SOAP header
+        }
+        fields = upperCase.deserializeHeaderFields(reader);
+        assertEquals("MEMBER1", fields.getConsumer().getMemberCode());
+        assertEquals("MEMBER2", fields.getProducer().getMemberCode());
+        assertEquals("SERVER1", fields.getSecurityServer().getServerCode());
+        assertEquals("ID-1234567890", fields.getId());
+    }
+
+    private class TestHeaderDeserializer extends AbstractHeaderDeserializer {
+    }
+
+    /**
+     * Deserializer that converts the member codes and the server code to
+     * upper case.
+     */
+    private class UpperCaseHeaderDeserializer extends AbstractHeaderDeserializer {
+
+        @Override
+        protected ConsumerMember getConsumerMember(final Map<String, String> map, final ObjectType objectType) throws XRd4JException {
+            ConsumerMember consumer = super.getConsumerMember(map, objectType);
+            consumer.setMemberCode(consumer.getMemberCode().toUpperCase());
+            return consumer;
+        }
+
+        @Override
+        protected ProducerMember getProducerMember(final Map<String, String> map, final ObjectType objectType) throws XRd4JException {
+            ProducerMember producer = super.getProducerMember(map, objectType);
+            producer.setMemberCode(producer.getMemberCode().toUpperCase());
+            return producer;
+        }
+
+        @Override
+        protected SecurityServer getSecurityServer(final Map<String, String> map) throws XRd4JException {
+            SecurityServer server = super.getSecurityServer(map);
+            server.setServerCode(server.getServerCode().toUpperCase());
+            return server;
+        }
+    }
+}
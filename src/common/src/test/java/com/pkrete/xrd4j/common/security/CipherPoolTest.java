@@ -0,0 +1,69 @@
+package com.pkrete.xrd4j.common.security;
+
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for CipherPool class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class CipherPoolTest extends TestCase {
+
+    /**
+     * Released ciphers are reused.
+     *
+     * @throws NoSuchAlgorithmException
+     * @throws NoSuchPaddingException
+     */
+    public void testReuse() throws NoSuchAlgorithmException, NoSuchPaddingException {
+        CipherPool pool = new CipherPool("AES/CBC/PKCS5Padding");
+        Cipher cipher = pool.acquire();
+        assertEquals("AES/CBC/PKCS5Padding", cipher.getAlgorithm());
+        assertEquals(0, pool.getIdle());
+        pool.release(cipher);
+        assertEquals(1, pool.getIdle());
+        assertSame(cipher, pool.acquire());
+        assertNotSame(cipher, pool.acquire());
+        assertEquals(0, pool.getIdle());
+    }
+
+    /**
+     * Ciphers released to a full pool are discarded.
+     *
+     * @throws NoSuchAlgorithmException
+     * @throws NoSuchPaddingException
+     */
+    public void testMaxIdle() throws NoSuchAlgorithmException, NoSuchPaddingException {
+        CipherPool pool = new CipherPool("AES/CBC/PKCS5Padding", 1);
+        Cipher cipher1 = pool.acquire();
+        Cipher cipher2 = pool.acquire();
+        pool.release(cipher1);
+        pool.release(cipher2);
+        pool.release(null);
+        assertEquals(1, pool.getIdle());
+        assertSame(cipher1, pool.acquire());
+    }
+
+    /**
+     * Reused ciphers produce the same results as new ones, also after a
+     * failed decryption.
+     *
+     * @throws NoSuchAlgorithmException
+     */
+    public void testRepeatedEncryption() throws NoSuchAlgorithmException {
+        Key key = CryptoHelper.generateAESKey(128);
+        byte[] iv = CryptoHelper.generateIV();
+        Encrypter se = new SymmetricEncrypter(key, iv);
+        Decrypter sd = new SymmetricDecrypter(key, iv);
+        String encrypted = se.encrypt("Test data");
+        assertEquals(encrypted, se.encrypt("Test data"));
+        assertNull(sd.decrypt(CryptoHelper.encodeBase64(new byte[15])));
+        for (int i = 0; i < 10; i++) {
+            assertEquals("Test data " + i, sd.decrypt(se.encrypt("Test data " + i)));
+        }
+    }
+}
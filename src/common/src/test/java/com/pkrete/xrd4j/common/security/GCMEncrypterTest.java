@@ -0,0 +1,172 @@
+package com.pkrete.xrd4j.common.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for GCMEncrypter class. The cases cover decryption too.
+ *
+ * @author Petteri Kivimäki
+ */
+public class GCMEncrypterTest extends TestCase {
+
+    /**
+     * Every message gets a new nonce and the frame contains the nonce and
+     * the tag.
+     *
+     * @throws NoSuchAlgorithmException
+     */
+    public void testEncryption() throws NoSuchAlgorithmException {
+        String data = "This is a test string. ÄäÅåÖö Библиотека Каллио";
+        Key key = CryptoHelper.generateAESKey(128);
+        Encrypter encrypter = new GCMEncrypter(key);
+        Decrypter decrypter = new GCMDecrypter(key);
+        String encrypted1 = encrypter.encrypt(data);
+        String encrypted2 = encrypter.encrypt(data);
+        assertFalse(encrypted1.equals(encrypted2));
+        assertEquals(GCMEncrypter.NONCE_LENGTH + data.getBytes(StandardCharsets.UTF_8).length + GCMEncrypter.TAG_LENGTH / 8,
+                CryptoHelper.decodeBase64(encrypted1).length);
+        assertEquals(data, decrypter.decrypt(encrypted1));
+        assertEquals(data, decrypter.decrypt(encrypted2));
+    }
+
+    /**
+     * Modified data and wrong associated data are detected.
+     *
+     * @throws NoSuchAlgorithmException
+     */
+    public void testAuthentication() throws NoSuchAlgorithmException {
+        Key key = CryptoHelper.generateAESKey(128);
+        GCMEncrypter encrypter = new GCMEncrypter(key);
+        GCMDecrypter decrypter = new GCMDecrypter(key);
+        String encrypted = encrypter.encrypt("1234567890", "ID11234");
+        assertEquals("1234567890", decrypter.decrypt(encrypted, "ID11234"));
+        assertNull(decrypter.decrypt(encrypted, "ID11235"));
+        assertNull(decrypter.decrypt(encrypted));
+
+        byte[] bytes = CryptoHelper.decodeBase64(encrypted);
+        bytes[GCMEncrypter.NONCE_LENGTH] ^= 1;
+        assertNull(decrypter.decrypt(CryptoHelper.encodeBase64(bytes), "ID11234"));
+        assertNull(decrypter.decrypt(CryptoHelper.encodeBase64(new byte[10])));
+        assertNull(new GCMDecrypter(CryptoHelper.generateAESKey(128)).decrypt(encrypted, "ID11234"));
+    }
+
+    /**
+     * Streams are encrypted to the same frame format as byte arrays.
+     *
+     * @throws GeneralSecurityException
+     * @throws IOException
+     */
+    public void testStreamEncryption() throws GeneralSecurityException, IOException {
+        byte[] data = new byte[CipherStreams.BUFFER_SIZE * 2 + 7];
+        new Random(1).nextBytes(data);
+        byte[] aad = "ID11234".getBytes(StandardCharsets.UTF_8);
+        Key key = CryptoHelper.generateAESKey(128);
+        GCMEncrypter encrypter = new GCMEncrypter(key);
+        GCMDecrypter decrypter = new GCMDecrypter(key);
+
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        encrypter.encrypt(new ByteArrayInputStream(data), encrypted, aad);
+        byte[] frame = CryptoHelper.decodeBase64(new String(encrypted.toByteArray(), StandardCharsets.US_ASCII));
+        assertTrue(Arrays.equals(data, decrypter.decrypt(frame, aad)));
+
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        decrypter.decrypt(new ByteArrayInputStream(encrypted.toByteArray()), decrypted, aad);
+        assertTrue(Arrays.equals(data, decrypted.toByteArray()));
+
+        try {
+            decrypter.decrypt(new ByteArrayInputStream(encrypted.toByteArray()), new ByteArrayOutputStream(), null);
+            fail("IOException expected");
+        } catch (IOException ex) {
+            // Expected
+        }
+    }
+
+    /**
+     * A multi-megabyte stream is decrypted without reallocating the output
+     * buffer for every chunk. The cipher holds the whole payload, so the
+     * memory allocated by the decryption must stay linear in the size of
+     * the data.
+     *
+     * @throws GeneralSecurityException
+     * @throws IOException
+     */
+    public void testLargeStreamDecryption() throws GeneralSecurityException, IOException {
+        byte[] data = new byte[8 * 1024 * 1024];
+        new Random(1).nextBytes(data);
+        Key key = CryptoHelper.generateAESKey(128);
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        new GCMEncrypter(key).encrypt(new ByteArrayInputStream(data), encrypted);
+        byte[] input = encrypted.toByteArray();
+        GCMDecrypter decrypter = new GCMDecrypter(key);
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream(data.length);
+
+        long before = allocatedBytes();
+        decrypter.decrypt(new ByteArrayInputStream(input), decrypted);
+        long allocated = allocatedBytes() - before;
+
+        assertTrue(Arrays.equals(data, decrypted.toByteArray()));
+        if (before >= 0) {
+            assertTrue("Allocated " + allocated + " bytes.", allocated < 16L * data.length);
+        }
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread or -1 if
+     * the JVM doesn't support measuring it.
+     *
+     * @return number of allocated bytes or -1
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * One encrypter and decrypter pair is shared between threads.
+     *
+     * @throws Exception
+     */
+    public void testConcurrency() throws Exception {
+        Key key = CryptoHelper.generateAESKey(128);
+        final GCMEncrypter encrypter = new GCMEncrypter(key);
+        final GCMDecrypter decrypter = new GCMDecrypter(key);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                final String data = "Message " + i;
+                results.add(executor.submit(() -> data.equals(decrypter.decrypt(encrypter.encrypt(data, data), data))));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } catch (ExecutionException ex) {
+            fail(ex.getMessage());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
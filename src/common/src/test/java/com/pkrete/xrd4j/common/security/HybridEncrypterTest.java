@@ -0,0 +1,90 @@
+package com.pkrete.xrd4j.common.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for HybridEncrypter class. The cases cover decryption too.
+ *
+ * @author Petteri Kivimäki
+ */
+public class HybridEncrypterTest extends TestCase {
+
+    // Public key
+    private final static String publicKeyFile = "src/test/resources/mytruststore1.jks";
+    private final static String publicKeyFilePass = "truststore1";
+    private final static String publicKeyAlias = "key2";
+    // Private key
+    private final static String privateKeyFile = "src/test/resources/mykeystore2.jks";
+    private final static String privateKeyFilePass = "storepass2";
+    private final static String privateKeyAlias = "selfsigned";
+    private final static String privateKeyPass = "keypass2";
+    private final PublicKey publicKey = CryptoHelper.getPublicKey(publicKeyFile, publicKeyFilePass, publicKeyAlias);
+    private final PrivateKey privateKey = CryptoHelper.getPrivateKey(privateKeyFile, privateKeyFilePass, privateKeyAlias, privateKeyPass);
+
+    /**
+     * The same wrapped session key is used until the message limit is
+     * reached, and the decrypter unwraps each session key once.
+     */
+    public void testSessionKeyReuse() {
+        HybridEncrypter encrypter = new HybridEncrypter(this.publicKey, 3, HybridEncrypter.DEFAULT_MAX_AGE);
+        HybridDecrypter decrypter = new HybridDecrypter(this.privateKey);
+        String[] encrypted = new String[4];
+        for (int i = 0; i < encrypted.length; i++) {
+            encrypted[i] = encrypter.encrypt("Message " + i);
+            assertEquals("Message " + i, decrypter.decrypt(encrypted[i]));
+        }
+        assertTrue(Arrays.equals(wrappedKey(encrypted[0]), wrappedKey(encrypted[2])));
+        assertFalse(Arrays.equals(wrappedKey(encrypted[2]), wrappedKey(encrypted[3])));
+        assertEquals(2, decrypter.getCacheSize());
+
+        encrypter.rotate();
+        assertFalse(Arrays.equals(wrappedKey(encrypted[3]), wrappedKey(encrypter.encrypt("Message"))));
+    }
+
+    /**
+     * Expired session keys are replaced.
+     */
+    public void testSessionKeyExpiry() {
+        HybridEncrypter encrypter = new HybridEncrypter(this.publicKey, HybridEncrypter.DEFAULT_MAX_MESSAGES, 0);
+        assertFalse(Arrays.equals(wrappedKey(encrypter.encrypt("Message 1")), wrappedKey(encrypter.encrypt("Message 2"))));
+    }
+
+    /**
+     * Modified messages are rejected and the session key of a rejected
+     * message is not cached.
+     */
+    public void testModifiedMessage() {
+        HybridEncrypter encrypter = new HybridEncrypter(this.publicKey);
+        HybridDecrypter decrypter = new HybridDecrypter(this.privateKey, 1, HybridEncrypter.DEFAULT_TRANSFORMATION);
+        byte[] bytes = CryptoHelper.decodeBase64(encrypter.encrypt("Message"));
+        bytes[bytes.length - 1] ^= 1;
+        assertNull(decrypter.decrypt(CryptoHelper.encodeBase64(bytes)));
+        assertEquals(0, decrypter.getCacheSize());
+        assertNull(decrypter.decrypt(CryptoHelper.encodeBase64(new byte[]{0, 100, 1})));
+        assertEquals("Message", decrypter.decrypt(encrypter.encrypt("Message")));
+        assertEquals(1, decrypter.getCacheSize());
+    }
+
+    /**
+     * Session keys are wrapped using OAEP by default and PKCS #1 v1.5 can be
+     * used when it's explicitly requested. The decrypter must use the same
+     * transformation as the encrypter.
+     */
+    public void testTransformations() {
+        assertEquals("RSA/ECB/OAEPWithSHA-256AndMGF1Padding", HybridEncrypter.DEFAULT_TRANSFORMATION);
+        HybridEncrypter encrypter = new HybridEncrypter(this.publicKey, HybridEncrypter.DEFAULT_MAX_MESSAGES, HybridEncrypter.DEFAULT_MAX_AGE, HybridEncrypter.PKCS1_TRANSFORMATION);
+        HybridDecrypter decrypter = new HybridDecrypter(this.privateKey, 1, HybridEncrypter.PKCS1_TRANSFORMATION);
+        assertEquals("Message", decrypter.decrypt(encrypter.encrypt("Message")));
+        assertNull(new HybridDecrypter(this.privateKey).decrypt(encrypter.encrypt("Message")));
+    }
+
+    private static byte[] wrappedKey(String encrypted) {
+        byte[] bytes = CryptoHelper.decodeBase64(encrypted);
+        int length = ((bytes[0] & 0xff) << 8) | (bytes[1] & 0xff);
+        return Arrays.copyOfRange(bytes, 2, 2 + length);
+    }
+}
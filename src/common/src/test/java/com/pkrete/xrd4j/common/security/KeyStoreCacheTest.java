@@ -0,0 +1,113 @@
+package com.pkrete.xrd4j.common.security;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.UnrecoverableEntryException;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for KeyStoreCache class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class KeyStoreCacheTest extends TestCase {
+
+    // Public key
+    private final static String publicKeyFile = "src/test/resources/mytruststore1.jks";
+    private final static String publicKeyFilePass = "truststore1";
+    private final static String publicKeyAlias = "key2";
+    // Private key
+    private final static String privateKeyFile = "src/test/resources/mykeystore2.jks";
+    private final static String privateKeyFilePass = "storepass2";
+    private final static String privateKeyAlias = "selfsigned";
+    private final static String privateKeyPass = "keypass2";
+
+    /**
+     * Keys are cached until the key store file changes.
+     *
+     * @throws Exception if there's an error
+     */
+    public void testReload() throws Exception {
+        File file = File.createTempFile("keystore", ".jks");
+        try {
+            Files.copy(new File(privateKeyFile).toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            KeyStoreCache cache = new KeyStoreCache(0);
+            PrivateKey key = cache.getPrivateKey(file.getPath(), privateKeyFilePass, privateKeyAlias, privateKeyPass);
+            assertSame(key, cache.getPrivateKey(file.getPath(), privateKeyFilePass, privateKeyAlias, privateKeyPass));
+            assertEquals(1, cache.size());
+
+            assertTrue(file.setLastModified(file.lastModified() - 10000));
+            PrivateKey reloaded = cache.getPrivateKey(file.getPath(), privateKeyFilePass, privateKeyAlias, privateKeyPass);
+            assertNotSame(key, reloaded);
+            assertEquals(key, reloaded);
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Cached key stores and keys aren't returned with wrong passwords.
+     *
+     * @throws Exception if there's an error
+     */
+    public void testWrongPassword() throws Exception {
+        KeyStoreCache cache = new KeyStoreCache();
+        cache.getPrivateKey(privateKeyFile, privateKeyFilePass, privateKeyAlias, privateKeyPass);
+        try {
+            cache.getPrivateKey(privateKeyFile, privateKeyFilePass, privateKeyAlias, "wrong");
+            fail("Wrong key password was accepted.");
+        } catch (UnrecoverableEntryException ex) {
+            // Expected
+        }
+        try {
+            cache.getPrivateKey(privateKeyFile, "wrong", privateKeyAlias, privateKeyPass);
+            fail("Wrong key store password was accepted.");
+        } catch (IOException ex) {
+            // Expected
+        }
+        try {
+            cache.getPublicKey(privateKeyFile, privateKeyFilePass, "missing");
+            fail("Missing alias was accepted.");
+        } catch (KeyStoreException ex) {
+            // Expected
+        }
+    }
+
+    /**
+     * Keys can be fetched from PKCS12 key stores.
+     *
+     * @throws Exception if there's an error
+     */
+    public void testPKCS12() throws Exception {
+        assertEquals("PKCS12", KeyStoreCache.getType("keys.p12"));
+        assertEquals("PKCS12", KeyStoreCache.getType("keys.PFX"));
+        assertEquals("JKS", KeyStoreCache.getType("keys.jks"));
+        KeyStoreCache cache = new KeyStoreCache();
+        PublicKey key = cache.getPublicKey(publicKeyFile, publicKeyFilePass, publicKeyAlias);
+        File file = File.createTempFile("truststore", ".p12");
+        try {
+            KeyStore pkcs12 = KeyStore.getInstance("PKCS12");
+            pkcs12.load(null, null);
+            KeyStore source = KeyStore.getInstance("JKS");
+            try (java.io.FileInputStream in = new FileInputStream(publicKeyFile)) {
+                source.load(in, publicKeyFilePass.toCharArray());
+            }
+            pkcs12.setCertificateEntry(publicKeyAlias, source.getCertificate(publicKeyAlias));
+            try (OutputStream out = new FileOutputStream(file)) {
+                pkcs12.store(out, "pkcs12pass".toCharArray());
+            }
+            assertEquals(key, cache.getPublicKey(file.getPath(), "pkcs12pass", publicKeyAlias));
+        } finally {
+            file.delete();
+        }
+    }
+}
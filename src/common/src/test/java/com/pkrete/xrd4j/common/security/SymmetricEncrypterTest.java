@@ -1,7 +1,14 @@
 package com.pkrete.xrd4j.common.security;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Random;
 import junit.framework.TestCase;
 
 /**
@@ -44,4 +51,75 @@ public class SymmetricEncrypterTest extends TestCase {
         String decrypted = sd.decrypt(encrypted);
         assertEquals(data, decrypted);
     }
+
+    /**
+     * Test encrypting and decrypting a stream that spans several chunks.
+     * The result must be the same as when encrypting a string.
+     *
+     * @throws NoSuchAlgorithmException
+     * @throws IOException
+     */
+    public void testStreamEncryption() throws NoSuchAlgorithmException, IOException {
+        byte[] data = new byte[CipherStreams.BUFFER_SIZE * 3 + 5];
+        new Random(1).nextBytes(data);
+        Key key = CryptoHelper.generateAESKey(128);
+        byte[] iv = CryptoHelper.generateIV();
+        StreamingEncrypter se = new SymmetricEncrypter(key, iv);
+        StreamingDecrypter sd = new SymmetricDecrypter(key, iv);
+
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        se.encrypt(new ByteArrayInputStream(data), encrypted);
+        String text = "Streamed text ÄäÅåÖö";
+        ByteArrayOutputStream encryptedText = new ByteArrayOutputStream();
+        se.encrypt(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), encryptedText);
+        assertEquals(se.encrypt(text), new String(encryptedText.toByteArray(), StandardCharsets.US_ASCII));
+
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        sd.decrypt(new ByteArrayInputStream(encrypted.toByteArray()), decrypted);
+        assertTrue(Arrays.equals(data, decrypted.toByteArray()));
+
+        // Line separators in the base 64 data are ignored
+        String wrapped = new String(encrypted.toByteArray(), StandardCharsets.US_ASCII).replaceAll("(.{76})", "$1\r\n");
+        decrypted.reset();
+        sd.decrypt(new ByteArrayInputStream(wrapped.getBytes(StandardCharsets.US_ASCII)), decrypted);
+        assertTrue(Arrays.equals(data, decrypted.toByteArray()));
+    }
+
+    /**
+     * Test encrypting and decrypting using channels.
+     *
+     * @throws NoSuchAlgorithmException
+     * @throws IOException
+     */
+    public void testChannelEncryption() throws NoSuchAlgorithmException, IOException {
+        byte[] data = "Channel data".getBytes(StandardCharsets.UTF_8);
+        Key key = CryptoHelper.generateAESKey(128);
+        byte[] iv = CryptoHelper.generateIV();
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        new SymmetricEncrypter(key, iv).encrypt(Channels.newChannel(new ByteArrayInputStream(data)), Channels.newChannel(encrypted));
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        new SymmetricDecrypter(key, iv).decrypt(Channels.newChannel(new ByteArrayInputStream(encrypted.toByteArray())), Channels.newChannel(decrypted));
+        assertTrue(Arrays.equals(data, decrypted.toByteArray()));
+    }
+
+    /**
+     * Decrypting a truncated stream fails.
+     *
+     * @throws NoSuchAlgorithmException
+     * @throws IOException
+     */
+    public void testStreamDecryptionFails() throws NoSuchAlgorithmException, IOException {
+        Key key = CryptoHelper.generateAESKey(128);
+        byte[] iv = CryptoHelper.generateIV();
+        ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+        new SymmetricEncrypter(key, iv).encrypt(new ByteArrayInputStream(new byte[100]), encrypted);
+        byte[] bytes = CryptoHelper.decodeBase64(new String(encrypted.toByteArray(), StandardCharsets.US_ASCII));
+        byte[] truncated = CryptoHelper.encodeBase64(Arrays.copyOf(bytes, bytes.length - 5)).getBytes(StandardCharsets.US_ASCII);
+        try {
+            new SymmetricDecrypter(key, iv).decrypt(new ByteArrayInputStream(truncated), new ByteArrayOutputStream());
+            fail("IOException expected");
+        } catch (IOException ex) {
+            // Expected
+        }
+    }
 }
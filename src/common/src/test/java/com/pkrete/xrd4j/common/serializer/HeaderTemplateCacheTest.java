@@ -0,0 +1,120 @@
+package com.pkrete.xrd4j.common.serializer;
+
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.member.SecurityServer;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.util.SOAPHelper;
+import javax.xml.soap.MessageFactory;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for HeaderTemplateCache class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class HeaderTemplateCacheTest extends TestCase {
+
+    private final TestHeaderSerializer serializer = new TestHeaderSerializer();
+    private final HeaderTemplateCache cache = new HeaderTemplateCache(2);
+
+    /**
+     * Messages with the same members share the same template.
+     *
+     * @throws XRd4JException
+     */
+    public void testSameMembers() throws XRd4JException {
+        ServiceRequest request1 = new ServiceRequest(new ConsumerMember("FI", "GOV", "MEMBER1", "subsystem"), new ProducerMember("FI", "COM", "MEMBER2", "subsystem", "getRandom", "v1"), "ID-1");
+        ServiceRequest request2 = new ServiceRequest(new ConsumerMember("FI", "GOV", "MEMBER1", "subsystem"), new ProducerMember("FI", "COM", "MEMBER2", "subsystem", "getRandom", "v1"), "ID-2");
+        assertSame(this.cache.getTemplate(request1), this.cache.getTemplate(request2));
+        assertEquals(1, this.cache.size());
+    }
+
+    /**
+     * Modifying a member after it has been used creates a new template.
+     *
+     * @throws XRd4JException
+     * @throws SOAPException
+     */
+    public void testModifiedMember() throws XRd4JException, SOAPException {
+        ServiceRequest request = new ServiceRequest(new ConsumerMember("FI", "GOV", "MEMBER1"), new ProducerMember("FI", "COM", "MEMBER2", "subsystem", "getRandom"), "ID-1");
+        request.setProtocolVersion("4.0");
+        HeaderTemplate template = this.cache.getTemplate(request);
+        request.getProducer().setServiceVersion("v2");
+        assertNotSame(template, this.cache.getTemplate(request));
+        assertEquals(2, this.cache.size());
+        assertTrue(this.serialize(request).contains("<id:serviceVersion>v2</id:serviceVersion>"));
+    }
+
+    /**
+     * Security server is added to the template.
+     *
+     * @throws XRd4JException
+     * @throws SOAPException
+     */
+    public void testSecurityServer() throws XRd4JException, SOAPException {
+        ServiceRequest request = new ServiceRequest(new ConsumerMember("FI", "GOV", "MEMBER1", "subsystem"), new ProducerMember("FI", "COM", "MEMBER2", "subsystem", "getRandom", "v1"), "ID-1");
+        request.setUserId("EE1234567890");
+        request.setProtocolVersion("4.0");
+        String withoutServer = this.serialize(request);
+        request.setSecurityServer(new SecurityServer("FI", "COM", "MEMBER2", "server1"));
+        String withServer = this.serialize(request);
+        assertFalse(withoutServer.contains("securityServer"));
+        assertEquals("<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header><xrd:client id:objectType=\"SUBSYSTEM\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>MEMBER1</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode></xrd:client><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>COM</id:memberClass><id:memberCode>MEMBER2</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode><id:serviceCode>getRandom</id:serviceCode><id:serviceVersion>v1</id:serviceVersion></xrd:service><xrd:securityServer id:objectType=\"SERVER\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>COM</id:memberClass><id:memberCode>MEMBER2</id:memberCode><id:serverCode>server1</id:serverCode></xrd:securityServer><xrd:userId>EE1234567890</xrd:userId><xrd:id>ID-1</xrd:id><xrd:protocolVersion>4.0</xrd:protocolVersion></SOAP-ENV:Header><SOAP-ENV:Body/></SOAP-ENV:Envelope>", withServer);
+    }
+
+    /**
+     * The least recently used template is evicted when the cache is full.
+     *
+     * @throws XRd4JException
+     */
+    public void testEviction() throws XRd4JException {
+        ServiceRequest request1 = new ServiceRequest(new ConsumerMember("FI", "GOV", "MEMBER1"), new ProducerMember("FI", "COM", "MEMBER2", "subsystem", "service1"), "ID-1");
+        ServiceRequest request2 = new ServiceRequest(new ConsumerMember("FI", "GOV", "MEMBER1"), new ProducerMember("FI", "COM", "MEMBER2", "subsystem", "service2"), "ID-2");
+        ServiceRequest request3 = new ServiceRequest(new ConsumerMember("FI", "GOV", "MEMBER1"), new ProducerMember("FI", "COM", "MEMBER2", "subsystem", "service3"), "ID-3");
+        HeaderTemplate template1 = this.cache.getTemplate(request1);
+        HeaderTemplate template2 = this.cache.getTemplate(request2);
+        assertSame(template1, this.cache.getTemplate(request1));
+        this.cache.getTemplate(request3);
+        assertEquals(2, this.cache.size());
+        assertSame(template1, this.cache.getTemplate(request1));
+        assertNotSame(template2, this.cache.getTemplate(request2));
+    }
+
+    /**
+     * Serializers share the same cache, so a template is reused even if a
+     * new serializer is created for every message.
+     *
+     * @throws XRd4JException
+     * @throws SOAPException
+     */
+    public void testSharedAcrossSerializers() throws XRd4JException, SOAPException {
+        ServiceRequest request = new ServiceRequest(new ConsumerMember("FI", "GOV", "SHARED1"), new ProducerMember("FI", "COM", "SHARED2", "subsystem", "getRandom"), "ID-1");
+        request.setProtocolVersion("4.0");
+        HeaderTemplateCache shared = HeaderTemplateCache.getShared();
+        new TestHeaderSerializer().serialize(request, MessageFactory.newInstance().createMessage());
+        HeaderTemplate template = shared.getTemplate(request);
+        int size = shared.size();
+        for (int i = 0; i < 3; i++) {
+            new TestHeaderSerializer().serialize(request, MessageFactory.newInstance().createMessage());
+        }
+        assertEquals(size, shared.size());
+        assertSame(template, shared.getTemplate(request));
+    }
+
+    private String serialize(ServiceRequest request) throws SOAPException {
+        SOAPMessage message = MessageFactory.newInstance().createMessage();
+        this.serializer.serialize(request, message);
+        return SOAPHelper.toString(message);
+    }
+
+    private class TestHeaderSerializer extends AbstractHeaderSerializer {
+
+        void serialize(ServiceRequest request, SOAPMessage message) throws SOAPException {
+            super.serializeHeader(request, message.getSOAPPart().getEnvelope());
+        }
+    }
+}
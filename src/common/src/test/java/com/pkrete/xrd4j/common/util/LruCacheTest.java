@@ -0,0 +1,72 @@
+package com.pkrete.xrd4j.common.util;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for LruCache class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class LruCacheTest extends TestCase {
+
+    /**
+     * The least recently used value is evicted when the cache is full.
+     */
+    public void testEviction() {
+        LruCache<String, String> cache = new LruCache<>(2, 10000);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        assertEquals("1", cache.get("a"));
+        cache.put("c", "3");
+        assertEquals(2, cache.size());
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+    }
+
+    /**
+     * Expired values are not returned.
+     *
+     * @throws Exception
+     */
+    public void testTimeToLive() throws Exception {
+        LruCache<String, String> cache = new LruCache<>(10, 50);
+        cache.put("a", "1");
+        assertEquals("1", cache.get("a"));
+        Thread.sleep(100);
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Invalidated values are not returned.
+     */
+    public void testInvalidate() {
+        LruCache<String, String> cache = new LruCache<>(10, 10000);
+        cache.put("a1", "1");
+        cache.put("a2", "2");
+        cache.put("b1", "3");
+        cache.invalidate("a1");
+        assertNull(cache.get("a1"));
+        cache.invalidateIf(key -> key.startsWith("a"));
+        assertNull(cache.get("a2"));
+        assertEquals("3", cache.get("b1"));
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Values of a cache without time to live never expire.
+     *
+     * @throws Exception
+     */
+    public void testNoExpiry() throws Exception {
+        LruCache<String, String> cache = new LruCache<>(1);
+        cache.put("a", "1");
+        Thread.sleep(10);
+        assertEquals("1", cache.get("a"));
+        cache.put("b", "2");
+        assertNull(cache.get("a"));
+        assertEquals("2", cache.get("b"));
+    }
+}
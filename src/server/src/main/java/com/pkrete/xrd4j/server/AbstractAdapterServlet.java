@@ -2,23 +2,50 @@ package com.pkrete.xrd4j.server;
 
 import com.pkrete.xrd4j.common.exception.XRd4JException;
 import com.pkrete.xrd4j.common.message.ErrorMessage;
+import com.pkrete.xrd4j.common.message.ErrorMessageType;
 import com.pkrete.xrd4j.common.message.ServiceRequest;
 import com.pkrete.xrd4j.common.message.ServiceResponse;
 import com.pkrete.xrd4j.common.util.Constants;
-import com.pkrete.xrd4j.common.util.FileUtil;
 import com.pkrete.xrd4j.common.util.SOAPHelper;
+import com.pkrete.xrd4j.server.admission.AdmissionController;
+import com.pkrete.xrd4j.server.deserializer.LazyServiceRequestDeserializer;
 import com.pkrete.xrd4j.server.deserializer.ServiceRequestDeserializer;
 import com.pkrete.xrd4j.server.deserializer.ServiceRequestDeserializerImpl;
+import com.pkrete.xrd4j.server.health.HealthMonitor;
+import com.pkrete.xrd4j.server.health.HealthStatus;
+import com.pkrete.xrd4j.server.metrics.Phase;
+import com.pkrete.xrd4j.server.metrics.ServletMetrics;
+import com.pkrete.xrd4j.server.metrics.TextMetricsExporter;
+import com.pkrete.xrd4j.server.registry.ServiceRegistration;
+import com.pkrete.xrd4j.server.registry.ServiceRegistry;
 import com.pkrete.xrd4j.server.serializer.AbstractServiceResponseSerializer;
 import com.pkrete.xrd4j.server.serializer.ServiceResponseSerializer;
 import com.pkrete.xrd4j.server.utils.AdapterUtils;
+import com.pkrete.xrd4j.server.utils.FaultHelper;
+import com.pkrete.xrd4j.server.utils.WSDLCache;
+import com.pkrete.xrd4j.server.utils.WSDLResponse;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.xml.soap.SOAPException;
 import javax.xml.soap.SOAPMessage;
+import javax.xml.stream.XMLStreamException;
 import javax.servlet.http.HttpServlet;
 import javax.xml.soap.MimeHeaders;
 import javax.xml.soap.SOAPElement;
@@ -30,32 +57,315 @@ import org.slf4j.LoggerFactory;
  * This an abstract base class for Servlets that implement SOAP message
  * processing.
  *
+ * By default the requests are processed synchronously in the container
+ * thread. If isAsyncMode method returns true and the servlet has been
+ * configured to support asynchronous processing, the container thread is
+ * released after the request has been parsed and the response is written
+ * when the CompletionStage returned by handleRequestAsync method completes.
+ * If the response is not ready within the time returned by getAsyncTimeout
+ * method, a SOAP Fault is returned. If getRequestExecutor method returns
+ * an Executor, handleRequest is run using the executor in asynchronous
+ * mode.
+ *
+ * Services can be registered to the service registry by service code and
+ * version instead of overriding handleRequest method. Each registration
+ * holds a handler and pre-built deserializer and serializer instances that
+ * are shared by all the requests.
+ *
+ * If getAdmissionController method returns an AdmissionController, requests
+ * that exceed the concurrency limits are rejected immediately with a
+ * SOAP-ENV:Server fault.
+ *
+ * Latency of each processing phase, faults and message sizes are recorded
+ * to the metrics returned by getMetrics method. If isMetricsEndpointEnabled
+ * method returns true, the metrics are served in plain text format as a
+ * response to GET requests with "metrics" parameter.
+ *
+ * GET requests with "health" parameter are answered from the cached status
+ * of the health monitor without any SOAP processing. "?health=live" returns
+ * the liveness and "?health" the readiness of the servlet.
+ *
  * @author Petteri Kivimäki
  */
 public abstract class AbstractAdapterServlet extends HttpServlet {
 
     private static final Logger logger = LoggerFactory.getLogger(AbstractAdapterServlet.class);
-    private static final String FAULT_CODE_CLIENT = "SOAP-ENV:Client";
+    private static final String FAULT_CODE_CLIENT = FaultHelper.FAULT_CODE_CLIENT;
+    private static final String FAULT_CODE_SERVER = "SOAP-ENV:Server";
+    private static final String CONTENT_TYPE = "Content-Type";
+    private static final String CONTENT_LENGTH = "Content-Length";
+    /**
+     * Default timeout of asynchronous requests in milliseconds.
+     */
+    protected static final long DEFAULT_ASYNC_TIMEOUT = 30000;
+    /**
+     * Default maximum size of the requests that are parsed header first in
+     * bytes.
+     */
+    protected static final int DEFAULT_MAX_REQUEST_SIZE = 10 * 1024 * 1024;
     private ServiceRequestDeserializer deserializer;
     private ServiceResponseSerializer serializer;
     private String errGetNotSupportedStr;
     private String errWsdlNotFoundStr;
     private String errInternalServerErrStr;
+    private String errServiceOverloadedStr;
     private final ErrorMessage errGetNotSupported = new ErrorMessage(FAULT_CODE_CLIENT, "HTTP GET method not implemented", null, null);
     private final ErrorMessage errWsdlNotFound = new ErrorMessage(FAULT_CODE_CLIENT, "WSDL not found", null, null);
-    private final ErrorMessage errInternalServerErr = new ErrorMessage(FAULT_CODE_CLIENT, "500 Internal Server Error", null, null);
-    private final ErrorMessage errUnknownServiceCode = new ErrorMessage(FAULT_CODE_CLIENT, "Unknown service code.", null, null);
+    private final ErrorMessage errInternalServerErr = new ErrorMessage(FAULT_CODE_CLIENT, FaultHelper.INTERNAL_SERVER_ERROR, null, null);
+    private final ErrorMessage errUnknownServiceCode = new ErrorMessage(FAULT_CODE_CLIENT, FaultHelper.UNKNOWN_SERVICE_CODE, null, null);
+    private final ErrorMessage errRequestTimeout = new ErrorMessage(FAULT_CODE_SERVER, "Request processing timed out.", null, null);
+    private final ErrorMessage errServiceOverloaded = new ErrorMessage(FAULT_CODE_SERVER, "Service is overloaded. Please try again later.", null, null);
+    private final WSDLCache wsdlCache = new WSDLCache();
+
+    private final ServiceRegistry serviceRegistry = new ServiceRegistry();
+    private final LazyServiceRequestDeserializer lazyDeserializer = new LazyServiceRequestDeserializer();
+    private final ServletMetrics metrics = new ServletMetrics();
+    private final ThreadLocal<ServletMetrics.Sample> currentSample = new ThreadLocal<>();
+    private final HealthMonitor healthMonitor = new HealthMonitor();
 
     /**
      * Handles and processes the given request and returns a SOAP message as a
-     * response.
+     * response. The default implementation looks up the service from the
+     * service registry and lets the registration process the request. If the
+     * service is not registered, a SOAP Fault is returned before the request
+     * data is deserialized. Subclasses that don't use the service registry
+     * must override this method.
      *
      * @param request ServiceRequest to be processed
      * @return ServiceResponse that contains the SOAP response
      * @throws SOAPException if there's a SOAP error
      * @throws XRd4JException if there's a XRd4J error
      */
-    protected abstract ServiceResponse handleRequest(ServiceRequest request) throws SOAPException, XRd4JException;
+    protected ServiceResponse handleRequest(ServiceRequest request) throws SOAPException, XRd4JException {
+        ServiceRegistration registration = this.serviceRegistry.get(request.getProducer());
+        if (registration == null) {
+            return FaultHelper.unknownService(request, this.serializer);
+        }
+        // Record deserializing and serializing separately if measured
+        ServletMetrics.Sample sample = this.currentSample.get();
+        long start = System.nanoTime();
+        registration.deserialize(request);
+        if (sample != null) {
+            sample.record(Phase.BODY, start);
+        }
+        ServiceResponse response = registration.handle(request);
+        start = System.nanoTime();
+        registration.serialize(response, request);
+        if (sample != null) {
+            sample.record(Phase.SERIALIZE, start);
+        }
+        return response;
+    }
+
+    /**
+     * Returns the service registry of this servlet. Services are typically
+     * registered in the init method of the subclass.
+     *
+     * @return service registry
+     */
+    protected ServiceRegistry getServiceRegistry() {
+        return this.serviceRegistry;
+    }
+
+    /**
+     * Handles and processes the given request asynchronously. The returned
+     * CompletionStage is completed with a ServiceResponse that contains the
+     * SOAP response. This method is used only in asynchronous mode. If
+     * getRequestExecutor method returns an Executor, the default
+     * implementation calls handleRequest method using the executor.
+     * Otherwise handleRequest is called in the current thread and an already
+     * completed stage is returned.
+     *
+     * @param request ServiceRequest to be processed
+     * @return CompletionStage that's completed with a ServiceResponse that
+     * contains the SOAP response
+     */
+    protected CompletionStage<ServiceResponse> handleRequestAsync(final ServiceRequest request) {
+        final CompletableFuture<ServiceResponse> future = new CompletableFuture<>();
+        Executor executor = this.getRequestExecutor();
+        if (executor == null) {
+            this.completeRequest(request, future);
+            return future;
+        }
+        // Measurements of the request are passed to the worker thread
+        final ServletMetrics.Sample sample = this.currentSample.get();
+        try {
+            executor.execute(() -> {
+                this.currentSample.set(sample);
+                try {
+                    this.completeRequest(request, future);
+                } finally {
+                    this.currentSample.remove();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    /**
+     * Calls handleRequest method and completes the given future with the
+     * result.
+     *
+     * @param request ServiceRequest to be processed
+     * @param future future to be completed
+     */
+    private void completeRequest(ServiceRequest request, CompletableFuture<ServiceResponse> future) {
+        try {
+            future.complete(this.handleRequest(request));
+        } catch (SOAPException | XRd4JException | RuntimeException ex) {
+            future.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Returns the Executor that runs handleRequest method in asynchronous
+     * mode. Handlers that block on back end calls, e.g. JDBC or HTTP, can
+     * be run on a large thread pool or, on Java 21 and later, on virtual
+     * threads using Executors.newVirtualThreadPerTaskExecutor(), so that the
+     * container threads are never blocked. The same executor should be
+     * returned every time. The default implementation returns null, which
+     * means that handleRequest is called in the container thread.
+     *
+     * @return Executor for request handling or null
+     */
+    protected Executor getRequestExecutor() {
+        return null;
+    }
+
+    /**
+     * Tells if the requests should be processed asynchronously. The servlet
+     * must be configured to support asynchronous processing too, e.g. using
+     * the async-supported element in web.xml. The default implementation
+     * returns false.
+     *
+     * @return true if the requests should be processed asynchronously;
+     * otherwise false
+     */
+    protected boolean isAsyncMode() {
+        return false;
+    }
+
+    /**
+     * Tells if only the SOAP header of text/xml requests should be parsed
+     * before the request is routed. In this mode the SOAP header is streamed
+     * without building a DOM tree, and the SOAPMessage of the request is
+     * built only when it's needed, e.g. by a CustomRequestDeserializer.
+     * Requests that are rejected or whose service is not registered are never
+     * parsed completely. Multipart requests are always parsed completely. The
+     * default implementation returns false.
+     *
+     * @return true if only the header should be parsed first; otherwise false
+     */
+    protected boolean isHeaderFirstParsing() {
+        return false;
+    }
+
+    /**
+     * Returns the maximum size of the requests that are parsed header first
+     * in bytes. Larger requests are rejected with a SOAP Fault before the
+     * body is read into memory. The default implementation returns
+     * DEFAULT_MAX_REQUEST_SIZE.
+     *
+     * @return maximum size of the requests in bytes
+     */
+    protected int getMaxRequestSize() {
+        return DEFAULT_MAX_REQUEST_SIZE;
+    }
+
+    /**
+     * Checks the given request before it's processed. This method is called
+     * after the SOAP header has been deserialized and it can be used e.g. for
+     * access checks. If the request is rejected, the returned error is sent
+     * to the client and handleRequest is not called. The default
+     * implementation accepts all the requests.
+     *
+     * @param request ServiceRequest to be checked
+     * @return ErrorMessage if the request is rejected; null if the request is
+     * accepted
+     */
+    protected ErrorMessage checkRequest(ServiceRequest request) {
+        return null;
+    }
+
+    /**
+     * Returns the metrics of this servlet. Latency of every processing phase
+     * is measured per service code, faults are counted by ErrorMessageType
+     * and request and response sizes are recorded. The metrics can be
+     * exported using a MetricsExporter. The servlet always records to the
+     * same instance, so this method can't be overridden.
+     *
+     * @return metrics of this servlet
+     */
+    protected final ServletMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Tells if the metrics are served in plain text format as a response to
+     * GET requests with "metrics" parameter. The default implementation
+     * returns false.
+     *
+     * @return true if the metrics endpoint is enabled; otherwise false
+     */
+    protected boolean isMetricsEndpointEnabled() {
+        return false;
+    }
+
+    /**
+     * Returns the health monitor whose status is returned as a response to
+     * GET requests with "health" parameter. Applications can register their
+     * own health checks, e.g. in init method. A check named "load" that
+     * fails when the adaptive concurrency limit is reached is registered by
+     * default. The servlet always uses the same instance, so this method
+     * can't be overridden.
+     *
+     * @return health monitor of this servlet
+     */
+    protected final HealthMonitor getHealthMonitor() {
+        return this.healthMonitor;
+    }
+
+    /**
+     * Checks if the servlet is able to accept more requests. Returns false
+     * if the number of requests in flight has reached the adaptive limit of
+     * the admission controller.
+     *
+     * @return true if more requests can be accepted; otherwise false
+     */
+    private boolean hasCapacity() {
+        AdmissionController controller = this.getAdmissionController();
+        if (controller == null || controller.getLimit() < 0) {
+            return true;
+        }
+        return controller.getInFlight() < controller.getLimit();
+    }
+
+    /**
+     * Returns the admission controller that limits the number of requests
+     * that are processed concurrently. When the limit is reached, new
+     * requests are rejected immediately with a pre-serialized SOAP Fault
+     * instead of queueing them. The default implementation returns null,
+     * which means that admission control is not used. Subclasses must
+     * return the same instance on every call.
+     *
+     * @return admission controller or null
+     */
+    protected AdmissionController getAdmissionController() {
+        return null;
+    }
+
+    /**
+     * Returns the timeout of asynchronous requests in milliseconds. If the
+     * response is not ready when the timeout expires, a SOAP Fault is
+     * returned. The default implementation returns DEFAULT_ASYNC_TIMEOUT.
+     *
+     * @return timeout of asynchronous requests in milliseconds
+     */
+    protected long getAsyncTimeout() {
+        return DEFAULT_ASYNC_TIMEOUT;
+    }
 
     /**
      * Must return the aboslute path of the WSDL file.
@@ -78,6 +388,9 @@ public abstract class AbstractAdapterServlet extends HttpServlet {
         this.errWsdlNotFoundStr = SOAPHelper.toString(this.errorToSOAP(this.errWsdlNotFound, null));
         logger.debug("Initialize \"errInternalServerErrStr\" error message.");
         this.errInternalServerErrStr = SOAPHelper.toString(this.errorToSOAP(this.errInternalServerErr, null));
+        logger.debug("Initialize \"errServiceOverloadedStr\" error message.");
+        this.errServiceOverloadedStr = SOAPHelper.toString(this.errorToSOAP(this.errServiceOverloaded, null));
+        this.healthMonitor.register("load", this::hasCapacity);
         logger.debug("AbstractServlet initialized.");
     }
 
@@ -96,6 +409,8 @@ public abstract class AbstractAdapterServlet extends HttpServlet {
         logger.debug("New request received.");
         SOAPMessage soapRequest = null;
         SOAPMessage soapResponse = null;
+        ServletMetrics.Sample sample = this.metrics.start();
+        sample.setRequestBytes(request.getContentLength());
 
         // Log HTTP headers if debug is enabled
         if (logger.isDebugEnabled()) {
@@ -104,15 +419,24 @@ public abstract class AbstractAdapterServlet extends HttpServlet {
         }
 
         // Get incoming SOAP message
+        boolean headerFirst = false;
         if (request.getContentType().toLowerCase().startsWith(Constants.TEXT_XML)) {
             // Regular SOAP message without attachments
             logger.info("Request's content type is \"{}\".", Constants.TEXT_XML);
-            soapRequest = SOAPHelper.toSOAP(request.getInputStream());
+            if (this.isHeaderFirstParsing()) {
+                headerFirst = true;
+            } else {
+                long start = System.nanoTime();
+                soapRequest = SOAPHelper.toSOAP(request.getInputStream());
+                sample.record(Phase.PARSE, start);
+            }
         } else if (request.getContentType().toLowerCase().startsWith(Constants.MULTIPART_RELATED)) {
             // SOAP message with attachments
             logger.info("Request's content type is \"{}\".", Constants.MULTIPART_RELATED);
             MimeHeaders mh = AdapterUtils.getHeaders(request);
+            long start = System.nanoTime();
             soapRequest = SOAPHelper.toSOAP(request.getInputStream(), mh);
+            sample.record(Phase.PARSE, start);
             logger.trace(AdapterUtils.getAttachmentsInfo(soapRequest));
         } else {
             // Invalid content type -> message is not processed
@@ -120,78 +444,201 @@ public abstract class AbstractAdapterServlet extends HttpServlet {
             errString = "Invalid content type : \"" + request.getContentType() + "\".";
         }
 
-        // Conversion has failed if soapRequest is null. Return SOAP Fault.
-        if (soapRequest == null) {
+        ServiceRequest serviceRequest = null;
+        if (headerFirst) {
+            // Only SOAP header is parsed now, SOAP body is parsed when needed
+            try {
+                serviceRequest = this.fromStreamToServiceRequest(request, sample);
+            } catch (XMLStreamException | IOException ex) {
+                logger.error(ex.getMessage(), ex);
+                logger.warn("Unable to read the request header. SOAP Fault is returned.");
+                ErrorMessage errorMessage = new ErrorMessage(FAULT_CODE_CLIENT, errString, "", "");
+                soapResponse = this.faultToSOAP(errorMessage, null);
+            }
+        } else if (soapRequest == null) {
+            // Conversion has failed if soapRequest is null. Return SOAP Fault.
             logger.warn("Unable to deserialize the request to SOAP. SOAP Fault is returned.");
             logger.trace("Incoming message : \"{}\"", request.getInputStream().toString());
             ErrorMessage errorMessage = new ErrorMessage(FAULT_CODE_CLIENT, errString, "", "");
-            soapResponse = this.errorToSOAP(errorMessage, null);
+            soapResponse = this.faultToSOAP(errorMessage, null);
+        } else {
+            // Convert SOAP request to servive request
+            long start = System.nanoTime();
+            serviceRequest = this.fromSOAPToServiceRequest(soapRequest);
+            sample.record(Phase.HEADER, start);
+        }
+        if (serviceRequest != null && serviceRequest.getProducer() != null) {
+            sample.setServiceCode(serviceRequest.getProducer().getServiceCode());
         }
 
-        // Deserialize incoming SOAP message to ServiceRequest object
+        // Check and process ServiceRequest object
         if (soapResponse == null) {
-            // Convert SOAP request to servive request
-            ServiceRequest serviceRequest = this.fromSOAPToServiceRequest(soapRequest);
             // If conversion fails, return SOAP fault
             if (serviceRequest == null) {
                 ErrorMessage errorMessage = new ErrorMessage(FAULT_CODE_CLIENT, "Invalid X-Road SOAP message. Unable to parse the request.", "", "");
-                soapResponse = this.errorToSOAP(errorMessage, null);
+                soapResponse = this.faultToSOAP(errorMessage, null);
+            }
+
+            // Reject the request before it's processed
+            if (soapResponse == null) {
+                ErrorMessage rejection = this.checkRequest(serviceRequest);
+                if (rejection != null) {
+                    logger.warn("ServiceRequest was rejected. SOAP Fault is returned.");
+                    soapResponse = this.faultToSOAP(rejection, serviceRequest);
+                }
             }
 
             // Process ServiceRequest object
             if (soapResponse == null) {
+                // Reject the request immediately if the service is overloaded
+                AdmissionController.Permit permit = this.admit(serviceRequest);
+                if (permit == null) {
+                    this.metrics.recordFault(ErrorMessageType.STANDARD_SOAP_ERROR_MESSAGE);
+                    this.writeResponse(this.errServiceOverloadedStr, response, sample);
+                    return;
+                }
+                if (this.isAsyncMode() && request.isAsyncSupported()) {
+                    // Process request asynchronously and release the thread
+                    this.processServiceRequestAsync(serviceRequest, permit, sample, request, response);
+                    return;
+                } else if (this.isAsyncMode()) {
+                    logger.warn("Asynchronous processing is not supported by the servlet. Request is processed synchronously.");
+                }
                 // Process request and generate SOAP response
-                soapResponse = this.processServiceRequest(serviceRequest);
+                try {
+                    soapResponse = this.processServiceRequest(serviceRequest, sample);
+                } finally {
+                    permit.release();
+                }
             }
         }
         // Write the SOAP response to output stream
-        writeResponse(soapResponse, response);
+        this.writeResponse(soapResponse, response, sample);
     }
 
     /**
-     * Writes the given SOAP response to output stream. Sets the necessary HTTP
-     * headers according to the content of the response.
+     * Writes the given SOAP response to output stream. The content type,
+     * including the MIME boundary of multipart messages, is taken from the
+     * MIME headers of the message. Content-Length is set if the message
+     * defines it. If writing the message fails before the response has been
+     * committed, a SOAP Fault is returned instead. The given sample is
+     * completed after the response has been written.
      *
      * @param soapResponse SOAP response
      * @param response servlet response
+     * @param sample measurements of the request
      */
-    private void writeResponse(SOAPMessage soapResponse, HttpServletResponse response) {
-        PrintWriter out = null;
+    private void writeResponse(SOAPMessage soapResponse, HttpServletResponse response, ServletMetrics.Sample sample) {
+        logger.debug("Send response.");
+        if (soapResponse == null) {
+            logger.warn("Internal serveri error. Message processing failed.");
+            this.metrics.recordFault(ErrorMessageType.STANDARD_SOAP_ERROR_MESSAGE);
+            this.writeResponse(this.errInternalServerErrStr, response, sample);
+            return;
+        }
+        long start = System.nanoTime();
         try {
-            logger.debug("Send response.");
-            // SOAPMessage to String
-            String responseStr = SOAPHelper.toString(soapResponse);
-            // Set response headers
-            if (responseStr != null && soapResponse != null && soapResponse.getAttachments().hasNext()) {
-                // Get MIME boundary from SOAP message
-                String boundary = AdapterUtils.getMIMEBoundary(responseStr);
-                response.setContentType(Constants.MULTIPART_RELATED + "; type=\"text/xml\"; boundary=\"" + boundary + "\"; charset=UTF-8");
+            // Content type and MIME boundary are set by saveChanges
+            if (soapResponse.saveRequired()) {
+                soapResponse.saveChanges();
+            }
+            MimeHeaders headers = soapResponse.getMimeHeaders();
+            String[] contentType = headers.getHeader(CONTENT_TYPE);
+            if (contentType != null && contentType.length > 0) {
+                response.setContentType(contentType[0]);
             } else {
                 response.setContentType(Constants.TEXT_XML + "; charset=UTF-8");
             }
+            String[] contentLength = headers.getHeader(CONTENT_LENGTH);
+            if (contentLength != null && contentLength.length > 0) {
+                response.setContentLength(Integer.parseInt(contentLength[0].trim()));
+            }
             logger.debug("Response content type : \"{}\".", response.getContentType());
-            // Get writer
-            out = response.getWriter();
-            // Send response
-            if (responseStr != null) {
-                out.println(responseStr);
-                logger.trace("SOAP response : \"{}\"", responseStr);
-            } else {
-                out.println(this.errInternalServerErrStr);
-                logger.warn("Internal serveri error. Message processing failed.");
-                logger.trace("SOAP response : \"{}\"", this.errInternalServerErrStr);
+            // Write the message straight to the output stream
+            CountingOutputStream out = new CountingOutputStream(response.getOutputStream());
+            soapResponse.writeTo(out);
+            out.flush();
+            sample.setResponseBytes(out.getCount());
+            sample.record(Phase.WRITE, start);
+            sample.complete();
+            if (logger.isTraceEnabled()) {
+                logger.trace("SOAP response : \"{}\"", SOAPHelper.toString(soapResponse));
             }
-        } catch (Exception e) {
+            logger.debug("Request was succesfully processed.");
+        } catch (SOAPException | IOException | RuntimeException e) {
             logger.error(e.getMessage(), e);
-            if (out != null) {
-                out.println(this.errInternalServerErrStr);
+            if (response.isCommitted()) {
+                logger.warn("Response has already been committed. SOAP Fault can not be returned.");
+            } else {
+                // Discard the partial message and headers
+                response.reset();
+                this.metrics.recordFault(ErrorMessageType.STANDARD_SOAP_ERROR_MESSAGE);
+                this.writeResponse(this.errInternalServerErrStr, response, sample);
             }
+            sample.complete();
+        }
+    }
+
+    /**
+     * Writes the given pre-rendered SOAP Fault to the given servlet
+     * response. The sample is completed after the response has been written,
+     * if it's given. The fault is not counted, callers that answer a SOAP
+     * request must record it to the metrics themselves.
+     *
+     * @param soapResponse SOAP Fault as a String
+     * @param response servlet response
+     * @param sample measurements of the request or null
+     */
+    private void writeResponse(String soapResponse, HttpServletResponse response, ServletMetrics.Sample sample) {
+        long start = System.nanoTime();
+        PrintWriter out = null;
+        try {
+            response.setContentType(Constants.TEXT_XML + "; charset=UTF-8");
+            out = response.getWriter();
+            out.println(soapResponse);
+            logger.trace("SOAP response : \"{}\"", soapResponse);
+        } catch (IOException | RuntimeException e) {
+            logger.error(e.getMessage(), e);
         } finally {
             if (out != null) {
                 out.close();
             }
-            logger.debug("Request was succesfully processed.");
+            if (sample != null) {
+                sample.setResponseBytes(soapResponse.getBytes(StandardCharsets.UTF_8).length);
+                sample.record(Phase.WRITE, start);
+                sample.complete();
+            }
+        }
+    }
+
+    /**
+     * Reads the given request and converts its SOAP header to ServiceRequest
+     * object. SOAP body is not parsed until the SOAPMessage of the
+     * ServiceRequest is needed.
+     *
+     * @param request servlet request
+     * @param sample measurements of the request
+     * @return ServiceRequest object representing the given request or null
+     * if the header is not a valid X-Road header
+     * @throws XMLStreamException if the request is not a valid SOAP message
+     * @throws IOException if reading the request fails
+     */
+    private ServiceRequest fromStreamToServiceRequest(HttpServletRequest request, ServletMetrics.Sample sample) throws XMLStreamException, IOException {
+        long start = System.nanoTime();
+        byte[] content = AdapterUtils.readBody(request, this.getMaxRequestSize());
+        sample.record(Phase.PARSE, start);
+        sample.setRequestBytes(content.length);
+        start = System.nanoTime();
+        try {
+            ServiceRequest serviceRequest = this.lazyDeserializer.deserialize(content);
+            sample.record(Phase.HEADER, start);
+            logger.debug("SOAP message header was succesfully deserialized to ServiceRequest.");
+            return serviceRequest;
+        } catch (XRd4JException | RuntimeException ex) {
+            logger.error("Deserializing SOAP message header to ServiceRequest failed. Return SOAP Fault.");
+            logger.error(ex.getMessage(), ex);
         }
+        return null;
     }
 
     /**
@@ -220,31 +667,176 @@ public abstract class AbstractAdapterServlet extends HttpServlet {
      * object that's used as a response.
      *
      * @param serviceRequest ServiceRequest object to be processed
+     * @param sample measurements of the request
      * @return SOAPMessage representing the service response
      */
-    private SOAPMessage processServiceRequest(ServiceRequest serviceRequest) {
+    private SOAPMessage processServiceRequest(ServiceRequest serviceRequest, ServletMetrics.Sample sample) {
+        long start = System.nanoTime();
+        this.currentSample.set(sample);
         try {
             // Process application specific requests
             logger.debug("Process ServiceRequest.");
-            ServiceResponse serviceResponse = this.handleRequest(serviceRequest);
-            if (serviceResponse == null) {
-                logger.warn("ServiceRequest was not processed. Unknown service code.");
-                return this.errorToSOAP(this.errUnknownServiceCode, null);
-            } else {
-                SOAPMessage soapResponse = serviceResponse.getSoapMessage();
-                logger.debug("ServiceRequest was processed succesfully.");
-                return soapResponse;
+            return this.toSOAPResponse(this.handleRequest(serviceRequest));
+        } catch (XRd4JException | SOAPException | NullPointerException ex) {
+            return this.exceptionToSOAP(ex, serviceRequest);
+        } finally {
+            this.currentSample.remove();
+            sample.record(Phase.HANDLE, start);
+        }
+    }
+
+    /**
+     * Processes the given ServiceRequest object asynchronously. The container
+     * thread is released and the SOAP response is written when the stage
+     * returned by handleRequestAsync completes. If the stage doesn't complete
+     * before the timeout expires, a SOAP Fault is written instead and the
+     * result of the stage is ignored.
+     *
+     * @param serviceRequest ServiceRequest object to be processed
+     * @param permit admission permit that's released when the stage
+     * completes or the request times out
+     * @param sample measurements of the request
+     * @param request servlet request
+     * @param response servlet response
+     */
+    private void processServiceRequestAsync(final ServiceRequest serviceRequest, final AdmissionController.Permit permit,
+            final ServletMetrics.Sample sample, final HttpServletRequest request, final HttpServletResponse response) {
+        logger.debug("Process ServiceRequest asynchronously.");
+        final AsyncContext context = request.startAsync(request, response);
+        context.setTimeout(this.getAsyncTimeout());
+        // Guarantees that only one response is written
+        final AtomicBoolean done = new AtomicBoolean();
+        final long start = System.nanoTime();
+        CompletionStage<ServiceResponse> stage;
+        this.currentSample.set(sample);
+        try {
+            stage = this.handleRequestAsync(serviceRequest);
+        } catch (RuntimeException ex) {
+            CompletableFuture<ServiceResponse> failed = new CompletableFuture<>();
+            failed.completeExceptionally(ex);
+            stage = failed;
+        } finally {
+            this.currentSample.remove();
+        }
+        if (stage == null) {
+            stage = CompletableFuture.completedFuture(null);
+        }
+        final CompletionStage<ServiceResponse> pending = stage;
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                if (done.compareAndSet(false, true)) {
+                    logger.warn("Processing ServiceRequest timed out. SOAP Fault is returned. Request id : \"{}\"", serviceRequest.getId());
+                    permit.release(true);
+                    cancel(pending);
+                    sample.record(Phase.HANDLE, start);
+                    writeResponse(faultToSOAP(errRequestTimeout, null), response, sample);
+                    context.complete();
+                }
             }
-        } catch (XRd4JException ex) {
-            logger.error(ex.getMessage(), ex);
-            if (serviceRequest.hasError()) {
-                return this.errorToSOAP(this.cloneErrorMessage(serviceRequest.getErrorMessage()), null);
+
+            @Override
+            public void onError(AsyncEvent event) throws IOException {
+                if (done.compareAndSet(false, true)) {
+                    logger.error("Asynchronous processing failed. Request id : \"{}\"", serviceRequest.getId());
+                    permit.release(true);
+                    cancel(pending);
+                    sample.complete();
+                    context.complete();
+                }
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) throws IOException {
+                logger.trace("Asynchronous processing completed. Request id : \"{}\"", serviceRequest.getId());
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) throws IOException {
+                // Nothing to do here
+            }
+        });
+        pending.whenComplete((serviceResponse, ex) -> {
+            permit.release();
+            if (!done.compareAndSet(false, true)) {
+                logger.warn("ServiceResponse was ready after the request had timed out. Request id : \"{}\"", serviceRequest.getId());
+                return;
+            }
+            sample.record(Phase.HANDLE, start);
+            SOAPMessage soapResponse;
+            if (ex == null) {
+                soapResponse = this.toSOAPResponse(serviceResponse);
             } else {
-                return this.errorToSOAP(this.errInternalServerErr, null);
+                soapResponse = this.exceptionToSOAP(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex, serviceRequest);
             }
-        } catch (SOAPException | NullPointerException ex) {
-            logger.error(ex.getMessage(), ex);
-            return this.errorToSOAP(this.errInternalServerErr, null);
+            this.writeResponse(soapResponse, response, sample);
+            context.complete();
+        });
+    }
+
+    /**
+     * Asks the admission controller for a permit to process the given
+     * request. If admission control is not used, the shared permit that
+     * does nothing when it's released is returned.
+     *
+     * @param serviceRequest ServiceRequest to be processed
+     * @return permit or null if the request must be rejected
+     */
+    private AdmissionController.Permit admit(ServiceRequest serviceRequest) {
+        AdmissionController controller = this.getAdmissionController();
+        if (controller == null) {
+            return AdmissionController.Permit.UNLIMITED;
+        }
+        String serviceCode = serviceRequest.getProducer() == null ? null : serviceRequest.getProducer().getServiceCode();
+        AdmissionController.Permit permit = controller.tryAcquire(serviceCode);
+        if (permit == null) {
+            logger.warn("Service \"{}\" is overloaded. SOAP Fault is returned.", serviceCode);
+        }
+        return permit;
+    }
+
+    /**
+     * Returns the SOAP message of the given ServiceResponse. If the
+     * ServiceResponse is null, a SOAP Fault is returned.
+     *
+     * @param serviceResponse ServiceResponse returned by the request handler
+     * @return SOAPMessage representing the service response
+     */
+    private SOAPMessage toSOAPResponse(ServiceResponse serviceResponse) {
+        if (serviceResponse == null) {
+            logger.warn("ServiceRequest was not processed. Unknown service code.");
+            return this.faultToSOAP(this.errUnknownServiceCode, null);
+        }
+        if (serviceResponse.hasError()) {
+            this.metrics.recordFault(serviceResponse.getErrorMessage().getErrorMessageType());
+        }
+        logger.debug("ServiceRequest was processed succesfully.");
+        return serviceResponse.getSoapMessage();
+    }
+
+    /**
+     * Converts the given exception that was thrown while processing the
+     * given request to a SOAP Fault.
+     *
+     * @param ex exception thrown by the request handler
+     * @param serviceRequest ServiceRequest object that was processed
+     * @return SOAPMessage representing the SOAP Fault
+     */
+    private SOAPMessage exceptionToSOAP(Throwable ex, ServiceRequest serviceRequest) {
+        return this.faultToSOAP(FaultHelper.exceptionToError(ex, serviceRequest), null);
+    }
+
+    /**
+     * Tries to cancel the given stage, so that the request handler can stop
+     * processing the request.
+     *
+     * @param stage stage to be cancelled
+     */
+    private static void cancel(CompletionStage<ServiceResponse> stage) {
+        try {
+            stage.toCompletableFuture().cancel(true);
+        } catch (UnsupportedOperationException ex) {
+            logger.trace("Stage can not be cancelled.");
         }
     }
 
@@ -259,10 +851,12 @@ public abstract class AbstractAdapterServlet extends HttpServlet {
     @Override
     protected void doGet(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException {
-        response.setContentType(Constants.TEXT_XML + ";charset=UTF-8");
-        PrintWriter out = response.getWriter();
         try {
-            if (request.getParameter("wsdl") != null) {
+            String health = request.getParameter("health");
+            if (health != null) {
+                // Liveness is "?health=live", readiness is "?health" or "?health=ready"
+                this.writeHealth("live".equals(health) ? HealthMonitor.LIVE : this.healthMonitor.getStatus(), response);
+            } else if (request.getParameter("wsdl") != null) {
                 logger.debug("WSDL file request received.");
                 String path = this.getWSDLPath();
                 // If only filename is given, absolute path must be added
@@ -270,28 +864,108 @@ public abstract class AbstractAdapterServlet extends HttpServlet {
                     path = this.getServletContext().getRealPath("/WEB-INF/classes/") + "/" + path;
                     logger.debug("Only filename was given. Absolute path is : \"{}\".", path);
                 }
-                // Read WSDL file
-                String wsdl = FileUtil.read(path);
-                if (!wsdl.isEmpty()) {
-                    out.println(wsdl);
+                // Get WSDL file from cache, it's read again if it has changed
+                WSDLCache.Entry wsdl = this.wsdlCache.get(path);
+                if (wsdl != null) {
+                    this.writeWSDL(wsdl, request, response);
                     logger.trace("WSDL file was found and returned to the requester.");
                 } else {
-                    out.println(this.errWsdlNotFoundStr);
+                    this.writeResponse(this.errWsdlNotFoundStr, response, null);
                     logger.warn("WSDL file was not found. SOAP Fault was returned.");
                 }
                 logger.debug("WSDL file request processed.");
+            } else if (request.getParameter("metrics") != null && this.isMetricsEndpointEnabled()) {
+                logger.debug("Metrics request received.");
+                this.writeMetrics(response);
             } else {
                 logger.warn("New GET request received. Not supported. SOAP Fault is returned.");
-                out.println(errGetNotSupportedStr);
+                this.writeResponse(this.errGetNotSupportedStr, response, null);
             }
         } catch (Exception e) {
             logger.error(e.getMessage(), e);
-            out.println(this.errInternalServerErrStr);
-        } finally {
-            out.close();
+            if (!response.isCommitted()) {
+                response.reset();
+                this.writeResponse(this.errInternalServerErrStr, response, null);
+            }
         }
     }
 
+    /**
+     * Writes the given health status to the given servlet response. The
+     * status code is 200 if the status is healthy and 503 otherwise.
+     *
+     * @param status health status
+     * @param response servlet response
+     * @throws IOException if writing the response fails
+     */
+    private void writeHealth(HealthStatus status, HttpServletResponse response) throws IOException {
+        byte[] content = status.getContent();
+        response.setStatus(status.isHealthy() ? HttpServletResponse.SC_OK : HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setContentType(HealthStatus.CONTENT_TYPE);
+        response.setHeader("Cache-Control", "no-cache");
+        response.setContentLength(content.length);
+        OutputStream out = response.getOutputStream();
+        out.write(content);
+        out.flush();
+    }
+
+    /**
+     * Writes the metrics of this servlet and the counters of the admission
+     * controller in plain text format to the given servlet response.
+     *
+     * @param response servlet response
+     * @throws IOException if writing the response fails
+     */
+    private void writeMetrics(HttpServletResponse response) throws IOException {
+        TextMetricsExporter exporter = new TextMetricsExporter();
+        this.metrics.export(exporter);
+        AdmissionController controller = this.getAdmissionController();
+        if (controller != null) {
+            Map<String, String> none = Collections.emptyMap();
+            exporter.gauge("xrd4j_admission_in_flight", none, controller.getInFlight());
+            if (controller.getLimit() >= 0) {
+                exporter.gauge("xrd4j_admission_limit", none, controller.getLimit());
+            }
+            for (Map.Entry<String, Integer> entry : controller.getInFlightByService().entrySet()) {
+                Map<String, String> labels = Collections.singletonMap("service", entry.getKey());
+                exporter.gauge("xrd4j_admission_service_in_flight", labels, entry.getValue());
+                exporter.counter("xrd4j_admission_rejected_total", labels, controller.getRejected(entry.getKey()));
+            }
+        }
+        byte[] content = exporter.getText().getBytes(StandardCharsets.UTF_8);
+        response.setContentType(TextMetricsExporter.CONTENT_TYPE);
+        response.setContentLength(content.length);
+        OutputStream out = response.getOutputStream();
+        out.write(content);
+        out.flush();
+    }
+
+    /**
+     * Writes the given WSDL file to the servlet response. The headers, the
+     * status code and the body are generated by WSDLResponse.
+     *
+     * @param wsdl cached WSDL file
+     * @param request servlet request
+     * @param response servlet response
+     * @throws IOException if writing the response fails
+     */
+    private void writeWSDL(WSDLCache.Entry wsdl, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        WSDLResponse wsdlResponse = new WSDLResponse(wsdl, request.getHeader("Accept-Encoding"),
+                request.getHeader("If-None-Match"), request.getHeader("If-Modified-Since"));
+        for (Map.Entry<String, String> header : wsdlResponse.getHeaders().entrySet()) {
+            response.setHeader(header.getKey(), header.getValue());
+        }
+        response.setStatus(wsdlResponse.getStatus());
+        byte[] content = wsdlResponse.getContent();
+        if (content.length == 0) {
+            return;
+        }
+        response.setContentLength(content.length);
+        OutputStream out = response.getOutputStream();
+        out.write(content);
+        out.flush();
+    }
+
     /**
      * Converts the given ErrorMessage to standard SOAP Fault message or
      * non-technical SOAP error message based on the type of the given error.
@@ -307,15 +981,15 @@ public abstract class AbstractAdapterServlet extends HttpServlet {
     }
 
     /**
-     * Clones the given error message by using the constructor with four
-     * arguments. In this way it's sure that the error's type is
-     * "STANDARD_SOAP_ERROR_MESSAGE".
+     * Converts the given ErrorMessage to SOAP message and counts the fault.
      *
-     * @param errorMsg ErrorMessage object to be cloned
-     * @return new ErrorMessage object
+     * @param error ErrorMessage object that contains the error details
+     * @param serviceRequest ServiceRequest object related to the error
+     * @return SOAPMessage object containing ErrorMessage details
      */
-    private ErrorMessage cloneErrorMessage(ErrorMessage errorMsg) {
-        return new ErrorMessage(errorMsg.getFaultCode(), errorMsg.getFaultString(), errorMsg.getFaultActor(), errorMsg.getDetail());
+    private SOAPMessage faultToSOAP(ErrorMessage error, ServiceRequest serviceRequest) {
+        this.metrics.recordFault(error.getErrorMessageType());
+        return this.errorToSOAP(error, serviceRequest);
     }
 
     /**
@@ -333,4 +1007,42 @@ public abstract class AbstractAdapterServlet extends HttpServlet {
              */
         }
     }
+
+    /**
+     * Output stream that counts the bytes written to the underlying stream.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        /**
+         * Constructs and initializes a new CountingOutputStream object.
+         *
+         * @param out underlying output stream
+         */
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+            this.count += len;
+        }
+
+        /**
+         * Returns the number of bytes written.
+         *
+         * @return number of bytes written
+         */
+        long getCount() {
+            return this.count;
+        }
+    }
 }
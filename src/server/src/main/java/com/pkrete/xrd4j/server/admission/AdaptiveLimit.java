@@ -0,0 +1,87 @@
+package com.pkrete.xrd4j.server.admission;
+
+/**
+ * This class implements a concurrency limit that adapts to the observed
+ * latency. Two exponentially weighted moving averages of the latency are
+ * kept: a short term average that reacts quickly and a long term average
+ * that represents the latency of a healthy back end. When the short term
+ * latency grows above the long term latency, requests are queueing somewhere
+ * and the limit is decreased in proportion. When the latencies are equal,
+ * the limit is increased by the square root of the current limit. Timeouts
+ * and other dropped requests decrease the limit multiplicatively.
+ *
+ * The limit grows only when the current limit is actually used, so that a
+ * lightly loaded servlet doesn't grow the limit without bounds. This class is
+ * thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public class AdaptiveLimit {
+
+    private static final double SHORT_ALPHA = 0.5;
+    private static final double LONG_ALPHA = 0.01;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;
+    private final int minLimit;
+    private final int maxLimit;
+    private double limit;
+    private double shortLatency;
+    private double longLatency;
+
+    /**
+     * Constructs and initializes a new AdaptiveLimit object.
+     *
+     * @param initialLimit initial limit
+     * @param minLimit the limit never goes below this value
+     * @param maxLimit the limit never goes above this value
+     */
+    public AdaptiveLimit(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit.");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * Returns the current limit.
+     *
+     * @return current limit
+     */
+    public synchronized int getLimit() {
+        return (int) this.limit;
+    }
+
+    /**
+     * Updates the limit with a new latency sample.
+     *
+     * @param latencyNanos latency of a completed request in nanoseconds
+     * @param inFlight number of requests that were in flight when the request
+     * was started, including the request itself
+     * @param dropped true if the request timed out or failed because of
+     * overload
+     */
+    public synchronized void onSample(long latencyNanos, int inFlight, boolean dropped) {
+        if (dropped) {
+            this.limit = Math.max(this.minLimit, this.limit * BACKOFF);
+            return;
+        }
+        double sample = Math.max(1, latencyNanos);
+        if (this.longLatency == 0) {
+            this.shortLatency = sample;
+            this.longLatency = sample;
+        } else {
+            this.shortLatency += SHORT_ALPHA * (sample - this.shortLatency);
+            this.longLatency += LONG_ALPHA * (sample - this.longLatency);
+        }
+        // Don't grow the limit if it's not used
+        if (inFlight < this.limit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, this.longLatency / this.shortLatency));
+        double newLimit = this.limit * gradient + Math.sqrt(this.limit);
+        this.limit = this.limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        this.limit = Math.max(this.minLimit, Math.min(this.maxLimit, this.limit));
+    }
+}
@@ -0,0 +1,271 @@
+package com.pkrete.xrd4j.server.admission;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class limits the number of requests that are processed concurrently.
+ * A request is admitted only if the number of in-flight requests of its
+ * service code is below the limit of the service, and the total number of
+ * in-flight requests is below the adaptive limit, if one is used. Requests
+ * that are not admitted must be rejected immediately instead of queueing them
+ * in front of the back end.
+ *
+ * The number of in-flight, admitted and rejected requests are kept per
+ * service code. Counters are created for at most MAX_SERVICES service codes,
+ * the rest share the same counters. This class is thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public class AdmissionController {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdmissionController.class);
+    /**
+     * Maximum number of service codes that have counters of their own.
+     */
+    public static final int MAX_SERVICES = 1000;
+    private static final String OTHER_SERVICES = "*";
+    private final int defaultServiceLimit;
+    private final Map<String, Integer> serviceLimits = new ConcurrentHashMap<>();
+    private final AdaptiveLimit adaptiveLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<String, ServiceCounters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs and initializes a new AdmissionController object. Limit
+     * zero or less means that the number of concurrent requests per service
+     * is not limited. The adaptive limit is optional and it can be null.
+     *
+     * @param defaultServiceLimit maximum number of concurrent requests per
+     * service code
+     * @param adaptiveLimit limit of the total number of concurrent requests
+     * or null
+     */
+    public AdmissionController(int defaultServiceLimit, AdaptiveLimit adaptiveLimit) {
+        this.defaultServiceLimit = defaultServiceLimit;
+        this.adaptiveLimit = adaptiveLimit;
+    }
+
+    /**
+     * Sets the maximum number of concurrent requests for the given service
+     * code. Overrides the default limit.
+     *
+     * @param serviceCode service code
+     * @param limit maximum number of concurrent requests, zero or less means
+     * unlimited
+     */
+    public void setServiceLimit(String serviceCode, int limit) {
+        this.serviceLimits.put(serviceCode, limit);
+    }
+
+    /**
+     * Tries to admit a new request of the given service. If the request is
+     * admitted, the returned permit must be released when the request has
+     * been processed.
+     *
+     * @param serviceCode service code of the request
+     * @return permit or null if the request is rejected
+     */
+    public Permit tryAcquire(String serviceCode) {
+        String code = serviceCode == null ? "" : serviceCode;
+        ServiceCounters service = this.getCounters(code);
+        int total = this.inFlight.incrementAndGet();
+        if (this.adaptiveLimit != null && total > this.adaptiveLimit.getLimit()) {
+            this.inFlight.decrementAndGet();
+            service.rejected.increment();
+            logger.debug("Concurrency limit reached. Request to service \"{}\" is rejected.", code);
+            return null;
+        }
+        Integer configured = this.serviceLimits.get(code);
+        int limit = configured == null ? this.defaultServiceLimit : configured;
+        if (service.inFlight.incrementAndGet() > limit && limit > 0) {
+            service.inFlight.decrementAndGet();
+            this.inFlight.decrementAndGet();
+            service.rejected.increment();
+            logger.debug("Concurrency limit of service \"{}\" reached. Request is rejected.", code);
+            return null;
+        }
+        service.admitted.increment();
+        return new Permit(this, service, total);
+    }
+
+    /**
+     * Returns the total number of requests in flight.
+     *
+     * @return number of requests in flight
+     */
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * Returns the number of requests of the given service in flight.
+     *
+     * @param serviceCode service code
+     * @return number of requests in flight
+     */
+    public int getInFlight(String serviceCode) {
+        ServiceCounters service = this.counters.get(serviceCode);
+        return service == null ? 0 : service.inFlight.get();
+    }
+
+    /**
+     * Returns the number of admitted requests of the given service.
+     *
+     * @param serviceCode service code
+     * @return number of admitted requests
+     */
+    public long getAdmitted(String serviceCode) {
+        ServiceCounters service = this.counters.get(serviceCode);
+        return service == null ? 0 : service.admitted.sum();
+    }
+
+    /**
+     * Returns the number of rejected requests of the given service.
+     *
+     * @param serviceCode service code
+     * @return number of rejected requests
+     */
+    public long getRejected(String serviceCode) {
+        ServiceCounters service = this.counters.get(serviceCode);
+        return service == null ? 0 : service.rejected.sum();
+    }
+
+    /**
+     * Returns the total number of rejected requests.
+     *
+     * @return number of rejected requests
+     */
+    public long getRejected() {
+        long sum = 0;
+        for (ServiceCounters service : this.counters.values()) {
+            sum += service.rejected.sum();
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the current adaptive limit.
+     *
+     * @return adaptive limit or -1 if adaptive limit is not used
+     */
+    public int getLimit() {
+        return this.adaptiveLimit == null ? -1 : this.adaptiveLimit.getLimit();
+    }
+
+    /**
+     * Returns the number of requests in flight per service code. Service
+     * codes that didn't fit in share the counters of code "*".
+     *
+     * @return unmodifiable map of service codes and the number of their
+     * requests in flight
+     */
+    public Map<String, Integer> getInFlightByService() {
+        Map<String, Integer> result = new HashMap<>();
+        for (Map.Entry<String, ServiceCounters> entry : this.counters.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().inFlight.get());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Returns the counters of the given service code.
+     *
+     * @param serviceCode service code
+     * @return counters of the service
+     */
+    private ServiceCounters getCounters(String serviceCode) {
+        ServiceCounters service = this.counters.get(serviceCode);
+        if (service != null) {
+            return service;
+        }
+        if (this.counters.size() >= MAX_SERVICES) {
+            return this.counters.computeIfAbsent(OTHER_SERVICES, code -> new ServiceCounters());
+        }
+        return this.counters.computeIfAbsent(serviceCode, code -> new ServiceCounters());
+    }
+
+    /**
+     * Releases the given permit.
+     *
+     * @param permit permit to be released
+     * @param dropped true if the request timed out or failed
+     */
+    private void release(Permit permit, boolean dropped) {
+        permit.service.inFlight.decrementAndGet();
+        this.inFlight.decrementAndGet();
+        if (this.adaptiveLimit != null) {
+            this.adaptiveLimit.onSample(System.nanoTime() - permit.startTime, permit.inFlightAtStart, dropped);
+        }
+    }
+
+    /**
+     * This class represents the right to process one request. A permit can be
+     * released only once, subsequent calls of release are ignored.
+     */
+    public static final class Permit {
+
+        /**
+         * Permit that's used when admission control is not used. Releasing
+         * it does nothing, so the same instance can be shared by all the
+         * requests.
+         */
+        public static final Permit UNLIMITED = new Permit(null, null, 0);
+
+        private final AdmissionController controller;
+        private final ServiceCounters service;
+        private final int inFlightAtStart;
+        private final long startTime;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        /**
+         * Constructs and initializes a new Permit object.
+         *
+         * @param controller controller that issued the permit
+         * @param service counters of the service
+         * @param inFlightAtStart total number of requests in flight when the
+         * permit was issued
+         */
+        private Permit(AdmissionController controller, ServiceCounters service, int inFlightAtStart) {
+            this.controller = controller;
+            this.service = service;
+            this.inFlightAtStart = inFlightAtStart;
+            this.startTime = System.nanoTime();
+        }
+
+        /**
+         * Releases the permit after the request has been processed.
+         */
+        public void release() {
+            this.release(false);
+        }
+
+        /**
+         * Releases the permit.
+         *
+         * @param dropped true if the request timed out or failed
+         */
+        public void release(boolean dropped) {
+            if (this.controller != null && this.released.compareAndSet(false, true)) {
+                this.controller.release(this, dropped);
+            }
+        }
+    }
+
+    /**
+     * Counters of one service code.
+     */
+    private static final class ServiceCounters {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final LongAdder admitted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+    }
+}
@@ -0,0 +1,88 @@
+package com.pkrete.xrd4j.server.deserializer;
+
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.member.ConsumerMember;
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.util.SOAPHelper;
+import java.io.ByteArrayInputStream;
+import javax.xml.soap.SOAPMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class represents a ServiceRequest whose header fields have been read
+ * from the raw request, but whose SOAPMessage is built only when it's needed
+ * for the first time, e.g. when a CustomRequestDeserializer reads the request
+ * data from the SOAP body. If nobody asks for the SOAPMessage, the DOM tree
+ * of the request is never built.
+ *
+ * @param <T> type of the request data
+ * @author Petteri Kivimäki
+ */
+public class LazyServiceRequest<T> extends ServiceRequest<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(LazyServiceRequest.class);
+    private byte[] content;
+
+    /**
+     * Constructs and initializes a new LazyServiceRequest object.
+     *
+     * @param content raw SOAP message
+     */
+    public LazyServiceRequest(byte[] content) {
+        super();
+        this.content = content;
+    }
+
+    /**
+     * Constructs and initializes a new LazyServiceRequest object.
+     *
+     * @param consumer client that's calling a service
+     * @param producer service provider whose service the client is calling
+     * @param id unique identifier of the message
+     * @param content raw SOAP message
+     * @throws XRd4JException if there's a XRd4J error
+     */
+    public LazyServiceRequest(ConsumerMember consumer, ProducerMember producer, String id, byte[] content) throws XRd4JException {
+        super(consumer, producer, id);
+        this.content = content;
+    }
+
+    /**
+     * Returns the SOAP message of the request. The message is built from the
+     * raw request when this method is called for the first time. If the raw
+     * request is not a valid SOAP message, null is returned.
+     *
+     * @return SOAP message or null
+     */
+    @Override
+    public synchronized SOAPMessage getSoapMessage() {
+        if (this.content != null) {
+            logger.debug("Build SOAP message of the request.");
+            super.setSoapMessage(SOAPHelper.toSOAP(new ByteArrayInputStream(this.content)));
+            this.content = null;
+        }
+        return super.getSoapMessage();
+    }
+
+    /**
+     * Sets the SOAP message of the request. The raw request is discarded.
+     *
+     * @param soapMessage new value
+     */
+    @Override
+    public synchronized void setSoapMessage(SOAPMessage soapMessage) {
+        this.content = null;
+        super.setSoapMessage(soapMessage);
+    }
+
+    /**
+     * Tells if the SOAP message of the request has been built.
+     *
+     * @return true if the SOAP message has been built; otherwise false
+     */
+    public synchronized boolean isSoapMessageBuilt() {
+        return this.content == null;
+    }
+}
@@ -0,0 +1,91 @@
+package com.pkrete.xrd4j.server.deserializer;
+
+import com.pkrete.xrd4j.common.deserializer.AbstractHeaderDeserializer;
+import com.pkrete.xrd4j.common.deserializer.HeaderFields;
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import java.io.ByteArrayInputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class deserializes raw SOAP messages to ServiceRequest objects by
+ * streaming only the SOAP header. Reading stops at the start of the SOAP
+ * body, and the returned {@link LazyServiceRequest LazyServiceRequest}
+ * builds the SOAPMessage only when it's asked for. In this way the service
+ * code and the other header fields are available for routing and access
+ * checks before the body is parsed. The header fields are handled the same
+ * way as {@link ServiceRequestDeserializerImpl ServiceRequestDeserializerImpl}
+ * handles them. This class is thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public class LazyServiceRequestDeserializer extends AbstractHeaderDeserializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(LazyServiceRequestDeserializer.class);
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    /**
+     * Deserializes the header of the given raw SOAP message to
+     * ServiceRequest object. The SOAP body is not parsed.
+     *
+     * @param content raw SOAP message
+     * @return ServiceRequest object that represents the SOAP header
+     * @throws XMLStreamException if the message is not valid XML or the SOAP
+     * envelope is missing
+     * @throws XRd4JException if there's a XRd4J error
+     */
+    public ServiceRequest deserialize(final byte[] content) throws XMLStreamException, XRd4JException {
+        logger.debug("Deserialize SOAP message header.");
+        XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(new ByteArrayInputStream(content));
+        try {
+            // Envelope
+            if (reader.nextTag() != XMLStreamConstants.START_ELEMENT || !"Envelope".equals(reader.getLocalName())) {
+                throw new XMLStreamException("SOAP envelope is missing.");
+            }
+            // Header is the first child of the envelope if it exists
+            if (reader.nextTag() != XMLStreamConstants.START_ELEMENT || !"Header".equals(reader.getLocalName())) {
+                logger.warn("No SOAP header or an empty SOAP header was found.");
+                return new LazyServiceRequest(content);
+            }
+            HeaderFields fields = super.deserializeHeaderFields(reader);
+            if (fields.getConsumer() == null && fields.getProducer() == null && fields.getId() == null) {
+                logger.warn("No SOAP header or an empty SOAP header was found.");
+                return new LazyServiceRequest(content);
+            }
+            if (fields.getConsumer() == null) {
+                logger.warn("Deserializing \"ConsumerMember\" failed.");
+            }
+            if (fields.getProducer() == null) {
+                logger.warn("Deserializing \"ProducerMember\" failed.");
+            }
+            ServiceRequest request = new LazyServiceRequest(fields.getConsumer(), fields.getProducer(), fields.getId(), content);
+            request.setSecurityServer(fields.getSecurityServer());
+            request.setUserId(fields.getUserId());
+            request.setIssue(fields.getIssue());
+            request.setProtocolVersion(fields.getProtocolVersion());
+            logger.debug("SOAP message header was succesfully deserialized.");
+            return request;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Creates a new XMLInputFactory. Processing of DTDs and external entities
+     * is disabled.
+     *
+     * @return new XMLInputFactory
+     */
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        return factory;
+    }
+}
@@ -1,11 +1,8 @@
 package com.pkrete.xrd4j.server.deserializer;
 
 import com.pkrete.xrd4j.common.deserializer.AbstractHeaderDeserializer;
+import com.pkrete.xrd4j.common.deserializer.HeaderFields;
 import com.pkrete.xrd4j.common.exception.XRd4JException;
-import com.pkrete.xrd4j.common.exception.XRd4JMissingMemberException;
-import com.pkrete.xrd4j.common.member.ConsumerMember;
-import com.pkrete.xrd4j.common.member.ProducerMember;
-import com.pkrete.xrd4j.common.member.SecurityServer;
 import com.pkrete.xrd4j.common.message.ServiceRequest;
 import javax.xml.soap.SOAPEnvelope;
 import javax.xml.soap.SOAPException;
@@ -74,37 +71,19 @@ public class ServiceRequestDeserializerImpl extends AbstractHeaderDeserializer i
             logger.warn("No SOAP header or an empty SOAP header was found.");
             return new ServiceRequest();
         }
-        // Client headers
-        String id = super.deserializeId(header);
-        String userId = super.deserializeUserId(header);
-        String issue = super.deserializeIssue(header);
-        String protocolVersion = super.deserializeProtocolVersion(header);
-
-        // Create objects
-        ConsumerMember consumer = null;
-        ProducerMember producer = null;
-        SecurityServer securityServer = null;
-        try {
-            consumer = super.deserializeConsumer(header);
-        } catch (XRd4JMissingMemberException ex) {
+        // Read all the header fields in one pass
+        HeaderFields fields = super.deserializeHeaderFields(header);
+        if (fields.getConsumer() == null) {
             logger.warn("Deserializing \"ConsumerMember\" failed.");
         }
-        try {
-            producer = super.deserializeProducer(header);
-        } catch (XRd4JMissingMemberException ex) {
+        if (fields.getProducer() == null) {
             logger.warn("Deserializing \"ProducerMember\" failed.");
         }
-        try {
-            // Not mandatory - can be null
-            securityServer = super.deserializeSecurityServer(header);
-        } catch (XRd4JException ex) {
-            logger.warn("Deserializing \"SecurityServer\" failed.");
-        }
-        ServiceRequest request = new ServiceRequest(consumer, producer, id);
-        request.setSecurityServer(securityServer);
-        request.setUserId(userId);
-        request.setIssue(issue);
-        request.setProtocolVersion(protocolVersion);
+        ServiceRequest request = new ServiceRequest(fields.getConsumer(), fields.getProducer(), fields.getId());
+        request.setSecurityServer(fields.getSecurityServer());
+        request.setUserId(fields.getUserId());
+        request.setIssue(fields.getIssue());
+        request.setProtocolVersion(fields.getProtocolVersion());
 
         logger.debug("SOAP header was succesfully deserialized.");
         // Return request
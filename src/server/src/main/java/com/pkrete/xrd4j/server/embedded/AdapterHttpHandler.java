@@ -0,0 +1,314 @@
+package com.pkrete.xrd4j.server.embedded;
+
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.message.ErrorMessage;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.pkrete.xrd4j.common.util.Constants;
+import com.pkrete.xrd4j.common.util.SOAPHelper;
+import com.pkrete.xrd4j.server.deserializer.ServiceRequestDeserializer;
+import com.pkrete.xrd4j.server.deserializer.ServiceRequestDeserializerImpl;
+import com.pkrete.xrd4j.server.health.HealthMonitor;
+import com.pkrete.xrd4j.server.health.HealthStatus;
+import com.pkrete.xrd4j.server.registry.ServiceHandler;
+import com.pkrete.xrd4j.server.registry.ServiceRegistration;
+import com.pkrete.xrd4j.server.registry.ServiceRegistry;
+import com.pkrete.xrd4j.server.serializer.AbstractServiceResponseSerializer;
+import com.pkrete.xrd4j.server.serializer.ServiceResponseSerializer;
+import com.pkrete.xrd4j.server.utils.FaultHelper;
+import com.pkrete.xrd4j.server.utils.WSDLCache;
+import com.pkrete.xrd4j.server.utils.WSDLResponse;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import javax.xml.soap.MimeHeaders;
+import javax.xml.soap.SOAPElement;
+import javax.xml.soap.SOAPEnvelope;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class processes the HTTP requests of EmbeddedServer. POST requests
+ * are processed like in AbstractAdapterServlet, and GET requests return the
+ * WSDL file or the health status. This class is thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+class AdapterHttpHandler implements HttpHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdapterHttpHandler.class);
+    private static final String FAULT_CODE_CLIENT = FaultHelper.FAULT_CODE_CLIENT;
+    private static final String CONTENT_TYPE = "Content-Type";
+    private final ServiceRequestDeserializer deserializer = new ServiceRequestDeserializerImpl();
+    private final ServiceResponseSerializer serializer = new FaultSerializer();
+    private final ErrorMessage errGetNotSupported = new ErrorMessage(FAULT_CODE_CLIENT, "HTTP GET method not implemented", null, null);
+    private final ErrorMessage errWsdlNotFound = new ErrorMessage(FAULT_CODE_CLIENT, "WSDL not found", null, null);
+    private final ErrorMessage errInternalServerErr = new ErrorMessage(FAULT_CODE_CLIENT, FaultHelper.INTERNAL_SERVER_ERROR, null, null);
+    private final ErrorMessage errUnknownServiceCode = new ErrorMessage(FAULT_CODE_CLIENT, FaultHelper.UNKNOWN_SERVICE_CODE, null, null);
+    private final WSDLCache wsdlCache = new WSDLCache();
+    private final ServiceRegistry serviceRegistry;
+    private final ServiceHandler defaultHandler;
+    private final String wsdlPath;
+    private final HealthMonitor healthMonitor;
+
+    /**
+     * Constructs and initializes a new AdapterHttpHandler object.
+     *
+     * @param serviceRegistry registry that holds the services
+     * @param defaultHandler handler for the services that are not
+     * registered or null
+     * @param wsdlPath absolute path of the WSDL file or null
+     * @param healthMonitor health monitor
+     */
+    AdapterHttpHandler(ServiceRegistry serviceRegistry, ServiceHandler defaultHandler, String wsdlPath, HealthMonitor healthMonitor) {
+        this.serviceRegistry = serviceRegistry;
+        this.defaultHandler = defaultHandler;
+        this.wsdlPath = wsdlPath;
+        this.healthMonitor = healthMonitor;
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            if ("POST".equals(exchange.getRequestMethod())) {
+                this.writeResponse(this.process(exchange), exchange);
+            } else if ("GET".equals(exchange.getRequestMethod())) {
+                this.doGet(exchange);
+            } else {
+                exchange.getResponseHeaders().set("Allow", "GET, POST");
+                exchange.sendResponseHeaders(405, -1);
+            }
+        } catch (Exception ex) {
+            logger.error(ex.getMessage(), ex);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Processes the SOAP request of the given exchange and returns the SOAP
+     * response.
+     *
+     * @param exchange HTTP exchange
+     * @return SOAP response
+     * @throws IOException if reading the request fails
+     */
+    private SOAPMessage process(HttpExchange exchange) throws IOException {
+        logger.debug("New request received.");
+        SOAPMessage soapRequest = SOAPHelper.toSOAP(exchange.getRequestBody(), getHeaders(exchange.getRequestHeaders()));
+        if (soapRequest == null) {
+            logger.error("Unable to read the request. SOAP Fault is returned.");
+            return this.errorToSOAP(new ErrorMessage(FAULT_CODE_CLIENT, "Invalid SOAP message.", "", ""), null);
+        }
+        ServiceRequest serviceRequest;
+        try {
+            serviceRequest = this.deserializer.deserialize(soapRequest);
+        } catch (Exception ex) {
+            logger.error(ex.getMessage(), ex);
+            return this.errorToSOAP(new ErrorMessage(FAULT_CODE_CLIENT, "Invalid X-Road SOAP message. Unable to parse the request.", "", ""), null);
+        }
+        try {
+            ServiceResponse serviceResponse = this.handleRequest(serviceRequest);
+            if (serviceResponse == null) {
+                logger.warn("ServiceRequest was not processed. Unknown service code.");
+                return this.errorToSOAP(this.errUnknownServiceCode, null);
+            }
+            return serviceResponse.getSoapMessage();
+        } catch (XRd4JException | SOAPException | RuntimeException ex) {
+            return this.errorToSOAP(FaultHelper.exceptionToError(ex, serviceRequest), null);
+        }
+    }
+
+    /**
+     * Dispatches the given request to the registered service or to the
+     * default handler.
+     *
+     * @param request ServiceRequest to be processed
+     * @return ServiceResponse that contains the SOAP response
+     * @throws SOAPException if there's a SOAP error
+     * @throws XRd4JException if there's a XRd4J error
+     */
+    private ServiceResponse handleRequest(ServiceRequest request) throws SOAPException, XRd4JException {
+        ServiceRegistration registration = this.serviceRegistry.get(request.getProducer());
+        if (registration != null) {
+            return registration.process(request);
+        }
+        if (this.defaultHandler != null) {
+            return this.defaultHandler.handle(request);
+        }
+        return FaultHelper.unknownService(request, this.serializer);
+    }
+
+    /**
+     * Processes a GET request.
+     *
+     * @param exchange HTTP exchange
+     * @throws IOException if writing the response fails
+     */
+    private void doGet(HttpExchange exchange) throws IOException {
+        String query = exchange.getRequestURI().getRawQuery();
+        String health = getParameter(query, "health");
+        if (health != null) {
+            HealthStatus status = "live".equals(health) ? HealthMonitor.LIVE : this.healthMonitor.getStatus();
+            exchange.getResponseHeaders().set(CONTENT_TYPE, HealthStatus.CONTENT_TYPE);
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            this.write(exchange, status.isHealthy() ? 200 : 503, status.getContent());
+        } else if (getParameter(query, "wsdl") != null) {
+            WSDLCache.Entry wsdl = this.wsdlPath == null ? null : this.wsdlCache.get(this.wsdlPath);
+            if (wsdl != null) {
+                this.writeWSDL(wsdl, exchange);
+            } else {
+                logger.warn("WSDL file was not found. SOAP Fault is returned.");
+                this.writeResponse(this.errorToSOAP(this.errWsdlNotFound, null), exchange);
+            }
+        } else {
+            logger.warn("New GET request received. Not supported. SOAP Fault is returned.");
+            this.writeResponse(this.errorToSOAP(this.errGetNotSupported, null), exchange);
+        }
+    }
+
+    /**
+     * Writes the given WSDL file to the response. The headers, the status
+     * code and the body are generated by WSDLResponse.
+     *
+     * @param wsdl cached WSDL file
+     * @param exchange HTTP exchange
+     * @throws IOException if writing the response fails
+     */
+    private void writeWSDL(WSDLCache.Entry wsdl, HttpExchange exchange) throws IOException {
+        Headers requestHeaders = exchange.getRequestHeaders();
+        WSDLResponse wsdlResponse = new WSDLResponse(wsdl, requestHeaders.getFirst("Accept-Encoding"),
+                requestHeaders.getFirst("If-None-Match"), requestHeaders.getFirst("If-Modified-Since"));
+        for (Map.Entry<String, String> header : wsdlResponse.getHeaders().entrySet()) {
+            exchange.getResponseHeaders().set(header.getKey(), header.getValue());
+        }
+        this.write(exchange, wsdlResponse.getStatus(), wsdlResponse.getContent());
+    }
+
+    /**
+     * Writes the given SOAP message to the response. The message is
+     * serialized to memory first, so that a SOAP Fault can still be
+     * returned if the serialization fails.
+     *
+     * @param soapResponse SOAP response
+     * @param exchange HTTP exchange
+     * @throws IOException if writing the response fails
+     */
+    private void writeResponse(SOAPMessage soapResponse, HttpExchange exchange) throws IOException {
+        SOAPMessage message = soapResponse;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            // Content type and MIME boundary are set by saveChanges
+            if (message.saveRequired()) {
+                message.saveChanges();
+            }
+            message.writeTo(out);
+        } catch (SOAPException | RuntimeException ex) {
+            logger.error(ex.getMessage(), ex);
+            message = this.errorToSOAP(this.errInternalServerErr, null);
+            out.reset();
+            try {
+                message.saveChanges();
+                message.writeTo(out);
+            } catch (SOAPException e) {
+                throw new IOException(e);
+            }
+        }
+        String[] contentType = message.getMimeHeaders().getHeader(CONTENT_TYPE);
+        if (contentType != null && contentType.length > 0) {
+            exchange.getResponseHeaders().set(CONTENT_TYPE, contentType[0]);
+        } else {
+            exchange.getResponseHeaders().set(CONTENT_TYPE, Constants.TEXT_XML + "; charset=UTF-8");
+        }
+        this.write(exchange, 200, out.toByteArray());
+    }
+
+    /**
+     * Sends the response headers and the given content.
+     *
+     * @param exchange HTTP exchange
+     * @param status HTTP status code
+     * @param content response body
+     * @throws IOException if writing the response fails
+     */
+    private void write(HttpExchange exchange, int status, byte[] content) throws IOException {
+        exchange.sendResponseHeaders(status, content.length == 0 ? -1 : content.length);
+        if (content.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(content);
+            }
+        }
+    }
+
+    /**
+     * Converts the given ErrorMessage to SOAP Fault.
+     *
+     * @param error ErrorMessage object that contains the error details
+     * @param serviceRequest ServiceRequest object related to the error
+     * @return SOAPMessage object containing ErrorMessage details
+     */
+    private SOAPMessage errorToSOAP(ErrorMessage error, ServiceRequest serviceRequest) {
+        ServiceResponse serviceResponse = new ServiceResponse();
+        serviceResponse.setErrorMessage(error);
+        return this.serializer.serialize(serviceResponse, serviceRequest);
+    }
+
+    /**
+     * Copies the given HTTP headers to MimeHeaders object.
+     *
+     * @param headers HTTP headers
+     * @return MimeHeaders object
+     */
+    private static MimeHeaders getHeaders(Headers headers) {
+        MimeHeaders mimeHeaders = new MimeHeaders();
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            for (String value : header.getValue()) {
+                mimeHeaders.addHeader(header.getKey(), value);
+            }
+        }
+        return mimeHeaders;
+    }
+
+    /**
+     * Returns the value of the given query parameter. A parameter without
+     * value returns an empty string and a missing parameter null.
+     *
+     * @param query raw query string or null
+     * @param name name of the parameter
+     * @return value of the parameter or null
+     */
+    static String getParameter(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+        for (String param : query.split("&")) {
+            int i = param.indexOf('=');
+            String key = i < 0 ? param : param.substring(0, i);
+            if (key.equals(name)) {
+                return i < 0 ? "" : param.substring(i + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This implementation of the AbstractServiceResponseSerializer class is
+     * needed only for generating SOAP Fault messages. SerializeResponse
+     * method gets never called.
+     */
+    private static class FaultSerializer extends AbstractServiceResponseSerializer {
+
+        @Override
+        public void serializeResponse(ServiceResponse response, SOAPElement soapResponse, SOAPEnvelope envelope) throws SOAPException {
+            // This is needed only for generating SOAP Fault messages
+        }
+    }
+}
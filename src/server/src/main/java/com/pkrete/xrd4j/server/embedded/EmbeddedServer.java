@@ -0,0 +1,223 @@
+package com.pkrete.xrd4j.server.embedded;
+
+import com.pkrete.xrd4j.server.health.HealthMonitor;
+import com.pkrete.xrd4j.server.registry.ServiceHandler;
+import com.pkrete.xrd4j.server.registry.ServiceRegistry;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class runs an X-Road adapter on the HTTP server that is included in
+ * the JDK, so that no servlet container is needed. Requests are processed
+ * using the same pipeline as AbstractAdapterServlet: the SOAP header is
+ * deserialized with ServiceRequestDeserializerImpl and the request is
+ * dispatched to the service registered in the ServiceRegistry, which
+ * deserializes the request data and serializes the response. Requests of
+ * services that are not registered are passed to the default handler, if
+ * one has been set.
+ *
+ * WSDL file is served as a response to "?wsdl" and the status of the health
+ * monitor as a response to "?health" GET requests. The server is configured
+ * before it's started:
+ * <pre>
+ * ServiceRegistry registry = new ServiceRegistry();
+ * registry.register(new ServiceRegistration("getRandom", "v1", ...));
+ * EmbeddedServer server = new EmbeddedServer(8080, registry);
+ * server.setWSDLPath("/path/to/example.wsdl");
+ * server.start();
+ * </pre>
+ *
+ * @author Petteri Kivimäki
+ */
+public class EmbeddedServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedServer.class);
+    /**
+     * Default number of threads that process the requests.
+     */
+    public static final int DEFAULT_THREADS = 32;
+    private final InetSocketAddress address;
+    private final ServiceRegistry serviceRegistry;
+    private final HealthMonitor healthMonitor = new HealthMonitor();
+    private String contextPath = "/";
+    private String wsdlPath;
+    private ServiceHandler defaultHandler;
+    private int threads = DEFAULT_THREADS;
+    private Executor executor;
+    private HttpServer server;
+    private ExecutorService ownExecutor;
+
+    /**
+     * Constructs and initializes a new EmbeddedServer object that listens
+     * to the given port on all the network interfaces.
+     *
+     * @param port port number, 0 means that a free port is chosen
+     * @param serviceRegistry registry that holds the services
+     */
+    public EmbeddedServer(int port, ServiceRegistry serviceRegistry) {
+        this(new InetSocketAddress(port), serviceRegistry);
+    }
+
+    /**
+     * Constructs and initializes a new EmbeddedServer object that listens
+     * to the given address.
+     *
+     * @param address socket address
+     * @param serviceRegistry registry that holds the services
+     */
+    public EmbeddedServer(InetSocketAddress address, ServiceRegistry serviceRegistry) {
+        if (address == null || serviceRegistry == null) {
+            throw new IllegalArgumentException("Address and service registry can not be null.");
+        }
+        this.address = address;
+        this.serviceRegistry = serviceRegistry;
+    }
+
+    /**
+     * Sets the context path where the adapter is served. The default is "/".
+     *
+     * @param contextPath new value
+     */
+    public void setContextPath(String contextPath) {
+        this.contextPath = contextPath;
+    }
+
+    /**
+     * Sets the absolute path of the WSDL file. If the path is not set, WSDL
+     * requests are answered with a SOAP Fault.
+     *
+     * @param wsdlPath new value
+     */
+    public void setWSDLPath(String wsdlPath) {
+        this.wsdlPath = wsdlPath;
+    }
+
+    /**
+     * Sets the handler that processes the requests of the services that are
+     * not registered. Like an overridden handleRequest method of
+     * AbstractAdapterServlet, the handler must deserialize the request data
+     * and serialize the response itself. If the handler is not set, an
+     * unknown service code fault is returned.
+     *
+     * @param defaultHandler new value
+     */
+    public void setDefaultHandler(ServiceHandler defaultHandler) {
+        this.defaultHandler = defaultHandler;
+    }
+
+    /**
+     * Sets the number of threads that process the requests. The default is
+     * DEFAULT_THREADS.
+     *
+     * @param threads new value
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Sets the Executor that processes the requests. If the executor is set,
+     * the number of threads is ignored and the executor is not shut down
+     * when the server is stopped. Handlers that block on back end calls can
+     * be run on virtual threads on Java 21 and later by using
+     * Executors.newVirtualThreadPerTaskExecutor(). By default a fixed thread
+     * pool is used.
+     *
+     * @param executor new value
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the health monitor whose status is returned as a response to
+     * "?health" requests.
+     *
+     * @return health monitor of the server
+     */
+    public HealthMonitor getHealthMonitor() {
+        return this.healthMonitor;
+    }
+
+    /**
+     * Starts the server. This method returns when the server is accepting
+     * connections.
+     *
+     * @throws IOException if binding the server socket fails
+     */
+    public synchronized void start() throws IOException {
+        if (this.server != null) {
+            throw new IllegalStateException("Server has been started already.");
+        }
+        long start = System.currentTimeMillis();
+        HttpServer httpServer = HttpServer.create(this.address, 0);
+        AdapterHttpHandler handler = new AdapterHttpHandler(this.serviceRegistry, this.defaultHandler, this.wsdlPath, this.healthMonitor);
+        httpServer.createContext(this.contextPath, handler);
+        if (this.executor != null) {
+            httpServer.setExecutor(this.executor);
+        } else {
+            this.ownExecutor = Executors.newFixedThreadPool(this.threads, new WorkerThreadFactory());
+            httpServer.setExecutor(this.ownExecutor);
+        }
+        httpServer.start();
+        this.server = httpServer;
+        logger.info("Embedded server started in {} ms. Listening to port {}.", System.currentTimeMillis() - start, this.getPort());
+    }
+
+    /**
+     * Stops the server. Requests that are being processed are given the
+     * given number of seconds to complete.
+     *
+     * @param delay maximum time to wait in seconds
+     */
+    public synchronized void stop(int delay) {
+        if (this.server == null) {
+            return;
+        }
+        this.server.stop(delay);
+        if (this.ownExecutor != null) {
+            this.ownExecutor.shutdown();
+            this.ownExecutor = null;
+        }
+        this.server = null;
+        logger.info("Embedded server stopped.");
+    }
+
+    /**
+     * Returns the port that the server is listening to. If the server was
+     * configured to choose a free port, the chosen port is returned after
+     * the server has been started.
+     *
+     * @return port number
+     */
+    public synchronized int getPort() {
+        if (this.server != null) {
+            return this.server.getAddress().getPort();
+        }
+        return this.address.getPort();
+    }
+
+    /**
+     * Thread factory that creates named daemon threads for processing the
+     * requests.
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "xrd4j-embedded-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
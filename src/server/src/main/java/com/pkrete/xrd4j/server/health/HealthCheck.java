@@ -0,0 +1,22 @@
+package com.pkrete.xrd4j.server.health;
+
+/**
+ * This interface defines a health check that is registered to a
+ * HealthMonitor. Health checks are run by the monitor when the cached status
+ * has expired, never once per health request, so a check may do some work,
+ * e.g. test a database connection. If a check throws an exception, it's
+ * considered failed.
+ *
+ * @author Petteri Kivimäki
+ */
+@FunctionalInterface
+public interface HealthCheck {
+
+    /**
+     * Checks if the checked resource is healthy.
+     *
+     * @return true if the resource is healthy; otherwise false
+     * @throws Exception if there's an error
+     */
+    boolean isHealthy() throws Exception;
+}
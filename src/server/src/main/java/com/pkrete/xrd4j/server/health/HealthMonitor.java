@@ -0,0 +1,124 @@
+package com.pkrete.xrd4j.server.health;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class runs the registered health checks and caches the result. The
+ * checks are run again only when the cached status is older than the
+ * maximum age. Only one thread runs the checks at a time - other threads
+ * get the previous status meanwhile, so slow checks never pile up. This
+ * class is thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public class HealthMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(HealthMonitor.class);
+    /**
+     * Default maximum age of the cached status in milliseconds.
+     */
+    public static final long DEFAULT_MAX_AGE = 1000;
+    /**
+     * Status that is returned by liveness requests.
+     */
+    public static final HealthStatus LIVE = new HealthStatus(Collections.<String, Boolean>emptyMap(), 0);
+    private final long maxAge;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile Map<String, HealthCheck> checks = Collections.emptyMap();
+    private volatile HealthStatus status;
+
+    /**
+     * Constructs and initializes a new HealthMonitor object using the
+     * default maximum age.
+     */
+    public HealthMonitor() {
+        this(DEFAULT_MAX_AGE);
+    }
+
+    /**
+     * Constructs and initializes a new HealthMonitor object.
+     *
+     * @param maxAge maximum age of the cached status in milliseconds
+     */
+    public HealthMonitor(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Registers the given health check. If a check with the same name has
+     * been registered already, it's replaced. The change is visible after
+     * the cached status has expired.
+     *
+     * @param name name of the check
+     * @param check health check
+     */
+    public synchronized void register(String name, HealthCheck check) {
+        if (name == null || check == null) {
+            throw new IllegalArgumentException("Name and check must not be null.");
+        }
+        Map<String, HealthCheck> copy = new LinkedHashMap<>(this.checks);
+        copy.put(name, check);
+        this.checks = Collections.unmodifiableMap(copy);
+        logger.debug("Health check \"{}\" registered.", name);
+    }
+
+    /**
+     * Returns the current health status. If the cached status has expired,
+     * the health checks are run unless another thread is already running
+     * them.
+     *
+     * @return current health status
+     */
+    public HealthStatus getStatus() {
+        HealthStatus current = this.status;
+        long now = System.currentTimeMillis();
+        if (current != null && now - current.getTimestamp() < this.maxAge) {
+            return current;
+        }
+        if (current != null) {
+            if (!this.lock.tryLock()) {
+                return current;
+            }
+        } else {
+            this.lock.lock();
+        }
+        try {
+            current = this.status;
+            if (current == null || now - current.getTimestamp() >= this.maxAge) {
+                current = this.runChecks();
+                this.status = current;
+            }
+            return current;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Runs all the registered health checks.
+     *
+     * @return new health status
+     */
+    private HealthStatus runChecks() {
+        Map<String, Boolean> results = new LinkedHashMap<>();
+        for (Map.Entry<String, HealthCheck> entry : this.checks.entrySet()) {
+            boolean healthy;
+            try {
+                healthy = entry.getValue().isHealthy();
+            } catch (Exception ex) {
+                logger.error(ex.getMessage(), ex);
+                healthy = false;
+            }
+            if (!healthy) {
+                logger.warn("Health check \"{}\" failed.", entry.getKey());
+            }
+            results.put(entry.getKey(), healthy);
+        }
+        return new HealthStatus(results, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,135 @@
+package com.pkrete.xrd4j.server.health;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class represents the result of running the registered health checks.
+ * The JSON representation of the status is rendered when the object is
+ * created, so returning the status to a client doesn't require any
+ * processing. A status is immutable.
+ *
+ * @author Petteri Kivimäki
+ */
+public final class HealthStatus {
+
+    /**
+     * Content type of the JSON representation.
+     */
+    public static final String CONTENT_TYPE = "application/json;charset=UTF-8";
+    private final boolean healthy;
+    private final Map<String, Boolean> checks;
+    private final long timestamp;
+    private final byte[] content;
+
+    /**
+     * Constructs and initializes a new HealthStatus object. The status is
+     * healthy if all the checks are healthy.
+     *
+     * @param checks results of the health checks by name
+     * @param timestamp time when the checks were run in milliseconds
+     */
+    public HealthStatus(Map<String, Boolean> checks, long timestamp) {
+        boolean result = true;
+        for (Boolean check : checks.values()) {
+            result &= check;
+        }
+        this.healthy = result;
+        this.checks = Collections.unmodifiableMap(new LinkedHashMap<>(checks));
+        this.timestamp = timestamp;
+        this.content = render(this.healthy, this.checks).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns true if all the health checks passed.
+     *
+     * @return true if healthy; otherwise false
+     */
+    public boolean isHealthy() {
+        return this.healthy;
+    }
+
+    /**
+     * Returns the results of the health checks by name.
+     *
+     * @return unmodifiable map of check results
+     */
+    public Map<String, Boolean> getChecks() {
+        return this.checks;
+    }
+
+    /**
+     * Returns the time when the health checks were run.
+     *
+     * @return time in milliseconds
+     */
+    public long getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * Returns the JSON representation of this status encoded in UTF-8. The
+     * returned array must not be modified.
+     *
+     * @return JSON representation of this status
+     */
+    public byte[] getContent() {
+        return this.content;
+    }
+
+    /**
+     * Renders the JSON representation of the given results.
+     *
+     * @param healthy overall result
+     * @param checks results of the health checks by name
+     * @return JSON representation
+     */
+    private static String render(boolean healthy, Map<String, Boolean> checks) {
+        StringBuilder builder = new StringBuilder("{\"status\":\"").append(label(healthy)).append('"');
+        if (!checks.isEmpty()) {
+            builder.append(",\"checks\":{");
+            boolean first = true;
+            for (Map.Entry<String, Boolean> check : checks.entrySet()) {
+                if (!first) {
+                    builder.append(',');
+                }
+                builder.append('"').append(escape(check.getKey())).append("\":\"").append(label(check.getValue())).append('"');
+                first = false;
+            }
+            builder.append('}');
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * Returns the label of the given result.
+     *
+     * @param healthy result
+     * @return "UP" or "DOWN"
+     */
+    private static String label(boolean healthy) {
+        return healthy ? "UP" : "DOWN";
+    }
+
+    /**
+     * Escapes the characters that are not allowed in a JSON string.
+     *
+     * @param value string to be escaped
+     * @return escaped string
+     */
+    private static String escape(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,118 @@
+package com.pkrete.xrd4j.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class implements a histogram of non-negative long values with
+ * exponential buckets. Bucket i contains the values that are less than or
+ * equal to 2^i and greater than 2^(i-1), so recording a value is only a
+ * few atomic operations and the memory usage doesn't depend on the number of
+ * recorded values. Percentiles are estimated using the upper bounds of the
+ * buckets, which means that they are accurate within a factor of two. This
+ * class is thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public class Histogram {
+
+    /**
+     * Number of buckets.
+     */
+    public static final int BUCKETS = 64;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Records the given value. Negative values are recorded as zero.
+     *
+     * @param value value to be recorded
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        this.buckets.incrementAndGet(bucketOf(v));
+        this.count.increment();
+        this.sum.add(v);
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return number of recorded values
+     */
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    /**
+     * Returns the sum of the recorded values.
+     *
+     * @return sum of the recorded values
+     */
+    public long getSum() {
+        return this.sum.sum();
+    }
+
+    /**
+     * Returns the number of values in the given bucket.
+     *
+     * @param bucket index of the bucket
+     * @return number of values in the bucket
+     */
+    public long getBucketCount(int bucket) {
+        return this.buckets.get(bucket);
+    }
+
+    /**
+     * Returns the inclusive upper bound of the given bucket.
+     *
+     * @param bucket index of the bucket
+     * @return upper bound of the bucket
+     */
+    public static long getBucketUpperBound(int bucket) {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    /**
+     * Returns an estimate of the given percentile. The estimate is the upper
+     * bound of the bucket that contains the percentile.
+     *
+     * @param percentile percentile between 0 and 100
+     * @return estimate of the percentile or 0 if no values have been
+     * recorded
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = this.buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.max(0, Math.min(100, percentile)) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return getBucketUpperBound(i);
+            }
+        }
+        return getBucketUpperBound(BUCKETS - 1);
+    }
+
+    /**
+     * Returns the index of the bucket where the given value belongs.
+     *
+     * @param value non-negative value
+     * @return index of the bucket
+     */
+    private static int bucketOf(long value) {
+        if (value <= 1) {
+            return 0;
+        }
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value - 1));
+    }
+}
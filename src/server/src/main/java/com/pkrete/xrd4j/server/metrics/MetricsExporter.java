@@ -0,0 +1,44 @@
+package com.pkrete.xrd4j.server.metrics;
+
+import java.util.Map;
+
+/**
+ * This class defines an interface for exporting metrics to a monitoring
+ * system. {@link ServletMetrics#export(MetricsExporter) ServletMetrics.export}
+ * calls the methods of the exporter once for every metric. Names use
+ * snake_case and labels are given as an ordered map.
+ *
+ * @author Petteri Kivimäki
+ */
+public interface MetricsExporter {
+
+    /**
+     * Exports a counter whose value only increases.
+     *
+     * @param name name of the metric
+     * @param labels labels of the metric
+     * @param value current value
+     */
+    void counter(String name, Map<String, String> labels, long value);
+
+    /**
+     * Exports a gauge whose value can increase and decrease.
+     *
+     * @param name name of the metric
+     * @param labels labels of the metric
+     * @param value current value
+     */
+    void gauge(String name, Map<String, String> labels, double value);
+
+    /**
+     * Exports a histogram. The recorded values and the bucket bounds must be
+     * multiplied by the given scale to get values in the unit of the metric,
+     * e.g. 1e-9 for nanoseconds that are exported as seconds.
+     *
+     * @param name name of the metric
+     * @param labels labels of the metric
+     * @param histogram histogram to be exported
+     * @param scale multiplier of the recorded values
+     */
+    void histogram(String name, Map<String, String> labels, Histogram histogram, double scale);
+}
@@ -0,0 +1,55 @@
+package com.pkrete.xrd4j.server.metrics;
+
+/**
+ * This enum represents the phases of processing a request in an adapter
+ * servlet. BODY and SERIALIZE are recorded separately only when the request
+ * is dispatched through the service registry, and then they're included in
+ * HANDLE too.
+ *
+ * @author Petteri Kivimäki
+ */
+public enum Phase {
+
+    /**
+     * Reading and parsing the request to a SOAP message.
+     */
+    PARSE,
+    /**
+     * Deserializing the X-Road header to a ServiceRequest.
+     */
+    HEADER,
+    /**
+     * Processing the request in handleRequest, including deserializing the
+     * request body and serializing the response.
+     */
+    HANDLE,
+    /**
+     * Deserializing the request body with the CustomRequestDeserializer of
+     * the service registration.
+     */
+    BODY,
+    /**
+     * Serializing the response with the ServiceResponseSerializer of the
+     * service registration.
+     */
+    SERIALIZE,
+    /**
+     * Writing the response to the client.
+     */
+    WRITE,
+    /**
+     * The whole request from receiving it to writing the response.
+     */
+    TOTAL;
+
+    private final String label = this.name().toLowerCase();
+
+    /**
+     * Returns the name of the phase in lower case.
+     *
+     * @return name of the phase
+     */
+    public String getLabel() {
+        return this.label;
+    }
+}
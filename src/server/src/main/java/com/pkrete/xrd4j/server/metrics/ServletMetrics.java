@@ -0,0 +1,302 @@
+package com.pkrete.xrd4j.server.metrics;
+
+import com.pkrete.xrd4j.common.message.ErrorMessageType;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class collects the metrics of an adapter servlet: latency histograms
+ * per processing phase, both in total and per service code, number of faults
+ * per ErrorMessageType and request and response sizes. The measurements of
+ * one request are collected to a {@link Sample Sample} and they're added to
+ * the histograms when the request has been completed, so that the service
+ * code is known for all the phases. Latencies are recorded in nanoseconds and
+ * sizes in bytes.
+ *
+ * Histograms are created for at most MAX_SERVICES service codes, the rest
+ * share the histograms of code "*". This class is thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public class ServletMetrics {
+
+    /**
+     * Maximum number of service codes that have histograms of their own.
+     */
+    public static final int MAX_SERVICES = 1000;
+    private static final String OTHER_SERVICES = "*";
+    private static final Phase[] PHASES = Phase.values();
+    private final Histogram[] phases = newHistograms();
+    private final Map<String, Histogram[]> services = new ConcurrentHashMap<>();
+    private final Map<ErrorMessageType, LongAdder> faults = new EnumMap<>(ErrorMessageType.class);
+    private final Histogram requestBytes = new Histogram();
+    private final Histogram responseBytes = new Histogram();
+    private final LongAdder requests = new LongAdder();
+
+    /**
+     * Constructs and initializes a new ServletMetrics object.
+     */
+    public ServletMetrics() {
+        for (ErrorMessageType type : ErrorMessageType.values()) {
+            this.faults.put(type, new LongAdder());
+        }
+    }
+
+    /**
+     * Starts measuring a new request.
+     *
+     * @return new sample
+     */
+    public Sample start() {
+        return new Sample(this);
+    }
+
+    /**
+     * Counts a fault of the given type.
+     *
+     * @param type type of the fault
+     */
+    public void recordFault(ErrorMessageType type) {
+        if (type != null) {
+            this.faults.get(type).increment();
+        }
+    }
+
+    /**
+     * Returns the latency histogram of the given phase.
+     *
+     * @param phase processing phase
+     * @return latency histogram in nanoseconds
+     */
+    public Histogram getHistogram(Phase phase) {
+        return this.phases[phase.ordinal()];
+    }
+
+    /**
+     * Returns the latency histogram of the given phase and service code.
+     *
+     * @param serviceCode service code
+     * @param phase processing phase
+     * @return latency histogram in nanoseconds or null if the service has
+     * no requests
+     */
+    public Histogram getHistogram(String serviceCode, Phase phase) {
+        Histogram[] histograms = this.services.get(serviceCode);
+        return histograms == null ? null : histograms[phase.ordinal()];
+    }
+
+    /**
+     * Returns the number of faults of the given type.
+     *
+     * @param type type of the fault
+     * @return number of faults
+     */
+    public long getFaults(ErrorMessageType type) {
+        return this.faults.get(type).sum();
+    }
+
+    /**
+     * Returns the histogram of request sizes.
+     *
+     * @return request sizes in bytes
+     */
+    public Histogram getRequestBytes() {
+        return this.requestBytes;
+    }
+
+    /**
+     * Returns the histogram of response sizes.
+     *
+     * @return response sizes in bytes
+     */
+    public Histogram getResponseBytes() {
+        return this.responseBytes;
+    }
+
+    /**
+     * Returns the number of completed requests.
+     *
+     * @return number of completed requests
+     */
+    public long getRequests() {
+        return this.requests.sum();
+    }
+
+    /**
+     * Exports all the metrics to the given exporter.
+     *
+     * @param exporter exporter that receives the metrics
+     */
+    public void export(MetricsExporter exporter) {
+        Map<String, String> none = Collections.emptyMap();
+        exporter.counter("xrd4j_requests_total", none, this.getRequests());
+        for (Phase phase : PHASES) {
+            exporter.histogram("xrd4j_phase_seconds", labels("phase", phase.getLabel()), this.phases[phase.ordinal()], 1e-9);
+        }
+        for (Map.Entry<String, Histogram[]> entry : this.services.entrySet()) {
+            for (Phase phase : PHASES) {
+                Histogram histogram = entry.getValue()[phase.ordinal()];
+                if (histogram.getCount() > 0) {
+                    Map<String, String> labels = labels("service", entry.getKey());
+                    labels.put("phase", phase.getLabel());
+                    exporter.histogram("xrd4j_service_phase_seconds", labels, histogram, 1e-9);
+                }
+            }
+        }
+        for (Map.Entry<ErrorMessageType, LongAdder> entry : this.faults.entrySet()) {
+            exporter.counter("xrd4j_faults_total", labels("type", entry.getKey().name()), entry.getValue().sum());
+        }
+        exporter.histogram("xrd4j_request_bytes", none, this.requestBytes, 1);
+        exporter.histogram("xrd4j_response_bytes", none, this.responseBytes, 1);
+    }
+
+    /**
+     * Adds the measurements of the given sample to the histograms.
+     *
+     * @param sample completed sample
+     */
+    private void complete(Sample sample) {
+        this.requests.increment();
+        Histogram[] service = sample.serviceCode == null ? null : this.getServiceHistograms(sample.serviceCode);
+        for (int i = 0; i < PHASES.length; i++) {
+            if (sample.recorded[i]) {
+                this.phases[i].record(sample.phases[i]);
+                if (service != null) {
+                    service[i].record(sample.phases[i]);
+                }
+            }
+        }
+        if (sample.requestBytes >= 0) {
+            this.requestBytes.record(sample.requestBytes);
+        }
+        if (sample.responseBytes >= 0) {
+            this.responseBytes.record(sample.responseBytes);
+        }
+    }
+
+    /**
+     * Returns the histograms of the given service code.
+     *
+     * @param serviceCode service code
+     * @return histograms of the service
+     */
+    private Histogram[] getServiceHistograms(String serviceCode) {
+        Histogram[] histograms = this.services.get(serviceCode);
+        if (histograms != null) {
+            return histograms;
+        }
+        String key = this.services.size() >= MAX_SERVICES ? OTHER_SERVICES : serviceCode;
+        return this.services.computeIfAbsent(key, code -> newHistograms());
+    }
+
+    /**
+     * Creates a new histogram for every phase.
+     *
+     * @return new histograms
+     */
+    private static Histogram[] newHistograms() {
+        Histogram[] histograms = new Histogram[PHASES.length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+        return histograms;
+    }
+
+    /**
+     * Creates a new modifiable label map.
+     *
+     * @param name name of the label
+     * @param value value of the label
+     * @return label map
+     */
+    private static Map<String, String> labels(String name, String value) {
+        Map<String, String> labels = new LinkedHashMap<>();
+        labels.put(name, value);
+        return labels;
+    }
+
+    /**
+     * This class holds the measurements of one request. A sample is used by
+     * one thread at a time, and it's completed only once.
+     */
+    public static final class Sample {
+
+        private final ServletMetrics metrics;
+        private final long startTime;
+        private final long[] phases = new long[PHASES.length];
+        private final boolean[] recorded = new boolean[PHASES.length];
+        private String serviceCode;
+        private long requestBytes = -1;
+        private long responseBytes = -1;
+        private boolean completed;
+
+        /**
+         * Constructs and initializes a new Sample object.
+         *
+         * @param metrics metrics where the sample is added
+         */
+        private Sample(ServletMetrics metrics) {
+            this.metrics = metrics;
+            this.startTime = System.nanoTime();
+        }
+
+        /**
+         * Records the time elapsed since the given start time to the given
+         * phase. If the phase has been recorded already, the time is added
+         * to it.
+         *
+         * @param phase processing phase
+         * @param start start time from System.nanoTime
+         */
+        public void record(Phase phase, long start) {
+            int i = phase.ordinal();
+            this.phases[i] += System.nanoTime() - start;
+            this.recorded[i] = true;
+        }
+
+        /**
+         * Sets the service code of the request.
+         *
+         * @param serviceCode service code
+         */
+        public void setServiceCode(String serviceCode) {
+            this.serviceCode = serviceCode;
+        }
+
+        /**
+         * Sets the size of the request.
+         *
+         * @param bytes size of the request in bytes, negative if unknown
+         */
+        public void setRequestBytes(long bytes) {
+            this.requestBytes = bytes;
+        }
+
+        /**
+         * Sets the size of the response.
+         *
+         * @param bytes size of the response in bytes
+         */
+        public void setResponseBytes(long bytes) {
+            this.responseBytes = bytes;
+        }
+
+        /**
+         * Completes the sample. The total time is recorded and all the
+         * measurements are added to the metrics. Subsequent calls are
+         * ignored.
+         */
+        public void complete() {
+            if (this.completed) {
+                return;
+            }
+            this.completed = true;
+            this.record(Phase.TOTAL, this.startTime);
+            this.metrics.complete(this);
+        }
+    }
+}
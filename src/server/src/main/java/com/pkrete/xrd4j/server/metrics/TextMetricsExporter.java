@@ -0,0 +1,111 @@
+package com.pkrete.xrd4j.server.metrics;
+
+import java.util.Map;
+
+/**
+ * This class exports metrics in the plain text exposition format that is
+ * understood by Prometheus and many other monitoring systems. Histogram
+ * buckets are cumulative and only the buckets up to the largest recorded
+ * value are written. This class is not thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public class TextMetricsExporter implements MetricsExporter {
+
+    /**
+     * Content type of the text format.
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=UTF-8";
+    private final StringBuilder text = new StringBuilder();
+
+    @Override
+    public void counter(String name, Map<String, String> labels, long value) {
+        this.line(name, labels, null, Long.toString(value));
+    }
+
+    @Override
+    public void gauge(String name, Map<String, String> labels, double value) {
+        this.line(name, labels, null, format(value));
+    }
+
+    @Override
+    public void histogram(String name, Map<String, String> labels, Histogram histogram, double scale) {
+        int last = -1;
+        for (int i = 0; i < Histogram.BUCKETS; i++) {
+            if (histogram.getBucketCount(i) > 0) {
+                last = i;
+            }
+        }
+        long cumulative = 0;
+        for (int i = 0; i <= last && i < Histogram.BUCKETS - 1; i++) {
+            cumulative += histogram.getBucketCount(i);
+            this.line(name + "_bucket", labels, format(Histogram.getBucketUpperBound(i) * scale), Long.toString(cumulative));
+        }
+        this.line(name + "_bucket", labels, "+Inf", Long.toString(histogram.getCount()));
+        this.line(name + "_sum", labels, null, format(histogram.getSum() * scale));
+        this.line(name + "_count", labels, null, Long.toString(histogram.getCount()));
+    }
+
+    /**
+     * Returns the exported metrics.
+     *
+     * @return metrics in text format
+     */
+    public String getText() {
+        return this.text.toString();
+    }
+
+    /**
+     * Writes one line.
+     *
+     * @param name name of the metric
+     * @param labels labels of the metric
+     * @param le value of the "le" label of a histogram bucket or null
+     * @param value value of the metric
+     */
+    private void line(String name, Map<String, String> labels, String le, String value) {
+        this.text.append(name);
+        if (!labels.isEmpty() || le != null) {
+            this.text.append('{');
+            boolean first = true;
+            for (Map.Entry<String, String> label : labels.entrySet()) {
+                if (!first) {
+                    this.text.append(',');
+                }
+                this.text.append(label.getKey()).append("=\"").append(escape(label.getValue())).append('"');
+                first = false;
+            }
+            if (le != null) {
+                if (!first) {
+                    this.text.append(',');
+                }
+                this.text.append("le=\"").append(le).append('"');
+            }
+            this.text.append('}');
+        }
+        this.text.append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Formats the given number.
+     *
+     * @param value number to be formatted
+     * @return formatted number
+     */
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * Escapes backslashes, quotes and line feeds of a label value.
+     *
+     * @param value label value
+     * @return escaped label value
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,29 @@
+package com.pkrete.xrd4j.server.registry;
+
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import javax.xml.soap.SOAPException;
+
+/**
+ * This class defines an interface for processing the requests of one
+ * service. The request data has already been deserialized when the handler
+ * is called, and the returned ServiceResponse is serialized by the
+ * serializer of the {@link ServiceRegistration ServiceRegistration}, unless
+ * the handler has already done it.
+ *
+ * @author Petteri Kivimäki
+ */
+@FunctionalInterface
+public interface ServiceHandler {
+
+    /**
+     * Processes the given request and returns the response.
+     *
+     * @param request ServiceRequest to be processed
+     * @return ServiceResponse that contains the response data
+     * @throws SOAPException if there's a SOAP error
+     * @throws XRd4JException if there's a XRd4J error
+     */
+    ServiceResponse handle(ServiceRequest request) throws SOAPException, XRd4JException;
+}
@@ -0,0 +1,181 @@
+package com.pkrete.xrd4j.server.registry;
+
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.pkrete.xrd4j.server.deserializer.CustomRequestDeserializer;
+import com.pkrete.xrd4j.server.serializer.ServiceResponseSerializer;
+import javax.xml.soap.SOAPException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class binds a service code and version to the handler that processes
+ * the requests of the service and to the deserializer and serializer that
+ * are used for the request and response data. The deserializer and
+ * serializer are created once and shared by all the requests, so they must
+ * be thread safe. AbstractCustomRequestDeserializer and
+ * AbstractServiceResponseSerializer subclasses that don't have state of
+ * their own are thread safe. A registration is immutable.
+ *
+ * @author Petteri Kivimäki
+ */
+public class ServiceRegistration {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceRegistration.class);
+    private final String serviceCode;
+    private final String serviceVersion;
+    private final ServiceHandler handler;
+    private final CustomRequestDeserializer deserializer;
+    private final String namespaceURI;
+    private final ServiceResponseSerializer serializer;
+
+    /**
+     * Constructs and initializes a new ServiceRegistration object. If service
+     * version is null, the registration matches all the versions that don't
+     * have a registration of their own. Deserializer may be null if the
+     * service doesn't have request data. Namespace URI is used for finding
+     * the request from the SOAP body, null means that the namespace of the
+     * producer is used and "*" that the namespace is ignored.
+     *
+     * @param serviceCode service code
+     * @param serviceVersion service version or null
+     * @param handler handler that processes the requests
+     * @param deserializer deserializer for the request data or null
+     * @param namespaceURI namespace URI of the request or null
+     * @param serializer serializer for the response data
+     */
+    public ServiceRegistration(String serviceCode, String serviceVersion, ServiceHandler handler, CustomRequestDeserializer deserializer, String namespaceURI, ServiceResponseSerializer serializer) {
+        if (serviceCode == null || serviceCode.isEmpty()) {
+            throw new IllegalArgumentException("Service code can not be null or empty.");
+        }
+        if (handler == null || serializer == null) {
+            throw new IllegalArgumentException("Handler and serializer can not be null.");
+        }
+        this.serviceCode = serviceCode;
+        this.serviceVersion = serviceVersion == null || serviceVersion.isEmpty() ? null : serviceVersion;
+        this.handler = handler;
+        this.deserializer = deserializer;
+        this.namespaceURI = namespaceURI;
+        this.serializer = serializer;
+    }
+
+    /**
+     * Processes the given request: deserializes the request data, calls the
+     * handler and serializes the response, if the handler didn't serialize
+     * it already.
+     *
+     * @param request ServiceRequest to be processed
+     * @return ServiceResponse that contains the SOAP response
+     * @throws SOAPException if there's a SOAP error
+     * @throws XRd4JException if there's a XRd4J error
+     */
+    public ServiceResponse process(final ServiceRequest request) throws SOAPException, XRd4JException {
+        this.deserialize(request);
+        ServiceResponse response = this.handle(request);
+        this.serialize(response, request);
+        return response;
+    }
+
+    /**
+     * Deserializes the request data of the given request using the
+     * deserializer of this registration. Nothing is done if the registration
+     * doesn't have a deserializer.
+     *
+     * @param request ServiceRequest to be deserialized
+     * @throws SOAPException if there's a SOAP error
+     * @throws XRd4JException if there's a XRd4J error
+     */
+    public void deserialize(final ServiceRequest request) throws SOAPException, XRd4JException {
+        if (this.deserializer == null) {
+            return;
+        }
+        if (this.namespaceURI != null) {
+            this.deserializer.deserialize(request, this.namespaceURI);
+        } else {
+            this.deserializer.deserialize(request);
+        }
+    }
+
+    /**
+     * Calls the handler of this registration.
+     *
+     * @param request ServiceRequest to be processed
+     * @return ServiceResponse returned by the handler
+     * @throws SOAPException if there's a SOAP error
+     * @throws XRd4JException if there's a XRd4J error
+     */
+    public ServiceResponse handle(final ServiceRequest request) throws SOAPException, XRd4JException {
+        logger.debug("Process \"{}\" service.", this.serviceCode);
+        return this.handler.handle(request);
+    }
+
+    /**
+     * Serializes the given response using the serializer of this
+     * registration, unless the response is null or it has been serialized
+     * already.
+     *
+     * @param response ServiceResponse to be serialized
+     * @param request ServiceRequest that initiated the service call
+     */
+    public void serialize(final ServiceResponse response, final ServiceRequest request) {
+        if (response != null && response.getSoapMessage() == null) {
+            this.serializer.serialize(response, request);
+        }
+    }
+
+    /**
+     * Returns the service code.
+     *
+     * @return service code
+     */
+    public String getServiceCode() {
+        return this.serviceCode;
+    }
+
+    /**
+     * Returns the service version.
+     *
+     * @return service version or null if the registration matches all the
+     * versions
+     */
+    public String getServiceVersion() {
+        return this.serviceVersion;
+    }
+
+    /**
+     * Returns the handler that processes the requests.
+     *
+     * @return service handler
+     */
+    public ServiceHandler getHandler() {
+        return this.handler;
+    }
+
+    /**
+     * Returns the deserializer of the request data.
+     *
+     * @return request deserializer or null
+     */
+    public CustomRequestDeserializer getDeserializer() {
+        return this.deserializer;
+    }
+
+    /**
+     * Returns the namespace URI of the request.
+     *
+     * @return namespace URI or null
+     */
+    public String getNamespaceURI() {
+        return this.namespaceURI;
+    }
+
+    /**
+     * Returns the serializer of the response data.
+     *
+     * @return response serializer
+     */
+    public ServiceResponseSerializer getSerializer() {
+        return this.serializer;
+    }
+}
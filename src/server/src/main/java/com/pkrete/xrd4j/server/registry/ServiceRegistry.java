@@ -0,0 +1,96 @@
+package com.pkrete.xrd4j.server.registry;
+
+import com.pkrete.xrd4j.common.member.ProducerMember;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class holds the services that an adapter servlet offers. The services
+ * are registered by service code and version, and the registration of a
+ * request is looked up with two hash map lookups without creating any
+ * objects. A registration without version matches all the versions of the
+ * service that don't have a registration of their own. Registering a service
+ * again replaces the old registration. This class is thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public class ServiceRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceRegistry.class);
+    private final Map<String, Versions> services = new ConcurrentHashMap<>();
+
+    /**
+     * Adds the given registration to the registry.
+     *
+     * @param registration registration to be added
+     */
+    public void register(ServiceRegistration registration) {
+        Versions versions = this.services.computeIfAbsent(registration.getServiceCode(), code -> new Versions());
+        if (registration.getServiceVersion() == null) {
+            versions.any = registration;
+        } else {
+            versions.byVersion.put(registration.getServiceVersion(), registration);
+        }
+        logger.debug("Service \"{}\" version \"{}\" was registered.", registration.getServiceCode(), registration.getServiceVersion());
+    }
+
+    /**
+     * Returns the registration matching the service code and version of the
+     * given producer.
+     *
+     * @param producer producer member of the request
+     * @return matching registration or null
+     */
+    public ServiceRegistration get(ProducerMember producer) {
+        if (producer == null) {
+            return null;
+        }
+        return this.get(producer.getServiceCode(), producer.getServiceVersion());
+    }
+
+    /**
+     * Returns the registration matching the given service code and version.
+     * If there's no registration for the given version, the registration
+     * without version is returned.
+     *
+     * @param serviceCode service code
+     * @param serviceVersion service version or null
+     * @return matching registration or null
+     */
+    public ServiceRegistration get(String serviceCode, String serviceVersion) {
+        if (serviceCode == null) {
+            return null;
+        }
+        Versions versions = this.services.get(serviceCode);
+        if (versions == null) {
+            return null;
+        }
+        if (serviceVersion != null && !serviceVersion.isEmpty()) {
+            ServiceRegistration registration = versions.byVersion.get(serviceVersion);
+            if (registration != null) {
+                return registration;
+            }
+        }
+        return versions.any;
+    }
+
+    /**
+     * Returns true if no services have been registered.
+     *
+     * @return true if the registry is empty; otherwise false
+     */
+    public boolean isEmpty() {
+        return this.services.isEmpty();
+    }
+
+    /**
+     * Registrations of one service code.
+     */
+    private static final class Versions {
+
+        private final Map<String, ServiceRegistration> byVersion = new ConcurrentHashMap<>();
+        private volatile ServiceRegistration any;
+    }
+}
@@ -1,5 +1,8 @@
 package com.pkrete.xrd4j.server.utils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.StringTokenizer;
@@ -21,6 +24,12 @@ import org.slf4j.LoggerFactory;
 public class AdapterUtils {
 
     private static final Logger logger = LoggerFactory.getLogger(AdapterUtils.class);
+    /**
+     * Maximum number of bytes that are allocated for a request body before
+     * the body is read.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+    private static final int BUFFER_SIZE = 8192;
 
     /**
      * Constructs and initializes a new AdapterUtils object. Should never be
@@ -90,6 +99,98 @@ public class AdapterUtils {
         }
     }
 
+    /**
+     * Reads the body of the given HTTP request to a byte array. Content
+     * length of the request is used as the initial size of the buffer, but
+     * at most INITIAL_BUFFER_SIZE bytes are allocated before the body is
+     * read.
+     *
+     * @param req HTTP request object
+     * @param maxSize maximum size of the body in bytes
+     * @return body of the request
+     * @throws IOException if reading the body fails or the body is larger
+     * than the given maximum size
+     */
+    public static byte[] readBody(HttpServletRequest req, int maxSize) throws IOException {
+        return readBody(req.getInputStream(), req.getContentLength(), maxSize);
+    }
+
+    /**
+     * Reads all the data of the given input stream to a byte array. The
+     * given content length, e.g. the value of the Content-Length header, is
+     * used as the initial size of the buffer, but at most
+     * INITIAL_BUFFER_SIZE bytes are allocated before the data is read. The
+     * buffer grows as the data is read, until the given maximum size is
+     * reached.
+     *
+     * @param in input stream to be read
+     * @param contentLength expected length of the data or -1 if unknown
+     * @param maxSize maximum size of the data in bytes
+     * @return data that was read
+     * @throws IOException if reading fails or the data is larger than the
+     * given maximum size
+     */
+    public static byte[] readBody(InputStream in, long contentLength, int maxSize) throws IOException {
+        if (contentLength > maxSize) {
+            throw new IOException("Request body is too large : " + contentLength + " bytes. Maximum size is " + maxSize + " bytes.");
+        }
+        int initialSize = contentLength > 0 ? (int) Math.min(contentLength, INITIAL_BUFFER_SIZE) : BUFFER_SIZE;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(initialSize);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (out.size() + read > maxSize) {
+                throw new IOException("Request body is too large. Maximum size is " + maxSize + " bytes.");
+            }
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Checks if the client accepts gzip compressed responses based on the
+     * Accept-Encoding header of the given request.
+     *
+     * @param req HTTP request object
+     * @return true if gzip is accepted; otherwise false
+     */
+    public static boolean acceptsGzip(HttpServletRequest req) {
+        return acceptsGzip(req.getHeader("Accept-Encoding"));
+    }
+
+    /**
+     * Checks if the given value of the Accept-Encoding header accepts gzip
+     * compressed responses. Gzip is not accepted if its quality value is
+     * zero.
+     *
+     * @param header value of the Accept-Encoding header or null
+     * @return true if gzip is accepted; otherwise false
+     */
+    public static boolean acceptsGzip(String header) {
+        if (header == null) {
+            return false;
+        }
+        for (String coding : header.split(",")) {
+            String[] params = coding.split(";");
+            if (!"gzip".equalsIgnoreCase(params[0].trim())) {
+                continue;
+            }
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException ex) {
+                        logger.warn("Invalid quality value : \"{}\"", param);
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
     /**
      * Returns the MIME boundary that's used in the given SOAP message.
      *
@@ -0,0 +1,83 @@
+package com.pkrete.xrd4j.server.utils;
+
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.message.ErrorMessage;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.pkrete.xrd4j.server.serializer.ServiceResponseSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class offers helper methods for generating the SOAP Faults that are
+ * returned by AbstractAdapterServlet and EmbeddedServer.
+ *
+ * @author Petteri Kivimäki
+ */
+public class FaultHelper {
+
+    private static final Logger logger = LoggerFactory.getLogger(FaultHelper.class);
+    /**
+     * Fault code of the errors caused by the client.
+     */
+    public static final String FAULT_CODE_CLIENT = "SOAP-ENV:Client";
+    /**
+     * Fault string of the requests whose service is not known.
+     */
+    public static final String UNKNOWN_SERVICE_CODE = "Unknown service code.";
+    /**
+     * Fault string of the requests whose processing failed.
+     */
+    public static final String INTERNAL_SERVER_ERROR = "500 Internal Server Error";
+
+    /**
+     * Constructs and initializes a new FaultHelper object. Should never be
+     * used.
+     */
+    private FaultHelper() {
+    }
+
+    /**
+     * Returns a SOAP Fault telling that the service of the given request is
+     * unknown. The service code and version are added to the fault detail.
+     *
+     * @param request ServiceRequest whose service is not registered
+     * @param serializer serializer that generates the SOAP Fault
+     * @return ServiceResponse that contains the SOAP Fault
+     */
+    public static ServiceResponse unknownService(ServiceRequest request, ServiceResponseSerializer serializer) {
+        String service = null;
+        if (request.getProducer() != null) {
+            service = request.getProducer().getServiceCode();
+            if (request.getProducer().getServiceVersion() != null) {
+                service += "." + request.getProducer().getServiceVersion();
+            }
+        }
+        logger.warn("Service \"{}\" is not registered. SOAP Fault is returned.", service);
+        ServiceResponse response = new ServiceResponse();
+        response.setErrorMessage(new ErrorMessage(FAULT_CODE_CLIENT, UNKNOWN_SERVICE_CODE, null, service));
+        serializer.serialize(response, request);
+        return response;
+    }
+
+    /**
+     * Returns the error that's returned to the client when processing the
+     * given request throws the given exception. If the exception is a
+     * XRd4JException and the request has an error, a copy of the error is
+     * returned. Otherwise an internal server error is returned. The copy is
+     * created using the constructor with four arguments, so that it's sure
+     * that the error's type is "STANDARD_SOAP_ERROR_MESSAGE".
+     *
+     * @param ex exception thrown by the request handler
+     * @param request ServiceRequest object that was processed
+     * @return ErrorMessage that describes the error
+     */
+    public static ErrorMessage exceptionToError(Throwable ex, ServiceRequest request) {
+        logger.error(ex.getMessage(), ex);
+        if (ex instanceof XRd4JException && request != null && request.hasError()) {
+            ErrorMessage error = request.getErrorMessage();
+            return new ErrorMessage(error.getFaultCode(), error.getFaultString(), error.getFaultActor(), error.getDetail());
+        }
+        return new ErrorMessage(FAULT_CODE_CLIENT, INTERNAL_SERVER_ERROR, null, null);
+    }
+}
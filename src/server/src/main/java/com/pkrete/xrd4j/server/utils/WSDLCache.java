@@ -0,0 +1,211 @@
+package com.pkrete.xrd4j.server.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class caches the contents of a WSDL file in memory. The file is read
+ * again only when its path, last modification time or size changes. Besides
+ * the plain contents a gzip compressed copy is kept, so that the file doesn't
+ * have to be compressed on every request. This class is thread safe.
+ *
+ * @author Petteri Kivimäki
+ */
+public class WSDLCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(WSDLCache.class);
+    private volatile Entry entry;
+
+    /**
+     * Returns the cached contents of the WSDL file denoted by the given path.
+     * If the file has been modified after it was cached, it's read again. If
+     * the file doesn't exist or it's empty, null is returned.
+     *
+     * @param path absolute path of the WSDL file
+     * @return cached WSDL file or null
+     */
+    public Entry get(final String path) {
+        File file = new File(path);
+        long lastModified = file.lastModified();
+        long length = file.length();
+        if (lastModified == 0L || length == 0L) {
+            logger.warn("WSDL file doesn't exist or it's empty : {}", file.getAbsolutePath());
+            return null;
+        }
+        Entry current = this.entry;
+        if (current != null && current.isValid(path, lastModified, length)) {
+            logger.trace("WSDL file was found from the cache.");
+            return current;
+        }
+        return this.load(path, file, lastModified, length);
+    }
+
+    /**
+     * Removes the cached file.
+     */
+    public void clear() {
+        this.entry = null;
+    }
+
+    /**
+     * Reads the given file and stores it to the cache. Only one thread reads
+     * the file at a time.
+     *
+     * @param path path of the WSDL file
+     * @param file WSDL file
+     * @param lastModified last modification time of the file
+     * @param length size of the file
+     * @return cached WSDL file or null
+     */
+    private synchronized Entry load(final String path, final File file, final long lastModified, final long length) {
+        Entry current = this.entry;
+        if (current != null && current.isValid(path, lastModified, length)) {
+            return current;
+        }
+        try {
+            byte[] content = Files.readAllBytes(file.toPath());
+            if (content.length == 0) {
+                return null;
+            }
+            current = new Entry(path, lastModified, length, content);
+            this.entry = current;
+            logger.debug("WSDL file was read and added to the cache : {}", file.getAbsolutePath());
+            return current;
+        } catch (IOException ex) {
+            logger.error(ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * This class represents a cached WSDL file. An entry is immutable.
+     */
+    public static final class Entry {
+
+        private final String path;
+        private final long fileModified;
+        private final long fileLength;
+        private final long lastModified;
+        private final byte[] content;
+        private final byte[] gzipContent;
+        private final String eTag;
+        private final String gzipETag;
+
+        /**
+         * Constructs and initializes a new Entry object.
+         *
+         * @param path path of the WSDL file
+         * @param fileModified last modification time of the file
+         * @param fileLength size of the file
+         * @param content contents of the file
+         * @throws IOException if compressing the contents fails
+         */
+        private Entry(final String path, final long fileModified, final long fileLength, final byte[] content) throws IOException {
+            this.path = path;
+            this.fileModified = fileModified;
+            this.fileLength = fileLength;
+            // HTTP dates have a precision of one second
+            this.lastModified = fileModified / 1000 * 1000;
+            this.content = content;
+            this.gzipContent = gzip(content);
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            String tag = Long.toHexString(fileModified) + "-" + Long.toHexString(crc.getValue());
+            this.eTag = "\"" + tag + "\"";
+            this.gzipETag = "\"" + tag + "-gzip\"";
+        }
+
+        /**
+         * Checks if this entry is still valid for the given file.
+         *
+         * @param path path of the WSDL file
+         * @param fileModified last modification time of the file
+         * @param fileLength size of the file
+         * @return true if the entry is valid; otherwise false
+         */
+        private boolean isValid(final String path, final long fileModified, final long fileLength) {
+            return this.fileModified == fileModified && this.fileLength == fileLength && this.path.equals(path);
+        }
+
+        /**
+         * Returns the contents of the file. The returned array must not be
+         * modified.
+         *
+         * @param gzip if true, the gzip compressed contents is returned
+         * @return contents of the file
+         */
+        public byte[] getContent(final boolean gzip) {
+            return gzip ? this.gzipContent : this.content;
+        }
+
+        /**
+         * Returns the entity tag of the file. Compressed and plain contents
+         * have different entity tags.
+         *
+         * @param gzip if true, the entity tag of the gzip compressed contents
+         * is returned
+         * @return quoted entity tag
+         */
+        public String getETag(final boolean gzip) {
+            return gzip ? this.gzipETag : this.eTag;
+        }
+
+        /**
+         * Returns the last modification time of the file rounded down to
+         * full seconds.
+         *
+         * @return last modification time in milliseconds
+         */
+        public long getLastModified() {
+            return this.lastModified;
+        }
+
+        /**
+         * Checks if the client already has the current version of the file
+         * based on the values of If-None-Match and If-Modified-Since request
+         * headers. If-Modified-Since is ignored when If-None-Match is present.
+         *
+         * @param ifNoneMatch value of If-None-Match header or null
+         * @param ifModifiedSince value of If-Modified-Since header or -1
+         * @param gzip true if the gzip compressed contents is returned
+         * @return true if the file hasn't been modified; otherwise false
+         */
+        public boolean isNotModified(final String ifNoneMatch, final long ifModifiedSince, final boolean gzip) {
+            if (ifNoneMatch != null) {
+                String tag = this.getETag(gzip);
+                for (String candidate : ifNoneMatch.split(",")) {
+                    candidate = candidate.trim();
+                    if (candidate.startsWith("W/")) {
+                        candidate = candidate.substring(2);
+                    }
+                    if ("*".equals(candidate) || tag.equals(candidate)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            return ifModifiedSince >= 0 && this.lastModified <= ifModifiedSince;
+        }
+
+        /**
+         * Compresses the given bytes using gzip.
+         *
+         * @param bytes bytes to be compressed
+         * @return compressed bytes
+         * @throws IOException if compressing fails
+         */
+        private static byte[] gzip(final byte[] bytes) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(bytes);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.pkrete.xrd4j.server.utils;
+
+import com.pkrete.xrd4j.common.util.Constants;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class represents the response to a WSDL file request. ETag and
+ * Last-Modified headers are always set, and if the client already has the
+ * current version of the file, only the status code 304 is returned. The gzip
+ * compressed copy of the file is returned if the client accepts it. The
+ * response is independent of the HTTP server, so that the same logic is used
+ * by AbstractAdapterServlet and EmbeddedServer.
+ *
+ * @author Petteri Kivimäki
+ */
+public class WSDLResponse {
+
+    private static final Logger logger = LoggerFactory.getLogger(WSDLResponse.class);
+    private static final String HTTP_DATE = "EEE, dd MMM yyyy HH:mm:ss zzz";
+    private final Map<String, String> headers;
+    private final int status;
+    private final byte[] content;
+
+    /**
+     * Constructs and initializes a new WSDLResponse object.
+     *
+     * @param wsdl cached WSDL file
+     * @param acceptEncoding value of Accept-Encoding header or null
+     * @param ifNoneMatch value of If-None-Match header or null
+     * @param ifModifiedSince value of If-Modified-Since header or null
+     */
+    public WSDLResponse(WSDLCache.Entry wsdl, String acceptEncoding, String ifNoneMatch, String ifModifiedSince) {
+        boolean gzip = AdapterUtils.acceptsGzip(acceptEncoding);
+        this.headers = new LinkedHashMap<>();
+        this.headers.put("Content-Type", Constants.TEXT_XML + ";charset=UTF-8");
+        this.headers.put("Vary", "Accept-Encoding");
+        this.headers.put("ETag", wsdl.getETag(gzip));
+        this.headers.put("Last-Modified", formatDate(wsdl.getLastModified()));
+        if (wsdl.isNotModified(ifNoneMatch, parseDate(ifModifiedSince), gzip)) {
+            logger.debug("WSDL file has not been modified. Status code 304 is returned.");
+            this.status = 304;
+            this.content = new byte[0];
+            return;
+        }
+        if (gzip) {
+            this.headers.put("Content-Encoding", "gzip");
+        }
+        this.status = 200;
+        this.content = wsdl.getContent(gzip);
+    }
+
+    /**
+     * Returns the response headers.
+     *
+     * @return response headers
+     */
+    public Map<String, String> getHeaders() {
+        return this.headers;
+    }
+
+    /**
+     * Returns the HTTP status code, 200 or 304.
+     *
+     * @return HTTP status code
+     */
+    public int getStatus() {
+        return this.status;
+    }
+
+    /**
+     * Returns the response body. The body is empty if the status code is 304.
+     * The returned array must not be modified.
+     *
+     * @return response body
+     */
+    public byte[] getContent() {
+        return this.content;
+    }
+
+    /**
+     * Formats the given time as an HTTP date.
+     *
+     * @param time time in milliseconds
+     * @return HTTP date
+     */
+    private static String formatDate(long time) {
+        SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        return format.format(new Date(time));
+    }
+
+    /**
+     * Parses the given HTTP date.
+     *
+     * @param date HTTP date or null
+     * @return time in milliseconds or -1 if the date is missing or invalid
+     */
+    private static long parseDate(String date) {
+        if (date == null) {
+            return -1;
+        }
+        SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return format.parse(date).getTime();
+        } catch (ParseException ex) {
+            logger.debug("Invalid If-Modified-Since header. The header is ignored.");
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.pkrete.xrd4j.server.admission;
+
+import junit.framework.TestCase;
+
+/**
+ * Test cases for AdmissionController and AdaptiveLimit classes.
+ *
+ * @author Petteri Kivimäki
+ */
+public class AdmissionControllerTest extends TestCase {
+
+    /**
+     * Requests exceeding the per service limit are rejected.
+     */
+    public void testServiceLimit() {
+        AdmissionController controller = new AdmissionController(2, null);
+        controller.setServiceLimit("unlimited", 0);
+        AdmissionController.Permit p1 = controller.tryAcquire("getRandom");
+        AdmissionController.Permit p2 = controller.tryAcquire("getRandom");
+        assertNotNull(p1);
+        assertNotNull(p2);
+        assertNull(controller.tryAcquire("getRandom"));
+        assertNotNull(controller.tryAcquire("helloService"));
+        for (int i = 0; i < 10; i++) {
+            assertNotNull(controller.tryAcquire("unlimited"));
+        }
+        assertEquals(2, controller.getInFlight("getRandom"));
+        assertEquals(1, controller.getRejected("getRandom"));
+        assertEquals(1, controller.getRejected());
+        assertEquals(2, controller.getAdmitted("getRandom"));
+        assertEquals(13, controller.getInFlight());
+        assertEquals(-1, controller.getLimit());
+
+        p1.release();
+        // Second release is ignored
+        p1.release();
+        assertEquals(1, controller.getInFlight("getRandom"));
+        assertNotNull(controller.tryAcquire("getRandom"));
+    }
+
+    /**
+     * Requests exceeding the adaptive limit are rejected.
+     */
+    public void testAdaptiveLimit() {
+        AdmissionController controller = new AdmissionController(0, new AdaptiveLimit(2, 1, 10));
+        AdmissionController.Permit p1 = controller.tryAcquire("a");
+        assertNotNull(controller.tryAcquire("b"));
+        assertNull(controller.tryAcquire("c"));
+        assertEquals(1, controller.getRejected("c"));
+        assertEquals(0, controller.getInFlight("c"));
+        assertEquals(2, controller.getInFlight());
+        // Dropped request decreases the limit
+        p1.release(true);
+        assertEquals(1, controller.getLimit());
+        assertNull(controller.tryAcquire("a"));
+    }
+
+    /**
+     * Limit grows when latency is stable and shrinks when latency grows.
+     */
+    public void testAdaptiveLimitLatency() {
+        AdaptiveLimit limit = new AdaptiveLimit(10, 1, 100);
+        for (int i = 0; i < 100; i++) {
+            limit.onSample(1000000, limit.getLimit(), false);
+        }
+        int grown = limit.getLimit();
+        assertTrue(grown > 10);
+        for (int i = 0; i < 20; i++) {
+            limit.onSample(10000000, limit.getLimit(), false);
+        }
+        assertTrue(limit.getLimit() < grown);
+        // Limit doesn't grow when it's not used
+        AdaptiveLimit unused = new AdaptiveLimit(10, 1, 100);
+        for (int i = 0; i < 100; i++) {
+            unused.onSample(1000000, 1, false);
+        }
+        assertEquals(10, unused.getLimit());
+    }
+
+    /**
+     * Invalid limits.
+     */
+    public void testInvalidLimits() {
+        try {
+            new AdaptiveLimit(0, 1, 10);
+            fail("Should not reach this");
+        } catch (IllegalArgumentException ex) {
+            // OK
+        }
+    }
+
+    /**
+     * Releasing the unlimited permit does nothing and it can be released
+     * many times.
+     */
+    public void testUnlimitedPermit() {
+        AdmissionController.Permit permit = AdmissionController.Permit.UNLIMITED;
+        for (int i = 0; i < 3; i++) {
+            permit.release();
+            permit.release(true);
+        }
+    }
+}
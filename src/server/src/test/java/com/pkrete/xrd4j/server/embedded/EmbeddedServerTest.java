@@ -0,0 +1,152 @@
+package com.pkrete.xrd4j.server.embedded;
+
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.pkrete.xrd4j.server.deserializer.AbstractCustomRequestDeserializer;
+import com.pkrete.xrd4j.server.registry.ServiceRegistration;
+import com.pkrete.xrd4j.server.registry.ServiceRegistry;
+import com.pkrete.xrd4j.server.serializer.AbstractServiceResponseSerializer;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import javax.xml.soap.Node;
+import javax.xml.soap.SOAPElement;
+import javax.xml.soap.SOAPEnvelope;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for EmbeddedServer class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class EmbeddedServerTest extends TestCase {
+
+    private static final String REQUEST = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header><xrd:client id:objectType=\"SUBSYSTEM\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>MEMBER1</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode></xrd:client><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>COM</id:memberClass><id:memberCode>MEMBER2</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode><id:serviceCode>%s</id:serviceCode><id:serviceVersion>v1</id:serviceVersion></xrd:service><xrd:userId>EE1234567890</xrd:userId><xrd:id>ID11234</xrd:id><xrd:protocolVersion>4.0</xrd:protocolVersion></SOAP-ENV:Header><SOAP-ENV:Body><ns1:%1$s xmlns:ns1=\"http://producer.x-road.ee\"/></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+    private EmbeddedServer server;
+    private File wsdl;
+
+    @Override
+    protected void setUp() throws Exception {
+        ServiceRegistry registry = new ServiceRegistry();
+        registry.register(new ServiceRegistration("helloService", "v1", req -> {
+            ServiceResponse<String, String> response = new ServiceResponse<>(req.getConsumer(), req.getProducer(), req.getId());
+            response.setResponseData("Hello");
+            return response;
+        }, new RequestDeserializer(), "http://producer.x-road.ee", new ResponseSerializer()));
+        this.wsdl = File.createTempFile("test", ".wsdl");
+        Files.write(this.wsdl.toPath(), "<definitions/>".getBytes(StandardCharsets.UTF_8));
+        this.server = new EmbeddedServer(0, registry);
+        this.server.setWSDLPath(this.wsdl.getAbsolutePath());
+        this.server.setThreads(2);
+        this.server.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.server.stop(0);
+        this.wsdl.delete();
+    }
+
+    /**
+     * Registered service is processed and unknown service returns a fault.
+     * @throws IOException
+     */
+    public void testPost() throws IOException {
+        String response = this.post(String.format(REQUEST, "helloService"));
+        assertTrue(response.contains("<ns1:message>Hello</ns1:message>"));
+        response = this.post(String.format(REQUEST, "getRandom"));
+        assertTrue(response.contains("Unknown service code."));
+        response = this.post("invalid");
+        assertTrue(response.contains("<faultcode>SOAP-ENV:Client</faultcode>"));
+    }
+
+    /**
+     * WSDL, health and unsupported GET requests.
+     * @throws IOException
+     */
+    public void testGet() throws IOException {
+        HttpURLConnection connection = this.open("?wsdl");
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("<definitions/>", read(connection.getInputStream()));
+        String eTag = connection.getHeaderField("ETag");
+        connection = this.open("?wsdl");
+        connection.setRequestProperty("If-None-Match", eTag);
+        assertEquals(304, connection.getResponseCode());
+        connection = this.open("?wsdl");
+        connection.setRequestProperty("Accept-Encoding", "gzip;q=0, identity");
+        assertEquals(200, connection.getResponseCode());
+        assertNull(connection.getHeaderField("Content-Encoding"));
+        assertEquals("<definitions/>", read(connection.getInputStream()));
+
+        connection = this.open("?health");
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("{\"status\":\"UP\"}", read(connection.getInputStream()));
+
+        connection = this.open("?foo");
+        assertEquals(200, connection.getResponseCode());
+        assertTrue(read(connection.getInputStream()).contains("HTTP GET method not implemented"));
+    }
+
+    /**
+     * Query parameter parsing.
+     */
+    public void testGetParameter() {
+        assertEquals("", AdapterHttpHandler.getParameter("wsdl", "wsdl"));
+        assertEquals("live", AdapterHttpHandler.getParameter("a=1&health=live", "health"));
+        assertNull(AdapterHttpHandler.getParameter("wsdlx", "wsdl"));
+        assertNull(AdapterHttpHandler.getParameter(null, "wsdl"));
+    }
+
+    private String post(String body) throws IOException {
+        HttpURLConnection connection = this.open("");
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "text/xml; charset=UTF-8");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(200, connection.getResponseCode());
+        return read(connection.getInputStream());
+    }
+
+    private HttpURLConnection open(String query) throws IOException {
+        return (HttpURLConnection) new URL("http://localhost:" + this.server.getPort() + "/" + query).openConnection();
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static class RequestDeserializer extends AbstractCustomRequestDeserializer<String> {
+
+        @Override
+        protected String deserializeRequest(Node requestNode, SOAPMessage message) throws SOAPException {
+            return null;
+        }
+    }
+
+    private static class ResponseSerializer extends AbstractServiceResponseSerializer {
+
+        @Override
+        protected void serializeResponse(ServiceResponse response, SOAPElement soapResponse, SOAPEnvelope envelope) throws SOAPException {
+            soapResponse.addChildElement(envelope.createName("message")).addTextNode((String) response.getResponseData());
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.pkrete.xrd4j.server.embedded;
+
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.pkrete.xrd4j.server.registry.ServiceRegistration;
+import com.pkrete.xrd4j.server.registry.ServiceRegistry;
+import com.pkrete.xrd4j.server.serializer.AbstractServiceResponseSerializer;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.xml.soap.SOAPElement;
+import javax.xml.soap.SOAPEnvelope;
+import javax.xml.soap.SOAPException;
+
+/**
+ * Compares request executors of EmbeddedServer when the service handler
+ * blocks on a back end call. The platform thread model uses a fixed pool of
+ * EmbeddedServer.DEFAULT_THREADS threads. The other model starts a thread
+ * per request: a virtual thread on Java 21 and later, and a platform thread
+ * on older runtimes. This is not a unit test and it's not run by the build.
+ * Usage: ExecutorBenchmark [clients] [requests per client] [back end latency
+ * ms]
+ *
+ * @author Petteri Kivimäki
+ */
+public final class ExecutorBenchmark {
+
+    private static final String REQUEST = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header><xrd:client id:objectType=\"SUBSYSTEM\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>MEMBER1</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode></xrd:client><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>COM</id:memberClass><id:memberCode>MEMBER2</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode><id:serviceCode>helloService</id:serviceCode><id:serviceVersion>v1</id:serviceVersion></xrd:service><xrd:userId>EE1234567890</xrd:userId><xrd:id>ID11234</xrd:id><xrd:protocolVersion>4.0</xrd:protocolVersion></SOAP-ENV:Header><SOAP-ENV:Body><ns1:helloService xmlns:ns1=\"http://producer.x-road.ee\"/></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+
+    /**
+     * Constructs and initializes a new ExecutorBenchmark object. Should
+     * never be used.
+     */
+    private ExecutorBenchmark() {
+    }
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args clients, requests per client and back end latency
+     * @throws Exception if there's an error
+     */
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        long latency = args.length > 2 ? Long.parseLong(args[2]) : 50;
+        System.out.printf("%d clients, %d requests each, back end latency %d ms%n", clients, requests, latency);
+
+        run("platform (fixed " + EmbeddedServer.DEFAULT_THREADS + ")", null, clients, requests, latency);
+        ExecutorService perRequest = newVirtualThreadExecutor();
+        String name = "virtual thread per request";
+        if (perRequest == null) {
+            perRequest = Executors.newCachedThreadPool();
+            name = "platform thread per request (virtual threads not available)";
+        }
+        try {
+            run(name, perRequest, clients, requests, latency);
+        } finally {
+            perRequest.shutdown();
+        }
+    }
+
+    /**
+     * Runs one round of the benchmark.
+     *
+     * @param name name of the executor
+     * @param executor executor or null for the default executor
+     * @param clients number of concurrent clients
+     * @param requests number of requests per client
+     * @param latency back end latency in milliseconds
+     * @throws Exception if there's an error
+     */
+    private static void run(String name, ExecutorService executor, int clients, int requests, final long latency) throws Exception {
+        ServiceRegistry registry = new ServiceRegistry();
+        registry.register(new ServiceRegistration("helloService", "v1", req -> {
+            try {
+                // Simulated blocking back end call
+                Thread.sleep(latency);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            ServiceResponse<String, String> response = new ServiceResponse<>(req.getConsumer(), req.getProducer(), req.getId());
+            response.setResponseData("Hello");
+            req.getProducer().setNamespaceUrl("http://producer.x-road.ee");
+            return response;
+        }, null, null, new ResponseSerializer()));
+        EmbeddedServer server = new EmbeddedServer(0, registry);
+        if (executor != null) {
+            server.setExecutor(executor);
+        }
+        server.start();
+        final URL url = new URL("http://localhost:" + server.getPort() + "/");
+        final byte[] body = REQUEST.getBytes(StandardCharsets.UTF_8);
+        final long[] latencies = new long[clients * requests];
+        final AtomicInteger index = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        ExecutorService clientPool = Executors.newFixedThreadPool(clients);
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            clientPool.execute(() -> {
+                for (int r = 0; r < requests; r++) {
+                    long begin = System.nanoTime();
+                    if (!post(url, body)) {
+                        errors.incrementAndGet();
+                    }
+                    latencies[index.getAndIncrement()] = System.nanoTime() - begin;
+                }
+            });
+        }
+        clientPool.shutdown();
+        clientPool.awaitTermination(1, TimeUnit.HOURS);
+        long elapsed = System.nanoTime() - start;
+        server.stop(0);
+
+        Arrays.sort(latencies);
+        double seconds = elapsed / 1e9;
+        System.out.printf("%-60s %8.0f req/s  p50 %6.1f ms  p99 %6.1f ms  errors %d%n", name,
+                latencies.length / seconds, latencies[latencies.length / 2] / 1e6,
+                latencies[(int) (latencies.length * 0.99)] / 1e6, errors.get());
+    }
+
+    /**
+     * Sends one request.
+     *
+     * @param url URL of the server
+     * @param body request body
+     * @return true if the request succeeded; otherwise false
+     */
+    private static boolean post(URL url, byte[] body) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "text/xml; charset=UTF-8");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            try (InputStream in = connection.getInputStream()) {
+                byte[] buffer = new byte[4096];
+                while (in.read(buffer) != -1) {
+                    // Discard the response
+                }
+            }
+            return connection.getResponseCode() == 200;
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates a virtual thread per task executor if the runtime supports
+     * virtual threads.
+     *
+     * @return executor or null if virtual threads are not supported
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+
+    private static class ResponseSerializer extends AbstractServiceResponseSerializer {
+
+        @Override
+        protected void serializeResponse(ServiceResponse response, SOAPElement soapResponse, SOAPEnvelope envelope) throws SOAPException {
+            soapResponse.addChildElement(envelope.createName("message")).addTextNode((String) response.getResponseData());
+        }
+    }
+}
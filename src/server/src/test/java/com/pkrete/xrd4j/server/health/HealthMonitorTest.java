@@ -0,0 +1,75 @@
+package com.pkrete.xrd4j.server.health;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for HealthMonitor class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class HealthMonitorTest extends TestCase {
+
+    /**
+     * Status without checks is healthy.
+     */
+    public void testNoChecks() {
+        HealthStatus status = new HealthMonitor().getStatus();
+        assertTrue(status.isHealthy());
+        assertEquals("{\"status\":\"UP\"}", new String(status.getContent(), StandardCharsets.UTF_8));
+        assertEquals("{\"status\":\"UP\"}", new String(HealthMonitor.LIVE.getContent(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Failing and throwing checks make the status unhealthy.
+     */
+    public void testFailingChecks() {
+        HealthMonitor monitor = new HealthMonitor(0);
+        monitor.register("load", () -> true);
+        monitor.register("db", () -> false);
+        monitor.register("cache", () -> {
+            throw new IllegalStateException("Broken");
+        });
+        HealthStatus status = monitor.getStatus();
+        assertFalse(status.isHealthy());
+        assertEquals(Boolean.TRUE, status.getChecks().get("load"));
+        assertEquals(Boolean.FALSE, status.getChecks().get("db"));
+        assertEquals(Boolean.FALSE, status.getChecks().get("cache"));
+        assertEquals("{\"status\":\"DOWN\",\"checks\":{\"load\":\"UP\",\"db\":\"DOWN\",\"cache\":\"DOWN\"}}",
+                new String(status.getContent(), StandardCharsets.UTF_8));
+        monitor.register("db", () -> true);
+        monitor.register("cache", () -> true);
+        assertTrue(monitor.getStatus().isHealthy());
+    }
+
+    /**
+     * Checks are not run again until the status has expired.
+     */
+    public void testCaching() {
+        final AtomicInteger runs = new AtomicInteger();
+        HealthMonitor monitor = new HealthMonitor(60000);
+        monitor.register("counter", () -> runs.incrementAndGet() > 0);
+        HealthStatus status = monitor.getStatus();
+        assertSame(status, monitor.getStatus());
+        assertEquals(1, runs.get());
+
+        monitor = new HealthMonitor(0);
+        monitor.register("counter", () -> runs.incrementAndGet() > 0);
+        monitor.getStatus();
+        monitor.getStatus();
+        assertEquals(3, runs.get());
+    }
+
+    /**
+     * Invalid registrations are rejected.
+     */
+    public void testRegisterNull() {
+        try {
+            new HealthMonitor().register("foo", null);
+            fail("IllegalArgumentException expected");
+        } catch (IllegalArgumentException ex) {
+            // Expected
+        }
+    }
+}
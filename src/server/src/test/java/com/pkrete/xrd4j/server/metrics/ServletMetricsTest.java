@@ -0,0 +1,90 @@
+package com.pkrete.xrd4j.server.metrics;
+
+import com.pkrete.xrd4j.common.message.ErrorMessageType;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for ServletMetrics and Histogram classes.
+ *
+ * @author Petteri Kivimäki
+ */
+public class ServletMetricsTest extends TestCase {
+
+    /**
+     * Values are recorded to exponential buckets.
+     */
+    public void testHistogram() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getPercentile(50));
+        histogram.record(1);
+        histogram.record(3);
+        histogram.record(4);
+        histogram.record(1000);
+        histogram.record(-5);
+        assertEquals(5, histogram.getCount());
+        assertEquals(1008, histogram.getSum());
+        assertEquals(2, histogram.getBucketCount(0));
+        assertEquals(2, histogram.getBucketCount(2));
+        assertEquals(1, histogram.getBucketCount(10));
+        assertEquals(4, histogram.getPercentile(50));
+        assertEquals(1024, histogram.getPercentile(100));
+        assertEquals(Long.MAX_VALUE, Histogram.getBucketUpperBound(Histogram.BUCKETS - 1));
+    }
+
+    /**
+     * Sample is added to the global and service specific histograms once.
+     */
+    public void testSample() {
+        ServletMetrics metrics = new ServletMetrics();
+        ServletMetrics.Sample sample = metrics.start();
+        sample.setServiceCode("getRandom");
+        sample.setRequestBytes(512);
+        sample.setResponseBytes(100);
+        long start = System.nanoTime();
+        sample.record(Phase.PARSE, start);
+        sample.record(Phase.HANDLE, start);
+        assertEquals(0, metrics.getRequests());
+        sample.complete();
+        sample.complete();
+        assertEquals(1, metrics.getRequests());
+        assertEquals(1, metrics.getHistogram(Phase.PARSE).getCount());
+        assertEquals(1, metrics.getHistogram(Phase.TOTAL).getCount());
+        assertEquals(0, metrics.getHistogram(Phase.WRITE).getCount());
+        assertEquals(1, metrics.getHistogram("getRandom", Phase.HANDLE).getCount());
+        assertEquals(512, metrics.getRequestBytes().getSum());
+        assertEquals(100, metrics.getResponseBytes().getSum());
+    }
+
+    /**
+     * Faults are counted by type.
+     */
+    public void testFaults() {
+        ServletMetrics metrics = new ServletMetrics();
+        metrics.recordFault(ErrorMessageType.STANDARD_SOAP_ERROR_MESSAGE);
+        metrics.recordFault(ErrorMessageType.STANDARD_SOAP_ERROR_MESSAGE);
+        metrics.recordFault(ErrorMessageType.NON_TECHNICAL_SOAP_ERROR_MESSAGE);
+        assertEquals(2, metrics.getFaults(ErrorMessageType.STANDARD_SOAP_ERROR_MESSAGE));
+        assertEquals(1, metrics.getFaults(ErrorMessageType.NON_TECHNICAL_SOAP_ERROR_MESSAGE));
+    }
+
+    /**
+     * Metrics are exported in text format.
+     */
+    public void testTextExporter() {
+        ServletMetrics metrics = new ServletMetrics();
+        ServletMetrics.Sample sample = metrics.start();
+        sample.setServiceCode("getRandom");
+        sample.setResponseBytes(3);
+        sample.complete();
+        metrics.recordFault(ErrorMessageType.STANDARD_SOAP_ERROR_MESSAGE);
+        TextMetricsExporter exporter = new TextMetricsExporter();
+        metrics.export(exporter);
+        String text = exporter.getText();
+        assertTrue(text.contains("xrd4j_requests_total 1\n"));
+        assertTrue(text.contains("xrd4j_faults_total{type=\"STANDARD_SOAP_ERROR_MESSAGE\"} 1\n"));
+        assertTrue(text.contains("xrd4j_service_phase_seconds_count{service=\"getRandom\",phase=\"total\"} 1\n"));
+        assertTrue(text.contains("xrd4j_response_bytes_bucket{le=\"4\"} 1\n"));
+        assertTrue(text.contains("xrd4j_response_bytes_bucket{le=\"+Inf\"} 1\n"));
+        assertTrue(text.contains("xrd4j_response_bytes_sum 3\n"));
+    }
+}
@@ -0,0 +1,126 @@
+package com.pkrete.xrd4j.server.registry;
+
+import com.pkrete.xrd4j.common.exception.XRd4JException;
+import com.pkrete.xrd4j.common.message.ServiceRequest;
+import com.pkrete.xrd4j.common.message.ServiceResponse;
+import com.pkrete.xrd4j.common.util.SOAPHelper;
+import com.pkrete.xrd4j.server.deserializer.AbstractCustomRequestDeserializer;
+import com.pkrete.xrd4j.server.deserializer.ServiceRequestDeserializer;
+import com.pkrete.xrd4j.server.deserializer.ServiceRequestDeserializerImpl;
+import com.pkrete.xrd4j.server.serializer.AbstractServiceResponseSerializer;
+import com.pkrete.xrd4j.server.serializer.ServiceResponseSerializer;
+import javax.xml.soap.Node;
+import javax.xml.soap.SOAPElement;
+import javax.xml.soap.SOAPEnvelope;
+import javax.xml.soap.SOAPException;
+import javax.xml.soap.SOAPMessage;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for ServiceRegistry class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class ServiceRegistryTest extends TestCase {
+
+    private final ServiceHandler handler = request -> new ServiceResponse(request.getConsumer(), request.getProducer(), request.getId());
+    private final ServiceResponseSerializer serializer = new ResponseSerializer();
+
+    /**
+     * Lookup by service code and version.
+     */
+    public void testLookup() {
+        ServiceRegistry registry = new ServiceRegistry();
+        assertTrue(registry.isEmpty());
+        ServiceRegistration v1 = new ServiceRegistration("getRandom", "v1", handler, null, null, serializer);
+        ServiceRegistration any = new ServiceRegistration("getRandom", null, handler, null, null, serializer);
+        registry.register(v1);
+        assertFalse(registry.isEmpty());
+        assertSame(v1, registry.get("getRandom", "v1"));
+        assertNull(registry.get("getRandom", "v2"));
+        assertNull(registry.get("getRandom", null));
+        registry.register(any);
+        assertSame(v1, registry.get("getRandom", "v1"));
+        assertSame(any, registry.get("getRandom", "v2"));
+        assertSame(any, registry.get("getRandom", null));
+        assertSame(any, registry.get("getRandom", ""));
+        assertNull(registry.get("helloService", "v1"));
+        assertNull(registry.get(null, "v1"));
+    }
+
+    /**
+     * Registering the same service again replaces the old registration.
+     */
+    public void testReplace() {
+        ServiceRegistry registry = new ServiceRegistry();
+        registry.register(new ServiceRegistration("getRandom", "v1", handler, null, null, serializer));
+        ServiceRegistration replacement = new ServiceRegistration("getRandom", "v1", handler, null, null, serializer);
+        registry.register(replacement);
+        assertSame(replacement, registry.get("getRandom", "v1"));
+    }
+
+    /**
+     * Registration deserializes the request, calls the handler and serializes
+     * the response.
+     * @throws XRd4JException
+     * @throws SOAPException
+     */
+    public void testProcess() throws XRd4JException, SOAPException {
+        String soapString = "<SOAP-ENV:Envelope xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" xmlns:id=\"http://x-road.eu/xsd/identifiers\" xmlns:xrd=\"http://x-road.eu/xsd/xroad.xsd\"><SOAP-ENV:Header><xrd:client id:objectType=\"SUBSYSTEM\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>GOV</id:memberClass><id:memberCode>MEMBER1</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode></xrd:client><xrd:service id:objectType=\"SERVICE\"><id:xRoadInstance>FI</id:xRoadInstance><id:memberClass>COM</id:memberClass><id:memberCode>MEMBER2</id:memberCode><id:subsystemCode>subsystem</id:subsystemCode><id:serviceCode>getRandom</id:serviceCode><id:serviceVersion>v1</id:serviceVersion></xrd:service><xrd:userId>EE1234567890</xrd:userId><xrd:id>ID11234</xrd:id><xrd:protocolVersion>4.0</xrd:protocolVersion></SOAP-ENV:Header><SOAP-ENV:Body><ns1:getRandom xmlns:ns1=\"http://producer.x-road.ee\"><request><data>1234567890</data></request></ns1:getRandom></SOAP-ENV:Body></SOAP-ENV:Envelope>";
+        ServiceRequestDeserializer deserializer = new ServiceRequestDeserializerImpl();
+        ServiceRequest<String> request = deserializer.deserialize(SOAPHelper.toSOAP(soapString));
+
+        ServiceRegistry registry = new ServiceRegistry();
+        registry.register(new ServiceRegistration("getRandom", "v1", req -> {
+            ServiceResponse<String, String> response = new ServiceResponse<>(req.getConsumer(), req.getProducer(), req.getId());
+            response.setResponseData("Hello " + req.getRequestData());
+            return response;
+        }, new RequestDeserializer(), "http://producer.x-road.ee", serializer));
+
+        ServiceResponse response = registry.get(request.getProducer()).process(request);
+        assertEquals("1234567890", request.getRequestData());
+        assertNotNull(response.getSoapMessage());
+        assertTrue(SOAPHelper.toString(response.getSoapMessage()).contains("<ns1:message>Hello 1234567890</ns1:message>"));
+    }
+
+    /**
+     * Service code and handler are mandatory.
+     */
+    public void testInvalidRegistration() {
+        try {
+            new ServiceRegistration("", "v1", handler, null, null, serializer);
+            fail("Should not reach this");
+        } catch (IllegalArgumentException ex) {
+            // OK
+        }
+        try {
+            new ServiceRegistration("getRandom", "v1", null, null, null, serializer);
+            fail("Should not reach this");
+        } catch (IllegalArgumentException ex) {
+            // OK
+        }
+    }
+
+    private static class RequestDeserializer extends AbstractCustomRequestDeserializer<String> {
+
+        @Override
+        protected String deserializeRequest(Node requestNode, SOAPMessage message) throws SOAPException {
+            for (int i = 0; i < requestNode.getChildNodes().getLength(); i++) {
+                if (requestNode.getChildNodes().item(i).getNodeType() == Node.ELEMENT_NODE
+                        && requestNode.getChildNodes().item(i).getLocalName().equals("data")) {
+                    return requestNode.getChildNodes().item(i).getTextContent();
+                }
+            }
+            return null;
+        }
+    }
+
+    private static class ResponseSerializer extends AbstractServiceResponseSerializer {
+
+        @Override
+        protected void serializeResponse(ServiceResponse response, SOAPElement soapResponse, SOAPEnvelope envelope) throws SOAPException {
+            SOAPElement data = soapResponse.addChildElement(envelope.createName("message"));
+            data.addTextNode((String) response.getResponseData());
+        }
+    }
+}
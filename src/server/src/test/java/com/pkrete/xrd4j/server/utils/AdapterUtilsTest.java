@@ -0,0 +1,70 @@
+package com.pkrete.xrd4j.server.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for AdapterUtils class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class AdapterUtilsTest extends TestCase {
+
+    /**
+     * The body is read completely whether the content length is known or
+     * not.
+     *
+     * @throws IOException
+     */
+    public void testReadBody() throws IOException {
+        byte[] body = new byte[100000];
+        Arrays.fill(body, (byte) 'a');
+        assertTrue(Arrays.equals(body, AdapterUtils.readBody(new ByteArrayInputStream(body), body.length, body.length)));
+        assertTrue(Arrays.equals(body, AdapterUtils.readBody(new ByteArrayInputStream(body), -1, body.length)));
+    }
+
+    /**
+     * A huge content length is rejected before anything is allocated.
+     */
+    public void testContentLengthTooLarge() {
+        try {
+            AdapterUtils.readBody(new ByteArrayInputStream(new byte[10]), 2000000000L, 1024);
+            fail("IOException expected");
+        } catch (IOException ex) {
+            // Expected
+        }
+    }
+
+    /**
+     * A body that is larger than the maximum size is rejected even if the
+     * content length is missing or wrong.
+     */
+    public void testBodyTooLarge() {
+        try {
+            AdapterUtils.readBody(new ByteArrayInputStream(new byte[2048]), 10, 1024);
+            fail("IOException expected");
+        } catch (IOException ex) {
+            // Expected
+        }
+        try {
+            AdapterUtils.readBody(new ByteArrayInputStream(new byte[2048]), -1, 1024);
+            fail("IOException expected");
+        } catch (IOException ex) {
+            // Expected
+        }
+    }
+
+    /**
+     * Gzip is accepted only if it's listed with a non-zero quality value.
+     */
+    public void testAcceptsGzip() {
+        assertTrue(AdapterUtils.acceptsGzip("gzip"));
+        assertTrue(AdapterUtils.acceptsGzip("deflate, GZIP;q=0.5"));
+        assertFalse(AdapterUtils.acceptsGzip((String) null));
+        assertFalse(AdapterUtils.acceptsGzip("gzip;q=0"));
+        assertFalse(AdapterUtils.acceptsGzip("x-gzip-foo, identity"));
+        assertFalse(AdapterUtils.acceptsGzip("gzip;q=foo"));
+    }
+}
@@ -0,0 +1,146 @@
+package com.pkrete.xrd4j.server.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+import junit.framework.TestCase;
+
+/**
+ * Test cases for WSDLCache class.
+ *
+ * @author Petteri Kivimäki
+ */
+public class WSDLCacheTest extends TestCase {
+
+    private static final String WSDL = "<wsdl:definitions xmlns:wsdl=\"http://schemas.xmlsoap.org/wsdl/\"/>";
+
+    /**
+     * Same entry is returned until the file is modified.
+     * @throws IOException
+     */
+    public void testReload() throws IOException {
+        File file = createFile(WSDL);
+        try {
+            WSDLCache cache = new WSDLCache();
+            WSDLCache.Entry entry = cache.get(file.getAbsolutePath());
+            assertNotNull(entry);
+            assertEquals(WSDL, new String(entry.getContent(false), StandardCharsets.UTF_8));
+            assertSame(entry, cache.get(file.getAbsolutePath()));
+
+            String modified = WSDL + "\n<!-- modified -->";
+            Files.write(file.toPath(), modified.getBytes(StandardCharsets.UTF_8));
+            file.setLastModified(entry.getLastModified() + 10000);
+            WSDLCache.Entry reloaded = cache.get(file.getAbsolutePath());
+            assertNotSame(entry, reloaded);
+            assertEquals(modified, new String(reloaded.getContent(false), StandardCharsets.UTF_8));
+            assertFalse(entry.getETag(false).equals(reloaded.getETag(false)));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Compressed copy contains the same data and has its own entity tag.
+     * @throws IOException
+     */
+    public void testGzip() throws IOException {
+        File file = createFile(WSDL);
+        try {
+            WSDLCache.Entry entry = new WSDLCache().get(file.getAbsolutePath());
+            assertEquals(WSDL, new String(gunzip(entry.getContent(true)), StandardCharsets.UTF_8));
+            assertFalse(entry.getETag(false).equals(entry.getETag(true)));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Conditional request headers.
+     * @throws IOException
+     */
+    public void testNotModified() throws IOException {
+        File file = createFile(WSDL);
+        try {
+            WSDLCache.Entry entry = new WSDLCache().get(file.getAbsolutePath());
+            assertTrue(entry.isNotModified(entry.getETag(false), -1, false));
+            assertTrue(entry.isNotModified("\"foo\", W/" + entry.getETag(true), -1, true));
+            assertTrue(entry.isNotModified("*", -1, false));
+            assertFalse(entry.isNotModified(entry.getETag(true), -1, false));
+            // If-Modified-Since is ignored when If-None-Match is present
+            assertFalse(entry.isNotModified("\"foo\"", entry.getLastModified(), false));
+            assertTrue(entry.isNotModified(null, entry.getLastModified(), false));
+            assertFalse(entry.isNotModified(null, entry.getLastModified() - 1000, false));
+            assertFalse(entry.isNotModified(null, -1, false));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * WSDL response headers, status code and body.
+     * @throws IOException
+     */
+    public void testResponse() throws IOException {
+        File file = createFile(WSDL);
+        try {
+            WSDLCache.Entry entry = new WSDLCache().get(file.getAbsolutePath());
+            WSDLResponse response = new WSDLResponse(entry, "deflate, gzip", null, null);
+            assertEquals(200, response.getStatus());
+            assertEquals("gzip", response.getHeaders().get("Content-Encoding"));
+            assertEquals(entry.getETag(true), response.getHeaders().get("ETag"));
+            assertEquals(WSDL, new String(gunzip(response.getContent()), StandardCharsets.UTF_8));
+
+            response = new WSDLResponse(entry, "gzip;q=0", null, "foo");
+            assertEquals(200, response.getStatus());
+            assertNull(response.getHeaders().get("Content-Encoding"));
+            assertEquals(WSDL, new String(response.getContent(), StandardCharsets.UTF_8));
+
+            String lastModified = response.getHeaders().get("Last-Modified");
+            response = new WSDLResponse(entry, null, null, lastModified);
+            assertEquals(304, response.getStatus());
+            assertEquals(0, response.getContent().length);
+            assertEquals(entry.getETag(false), response.getHeaders().get("ETag"));
+            assertNull(response.getHeaders().get("Content-Encoding"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Missing and empty files are not cached.
+     * @throws IOException
+     */
+    public void testMissingFile() throws IOException {
+        WSDLCache cache = new WSDLCache();
+        File file = createFile("");
+        try {
+            assertNull(cache.get(file.getAbsolutePath()));
+        } finally {
+            file.delete();
+        }
+        assertNull(cache.get(file.getAbsolutePath()));
+    }
+
+    private static File createFile(String content) throws IOException {
+        File file = File.createTempFile("test", ".wsdl");
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return out.toByteArray();
+    }
+}